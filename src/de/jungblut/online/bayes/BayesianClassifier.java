@@ -7,13 +7,16 @@ import org.apache.commons.math3.util.FastMath;
 import com.google.common.base.Preconditions;
 
 import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
 
 public class BayesianClassifier extends AbstractPredictor {
 
-  private static final double LOW_PROBABILITY = FastMath.log(1e-8);
+  // the log probability of tokens that were never seen with a class
+  static final double LOW_PROBABILITY = FastMath.log(1e-8);
 
   private final BayesianProbabilityModel model;
 
@@ -28,6 +31,10 @@ public class BayesianClassifier extends AbstractPredictor {
   }
 
   private double getProbabilityForClass(DoubleVector document, int classIndex) {
+    if (document instanceof SparseBinaryDoubleVector) {
+      return getProbabilityForClass((SparseBinaryDoubleVector) document,
+          classIndex);
+    }
     double probabilitySum = 0.0d;
     Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
     while (iterateNonZero.hasNext()) {
@@ -43,6 +50,19 @@ public class BayesianClassifier extends AbstractPredictor {
     return probabilitySum;
   }
 
+  private double getProbabilityForClass(SparseBinaryDoubleVector document,
+      int classIndex) {
+    // every token occurs with the same count, so we only sum the probabilities
+    DoubleMatrix probabilityMatrix = model.getProbabilityMatrix();
+    double probabilitySum = 0.0d;
+    for (int index : document.getIndices()) {
+      double probabilityOfToken = probabilityMatrix.get(classIndex, index);
+      probabilitySum += probabilityOfToken == 0d ? LOW_PROBABILITY
+          : probabilityOfToken;
+    }
+    return document.getValue() * probabilitySum;
+  }
+
   private DenseDoubleVector getProbabilityDistribution(DoubleVector document) {
 
     int numClasses = model.getClassPriorProbability().getLength();
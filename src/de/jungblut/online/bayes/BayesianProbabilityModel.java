@@ -27,15 +27,27 @@ public class BayesianProbabilityModel implements Model {
 
   @Override
   public void serialize(DataOutput out) throws IOException {
-    new MatrixWritable(probabilityMatrix).write(out);
+    if (probabilityMatrix instanceof FrozenSparseRowMatrix) {
+      // same layout as a sparse matrix writable, so both can be read back
+      out.writeByte(MatrixWritable.SPARSE_DOUBLE_ROW_MATRIX);
+      ((FrozenSparseRowMatrix) probabilityMatrix).writeSparse(out);
+    } else {
+      new MatrixWritable(probabilityMatrix).write(out);
+    }
     VectorWritable.writeVector(classPriorProbability, out);
   }
 
   @Override
   public BayesianProbabilityModel deserialize(DataInput in) throws IOException {
-    MatrixWritable mat = new MatrixWritable();
-    mat.readFields(in);
-    this.probabilityMatrix = mat.getMatrix();
+    // sparse probabilities are read into the compact frozen representation
+    byte type = in.readByte();
+    if (type == MatrixWritable.SPARSE_DOUBLE_ROW_MATRIX) {
+      this.probabilityMatrix = FrozenSparseRowMatrix.readSparse(in);
+    } else if (type == MatrixWritable.DENSE_DOUBLE_MATRIX) {
+      this.probabilityMatrix = MatrixWritable.readDenseMatrix(in);
+    } else {
+      throw new IOException("unknown matrix type: " + type);
+    }
     this.classPriorProbability = VectorWritable.readVector(in);
     return this;
   }
@@ -0,0 +1,185 @@
+package de.jungblut.online.bayes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+
+/**
+ * The counts a naive bayes model is computed from: the token counts per class,
+ * the number of tokens per class and the number of documents per class. The
+ * counts are not thread-safe, they are meant to be accumulated per thread and
+ * merged afterwards (e.g. by {@link java.util.stream.Stream#collect}). The
+ * token counts of a class are a primitive {@link TokenCountMap}, so counting a
+ * token is an in-place increment.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+final class ClassTokenCounts {
+
+  // created lazily, so partial counts of many classes stay small
+  private final TokenCountMap[] tokenCounts;
+  private final double[] tokensPerClass;
+  private final double[] documentsPerClass;
+
+  ClassTokenCounts(int numClasses) {
+    this.tokenCounts = new TokenCountMap[numClasses];
+    this.tokensPerClass = new double[numClasses];
+    this.documentsPerClass = new double[numClasses];
+  }
+
+  /**
+   * Counts the tokens of the document for the given class.
+   * 
+   * @param document the document.
+   * @param clazz the class of the document.
+   * @param weight the weight of the document, its counts are multiplied by it.
+   */
+  void observe(DoubleVector document, int clazz, double weight) {
+    observeDocument(document, clazz, weight);
+    TokenCountMap counts = getOrCreate(clazz);
+    Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      counts.add(next.getIndex(), next.getValue() * weight);
+    }
+  }
+
+  /**
+   * Counts the document and its number of tokens for the given class, but not
+   * the tokens themselves. They can be added by {@link #addToken}.
+   */
+  void observeDocument(DoubleVector document, int clazz, double weight) {
+    tokensPerClass[clazz] += document.getLength() * weight;
+    documentsPerClass[clazz] += weight;
+  }
+
+  /**
+   * Adds the count to the token of the class.
+   */
+  void addToken(int clazz, int token, double count) {
+    getOrCreate(clazz).add(token, count);
+  }
+
+  /**
+   * Adds the other counts to these counts.
+   * 
+   * @param other the counts to add.
+   * @return these counts.
+   */
+  ClassTokenCounts merge(ClassTokenCounts other) {
+    for (int clazz = 0; clazz < tokenCounts.length; clazz++) {
+      tokensPerClass[clazz] += other.tokensPerClass[clazz];
+      documentsPerClass[clazz] += other.documentsPerClass[clazz];
+      if (other.tokenCounts[clazz] == null) {
+        continue;
+      }
+      if (tokenCounts[clazz] == null) {
+        // the other counts are not used after the merge
+        tokenCounts[clazz] = other.tokenCounts[clazz];
+        continue;
+      }
+      // probing the smaller map into the larger one is cheaper
+      if (other.tokenCounts[clazz].size() > tokenCounts[clazz].size()) {
+        other.tokenCounts[clazz].addAll(tokenCounts[clazz]);
+        tokenCounts[clazz] = other.tokenCounts[clazz];
+      } else {
+        tokenCounts[clazz].addAll(other.tokenCounts[clazz]);
+      }
+    }
+    return this;
+  }
+
+  private TokenCountMap getOrCreate(int clazz) {
+    if (tokenCounts[clazz] == null) {
+      tokenCounts[clazz] = new TokenCountMap();
+    }
+    return tokenCounts[clazz];
+  }
+
+  /**
+   * @return the log of the normalizer of the token probabilities of the class,
+   *         which are smoothed by the number of features.
+   */
+  double logNormalizer(int clazz, int featureDimension) {
+    return FastMath.log(tokensPerClass[clazz] + featureDimension - 1);
+  }
+
+  /**
+   * @return the log prior probabilities of the classes.
+   */
+  double[] logPriors() {
+    double numDocumentsSeen = 0d;
+    for (double documents : documentsPerClass) {
+      numDocumentsSeen += documents;
+    }
+    double[] logPriors = new double[documentsPerClass.length];
+    for (int clazz = 0; clazz < logPriors.length; clazz++) {
+      logPriors[clazz] = FastMath.log(documentsPerClass[clazz])
+          - FastMath.log(numDocumentsSeen);
+    }
+    return logPriors;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(tokenCounts.length);
+    for (int clazz = 0; clazz < tokenCounts.length; clazz++) {
+      out.writeDouble(tokensPerClass[clazz]);
+      out.writeDouble(documentsPerClass[clazz]);
+      TokenCountMap counts = tokenCounts[clazz];
+      if (counts == null) {
+        out.writeInt(0);
+        continue;
+      }
+      int[] tokens = counts.sortedTokens();
+      out.writeInt(tokens.length);
+      for (int token : tokens) {
+        out.writeInt(token);
+        out.writeDouble(counts.get(token));
+      }
+    }
+  }
+
+  static ClassTokenCounts read(DataInput in) throws IOException {
+    ClassTokenCounts counts = new ClassTokenCounts(in.readInt());
+    for (int clazz = 0; clazz < counts.tokenCounts.length; clazz++) {
+      counts.tokensPerClass[clazz] = in.readDouble();
+      counts.documentsPerClass[clazz] = in.readDouble();
+      int size = in.readInt();
+      if (size > 0) {
+        TokenCountMap map = new TokenCountMap(size);
+        for (int i = 0; i < size; i++) {
+          map.add(in.readInt(), in.readDouble());
+        }
+        counts.tokenCounts[clazz] = map;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * @return the token counts of the class, null if it has none.
+   */
+  TokenCountMap getTokenCounts(int clazz) {
+    return tokenCounts[clazz];
+  }
+
+  double getTokensPerClass(int clazz) {
+    return tokensPerClass[clazz];
+  }
+
+  double getDocumentsPerClass(int clazz) {
+    return documentsPerClass[clazz];
+  }
+
+  int getNumClasses() {
+    return tokenCounts.length;
+  }
+
+}
@@ -0,0 +1,88 @@
+package de.jungblut.online.bayes;
+
+import java.util.Arrays;
+
+/**
+ * Misra-Gries summary of the most frequent tokens in fixed memory. It keeps up
+ * to twice the number of tokens it should find. Once it is full, the (k+1)-th
+ * largest count is subtracted from all counts and the tokens that drop to zero
+ * are removed, so a token that occurs more often than a 1 / (k + 1) fraction
+ * of the total count is always kept. Summaries can be merged by adding them
+ * and pruning the same way, so they can be computed per thread.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+final class FrequentTokens {
+
+  private final int numTokens;
+  private TokenCountMap counts;
+
+  /**
+   * @param numTokens the number of tokens to find, at least one.
+   */
+  FrequentTokens(int numTokens) {
+    this.numTokens = numTokens;
+    this.counts = new TokenCountMap(2 * numTokens);
+  }
+
+  void add(int token, double count) {
+    counts.add(token, count);
+    if (counts.size() > 2 * numTokens) {
+      prune();
+    }
+  }
+
+  FrequentTokens merge(FrequentTokens other) {
+    counts.addAll(other.counts);
+    if (counts.size() > 2 * numTokens) {
+      prune();
+    }
+    return this;
+  }
+
+  private void prune() {
+    double threshold = kthLargestCount(numTokens + 1);
+    TokenCountMap pruned = new TokenCountMap(2 * numTokens);
+    counts.forEach((token, count) -> {
+      if (count > threshold) {
+        pruned.add(token, count - threshold);
+      }
+    });
+    counts = pruned;
+  }
+
+  private double kthLargestCount(int k) {
+    double[] values = new double[counts.size()];
+    int[] index = new int[1];
+    counts.forEach((token, count) -> values[index[0]++] = count);
+    Arrays.sort(values);
+    return values[values.length - k];
+  }
+
+  /**
+   * @return up to numTokens tokens with the largest counts, in ascending order.
+   */
+  int[] getTokens() {
+    int[] tokens = counts.sortedTokens();
+    if (tokens.length <= numTokens) {
+      return tokens;
+    }
+    double threshold = kthLargestCount(numTokens);
+    int[] frequent = new int[numTokens];
+    int length = 0;
+    // the ties at the threshold fill the remaining places
+    for (int pass = 0; pass < 2; pass++) {
+      for (int token : tokens) {
+        double count = counts.get(token);
+        boolean take = pass == 0 ? count > threshold : count == threshold;
+        if (take && length < numTokens) {
+          frequent[length++] = token;
+        }
+      }
+    }
+    Arrays.sort(frequent);
+    return frequent;
+  }
+
+}
@@ -0,0 +1,218 @@
+package de.jungblut.online.bayes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+/**
+ * Immutable compact sparse row matrix, the frozen form of the naive bayes log
+ * probabilities. Every row stores its non-zero columns sorted in an int array
+ * and the values in a parallel double array, thus an entry needs 12 bytes
+ * instead of a hash map slot with its load factor overhead. A lookup is a
+ * binary search in its row.
+ * 
+ * All operations besides the lookups are computed on an equivalent
+ * {@link de.jungblut.math.sparse.SparseDoubleRowMatrix}, which is also what
+ * {@link #deepCopy()} returns, so copies can be modified. It is serialized in
+ * the sparse layout of the {@link de.jungblut.writable.MatrixWritable}.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class FrozenSparseRowMatrix extends ReadOnlySparseRowMatrix {
+
+  private static final int[] NO_COLUMNS = new int[0];
+  private static final double[] NO_VALUES = new double[0];
+
+  private final int numColumns;
+  private final int[][] columns;
+  private final double[][] values;
+
+  /**
+   * @param numColumns the number of columns.
+   * @param columns the sorted non-zero columns of every row.
+   * @param values the values of the non-zero columns of every row.
+   */
+  FrozenSparseRowMatrix(int numColumns, int[][] columns, double[][] values) {
+    Preconditions.checkArgument(columns.length == values.length,
+        "need columns and values for every row");
+    this.numColumns = numColumns;
+    this.columns = columns;
+    this.values = values;
+    for (int row = 0; row < columns.length; row++) {
+      if (columns[row] == null || columns[row].length == 0) {
+        columns[row] = NO_COLUMNS;
+        values[row] = NO_VALUES;
+      }
+      Preconditions.checkArgument(columns[row].length == values[row].length,
+          "row " + row + " has a different number of columns and values");
+    }
+  }
+
+  /**
+   * Freezes the given matrix.
+   * 
+   * @param matrix the matrix to freeze.
+   * @return a frozen copy of the non-zeros of the matrix.
+   */
+  public static FrozenSparseRowMatrix freeze(DoubleMatrix matrix) {
+    if (matrix instanceof FrozenSparseRowMatrix) {
+      return (FrozenSparseRowMatrix) matrix;
+    }
+    int numRows = matrix.getRowCount();
+    int[][] columns = new int[numRows][];
+    double[][] values = new double[numRows][];
+    for (int row = 0; row < numRows; row++) {
+      DoubleVector rowVector = matrix.getRowVector(row);
+      columns[row] = new int[rowVector.getLength()];
+      values[row] = new double[rowVector.getLength()];
+      int length = 0;
+      Iterator<DoubleVectorElement> iterateNonZero = rowVector.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (next.getValue() != 0d) {
+          columns[row][length] = next.getIndex();
+          values[row][length++] = next.getValue();
+        }
+      }
+      sortRow(columns, values, row, length);
+    }
+    return new FrozenSparseRowMatrix(matrix.getColumnCount(), columns, values);
+  }
+
+  // sorts the first length entries of the row by column and trims it
+  private static void sortRow(int[][] columns, double[][] values, int row,
+      int length) {
+    long[] order = new long[length];
+    for (int i = 0; i < length; i++) {
+      order[i] = ((long) columns[row][i] << 32) | i;
+    }
+    Arrays.sort(order);
+    int[] sortedColumns = new int[length];
+    double[] sortedValues = new double[length];
+    for (int i = 0; i < length; i++) {
+      sortedColumns[i] = (int) (order[i] >>> 32);
+      sortedValues[i] = values[row][(int) order[i]];
+    }
+    columns[row] = sortedColumns;
+    values[row] = sortedValues;
+  }
+
+  /**
+   * Writes the matrix in the sparse layout of the
+   * {@link de.jungblut.writable.MatrixWritable}, without the type flag.
+   * 
+   * @param out the output.
+   * @throws IOException in case of an IO error.
+   */
+  public void writeSparse(DataOutput out) throws IOException {
+    out.writeInt(getRowCount());
+    out.writeInt(numColumns);
+    int[] rowIndices = rowIndices();
+    out.writeInt(rowIndices.length);
+    for (int row : rowIndices) {
+      out.writeInt(row);
+      out.writeInt(columns[row].length);
+      for (int i = 0; i < columns[row].length; i++) {
+        out.writeInt(columns[row][i]);
+        out.writeDouble(values[row][i]);
+      }
+    }
+  }
+
+  /**
+   * Reads a matrix in the sparse layout of the
+   * {@link de.jungblut.writable.MatrixWritable}, without the type flag.
+   * 
+   * @param in the input.
+   * @return the frozen matrix.
+   * @throws IOException in case of an IO error.
+   */
+  public static FrozenSparseRowMatrix readSparse(DataInput in)
+      throws IOException {
+    int numRows = in.readInt();
+    int numColumns = in.readInt();
+    int[][] columns = new int[numRows][];
+    double[][] values = new double[numRows][];
+    int numRowIndices = in.readInt();
+    for (int i = 0; i < numRowIndices; i++) {
+      int row = in.readInt();
+      int length = in.readInt();
+      columns[row] = new int[length];
+      values[row] = new double[length];
+      for (int j = 0; j < length; j++) {
+        columns[row][j] = in.readInt();
+        values[row][j] = in.readDouble();
+      }
+      // the rows of hash based matrices are not sorted
+      sortRow(columns, values, row, length);
+    }
+    return new FrozenSparseRowMatrix(numColumns, columns, values);
+  }
+
+  @Override
+  public double get(int row, int col) {
+    int index = Arrays.binarySearch(columns[row], col);
+    return index >= 0 ? values[row][index] : NOT_FLAGGED;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  @Override
+  public int getRowCount() {
+    return columns.length;
+  }
+
+  /**
+   * @return a sorted sparse copy of the row.
+   */
+  @Override
+  public DoubleVector getRowVector(int row) {
+    DoubleVector vector = new SequentialSparseDoubleVector(numColumns,
+        Math.max(1, columns[row].length));
+    for (int i = 0; i < columns[row].length; i++) {
+      vector.set(columns[row][i], values[row][i]);
+    }
+    return vector;
+  }
+
+  @Override
+  public int[] rowIndices() {
+    int numRows = 0;
+    for (int[] row : columns) {
+      numRows += row.length > 0 ? 1 : 0;
+    }
+    int[] rowIndices = new int[numRows];
+    int index = 0;
+    for (int row = 0; row < columns.length; row++) {
+      if (columns[row].length > 0) {
+        rowIndices[index++] = row;
+      }
+    }
+    return rowIndices;
+  }
+
+  @Override
+  public double sum() {
+    double sum = 0d;
+    for (double[] row : values) {
+      for (double value : row) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+}
@@ -0,0 +1,257 @@
+package de.jungblut.online.bayes;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.ml.ScoredLabel;
+
+/**
+ * Naive bayes classifier that scores documents with an inverted index compiled
+ * from a {@link BayesianProbabilityModel}. It predicts the same distribution as
+ * the {@link BayesianClassifier}, but instead of looking up every token of a
+ * document for every class, it only visits the classes a token was observed
+ * with.
+ * 
+ * Every token maps to packed postings of (class, log probability - low
+ * probability), where the low probability is what unseen tokens contribute.
+ * The score of a class is then the document's token mass times the low
+ * probability plus the sum of its postings, thus scoring costs the number of
+ * postings of the document's tokens. The postings are summed in a reusable
+ * per-thread accumulator.
+ * 
+ * The classes without postings in a document only differ by their prior, so
+ * {@link #predictTopK(DoubleVector, int)} only needs the k classes with the
+ * highest prior of them and doesn't visit all classes.
+ * 
+ * The index is compiled from the rows of the probability matrix, so models
+ * whose rows can't be enumerated, like the ones of the
+ * {@link SketchedNaiveBayesLearner}, are rejected.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class InvertedIndexBayesianClassifier extends AbstractPredictor {
+
+  private final int numClasses;
+  private final int featureDimension;
+  // token j has the postings [postingOffsets[j], postingOffsets[j + 1])
+  private final int[] postingOffsets;
+  private final int[] postingClasses;
+  private final double[] postingDeltas;
+
+  private final double[] priors;
+  private final int[] classesByPrior;
+  private final double priorMass;
+
+  private final ThreadLocal<Accumulator> accumulator;
+
+  public InvertedIndexBayesianClassifier(BayesianProbabilityModel model) {
+    Preconditions.checkNotNull(model, "model");
+    DoubleMatrix probabilityMatrix = model.getProbabilityMatrix();
+    Preconditions.checkArgument(
+        !SketchedBayesianProbabilityModel.isSketched(probabilityMatrix),
+        "sketched models can't be indexed, use the BayesianClassifier");
+    this.numClasses = probabilityMatrix.getRowCount();
+    this.featureDimension = probabilityMatrix.getColumnCount();
+
+    // count the postings per token first, so they can be packed in place
+    this.postingOffsets = new int[featureDimension + 1];
+    for (int row = 0; row < numClasses; row++) {
+      Iterator<DoubleVectorElement> iterateNonZero = probabilityMatrix
+          .getRowVector(row).iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (next.getValue() != 0d) {
+          postingOffsets[next.getIndex() + 1]++;
+        }
+      }
+    }
+    for (int j = 0; j < featureDimension; j++) {
+      postingOffsets[j + 1] += postingOffsets[j];
+    }
+
+    int numPostings = postingOffsets[featureDimension];
+    this.postingClasses = new int[numPostings];
+    this.postingDeltas = new double[numPostings];
+    int[] position = new int[featureDimension];
+    for (int row = 0; row < numClasses; row++) {
+      Iterator<DoubleVectorElement> iterateNonZero = probabilityMatrix
+          .getRowVector(row).iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        // zero log probabilities are treated as unseen, like the classifier
+        if (next.getValue() != 0d) {
+          int index = postingOffsets[next.getIndex()]
+              + position[next.getIndex()]++;
+          postingClasses[index] = row;
+          postingDeltas[index] = next.getValue()
+              - BayesianClassifier.LOW_PROBABILITY;
+        }
+      }
+    }
+
+    this.priors = model.getClassPriorProbability().toArray().clone();
+    this.classesByPrior = IntStream
+        .range(0, numClasses)
+        .boxed()
+        .sorted(
+            Comparator.comparingDouble((Integer k) -> priors[k]).reversed()
+                .thenComparingInt(k -> k)).mapToInt(k -> k).toArray();
+    double mass = 0d;
+    for (double prior : priors) {
+      mass += FastMath.exp(prior);
+    }
+    this.priorMass = mass;
+    this.accumulator = ThreadLocal.withInitial(() -> new Accumulator(
+        numClasses));
+  }
+
+  @Override
+  public DoubleVector predict(DoubleVector features) {
+    Accumulator acc = accumulate(features);
+    double base = acc.tokenMass * BayesianClassifier.LOW_PROBABILITY;
+
+    DenseDoubleVector distribution = new DenseDoubleVector(numClasses);
+    // the probabilities are computed in the backing array of the result
+    double[] probabilities = distribution.toArray();
+    double max = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < numClasses; k++) {
+      probabilities[k] = base + acc.scores[k] + priors[k];
+      max = Math.max(max, probabilities[k]);
+    }
+    acc.reset();
+
+    double sum = 0d;
+    for (int k = 0; k < numClasses; k++) {
+      probabilities[k] = FastMath.exp(probabilities[k] - max);
+      sum += probabilities[k];
+    }
+    for (int k = 0; k < numClasses; k++) {
+      probabilities[k] /= sum;
+    }
+    return distribution;
+  }
+
+  /**
+   * Predicts the k most probable classes. It only visits the classes with
+   * postings in the document and the k classes with the highest prior.
+   * 
+   * @param features the document.
+   * @param k the number of classes to return.
+   * @return at most k classes with their probability, the most probable first.
+   */
+  public List<ScoredLabel> predictTopK(DoubleVector features, int k) {
+    Preconditions.checkArgument(k > 0, "k > 0, given: " + k);
+    Accumulator acc = accumulate(features);
+    double base = acc.tokenMass * BayesianClassifier.LOW_PROBABILITY;
+
+    // the log probabilities of the candidates before normalization
+    List<ScoredLabel> candidates = new ArrayList<>(acc.numTouched + k);
+    double max = Double.NEGATIVE_INFINITY;
+    double untouchedPriorMass = priorMass;
+    for (int i = 0; i < acc.numTouched; i++) {
+      int clazz = acc.touched[i];
+      double score = base + acc.scores[clazz] + priors[clazz];
+      candidates.add(new ScoredLabel(clazz, score));
+      max = Math.max(max, score);
+      untouchedPriorMass -= FastMath.exp(priors[clazz]);
+    }
+    // the other classes are ranked by their prior alone
+    int numUntouched = 0;
+    for (int i = 0; i < classesByPrior.length && numUntouched < k; i++) {
+      int clazz = classesByPrior[i];
+      if (!acc.isTouched[clazz]) {
+        double score = base + priors[clazz];
+        candidates.add(new ScoredLabel(clazz, score));
+        max = Math.max(max, score);
+        numUntouched++;
+      }
+    }
+    acc.reset();
+
+    // the untouched classes share the base, so their mass is the prior mass
+    double sum = FastMath.exp(base - max) * Math.max(0d, untouchedPriorMass);
+    for (int i = 0; i < candidates.size() - numUntouched; i++) {
+      sum += FastMath.exp(candidates.get(i).getScore() - max);
+    }
+
+    candidates.sort(ScoredLabel.BY_DESCENDING_SCORE);
+    List<ScoredLabel> result = new ArrayList<>(Math.min(k, candidates.size()));
+    for (int i = 0; i < candidates.size() && i < k; i++) {
+      ScoredLabel candidate = candidates.get(i);
+      result.add(new ScoredLabel(candidate.getLabel(), FastMath.exp(candidate
+          .getScore() - max) / sum));
+    }
+    return result;
+  }
+
+  private Accumulator accumulate(DoubleVector document) {
+    Preconditions.checkArgument(document.getDimension() == featureDimension,
+        "document dimension must match the model dimension! Document: "
+            + document.getDimension() + " != Model: " + featureDimension);
+    Accumulator acc = accumulator.get();
+    if (document instanceof SparseBinaryDoubleVector) {
+      SparseBinaryDoubleVector binary = (SparseBinaryDoubleVector) document;
+      for (int index : binary.getIndices()) {
+        acc.add(index, binary.getValue());
+      }
+    } else {
+      Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        acc.add(next.getIndex(), next.getValue());
+      }
+    }
+    return acc;
+  }
+
+  // sums the postings of a document, only the touched classes are reset
+  private final class Accumulator {
+    private final double[] scores;
+    private final boolean[] isTouched;
+    private final int[] touched;
+    private int numTouched;
+    private double tokenMass;
+
+    private Accumulator(int numClasses) {
+      this.scores = new double[numClasses];
+      this.isTouched = new boolean[numClasses];
+      this.touched = new int[numClasses];
+    }
+
+    private void add(int token, double count) {
+      tokenMass += count;
+      for (int i = postingOffsets[token]; i < postingOffsets[token + 1]; i++) {
+        int clazz = postingClasses[i];
+        if (!isTouched[clazz]) {
+          isTouched[clazz] = true;
+          touched[numTouched++] = clazz;
+        }
+        scores[clazz] += count * postingDeltas[i];
+      }
+    }
+
+    private void reset() {
+      for (int i = 0; i < numTouched; i++) {
+        scores[touched[i]] = 0d;
+        isTouched[touched[i]] = false;
+      }
+      numTouched = 0;
+      tokenMass = 0d;
+    }
+  }
+
+}
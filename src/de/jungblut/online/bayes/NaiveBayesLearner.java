@@ -1,8 +1,9 @@
 package de.jungblut.online.bayes;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.math3.util.FastMath;
@@ -11,18 +12,30 @@ import org.apache.logging.log4j.Logger;
 
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
-import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.dense.DenseDoubleVector;
-import de.jungblut.math.sparse.SparseDoubleRowMatrix;
 import de.jungblut.online.ml.AbstractOnlineLearner;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
 
 /**
  * Multinomial naive bayes learner. This class now contains a sparse internal
  * representations of the "feature given class" probabilities. Thus it can be
- * scaled to very large text corpora and large numbers of classes easily.
+ * scaled to very large text corpora and large numbers of classes easily. The
+ * trained probabilities are a {@link FrozenSparseRowMatrix}, use its
+ * {@link FrozenSparseRowMatrix#deepCopy()} to modify them.
  * 
- * The internal accesses are thread-safe, so a parallel stream can be used.
+ * The counts are accumulated per thread and merged at the end, so a parallel
+ * stream can be used without contention. For shard-parallel training, every
+ * shard computes its {@link NaiveBayesStatistics}, which are merged and turned
+ * into the model afterwards.
+ * 
+ * The counts of {@link WeightedFeatureOutcomePair}s are multiplied by their
+ * weight, e.g. to consume aggregated duplicates directly. The class of
+ * {@link LabeledFeatureOutcomePair}s is read from their label, without
+ * materializing a one-hot outcome. Two dimensional outcomes are read from
+ * their first entry like before (see {@link #classOf(FeatureOutcomePair)}),
+ * not by their maximum like in the other learners.
  * 
  * @author thomas.jungblut
  * 
@@ -33,9 +46,6 @@ public class NaiveBayesLearner extends
   private static final Logger LOG = LogManager
       .getLogger(NaiveBayesLearner.class);
 
-  private DoubleMatrix probabilityMatrix;
-  private DoubleVector classPriorProbability;
-
   private boolean verbose;
 
   /**
@@ -55,83 +65,93 @@ public class NaiveBayesLearner extends
   @Override
   public BayesianProbabilityModel train(
       Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    NaiveBayesStatistics statistics = computeStatistics(streamSupplier);
+    return computeModel(statistics.getCounts(), featureDimension, verbose);
+  }
 
-    init(streamSupplier);
-
-    Stream<FeatureOutcomePair> stream = streamSupplier.get();
+  /**
+   * Counts the given data without computing the probabilities. The statistics
+   * of multiple shards can be merged and then turned into a model, which is
+   * the same model {@link #train(Supplier)} yields on all the data.
+   * 
+   * @param streamSupplier the supplier of the data.
+   * @return the statistics of the data.
+   */
+  public NaiveBayesStatistics computeStatistics(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
 
-    // sparse row representations, so every class has the features as a hashset
-    // of values. This gives good compression for many class problems.
-    probabilityMatrix = new SparseDoubleRowMatrix(numOutcomeClasses,
-        featureDimension);
+    init(streamSupplier);
 
-    int[] tokenPerClass = new int[numOutcomeClasses];
-    int[] numDocumentsPerClass = new int[numOutcomeClasses];
+    // every thread counts into its own tables, which are merged at the end
+    ClassTokenCounts counts = streamSupplier.get().collect(
+        () -> new ClassTokenCounts(numOutcomeClasses),
+        (partial, pair) -> partial.observe(pair.getFeature(),
+            classOf(pair), WeightedFeatureOutcomePair.weightOf(pair)),
+        ClassTokenCounts::merge);
+    return new NaiveBayesStatistics(counts, featureDimension);
+  }
 
-    // observe the probabilities
-    AtomicInteger numDocumentsSeen = new AtomicInteger(0);
-    stream.forEach((pair) -> {
-      observe(pair.getFeature(), pair.getOutcome(), numOutcomeClasses,
-          tokenPerClass, numDocumentsPerClass);
-      numDocumentsSeen.incrementAndGet();
-    });
+  /**
+   * @param pair any feature outcome pair.
+   * @return the class the example is counted for. Two dimensional outcomes
+   *         are binary, so the class is the value of the first entry: (1, 0)
+   *         is class one and (0, 1) class zero. All other outcomes are read
+   *         like {@link LabeledFeatureOutcomePair#labelOf(FeatureOutcomePair)}.
+   */
+  static int classOf(FeatureOutcomePair pair) {
+    if (!(pair instanceof LabeledFeatureOutcomePair)) {
+      DoubleVector outcome = pair.getOutcome();
+      if (outcome.getDimension() == 2) {
+        return (int) outcome.get(0);
+      }
+    }
+    return LabeledFeatureOutcomePair.labelOf(pair);
+  }
 
+  static BayesianProbabilityModel computeModel(ClassTokenCounts counts,
+      int featureDimension, boolean verbose) {
+    int numOutcomeClasses = counts.getNumClasses();
     // know we know the token distribution per class, we can calculate the
-    // probability. It is intended for them to be negative in some cases
-    for (int row = 0; row < numOutcomeClasses; row++) {
-      // we can quite efficiently iterate over the non-zero row vectors now
-      DoubleVector rowVector = probabilityMatrix.getRowVector(row);
+    // probability. It is intended for them to be negative in some cases. The
+    // rows are independent, so they are computed in parallel straight into the
+    // compact frozen representation: sorted token ids and their values.
+    int[][] columns = new int[numOutcomeClasses][];
+    double[][] values = new double[numOutcomeClasses][];
+    AtomicInteger normalizedRows = new AtomicInteger();
+    IntStream.range(0, numOutcomeClasses).parallel().forEach((row) -> {
+      TokenCountMap tokenCounts = counts.getTokenCounts(row);
+      if (tokenCounts == null) {
+        return;
+      }
       // don't care about not occuring words, we honor them with a very small
       // probability later on when predicting, here we save a lot space.
-      Iterator<DoubleVectorElement> iterateNonZero = rowVector.iterateNonZero();
-      double normalizer = FastMath.log(tokenPerClass[row]
-          + probabilityMatrix.getColumnCount() - 1);
-      while (iterateNonZero.hasNext()) {
-        DoubleVectorElement next = iterateNonZero.next();
-        double currentWordCount = next.getValue();
-        double logProbability = FastMath.log(currentWordCount) - normalizer;
-        probabilityMatrix.set(row, next.getIndex(), logProbability);
+      int[] tokens = tokenCounts.sortedTokens();
+      double[] logProbabilities = new double[tokens.length];
+      double normalizer = counts.logNormalizer(row, featureDimension);
+      int length = 0;
+      for (int token : tokens) {
+        double currentWordCount = tokenCounts.get(token);
+        // zero weighted documents don't make a token occur
+        if (currentWordCount != 0d) {
+          tokens[length] = token;
+          logProbabilities[length++] = FastMath.log(currentWordCount)
+              - normalizer;
+        }
       }
+      columns[row] = Arrays.copyOf(tokens, length);
+      values[row] = Arrays.copyOf(logProbabilities, length);
       if (verbose) {
-        LOG.info("Computed " + row + " / " + numOutcomeClasses + "!");
+        LOG.info("Computed " + normalizedRows.incrementAndGet() + " / "
+            + numOutcomeClasses + "!");
       }
-    }
+    });
+    DoubleMatrix probabilityMatrix = new FrozenSparseRowMatrix(
+        featureDimension, columns, values);
 
-    classPriorProbability = new DenseDoubleVector(numOutcomeClasses);
-    for (int i = 0; i < numOutcomeClasses; i++) {
-      double prior = FastMath.log(numDocumentsPerClass[i])
-          - FastMath.log(numDocumentsSeen.get());
-      classPriorProbability.set(i, prior);
-    }
+    DoubleVector classPriorProbability = new DenseDoubleVector(
+        counts.logPriors());
     return new BayesianProbabilityModel(probabilityMatrix,
         classPriorProbability);
   }
 
-  private void observe(DoubleVector document, DoubleVector outcome,
-      int numDistinctClasses, int[] tokenPerClass, int[] numDocumentsPerClass) {
-    int predictedClass = outcome.maxIndex();
-    if (numDistinctClasses == 2) {
-      predictedClass = (int) outcome.get(0);
-    }
-
-    synchronized (probabilityMatrix) {
-      tokenPerClass[predictedClass] += document.getLength();
-      numDocumentsPerClass[predictedClass]++;
-    }
-
-    Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
-    while (iterateNonZero.hasNext()) {
-      DoubleVectorElement next = iterateNonZero.next();
-      // TODO this is a very granular lock that is acquired very often:
-      // can this high contention be improved, e.g. by writing a temporary
-      // vector and then just merging updates?
-      synchronized (probabilityMatrix) {
-        double currentCount = probabilityMatrix.get(predictedClass,
-            next.getIndex());
-        probabilityMatrix.set(predictedClass, next.getIndex(), currentCount
-            + next.getValue());
-      }
-    }
-  }
-
 }
@@ -0,0 +1,147 @@
+package de.jungblut.online.bayes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.Model;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * The sufficient statistics of a naive bayes model: the token counts per
+ * class, the number of tokens per class and the number of documents per class.
+ * They can be computed per shard (e.g. by
+ * {@link NaiveBayesLearner#computeStatistics(java.util.function.Supplier)} in
+ * separate JVMs), serialized, merged in any order and finally turned into a
+ * {@link BayesianProbabilityModel}. Merging only adds counts, so it is
+ * associative and commutative and the merged model is the same as if it was
+ * trained on all shards at once.
+ * 
+ * The statistics are not thread-safe.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class NaiveBayesStatistics implements Model {
+
+  private int featureDimension;
+  private ClassTokenCounts counts;
+
+  // deserialization constructor
+  public NaiveBayesStatistics() {
+  }
+
+  /**
+   * Creates empty statistics.
+   * 
+   * @param numClasses the number of classes, at least two.
+   * @param featureDimension the dimension of the features.
+   */
+  public NaiveBayesStatistics(int numClasses, int featureDimension) {
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    Preconditions.checkArgument(featureDimension > 0,
+        "featureDimension > 0, given: " + featureDimension);
+    this.counts = new ClassTokenCounts(numClasses);
+    this.featureDimension = featureDimension;
+  }
+
+  NaiveBayesStatistics(ClassTokenCounts counts, int featureDimension) {
+    this.counts = counts;
+    this.featureDimension = featureDimension;
+  }
+
+  /**
+   * Counts the given example. The class is read like the
+   * {@link NaiveBayesLearner} does, weighted examples are counted by their
+   * weight.
+   * 
+   * @param pair the example.
+   * @return these statistics.
+   */
+  public NaiveBayesStatistics observe(FeatureOutcomePair pair) {
+    int clazz = NaiveBayesLearner.classOf(pair);
+    Preconditions.checkArgument(clazz >= 0 && clazz < getNumClasses(),
+        "class must be in [0, " + getNumClasses() + "), given: " + clazz);
+    counts.observe(pair.getFeature(), clazz,
+        WeightedFeatureOutcomePair.weightOf(pair));
+    return this;
+  }
+
+  /**
+   * Adds the counts of the other statistics to these statistics. The counts
+   * of the other statistics may be reused, so it must not be used afterwards.
+   * 
+   * @param other the statistics of another shard.
+   * @return these statistics.
+   */
+  public NaiveBayesStatistics merge(NaiveBayesStatistics other) {
+    Preconditions.checkArgument(getNumClasses() == other.getNumClasses(),
+        "number of classes must match: " + getNumClasses() + " != "
+            + other.getNumClasses());
+    Preconditions.checkArgument(featureDimension == other.featureDimension,
+        "feature dimension must match: " + featureDimension + " != "
+            + other.featureDimension);
+    counts.merge(other.counts);
+    return this;
+  }
+
+  /**
+   * @return the model with the probabilities of the counted examples.
+   */
+  public BayesianProbabilityModel toModel() {
+    return NaiveBayesLearner.computeModel(counts, featureDimension, false);
+  }
+
+  /**
+   * @return the number of documents of the class, its weight for weighted
+   *         examples.
+   */
+  public double getDocumentCount(int clazz) {
+    return counts.getDocumentsPerClass(clazz);
+  }
+
+  /**
+   * @return the number of tokens of the class, weighted like the documents.
+   */
+  public double getTokenCount(int clazz) {
+    return counts.getTokensPerClass(clazz);
+  }
+
+  /**
+   * @return how often the token occurred with the class.
+   */
+  public double getTokenCount(int clazz, int token) {
+    TokenCountMap tokenCounts = counts.getTokenCounts(clazz);
+    return tokenCounts == null ? 0d : tokenCounts.get(token);
+  }
+
+  public int getNumClasses() {
+    return counts.getNumClasses();
+  }
+
+  public int getFeatureDimension() {
+    return featureDimension;
+  }
+
+  ClassTokenCounts getCounts() {
+    return counts;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(featureDimension);
+    counts.write(out);
+  }
+
+  @Override
+  public NaiveBayesStatistics deserialize(DataInput in) throws IOException {
+    this.featureDimension = in.readInt();
+    this.counts = ClassTokenCounts.read(in);
+    return this;
+  }
+
+}
@@ -0,0 +1,195 @@
+package de.jungblut.online.bayes;
+
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+/**
+ * Base of the read-only sparse row matrices that hold naive bayes log
+ * probabilities. Subclasses only need to look up entries and rows, all other
+ * operations are computed on an equivalent {@link SparseDoubleRowMatrix},
+ * which is also what {@link #deepCopy()} returns, so copies can be modified.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+abstract class ReadOnlySparseRowMatrix implements DoubleMatrix {
+
+  @Override
+  public DoubleVector getColumnVector(int col) {
+    DoubleVector vector = new SparseDoubleVector(getRowCount());
+    for (int row = 0; row < getRowCount(); row++) {
+      double value = get(row, col);
+      if (value != 0d) {
+        vector.set(row, value);
+      }
+    }
+    return vector;
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    throw new UnsupportedOperationException(getClass().getSimpleName()
+        + " is read-only, use deepCopy() for a mutable copy");
+  }
+
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    set(0, col, 0d);
+  }
+
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    set(rowIndex, 0, 0d);
+  }
+
+  @Override
+  public int[] rowIndices() {
+    return toSparse().rowIndices();
+  }
+
+  @Override
+  public double sum() {
+    return toSparse().sum();
+  }
+
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public DoubleMatrix deepCopy() {
+    return toSparse();
+  }
+
+  SparseDoubleRowMatrix toSparse() {
+    SparseDoubleRowMatrix matrix = new SparseDoubleRowMatrix(getRowCount(),
+        getColumnCount());
+    for (int row = 0; row < getRowCount(); row++) {
+      Iterator<DoubleVectorElement> iterateNonZero = getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        matrix.set(row, next.getIndex(), next.getValue());
+      }
+    }
+    return matrix;
+  }
+
+  @Override
+  public DoubleMatrix multiply(double scalar) {
+    return toSparse().multiply(scalar);
+  }
+
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    return toSparse().multiply(other);
+  }
+
+  @Override
+  public DoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    return toSparse().multiplyElementWise(other);
+  }
+
+  @Override
+  public DoubleVector multiplyVectorRow(DoubleVector v) {
+    return toSparse().multiplyVectorRow(v);
+  }
+
+  @Override
+  public DoubleVector multiplyVectorColumn(DoubleVector v) {
+    return toSparse().multiplyVectorColumn(v);
+  }
+
+  @Override
+  public DoubleMatrix transpose() {
+    return toSparse().transpose();
+  }
+
+  @Override
+  public DoubleMatrix subtractBy(double amount) {
+    return toSparse().subtractBy(amount);
+  }
+
+  @Override
+  public DoubleMatrix subtract(double amount) {
+    return toSparse().subtract(amount);
+  }
+
+  @Override
+  public DoubleMatrix subtract(DoubleMatrix other) {
+    return toSparse().subtract(other);
+  }
+
+  @Override
+  public DoubleMatrix subtract(DoubleVector vec) {
+    return toSparse().subtract(vec);
+  }
+
+  @Override
+  public DoubleMatrix divide(DoubleVector vec) {
+    return toSparse().divide(vec);
+  }
+
+  @Override
+  public DoubleMatrix divide(DoubleMatrix other) {
+    return toSparse().divide(other);
+  }
+
+  @Override
+  public DoubleMatrix divide(double scalar) {
+    return toSparse().divide(scalar);
+  }
+
+  @Override
+  public DoubleMatrix add(DoubleMatrix other) {
+    return toSparse().add(other);
+  }
+
+  @Override
+  public DoubleMatrix pow(double x) {
+    return toSparse().pow(x);
+  }
+
+  @Override
+  public double max(int column) {
+    return toSparse().max(column);
+  }
+
+  @Override
+  public double min(int column) {
+    return toSparse().min(column);
+  }
+
+  @Override
+  public int[] columnIndices() {
+    return toSparse().columnIndices();
+  }
+
+  @Override
+  public double[][] toArray() {
+    return toSparse().toArray();
+  }
+
+  @Override
+  public DoubleMatrix slice(int rows, int cols) {
+    return toSparse().slice(rows, cols);
+  }
+
+  @Override
+  public DoubleMatrix slice(int rowOffset, int rowMax, int colOffset,
+      int colMax) {
+    return toSparse().slice(rowOffset, rowMax, colOffset, colMax);
+  }
+
+  @Override
+  public String toString() {
+    return getRowCount() + "x" + getColumnCount();
+  }
+
+}
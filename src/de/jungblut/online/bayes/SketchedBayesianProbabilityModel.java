@@ -0,0 +1,187 @@
+package de.jungblut.online.bayes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.ml.Model;
+import de.jungblut.online.sketch.CountMinSketch;
+
+/**
+ * Naive bayes model of the {@link SketchedNaiveBayesLearner}. The counts of
+ * the most frequent tokens are exact, the counts of all other tokens are
+ * estimated by a {@link CountMinSketch}, so the memory of the model is fixed
+ * regardless of the vocabulary. {@link #getProbabilityModel()} is a view
+ * whose read-only probability matrix computes the log probabilities from the
+ * counts when they are queried, so the model is scored by the
+ * {@link BayesianClassifier}.
+ * 
+ * The estimated counts are never lower than the true counts, they exceed them
+ * by at most the error bound of {@link #getSketch()} with high probability.
+ * Thus tokens never seen with a class may get a small probability instead of
+ * the fixed low probability of unseen tokens.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class SketchedBayesianProbabilityModel implements Model {
+
+  private int featureDimension;
+  // sorted, their counts are exact
+  private int[] exactTokens;
+  private ClassTokenCounts exactCounts;
+  private CountMinSketch sketch;
+
+  private TokenCountMap exactTokenSet;
+  private double[] logNormalizers;
+  private BayesianProbabilityModel probabilityModel;
+
+  // deserialization constructor
+  public SketchedBayesianProbabilityModel() {
+  }
+
+  SketchedBayesianProbabilityModel(int featureDimension, int[] exactTokens,
+      ClassTokenCounts exactCounts, CountMinSketch sketch) {
+    init(featureDimension, exactTokens, exactCounts, sketch);
+  }
+
+  private void init(int featureDimension, int[] exactTokens,
+      ClassTokenCounts exactCounts, CountMinSketch sketch) {
+    this.featureDimension = featureDimension;
+    this.exactTokens = exactTokens;
+    this.exactCounts = exactCounts;
+    this.sketch = sketch;
+    this.exactTokenSet = new TokenCountMap(exactTokens.length);
+    for (int token : exactTokens) {
+      exactTokenSet.add(token, 1d);
+    }
+    this.logNormalizers = new double[exactCounts.getNumClasses()];
+    for (int clazz = 0; clazz < logNormalizers.length; clazz++) {
+      logNormalizers[clazz] = exactCounts.logNormalizer(clazz,
+          featureDimension);
+    }
+    this.probabilityModel = new BayesianProbabilityModel(
+        new LogProbabilityView(),
+        new DenseDoubleVector(exactCounts.logPriors()));
+  }
+
+  /**
+   * @return the key of a (class, token) pair in the sketch.
+   */
+  static long key(int clazz, int token) {
+    return ((long) clazz << 32) | (token & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return the exact or estimated count of the token in the class.
+   */
+  public double getTokenCount(int clazz, int token) {
+    if (isExact(token)) {
+      TokenCountMap counts = exactCounts.getTokenCounts(clazz);
+      return counts == null ? 0d : counts.get(token);
+    }
+    return sketch.estimate(key(clazz, token));
+  }
+
+  /**
+   * @return true if the counts of the token are exact.
+   */
+  public boolean isExact(int token) {
+    return exactTokenSet.get(token) != 0d;
+  }
+
+  /**
+   * @return the sorted tokens whose counts are exact, must not be modified.
+   */
+  public int[] getExactTokens() {
+    return exactTokens;
+  }
+
+  /**
+   * @return the sketch of the other tokens, e.g. to report its error bounds.
+   */
+  public CountMinSketch getSketch() {
+    return sketch;
+  }
+
+  /**
+   * @return a view of the probabilities for the {@link BayesianClassifier}.
+   *         Its probability matrix is read-only and only supports single
+   *         lookups: the sketched tokens can't be enumerated, so its rows (and
+   *         the {@link InvertedIndexBayesianClassifier}) are not supported.
+   */
+  public BayesianProbabilityModel getProbabilityModel() {
+    return probabilityModel;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(featureDimension);
+    out.writeInt(exactTokens.length);
+    for (int token : exactTokens) {
+      out.writeInt(token);
+    }
+    exactCounts.write(out);
+    sketch.write(out);
+  }
+
+  @Override
+  public SketchedBayesianProbabilityModel deserialize(DataInput in)
+      throws IOException {
+    int featureDimension = in.readInt();
+    int[] exactTokens = new int[in.readInt()];
+    for (int i = 0; i < exactTokens.length; i++) {
+      exactTokens[i] = in.readInt();
+    }
+    init(featureDimension, exactTokens, ClassTokenCounts.read(in),
+        CountMinSketch.read(in));
+    return this;
+  }
+
+  /**
+   * @return true if the matrix is the view of a sketched model.
+   */
+  static boolean isSketched(DoubleMatrix matrix) {
+    return matrix instanceof LogProbabilityView;
+  }
+
+  /**
+   * Computes the log probabilities from the exact and estimated counts.
+   */
+  private final class LogProbabilityView extends ReadOnlySparseRowMatrix {
+
+    @Override
+    public double get(int row, int col) {
+      double count = getTokenCount(row, col);
+      // not occuring words stay zero, like in the trained probabilities
+      if (count == 0d) {
+        return NOT_FLAGGED;
+      }
+      return FastMath.log(count) - logNormalizers[row];
+    }
+
+    @Override
+    public int getRowCount() {
+      return logNormalizers.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+      return featureDimension;
+    }
+
+    @Override
+    public DoubleVector getRowVector(int row) {
+      // every column would have to be estimated, which is K x d lookups for
+      // the whole matrix
+      throw new UnsupportedOperationException(
+          "sketched probabilities only support single lookups");
+    }
+  }
+
+}
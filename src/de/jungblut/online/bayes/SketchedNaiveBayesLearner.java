@@ -0,0 +1,189 @@
+package de.jungblut.online.bayes;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.online.ml.AbstractOnlineLearner;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+import de.jungblut.online.sketch.CountMinSketch;
+
+/**
+ * Multinomial naive bayes learner with fixed memory for unbounded
+ * vocabularies, e.g. hashed n-grams. The (class, token) counts are stored in a
+ * {@link CountMinSketch} with conservative updates, except for the most
+ * frequent tokens, which are counted exactly. The number of tokens and
+ * documents per class are always exact.
+ * 
+ * The most frequent tokens are found by an additional read of the data with a
+ * {@link FrequentTokens} summary, which can be disabled by counting zero
+ * tokens exactly. Both reads count per thread and merge at the end, so
+ * parallel streams can be used. The sketch is allocated once per thread that
+ * processes the stream (not per split of the stream), thus training needs the
+ * memory of one sketch per thread of the stream's pool.
+ * 
+ * The resulting {@link SketchedBayesianProbabilityModel} is scored by the
+ * {@link BayesianClassifier} through its probability model view. With a
+ * sketch that never collides it yields the probabilities of the
+ * {@link NaiveBayesLearner}.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class SketchedNaiveBayesLearner extends
+    AbstractOnlineLearner<SketchedBayesianProbabilityModel> {
+
+  private static final Logger LOG = LogManager
+      .getLogger(SketchedNaiveBayesLearner.class);
+
+  private final int sketchWidth;
+  private final int sketchDepth;
+  private final int numExactTokens;
+
+  /**
+   * Creates a new learner.
+   * 
+   * @param sketchWidth the number of cells per row of the sketch, the counts
+   *          are overestimated by at most e / width times the total count.
+   * @param sketchDepth the number of rows of the sketch, the bound fails with
+   *          a probability of exp(-depth).
+   * @param numExactTokens the number of most frequent tokens that are counted
+   *          exactly, zero to only use the sketch.
+   */
+  public SketchedNaiveBayesLearner(int sketchWidth, int sketchDepth,
+      int numExactTokens) {
+    Preconditions.checkArgument(numExactTokens >= 0,
+        "numExactTokens >= 0, given: " + numExactTokens);
+    CountMinSketch.checkSize(sketchWidth, sketchDepth);
+    this.sketchWidth = sketchWidth;
+    this.sketchDepth = sketchDepth;
+    this.numExactTokens = numExactTokens;
+  }
+
+  /**
+   * Creates a new learner with a sketch that is large enough for the given
+   * error bounds.
+   * 
+   * @param epsilon the maximum overestimation relative to the total count.
+   * @param delta the probability that a count exceeds the bound.
+   * @param numExactTokens the number of most frequent tokens that are counted
+   *          exactly, zero to only use the sketch.
+   * @return a new learner.
+   */
+  public static SketchedNaiveBayesLearner withErrorBounds(double epsilon,
+      double delta, int numExactTokens) {
+    return new SketchedNaiveBayesLearner(CountMinSketch.widthFor(epsilon),
+        CountMinSketch.depthFor(delta), numExactTokens);
+  }
+
+  @Override
+  public SketchedBayesianProbabilityModel train(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+
+    init(streamSupplier);
+
+    int[] exactTokens = findFrequentTokens(streamSupplier);
+    TokenCountMap exactTokenSet = new TokenCountMap(exactTokens.length);
+    for (int token : exactTokens) {
+      exactTokenSet.add(token, 1d);
+    }
+
+    // a collect would allocate a sketch for every split of a parallel stream,
+    // so every thread counts into its own sketch and they are merged once
+    Map<Thread, SketchedCounts> perThread = new ConcurrentHashMap<>();
+    streamSupplier.get().forEach(
+        (pair) -> perThread.computeIfAbsent(
+            Thread.currentThread(),
+            (thread) -> new SketchedCounts(numOutcomeClasses, sketchWidth,
+                sketchDepth)).observe(pair.getFeature(),
+            NaiveBayesLearner.classOf(pair),
+            WeightedFeatureOutcomePair.weightOf(pair), exactTokenSet));
+    SketchedCounts counts = perThread.values().stream()
+        .reduce(SketchedCounts::merge).get();
+
+    if (verbose) {
+      LOG.info("Sketched " + counts.sketch.getTotalCount()
+          + " token counts, overestimated by at most "
+          + counts.sketch.getErrorBound() + " with probability "
+          + (1d - counts.sketch.getDelta()) + ".");
+    }
+    return new SketchedBayesianProbabilityModel(featureDimension, exactTokens,
+        counts.exact, counts.sketch);
+  }
+
+  private int[] findFrequentTokens(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    if (numExactTokens == 0) {
+      return new int[0];
+    }
+    FrequentTokens frequentTokens = streamSupplier.get().collect(
+        () -> new FrequentTokens(numExactTokens),
+        (partial, pair) -> {
+          double weight = WeightedFeatureOutcomePair.weightOf(pair);
+          Iterator<DoubleVectorElement> iterateNonZero = pair.getFeature()
+              .iterateNonZero();
+          while (iterateNonZero.hasNext()) {
+            DoubleVectorElement next = iterateNonZero.next();
+            double count = next.getValue() * weight;
+            if (count > 0d) {
+              partial.add(next.getIndex(), count);
+            }
+          }
+        }, FrequentTokens::merge);
+    int[] tokens = frequentTokens.getTokens();
+    if (verbose) {
+      LOG.info("Counting " + tokens.length + " frequent tokens exactly.");
+    }
+    return tokens;
+  }
+
+  /**
+   * The counts of a thread: the exact counts of the frequent tokens plus the
+   * number of tokens and documents per class, and the sketch of all other
+   * tokens.
+   */
+  private static final class SketchedCounts {
+
+    private final ClassTokenCounts exact;
+    private final CountMinSketch sketch;
+
+    SketchedCounts(int numClasses, int sketchWidth, int sketchDepth) {
+      this.exact = new ClassTokenCounts(numClasses);
+      this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+    }
+
+    void observe(DoubleVector document, int clazz, double weight,
+        TokenCountMap exactTokenSet) {
+      exact.observeDocument(document, clazz, weight);
+      Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        double count = next.getValue() * weight;
+        if (exactTokenSet.get(next.getIndex()) != 0d) {
+          exact.addToken(clazz, next.getIndex(), count);
+        } else {
+          sketch.add(
+              SketchedBayesianProbabilityModel.key(clazz, next.getIndex()),
+              count);
+        }
+      }
+    }
+
+    SketchedCounts merge(SketchedCounts other) {
+      exact.merge(other.exact);
+      sketch.merge(other.sketch);
+      return this;
+    }
+  }
+
+}
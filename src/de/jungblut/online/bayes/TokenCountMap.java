@@ -0,0 +1,180 @@
+package de.jungblut.online.bayes;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative int tokens to counts with linear
+ * probing. Unlike a sparse vector it increments a count in place with a single
+ * probe and needs no per-slot state, free slots are marked by a negative key.
+ * 
+ * The counts are stored as ints as long as every delta is a whole number and
+ * the counts fit, which is the case for unit weight examples of binary or
+ * term frequency features. That takes 8 instead of 12 bytes per slot. The
+ * first fractional delta (e.g. of a weighted example) switches the map to
+ * double counts once.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+final class TokenCountMap {
+
+  private static final int FREE = -1;
+  private static final double MAX_LOAD = 0.7;
+
+  /**
+   * Consumes the entries of the map.
+   */
+  interface EntryConsumer {
+    void accept(int token, double count);
+  }
+
+  private int[] keys;
+  // exactly one of them is used, the int counts until a delta isn't integral
+  private int[] intCounts;
+  private double[] counts;
+  private int size;
+  private int resizeThreshold;
+
+  TokenCountMap() {
+    this(8);
+  }
+
+  TokenCountMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4,
+        (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+    keys = new int[capacity];
+    Arrays.fill(keys, FREE);
+    intCounts = new int[capacity];
+    resizeThreshold = (int) (capacity * MAX_LOAD);
+  }
+
+  /**
+   * Adds the delta to the count of the token.
+   */
+  void add(int token, double delta) {
+    int slot = slot(token);
+    if (keys[slot] == FREE) {
+      keys[slot] = token;
+      size++;
+    }
+    if (intCounts != null) {
+      int increment = (int) delta;
+      long sum = (long) intCounts[slot] + increment;
+      if (increment == delta && sum == (int) sum) {
+        intCounts[slot] = (int) sum;
+        growIfNeeded();
+        return;
+      }
+      toDoubleCounts();
+    }
+    counts[slot] += delta;
+    growIfNeeded();
+  }
+
+  /**
+   * @return the count of the token, zero if it wasn't counted.
+   */
+  double get(int token) {
+    int slot = slot(token);
+    return keys[slot] == FREE ? 0d : count(slot);
+  }
+
+  /**
+   * @return true if all counts are stored as ints.
+   */
+  boolean hasIntCounts() {
+    return intCounts != null;
+  }
+
+  /**
+   * Adds all counts of the other map to this map.
+   */
+  void addAll(TokenCountMap other) {
+    other.forEach(this::add);
+  }
+
+  void forEach(EntryConsumer consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != FREE) {
+        consumer.accept(keys[i], count(i));
+      }
+    }
+  }
+
+  /**
+   * @return the counted tokens in ascending order.
+   */
+  int[] sortedTokens() {
+    int[] tokens = new int[size];
+    int index = 0;
+    for (int key : keys) {
+      if (key != FREE) {
+        tokens[index++] = key;
+      }
+    }
+    Arrays.sort(tokens);
+    return tokens;
+  }
+
+  int size() {
+    return size;
+  }
+
+  // the slot of the token or the free slot it would be inserted at
+  private int slot(int token) {
+    int mask = keys.length - 1;
+    int slot = mix(token) & mask;
+    while (keys[slot] != FREE && keys[slot] != token) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private double count(int slot) {
+    return intCounts != null ? intCounts[slot] : counts[slot];
+  }
+
+  private void toDoubleCounts() {
+    counts = new double[intCounts.length];
+    for (int i = 0; i < intCounts.length; i++) {
+      counts[i] = intCounts[i];
+    }
+    intCounts = null;
+  }
+
+  private void growIfNeeded() {
+    if (size <= resizeThreshold) {
+      return;
+    }
+    int[] oldKeys = keys;
+    int[] oldIntCounts = intCounts;
+    double[] oldCounts = counts;
+    int capacity = oldKeys.length << 1;
+    keys = new int[capacity];
+    Arrays.fill(keys, FREE);
+    if (oldIntCounts != null) {
+      intCounts = new int[capacity];
+    } else {
+      counts = new double[capacity];
+    }
+    resizeThreshold = (int) (capacity * MAX_LOAD);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        if (oldIntCounts != null) {
+          intCounts[slot] = oldIntCounts[i];
+        } else {
+          counts[slot] = oldCounts[i];
+        }
+      }
+    }
+  }
+
+  private static int mix(int token) {
+    // spreads sequential tokens over the table
+    int hash = token * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+}
@@ -0,0 +1,253 @@
+package de.jungblut.online.bayes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.Model;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * Naive bayes model that keeps its counts, so new examples can be added at any
+ * time without retraining on the full history. The log probabilities are not
+ * materialized: {@link #getProbabilityModel()} is a view whose probability
+ * matrix computes the log probability of a (class, token) pair from its count
+ * when it is queried, with a cached normalizer per class that is only
+ * recomputed for the classes that got new examples. The priors are marked as
+ * changed and recomputed once on the next query. Thus an update costs time
+ * proportional to the new data and a {@link BayesianClassifier} on the view
+ * always predicts with the current counts.
+ * 
+ * The {@link InvertedIndexBayesianClassifier} copies the postings and the
+ * priors of the view in its constructor, so it doesn't see later updates and
+ * has to be rebuilt after them.
+ * 
+ * After the same examples it yields the probabilities of the
+ * {@link NaiveBayesLearner}. The model is not thread-safe, it must not be
+ * queried during an update. Its serialized form contains the counts, so
+ * deserialized models can be updated further.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class UpdatableNaiveBayesModel implements Model {
+
+  private int featureDimension;
+  private ClassTokenCounts counts;
+
+  // NaN marks normalizers of classes that changed since they were computed
+  private double[] logNormalizers;
+  // updated in place on the next query after an update
+  private DoubleVector classPriorProbability;
+  private volatile boolean priorsChanged;
+  private BayesianProbabilityModel probabilityModel;
+
+  // deserialization constructor
+  public UpdatableNaiveBayesModel() {
+  }
+
+  /**
+   * Creates an empty model.
+   * 
+   * @param numClasses the number of classes, at least two.
+   * @param featureDimension the dimension of the features.
+   */
+  public UpdatableNaiveBayesModel(int numClasses, int featureDimension) {
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    Preconditions.checkArgument(featureDimension > 0,
+        "featureDimension > 0, given: " + featureDimension);
+    init(new ClassTokenCounts(numClasses), featureDimension);
+  }
+
+  /**
+   * Creates a model from the given statistics, e.g. the merged statistics of
+   * all shards so far. The model takes them over, so they must not be used
+   * afterwards.
+   * 
+   * @param statistics the statistics to start with.
+   */
+  public UpdatableNaiveBayesModel(NaiveBayesStatistics statistics) {
+    init(statistics.getCounts(), statistics.getFeatureDimension());
+  }
+
+  private void init(ClassTokenCounts counts, int featureDimension) {
+    this.counts = counts;
+    this.featureDimension = featureDimension;
+    this.logNormalizers = new double[counts.getNumClasses()];
+    Arrays.fill(logNormalizers, Double.NaN);
+    this.classPriorProbability = new DenseDoubleVector(counts.logPriors());
+    this.priorsChanged = false;
+    this.probabilityModel = new ProbabilityModelView(new LogProbabilityView(),
+        classPriorProbability);
+  }
+
+  /**
+   * Adds a single example to the model. The class is read like the
+   * {@link NaiveBayesLearner} does, weighted examples are counted by their
+   * weight.
+   * 
+   * @param pair the example.
+   */
+  public void update(FeatureOutcomePair pair) {
+    int clazz = checkedLabelOf(pair);
+    counts.observe(pair.getFeature(), clazz,
+        WeightedFeatureOutcomePair.weightOf(pair));
+    logNormalizers[clazz] = Double.NaN;
+    priorsChanged = true;
+  }
+
+  /**
+   * Adds a batch of examples to the model. The batch is counted like the
+   * {@link NaiveBayesLearner} counts its data, so parallel streams are counted
+   * per thread without contention.
+   * 
+   * @param batch the examples.
+   */
+  public void update(Stream<FeatureOutcomePair> batch) {
+    ClassTokenCounts batchCounts = batch.collect(
+        () -> new ClassTokenCounts(counts.getNumClasses()),
+        (partial, pair) -> partial.observe(pair.getFeature(),
+            checkedLabelOf(pair), WeightedFeatureOutcomePair.weightOf(pair)),
+        ClassTokenCounts::merge);
+    for (int clazz = 0; clazz < counts.getNumClasses(); clazz++) {
+      if (batchCounts.getDocumentsPerClass(clazz) != 0d) {
+        logNormalizers[clazz] = Double.NaN;
+      }
+    }
+    counts.merge(batchCounts);
+    priorsChanged = true;
+  }
+
+  private int checkedLabelOf(FeatureOutcomePair pair) {
+    Preconditions.checkArgument(
+        pair.getFeature().getDimension() == featureDimension,
+        "feature dimension must be " + featureDimension + ", given: "
+            + pair.getFeature().getDimension());
+    int clazz = NaiveBayesLearner.classOf(pair);
+    Preconditions.checkArgument(clazz >= 0 && clazz < counts.getNumClasses(),
+        "class must be in [0, " + counts.getNumClasses() + "), given: "
+            + clazz);
+    return clazz;
+  }
+
+  private void updatePriors() {
+    if (priorsChanged) {
+      double[] logPriors = counts.logPriors();
+      for (int clazz = 0; clazz < logPriors.length; clazz++) {
+        classPriorProbability.set(clazz, logPriors[clazz]);
+      }
+      priorsChanged = false;
+    }
+  }
+
+  private double logNormalizer(int clazz) {
+    double normalizer = logNormalizers[clazz];
+    if (Double.isNaN(normalizer)) {
+      normalizer = counts.logNormalizer(clazz, featureDimension);
+      logNormalizers[clazz] = normalizer;
+    }
+    return normalizer;
+  }
+
+  /**
+   * @return a frozen copy of the current probabilities, which is faster to
+   *         query and smaller to serialize, but can't be updated anymore.
+   */
+  public BayesianProbabilityModel freeze() {
+    return NaiveBayesLearner.computeModel(counts, featureDimension, false);
+  }
+
+  /**
+   * @return a view of the current probabilities for the classifiers. Its
+   *         probability matrix is read-only, both the matrix and the priors
+   *         reflect all updates.
+   */
+  public BayesianProbabilityModel getProbabilityModel() {
+    return probabilityModel;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(featureDimension);
+    counts.write(out);
+  }
+
+  @Override
+  public UpdatableNaiveBayesModel deserialize(DataInput in) throws IOException {
+    int featureDimension = in.readInt();
+    init(ClassTokenCounts.read(in), featureDimension);
+    return this;
+  }
+
+  /**
+   * Brings the priors up to date before they are read.
+   */
+  private final class ProbabilityModelView extends BayesianProbabilityModel {
+
+    ProbabilityModelView(LogProbabilityView probabilityMatrix,
+        DoubleVector classPriorProbability) {
+      super(probabilityMatrix, classPriorProbability);
+    }
+
+    @Override
+    public DoubleVector getClassPriorProbability() {
+      updatePriors();
+      return super.getClassPriorProbability();
+    }
+  }
+
+  /**
+   * Computes the log probabilities from the current counts.
+   */
+  private final class LogProbabilityView extends ReadOnlySparseRowMatrix {
+
+    @Override
+    public double get(int row, int col) {
+      TokenCountMap tokenCounts = counts.getTokenCounts(row);
+      double count = tokenCounts == null ? 0d : tokenCounts.get(col);
+      // not occuring words stay zero, like in the trained probabilities
+      if (count == 0d) {
+        return NOT_FLAGGED;
+      }
+      return FastMath.log(count) - logNormalizer(row);
+    }
+
+    @Override
+    public int getRowCount() {
+      return counts.getNumClasses();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return featureDimension;
+    }
+
+    @Override
+    public DoubleVector getRowVector(int row) {
+      TokenCountMap tokenCounts = counts.getTokenCounts(row);
+      int[] tokens = tokenCounts == null ? new int[0] : tokenCounts
+          .sortedTokens();
+      DoubleVector vector = new SequentialSparseDoubleVector(featureDimension,
+          Math.max(1, tokens.length));
+      for (int token : tokens) {
+        double value = get(row, token);
+        if (value != 0d) {
+          vector.set(token, value);
+        }
+      }
+      return vector;
+    }
+  }
+
+}
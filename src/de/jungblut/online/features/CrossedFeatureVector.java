@@ -0,0 +1,349 @@
+package de.jungblut.online.features;
+
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.features.FeatureInteractions.CrossConsumer;
+
+/**
+ * Lazy view of a feature together with its {@link FeatureInteractions},
+ * multiplied by a scalar. The crosses are never materialized for the
+ * operations of a gradient step: the dot product, the scaling (e.g. by the
+ * loss functions to compute a gradient) and {@link #forEachNonZero(
+ * CrossConsumer)} enumerate them from the namespaces, so the weight updaters
+ * apply the gradient of a namespaced example without building it.
+ *
+ * A cross can hash to the index of another cross or base feature, those
+ * entries are enumerated separately and their values add up. All other
+ * operations, including {@link #iterateNonZero()} that has to return distinct
+ * indices, are computed on the materialized {@link SparseDoubleVector}, which
+ * is also what {@link #deepCopy()} returns.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class CrossedFeatureVector implements DoubleVector {
+
+  private final DoubleVector feature;
+  private final DoubleVector[] namespaces;
+  private final FeatureInteractions interactions;
+  private final double scalar;
+
+  /**
+   * Creates a new crossed feature.
+   *
+   * @param feature the base feature, the sum of the namespaces.
+   * @param namespaces the feature vectors of the namespaces.
+   * @param interactions the interactions between the namespaces.
+   */
+  public CrossedFeatureVector(DoubleVector feature, DoubleVector[] namespaces,
+      FeatureInteractions interactions) {
+    this(feature, namespaces, interactions, 1d);
+    Preconditions.checkArgument(
+        feature.getDimension() == interactions.getDimension(),
+        "feature dimension must match the interaction dimension! Feature: "
+            + feature.getDimension() + " != Interactions: "
+            + interactions.getDimension());
+  }
+
+  private CrossedFeatureVector(DoubleVector feature, DoubleVector[] namespaces,
+      FeatureInteractions interactions, double scalar) {
+    this.feature = feature;
+    this.namespaces = namespaces;
+    this.interactions = interactions;
+    this.scalar = scalar;
+  }
+
+  /**
+   * Enumerates the base features and the crosses, each multiplied by the
+   * scalar of this vector.
+   *
+   * @param consumer the consumer that receives every entry.
+   */
+  public void forEachNonZero(CrossConsumer consumer) {
+    if (scalar == 0d) {
+      return;
+    }
+    forEachNonZero(feature, (index, value) -> consumer.accept(index, value
+        * scalar));
+    interactions.forEachCross(namespaces, (index, value) -> consumer.accept(
+        index, value * scalar));
+  }
+
+  /**
+   * Enumerates the non-zeros of any vector: crossed features lazily, indicator
+   * features without creating an element per index.
+   *
+   * @param vector the vector.
+   * @param consumer the consumer that receives every non-zero entry.
+   */
+  public static void forEachNonZero(DoubleVector vector,
+      CrossConsumer consumer) {
+    if (vector instanceof CrossedFeatureVector) {
+      ((CrossedFeatureVector) vector).forEachNonZero(consumer);
+    } else if (vector instanceof SparseBinaryDoubleVector) {
+      SparseBinaryDoubleVector binary = (SparseBinaryDoubleVector) vector;
+      double value = binary.getValue();
+      for (int index : binary.getIndices()) {
+        consumer.accept(index, value);
+      }
+    } else {
+      Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        consumer.accept(next.getIndex(), next.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return the sum of the squared entries, colliding crosses are counted as
+   *         distinct features.
+   */
+  public double squaredNorm() {
+    double[] sum = new double[1];
+    forEachNonZero((index, value) -> sum[0] += value * value);
+    return sum[0];
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    if (s instanceof CrossedFeatureVector) {
+      return toSparse().dot(((CrossedFeatureVector) s).toSparse());
+    }
+    return scalar
+        * (feature.dot(s) + interactions.crossDot(namespaces, s));
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return new CrossedFeatureVector(feature, namespaces, interactions,
+        this.scalar * scalar);
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return new CrossedFeatureVector(feature, namespaces, interactions,
+        this.scalar / scalar);
+  }
+
+  @Override
+  public double sum() {
+    double[] sum = new double[1];
+    forEachNonZero((index, value) -> sum[0] += value);
+    return sum[0];
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector other) {
+    if (other.isSparse()) {
+      return toSparse().add(other);
+    }
+    // e.g. regularization gradients of dense weights
+    DoubleVector result = new DenseDoubleVector(other.toArray());
+    forEachNonZero((index, value) -> result.set(index, result.get(index)
+        + value));
+    return result;
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector other) {
+    if (other.isSparse()) {
+      return toSparse().subtract(other);
+    }
+    DoubleVector result = new DenseDoubleVector(other.getDimension());
+    for (int i = 0; i < result.getDimension(); i++) {
+      result.set(i, -other.get(i));
+    }
+    forEachNonZero((index, value) -> result.set(index, result.get(index)
+        + value));
+    return result;
+  }
+
+  @Override
+  public int getDimension() {
+    return feature.getDimension();
+  }
+
+  @Override
+  public void set(int index, double value) {
+    throw new UnsupportedOperationException(
+        "crossed vectors are views, use deepCopy() for a mutable copy");
+  }
+
+  @Override
+  public double get(int index) {
+    return toSparse().get(index);
+  }
+
+  @Override
+  public int getLength() {
+    return toSparse().getLength();
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return toSparse().apply(func);
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return toSparse().apply(other, func);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return toSparse().add(scalar);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return toSparse().subtract(scalar);
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return toSparse().subtractFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector other) {
+    return toSparse().multiply(other);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return toSparse().divideFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector other) {
+    return toSparse().divideFrom(other);
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector other) {
+    return toSparse().divide(other);
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    return toSparse().pow(x);
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return toSparse().abs();
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return toSparse().sqrt();
+  }
+
+  @Override
+  public DoubleVector log() {
+    return toSparse().log();
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return toSparse().exp();
+  }
+
+  @Override
+  public DoubleVector slice(int length) {
+    return slice(0, length);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return toSparse().slice(start, end);
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return toSparse().sliceByLength(start, length);
+  }
+
+  @Override
+  public double max() {
+    return toSparse().max();
+  }
+
+  @Override
+  public double min() {
+    return toSparse().min();
+  }
+
+  @Override
+  public int maxIndex() {
+    return toSparse().maxIndex();
+  }
+
+  @Override
+  public int minIndex() {
+    return toSparse().minIndex();
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] array = new double[getDimension()];
+    forEachNonZero((index, value) -> array[index] += value);
+    return array;
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return toSparse();
+  }
+
+  private DoubleVector toSparse() {
+    DoubleVector sparse = new SparseDoubleVector(getDimension());
+    forEachNonZero((index, value) -> sparse.set(index, sparse.get(index)
+        + value));
+    return sparse;
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return toSparse().iterateNonZero();
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return toSparse().iterate();
+  }
+
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return getDimension() + "x1 crossed";
+  }
+
+}
@@ -0,0 +1,127 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.sketch.CountMinSketch;
+import de.jungblut.online.sketch.IntCountMinSketch;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * A streaming pre-pass that counts the document frequency of every feature and
+ * drops the features that occur in less than a given number of examples. The
+ * frequencies are estimated with an {@link IntCountMinSketch} using
+ * conservative updates, thus the memory for counting is bounded by the sketch
+ * size and only the surviving features are kept exactly. Since a count-min
+ * sketch never underestimates, no frequent feature is ever dropped, a few
+ * infrequent ones may survive due to collisions.
+ *
+ * The survivors are remapped into a compact index space with a
+ * {@link FeatureIndexMapping}, which can be applied to the training stream, the
+ * examples at prediction time and persisted together with the model (see
+ * {@link FeatureMappedModel}).
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class FeatureFrequencyPruner {
+
+  public static final int DEFAULT_SKETCH_WIDTH = 1 << 22;
+  public static final int DEFAULT_SKETCH_DEPTH = 4;
+
+  private final int minDocumentFrequency;
+  private final int width;
+  private final int depth;
+
+  /**
+   * Creates a new pruner with a sketch of {@link #DEFAULT_SKETCH_DEPTH} x
+   * {@link #DEFAULT_SKETCH_WIDTH} counters (64mb).
+   *
+   * @param minDocumentFrequency the minimum number of examples a feature must
+   *          occur in to survive.
+   */
+  public FeatureFrequencyPruner(int minDocumentFrequency) {
+    this(minDocumentFrequency, DEFAULT_SKETCH_WIDTH, DEFAULT_SKETCH_DEPTH);
+  }
+
+  /**
+   * Creates a new pruner.
+   *
+   * @param minDocumentFrequency the minimum number of examples a feature must
+   *          occur in to survive.
+   * @param width the number of counters per sketch row.
+   * @param depth the number of sketch rows (hash functions).
+   */
+  public FeatureFrequencyPruner(int minDocumentFrequency, int width,
+      int depth) {
+    Preconditions.checkArgument(minDocumentFrequency > 0,
+        "minDocumentFrequency > 0");
+    CountMinSketch.checkSize(width, depth);
+    this.minDocumentFrequency = minDocumentFrequency;
+    this.width = width;
+    this.depth = depth;
+  }
+
+  /**
+   * Counts the feature frequencies in a single pass over the stream and
+   * creates the mapping of the surviving features.
+   *
+   * @param streamSupplier the supplier of the training stream.
+   * @return the mapping into the compacted feature space.
+   */
+  public FeatureIndexMapping fit(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    Counter counter = new Counter();
+    try (Stream<FeatureOutcomePair> stream = Preconditions.checkNotNull(
+        streamSupplier.get(), "Supplied a null stream!")) {
+      stream.forEach((pair) -> counter.observe(pair.getFeature()));
+    }
+    Preconditions.checkArgument(counter.dimension >= 0,
+        "Supplied an empty stream!");
+
+    // sorting keeps the compact indices in the same order as the original
+    // ones, thus the mapping is deterministic even for parallel streams
+    int[] survivors = counter.survivors.toArray();
+    Arrays.sort(survivors);
+    return new FeatureIndexMapping(counter.dimension, survivors);
+  }
+
+  private final class Counter {
+    private final IntCountMinSketch sketch = new IntCountMinSketch(width,
+        depth);
+    private final TIntHashSet survivors = new TIntHashSet();
+    private int dimension = -1;
+
+    // a whole example is counted under the lock, which is much more coarse
+    // than locking per feature
+    synchronized void observe(DoubleVector feature) {
+      if (dimension == -1) {
+        dimension = feature.getDimension();
+      }
+      Preconditions.checkArgument(dimension == feature.getDimension(),
+          "Feature dimension must match the initially set dimension! "
+              + "Expected: " + dimension + ", given "
+              + feature.getDimension());
+      Iterator<DoubleVectorElement> iterateNonZero = feature.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        int index = iterateNonZero.next().getIndex();
+        // the counts saturate at the threshold, the sketch's conservative
+        // update keeps the overestimation to a minimum
+        int count = sketch.addIfBelow(index, minDocumentFrequency);
+        // saturated counters can be reached by a feature's first occurrence
+        // due to collisions, so the survivors are deduplicated by a set
+        if (count >= minDocumentFrequency) {
+          survivors.add(index);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,308 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+
+/**
+ * Vectorizes raw key/value records with the hashing trick, so no dictionary of
+ * feature names has to be maintained. Every feature name is hashed with
+ * MurmurHash3 into a fixed dimension of 2^bits, where every namespace gets its
+ * own hash seed so equal names in different namespaces don't collide
+ * systematically.
+ *
+ * Numeric values (any {@link Number}) are hashed by their key and keep their
+ * value, every other value is treated as categorical: "key=value" is hashed and
+ * gets the value 1. Colliding features are summed up.
+ *
+ * By default the hashing is signed, thus a second bit of the hash decides
+ * whether a feature is added or subtracted, which makes collisions cancel out
+ * in expectation for the linear learners (e.g. the RegressionLearner with the
+ * AdaptiveFTRLRegularizer). Count based learners like the NaiveBayesLearner
+ * need non-negative features, so they have to use an unsigned hasher.
+ *
+ * Instances are thread-safe, the scratch buffers are kept per thread so the
+ * vectorization can be used in parallel streams.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class FeatureHasher {
+
+  public static final String DEFAULT_NAMESPACE = "";
+  public static final String BIAS_FEATURE = "__bias__";
+
+  public static class FeatureHasherBuilder {
+
+    private final int bits;
+    private boolean signed = true;
+    private boolean bias = false;
+    private int seed = 0;
+
+    private FeatureHasherBuilder(int bits) {
+      Preconditions.checkArgument(bits > 0 && bits <= 30,
+          "bits must be between 1 and 30, given: " + bits);
+      this.bits = bits;
+    }
+
+    public FeatureHasher build() {
+      return new FeatureHasher(this);
+    }
+
+    /**
+     * Disables the signed hashing, all features keep their sign. This is
+     * required for count based learners like naive bayes.
+     *
+     * @return the builder again.
+     */
+    public FeatureHasherBuilder unsigned() {
+      this.signed = false;
+      return this;
+    }
+
+    /**
+     * Adds a constant bias feature (hashed like any other feature) to every
+     * vector.
+     *
+     * @return the builder again.
+     */
+    public FeatureHasherBuilder addBias() {
+      this.bias = true;
+      return this;
+    }
+
+    /**
+     * Sets the seed the namespace hash functions are derived from.
+     *
+     * @param seed the seed.
+     * @return the builder again.
+     */
+    public FeatureHasherBuilder seed(int seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @param bits the number of bits of the hash to use, the dimension of the
+     *          vectors will be 2^bits.
+     * @return a new builder.
+     */
+    public static FeatureHasherBuilder create(int bits) {
+      return new FeatureHasherBuilder(bits);
+    }
+  }
+
+  private final int dimension;
+  private final int mask;
+  private final boolean signed;
+  private final boolean bias;
+  private final HashFunction namespaceHash;
+  private final ConcurrentHashMap<String, HashFunction> namespaces = //
+  new ConcurrentHashMap<>();
+  private final ThreadLocal<Scratch> scratch = ThreadLocal
+      .withInitial(Scratch::new);
+
+  private FeatureHasher(FeatureHasherBuilder builder) {
+    this.dimension = 1 << builder.bits;
+    this.mask = dimension - 1;
+    this.signed = builder.signed;
+    this.bias = builder.bias;
+    this.namespaceHash = Hashing.murmur3_32(builder.seed);
+  }
+
+  /**
+   * Vectorizes the features of the default namespace.
+   *
+   * @param features the feature name to value mapping.
+   * @return a sparse vector of dimension {@link #getDimension()}.
+   */
+  public DoubleVector vectorize(Map<String, ?> features) {
+    return vectorize(DEFAULT_NAMESPACE, features);
+  }
+
+  /**
+   * Vectorizes the features of a single namespace, e.g. to keep the namespaces
+   * separated for the {@link FeatureInteractions}.
+   *
+   * @param namespace the namespace of the features.
+   * @param features the feature name to value mapping.
+   * @return a sparse vector of dimension {@link #getDimension()}.
+   */
+  public DoubleVector vectorize(String namespace, Map<String, ?> features) {
+    Scratch s = scratch.get();
+    s.size = 0;
+    addFeatures(s, namespace, features);
+    return build(s);
+  }
+
+  /**
+   * Vectorizes the features of multiple namespaces.
+   *
+   * @param namespacedFeatures the namespace to features mapping.
+   * @return a sparse vector of dimension {@link #getDimension()}.
+   */
+  public DoubleVector vectorizeNamespaces(
+      Map<String, ? extends Map<String, ?>> namespacedFeatures) {
+    Scratch s = scratch.get();
+    s.size = 0;
+    for (Entry<String, ? extends Map<String, ?>> entry : namespacedFeatures
+        .entrySet()) {
+      addFeatures(s, entry.getKey(), entry.getValue());
+    }
+    return build(s);
+  }
+
+  /**
+   * Vectorizes a bag of tokens (e.g. the words of a document), every
+   * occurrence of a token adds one to its feature.
+   *
+   * @param namespace the namespace of the tokens.
+   * @param tokens the tokens.
+   * @return a sparse vector of dimension {@link #getDimension()}.
+   */
+  public DoubleVector vectorizeTokens(String namespace,
+      Iterable<String> tokens) {
+    Scratch s = scratch.get();
+    s.size = 0;
+    HashFunction function = namespaceFunction(namespace);
+    for (String token : tokens) {
+      s.add(function.hashUnencodedChars(token).asInt(), 1d);
+    }
+    return build(s);
+  }
+
+  /**
+   * Creates a mapping function that can be used as a vectorizing stage in a
+   * stream pipeline, e.g. <code>records.map(hasher.asStage(...))</code>.
+   *
+   * @param featureExtractor extracts the raw features of a record.
+   * @param outcomeExtractor extracts the outcome of a record.
+   * @return a function that turns records into feature outcome pairs.
+   */
+  public <T> Function<T, FeatureOutcomePair> asStage(
+      Function<? super T, ? extends Map<String, ?>> featureExtractor,
+      Function<? super T, DoubleVector> outcomeExtractor) {
+    Preconditions.checkNotNull(featureExtractor, "featureExtractor");
+    Preconditions.checkNotNull(outcomeExtractor, "outcomeExtractor");
+    return (record) -> new FeatureOutcomePair(
+        vectorize(featureExtractor.apply(record)),
+        outcomeExtractor.apply(record));
+  }
+
+  /**
+   * @param namespace the namespace of the feature.
+   * @param name the feature name, for categorical features "key=value".
+   * @return the index the feature is hashed to.
+   */
+  public int indexOf(String namespace, String name) {
+    return namespaceFunction(namespace).hashUnencodedChars(name).asInt()
+        & mask;
+  }
+
+  /**
+   * @return the dimension of the vectors, 2^bits.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  private void addFeatures(Scratch s, String namespace,
+      Map<String, ?> features) {
+    HashFunction function = namespaceFunction(namespace);
+    for (Entry<String, ?> entry : features.entrySet()) {
+      Object value = entry.getValue();
+      if (value == null) {
+        continue;
+      }
+      if (value instanceof Number) {
+        double numeric = ((Number) value).doubleValue();
+        if (numeric != 0d) {
+          s.add(function.hashUnencodedChars(entry.getKey()).asInt(), numeric);
+        }
+      } else {
+        // hash "key=value" without creating a new string for every feature
+        StringBuilder sb = s.nameBuffer;
+        sb.setLength(0);
+        sb.append(entry.getKey()).append('=').append(value);
+        s.add(function.hashUnencodedChars(sb).asInt(), 1d);
+      }
+    }
+  }
+
+  private HashFunction namespaceFunction(String namespace) {
+    HashFunction function = namespaces.get(namespace);
+    if (function == null) {
+      function = Hashing.murmur3_32(namespaceHash.hashUnencodedChars(
+          namespace).asInt());
+      namespaces.putIfAbsent(namespace, function);
+    }
+    return function;
+  }
+
+  private DoubleVector build(Scratch s) {
+    if (bias) {
+      s.add(namespaceFunction(DEFAULT_NAMESPACE).hashUnencodedChars(
+          BIAS_FEATURE).asInt(), 1d);
+    }
+    // sort the packed (index, slot) keys, so we can merge collisions and
+    // append in ascending index order
+    long[] keys = s.keys;
+    for (int i = 0; i < s.size; i++) {
+      keys[i] = (((long) s.indices[i]) << 32) | i;
+    }
+    Arrays.sort(keys, 0, s.size);
+
+    SequentialSparseDoubleVector vector = new SequentialSparseDoubleVector(
+        dimension, s.size);
+    int i = 0;
+    while (i < s.size) {
+      int index = (int) (keys[i] >>> 32);
+      double sum = 0d;
+      while (i < s.size && (int) (keys[i] >>> 32) == index) {
+        sum += s.values[(int) keys[i]];
+        i++;
+      }
+      if (sum != 0d) {
+        vector.set(index, sum);
+      }
+    }
+    return vector;
+  }
+
+  private final class Scratch {
+    private final StringBuilder nameBuffer = new StringBuilder();
+    private int[] indices = new int[16];
+    private double[] values = new double[16];
+    private long[] keys = new long[16];
+    private int size;
+
+    void add(int hash, double value) {
+      if (size == indices.length) {
+        int newLength = indices.length * 2;
+        indices = Arrays.copyOf(indices, newLength);
+        values = Arrays.copyOf(values, newLength);
+        keys = new long[newLength];
+      }
+      // the highest bit is never part of the index, since bits <= 30
+      if (signed && hash < 0) {
+        value = -value;
+      }
+      indices[size] = hash & mask;
+      values[size] = value;
+      size++;
+    }
+  }
+
+}
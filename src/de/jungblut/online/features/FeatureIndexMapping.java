@@ -0,0 +1,164 @@
+package de.jungblut.online.features;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * Maps the surviving features of a {@link FeatureFrequencyPruner} from the
+ * original feature space into a compact one, dropping all other features. The
+ * compact indices keep the order of the original ones, so sorted sparse
+ * vectors stay sorted.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class FeatureIndexMapping {
+
+  private int originalDimension;
+  // sorted, the position is the compact index
+  private int[] originalIndices;
+
+  // deserialization constructor
+  public FeatureIndexMapping() {
+  }
+
+  /**
+   * Creates a new mapping.
+   *
+   * @param originalDimension the dimension of the original feature space.
+   * @param originalIndices the sorted original indices of the features to
+   *          keep.
+   */
+  public FeatureIndexMapping(int originalDimension, int[] originalIndices) {
+    Preconditions.checkNotNull(originalIndices, "originalIndices");
+    for (int i = 0; i < originalIndices.length; i++) {
+      Preconditions.checkArgument(originalIndices[i] >= 0
+          && originalIndices[i] < originalDimension,
+          "index out of the original dimension: " + originalIndices[i]);
+      Preconditions.checkArgument(i == 0
+          || originalIndices[i - 1] < originalIndices[i],
+          "original indices must be sorted and distinct");
+    }
+    this.originalDimension = originalDimension;
+    this.originalIndices = originalIndices;
+  }
+
+  /**
+   * Maps a feature vector into the compact space.
+   *
+   * @param feature the feature in the original space.
+   * @return a new vector in the compact space, sparse if the input was sparse.
+   */
+  public DoubleVector apply(DoubleVector feature) {
+    Preconditions.checkArgument(feature.getDimension() == originalDimension,
+        "Feature dimension must match the original dimension! Expected: "
+            + originalDimension + ", given " + feature.getDimension());
+    DoubleVector result = feature.isSparse() ? new SequentialSparseDoubleVector(
+        originalIndices.length, Math.min(feature.getLength(),
+            originalIndices.length)) : new DenseDoubleVector(
+        originalIndices.length);
+    Iterator<DoubleVectorElement> iterateNonZero = feature.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      int index = compactIndex(next.getIndex());
+      if (index >= 0) {
+        result.set(index, next.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Maps the feature of a pair into the compact space.
+   *
+   * @param pair the pair in the original space.
+   * @return a new pair with the compacted feature (same outcome and weight).
+   */
+  public FeatureOutcomePair apply(FeatureOutcomePair pair) {
+    return WeightedFeatureOutcomePair.withFeature(pair,
+        apply(pair.getFeature()));
+  }
+
+  /**
+   * Applies this mapping to every stream of the given supplier, so it can be
+   * used transparently in all training passes.
+   *
+   * @param streamSupplier the supplier of the original streams.
+   * @return a supplier of compacted streams.
+   */
+  public Supplier<Stream<FeatureOutcomePair>> apply(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    Preconditions.checkNotNull(streamSupplier, "streamSupplier");
+    return () -> streamSupplier.get().map(this::apply);
+  }
+
+  /**
+   * @param originalIndex the index in the original space.
+   * @return the index in the compact space or -1 if the feature was dropped.
+   */
+  public int compactIndex(int originalIndex) {
+    int index = Arrays.binarySearch(originalIndices, originalIndex);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * @param compactIndex the index in the compact space.
+   * @return the index in the original space.
+   */
+  public int originalIndex(int compactIndex) {
+    return originalIndices[compactIndex];
+  }
+
+  /**
+   * @return the dimension of the compact space.
+   */
+  public int getDimension() {
+    return originalIndices.length;
+  }
+
+  /**
+   * @return the dimension of the original space.
+   */
+  public int getOriginalDimension() {
+    return originalDimension;
+  }
+
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(originalDimension);
+    out.writeInt(originalIndices.length);
+    // the indices are sorted, so the deltas are small
+    int last = 0;
+    for (int index : originalIndices) {
+      WritableUtils.writeVInt(out, index - last);
+      last = index;
+    }
+  }
+
+  public FeatureIndexMapping deserialize(DataInput in) throws IOException {
+    originalDimension = in.readInt();
+    originalIndices = new int[in.readInt()];
+    int last = 0;
+    for (int i = 0; i < originalIndices.length; i++) {
+      last += WritableUtils.readVInt(in);
+      originalIndices[i] = last;
+    }
+    return this;
+  }
+
+}
@@ -0,0 +1,227 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+/**
+ * Defines quadratic and cubic interactions (crosses) between namespaces of
+ * hashed features, like the -q and --cubic options of Vowpal Wabbit. The
+ * crossed features are never materialized in the data: they are enumerated
+ * lazily from the non-zero features of the crossed namespaces whenever a
+ * learner computes a dot product or a gradient (see
+ * {@link CrossedFeatureVector}). The index of a cross is a hash of the
+ * namespaces of the interaction and the indices of its parts (modulo the
+ * dimension), so the same indices crossed in different interactions get
+ * different weights. Its value is the product of their values.
+ *
+ * If an interaction crosses a namespace with itself, every unordered
+ * combination of distinct features is generated once.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class FeatureInteractions {
+
+  private static final int FNV_PRIME = 0x01000193;
+  private static final int FNV_OFFSET = 0x811C9DC5;
+
+  /**
+   * Receives the crossed features.
+   */
+  @FunctionalInterface
+  public static interface CrossConsumer {
+
+    /**
+     * @param index the hashed index of the cross.
+     * @param value the product of the crossed values.
+     */
+    void accept(int index, double value);
+  }
+
+  private final int dimension;
+  private final int mask;
+  private final int[][] interactions;
+  // the initial hash of every interaction, derived from its namespaces
+  private final int[] seeds;
+  private final int numNamespaces;
+
+  /**
+   * Creates new interactions.
+   *
+   * @param dimension the dimension of the feature space, must be a power of
+   *          two (e.g. {@link FeatureHasher#getDimension()}).
+   * @param interactions the interactions, each of them an array of two or
+   *          three namespace indices.
+   */
+  public FeatureInteractions(int dimension, int[]... interactions) {
+    Preconditions.checkArgument(dimension > 0
+        && Integer.bitCount(dimension) == 1,
+        "dimension must be a power of two, given: " + dimension);
+    Preconditions.checkArgument(interactions.length > 0,
+        "at least one interaction must be supplied");
+    int max = 0;
+    for (int[] interaction : interactions) {
+      Preconditions.checkArgument(interaction.length == 2
+          || interaction.length == 3,
+          "only quadratic and cubic interactions are supported, given: "
+              + Arrays.toString(interaction));
+      for (int namespace : interaction) {
+        Preconditions.checkArgument(namespace >= 0,
+            "namespace index must be positive");
+        max = Math.max(max, namespace);
+      }
+    }
+    this.dimension = dimension;
+    this.mask = dimension - 1;
+    this.interactions = interactions;
+    this.seeds = new int[interactions.length];
+    for (int i = 0; i < interactions.length; i++) {
+      int seed = FNV_OFFSET;
+      for (int namespace : interactions[i]) {
+        seed = mix(seed, namespace);
+      }
+      seeds[i] = seed;
+    }
+    this.numNamespaces = max + 1;
+  }
+
+  /**
+   * Enumerates all crossed features of the given namespaces.
+   *
+   * @param namespaces the feature vectors of the namespaces.
+   * @param consumer the consumer that receives every cross.
+   */
+  public void forEachCross(DoubleVector[] namespaces, CrossConsumer consumer) {
+    Preconditions.checkArgument(namespaces.length >= numNamespaces,
+        "interactions need at least " + numNamespaces + " namespaces, given: "
+            + namespaces.length);
+    // the non-zeros are extracted once, since they are iterated many times
+    int[][] indices = new int[namespaces.length][];
+    double[][] values = new double[namespaces.length][];
+    for (int x = 0; x < interactions.length; x++) {
+      int[] interaction = interactions[x];
+      for (int namespace : interaction) {
+        if (indices[namespace] == null) {
+          extractNonZeros(namespaces[namespace], namespace, indices, values);
+        }
+      }
+      if (interaction.length == 2) {
+        crossPairs(interaction, seeds[x], indices, values, consumer);
+      } else {
+        crossTriples(interaction, seeds[x], indices, values, consumer);
+      }
+    }
+  }
+
+  /**
+   * @param namespaces the feature vectors of the namespaces.
+   * @param weights the weights.
+   * @return the dot product between the crossed features and the weights.
+   */
+  public double crossDot(DoubleVector[] namespaces, DoubleVector weights) {
+    double[] sum = new double[1];
+    forEachCross(namespaces, (index, value) -> sum[0] += weights.get(index)
+        * value);
+    return sum[0];
+  }
+
+  /**
+   * Materializes the crossed features, mainly useful for debugging.
+   *
+   * @param namespaces the feature vectors of the namespaces.
+   * @return a sparse vector that contains the sum of all crosses.
+   */
+  public DoubleVector crossFeatures(DoubleVector[] namespaces) {
+    DoubleVector result = new SparseDoubleVector(dimension);
+    forEachCross(namespaces,
+        (index, value) -> result.set(index, result.get(index) + value));
+    return result;
+  }
+
+  /**
+   * Creates a feature outcome pair that is learned with these interactions.
+   *
+   * @param namespaces the feature vectors of the namespaces.
+   * @param outcome the outcome.
+   * @return a new namespaced pair.
+   */
+  public NamespacedFeatureOutcomePair pair(DoubleVector[] namespaces,
+      DoubleVector outcome) {
+    return new NamespacedFeatureOutcomePair(namespaces, outcome, this);
+  }
+
+  /**
+   * @return the dimension of the feature space.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  private void crossPairs(int[] interaction, int seed, int[][] indices,
+      double[][] values, CrossConsumer consumer) {
+    int a = interaction[0];
+    int b = interaction[1];
+    for (int i = 0; i < indices[a].length; i++) {
+      int hash = mix(seed, indices[a][i]);
+      // don't generate the same combination twice within a namespace
+      for (int j = a == b ? i + 1 : 0; j < indices[b].length; j++) {
+        consumer.accept(mix(hash, indices[b][j]) & mask, values[a][i]
+            * values[b][j]);
+      }
+    }
+  }
+
+  private void crossTriples(int[] interaction, int seed, int[][] indices,
+      double[][] values, CrossConsumer consumer) {
+    int a = interaction[0];
+    int b = interaction[1];
+    int c = interaction[2];
+    for (int i = 0; i < indices[a].length; i++) {
+      int hashA = mix(seed, indices[a][i]);
+      for (int j = a == b ? i + 1 : 0; j < indices[b].length; j++) {
+        int hashB = mix(hashA, indices[b][j]);
+        double valueB = values[a][i] * values[b][j];
+        for (int k = b == c ? j + 1 : 0; k < indices[c].length; k++) {
+          consumer.accept(mix(hashB, indices[c][k]) & mask, valueB
+              * values[c][k]);
+        }
+      }
+    }
+  }
+
+  private static int mix(int hash, int index) {
+    // fnv-1a over the int, followed by the murmur3 finalizer
+    hash = (hash ^ index) * FNV_PRIME;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+
+  private static void extractNonZeros(DoubleVector vector, int namespace,
+      int[][] indices, double[][] values) {
+    int length = vector.getLength();
+    int[] idx = new int[length];
+    double[] val = new double[length];
+    int size = 0;
+    Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      if (size == idx.length) {
+        idx = Arrays.copyOf(idx, size * 2 + 1);
+        val = Arrays.copyOf(val, size * 2 + 1);
+      }
+      idx[size] = next.getIndex();
+      val[size++] = next.getValue();
+    }
+    indices[namespace] = Arrays.copyOf(idx, size);
+    values[namespace] = Arrays.copyOf(val, size);
+  }
+
+}
@@ -0,0 +1,65 @@
+package de.jungblut.online.features;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.online.ml.Model;
+
+/**
+ * Persists a model that was trained in a compacted feature space together with
+ * the {@link FeatureIndexMapping} that is needed to map the features at
+ * prediction time.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public class FeatureMappedModel<M extends Model> implements Model {
+
+  private FeatureIndexMapping mapping;
+  private M model;
+
+  // deserialization constructor
+  public FeatureMappedModel() {
+  }
+
+  public FeatureMappedModel(FeatureIndexMapping mapping, M model) {
+    this.mapping = Preconditions.checkNotNull(mapping, "mapping");
+    this.model = Preconditions.checkNotNull(model, "model");
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeUTF(model.getClass().getName());
+    mapping.serialize(out);
+    model.serialize(out);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public FeatureMappedModel<M> deserialize(DataInput in) throws IOException {
+    String clzName = in.readUTF();
+    try {
+      this.model = (M) ReflectionUtils.newInstance(Class.forName(clzName),
+          null);
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    this.mapping = new FeatureIndexMapping().deserialize(in);
+    this.model.deserialize(in);
+    return this;
+  }
+
+  public FeatureIndexMapping getMapping() {
+    return this.mapping;
+  }
+
+  public M getModel() {
+    return this.model;
+  }
+
+}
@@ -0,0 +1,37 @@
+package de.jungblut.online.features;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.classification.Predictor;
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Predicts features of the original feature space with a predictor of a model
+ * that was trained in the compacted space of a {@link FeatureIndexMapping}.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public class FeatureMappedPredictor extends AbstractPredictor {
+
+  private final FeatureIndexMapping mapping;
+  private final Predictor predictor;
+
+  public FeatureMappedPredictor(FeatureIndexMapping mapping,
+      Predictor predictor) {
+    this.mapping = Preconditions.checkNotNull(mapping, "mapping");
+    this.predictor = Preconditions.checkNotNull(predictor, "predictor");
+  }
+
+  @Override
+  public DoubleVector predict(DoubleVector features) {
+    return predictor.predict(mapping.apply(features));
+  }
+
+  @Override
+  public DoubleVector predictProbability(DoubleVector features) {
+    return predictor.predictProbability(mapping.apply(features));
+  }
+
+}
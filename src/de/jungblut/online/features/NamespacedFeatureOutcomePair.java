@@ -0,0 +1,64 @@
+package de.jungblut.online.features;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+
+/**
+ * A feature outcome pair that keeps its features separated by namespace, so
+ * the learners can generate the {@link FeatureInteractions} between them on
+ * the fly. The feature of this pair is the sum of all namespace vectors (the
+ * non-crossed features), so learners that don't know about interactions just
+ * see the base features.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public class NamespacedFeatureOutcomePair extends FeatureOutcomePair {
+
+  private final DoubleVector[] namespaces;
+  private final FeatureInteractions interactions;
+
+  public NamespacedFeatureOutcomePair(DoubleVector[] namespaces,
+      DoubleVector outcome, FeatureInteractions interactions) {
+    super(sum(namespaces), outcome);
+    this.namespaces = namespaces;
+    this.interactions = Preconditions.checkNotNull(interactions,
+        "interactions");
+    Preconditions.checkArgument(
+        getFeature().getDimension() == interactions.getDimension(),
+        "feature dimension must match the interaction dimension! Feature: "
+            + getFeature().getDimension() + " != Interactions: "
+            + interactions.getDimension());
+  }
+
+  public DoubleVector[] getNamespaces() {
+    return this.namespaces;
+  }
+
+  public FeatureInteractions getInteractions() {
+    return this.interactions;
+  }
+
+  /**
+   * @return a lazy view of the feature together with its crosses.
+   */
+  public CrossedFeatureVector getCrossedFeature() {
+    return new CrossedFeatureVector(getFeature(), namespaces, interactions);
+  }
+
+  private static DoubleVector sum(DoubleVector[] namespaces) {
+    Preconditions.checkArgument(namespaces != null && namespaces.length > 0,
+        "at least one namespace must be supplied");
+    if (namespaces.length == 1) {
+      return namespaces[0];
+    }
+    DoubleVector sum = namespaces[0];
+    for (int i = 1; i < namespaces.length; i++) {
+      sum = sum.add(namespaces[i]);
+    }
+    return sum;
+  }
+
+}
@@ -0,0 +1,199 @@
+package de.jungblut.online.features;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * Random Fourier features (Rahimi and Recht) that approximate the RBF kernel
+ * k(x, y) = exp(-gamma * ||x - y||^2) with an explicit feature map z, such that
+ * z(x) * z(y) ~ k(x, y). Linear learners on the transformed features (e.g. the
+ * RegressionLearner) thus learn non-linear decision boundaries at linear
+ * training and prediction cost.
+ *
+ * The projection is drawn from a seeded random, so it can be recreated from
+ * its parameters, which is also what is serialized. The projection matrix is
+ * stored input feature major, thus sparse inputs only touch the rows of their
+ * non-zero features.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class RandomFourierFeatures {
+
+  private int inputDimension;
+  private int numFeatures;
+  private double gamma;
+  private long seed;
+  private boolean bias;
+
+  private double[] projection;
+  private double[] offsets;
+  private double normalizer;
+
+  // deserialization constructor
+  public RandomFourierFeatures() {
+  }
+
+  /**
+   * Creates new random fourier features without a bias.
+   *
+   * @param inputDimension the dimension of the input features.
+   * @param numFeatures the number of random features to generate.
+   * @param gamma the width of the RBF kernel.
+   * @param seed the seed of the random projection.
+   */
+  public RandomFourierFeatures(int inputDimension, int numFeatures,
+      double gamma, long seed) {
+    this(inputDimension, numFeatures, gamma, seed, false);
+  }
+
+  /**
+   * Creates new random fourier features.
+   *
+   * @param inputDimension the dimension of the input features.
+   * @param numFeatures the number of random features to generate.
+   * @param gamma the width of the RBF kernel.
+   * @param seed the seed of the random projection.
+   * @param bias true if a constant 1 should be prepended to the output.
+   */
+  public RandomFourierFeatures(int inputDimension, int numFeatures,
+      double gamma, long seed, boolean bias) {
+    Preconditions.checkArgument(inputDimension > 0, "inputDimension > 0");
+    Preconditions.checkArgument(numFeatures > 0, "numFeatures > 0");
+    Preconditions.checkArgument(gamma > 0, "gamma > 0");
+    Preconditions.checkArgument((long) inputDimension * numFeatures
+        <= Integer.MAX_VALUE, "projection too large");
+    this.inputDimension = inputDimension;
+    this.numFeatures = numFeatures;
+    this.gamma = gamma;
+    this.seed = seed;
+    this.bias = bias;
+    init();
+  }
+
+  private void init() {
+    Random random = new Random(seed);
+    // the fourier transform of the RBF kernel is a gaussian with 2*gamma
+    // variance
+    double stddev = FastMath.sqrt(2d * gamma);
+    projection = new double[inputDimension * numFeatures];
+    for (int i = 0; i < projection.length; i++) {
+      projection[i] = random.nextGaussian() * stddev;
+    }
+    offsets = new double[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      offsets[i] = random.nextDouble() * 2d * FastMath.PI;
+    }
+    normalizer = FastMath.sqrt(2d / numFeatures);
+  }
+
+  /**
+   * Transforms the given feature into the given output buffer.
+   *
+   * @param feature the input feature.
+   * @param out the output buffer of at least {@link #getDimension()} length.
+   * @return the output buffer.
+   */
+  public double[] transform(DoubleVector feature, double[] out) {
+    Preconditions.checkArgument(feature.getDimension() == inputDimension,
+        "Feature dimension must match the input dimension! Expected: "
+            + inputDimension + ", given " + feature.getDimension());
+    Preconditions.checkArgument(out.length >= getDimension(),
+        "output buffer too small: " + out.length + " < " + getDimension());
+    int shift = bias ? 1 : 0;
+    Arrays.fill(out, shift, shift + numFeatures, 0d);
+    // accumulate the projection rows of the non-zero features
+    Iterator<DoubleVectorElement> iterateNonZero = feature.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      double value = next.getValue();
+      int row = next.getIndex() * numFeatures;
+      for (int i = 0; i < numFeatures; i++) {
+        out[shift + i] += value * projection[row + i];
+      }
+    }
+    for (int i = 0; i < numFeatures; i++) {
+      out[shift + i] = normalizer * FastMath.cos(out[shift + i] + offsets[i]);
+    }
+    if (bias) {
+      out[0] = 1d;
+    }
+    return out;
+  }
+
+  /**
+   * @param feature the input feature.
+   * @return a new dense vector of the random features.
+   */
+  public DoubleVector transform(DoubleVector feature) {
+    return new DenseDoubleVector(
+        transform(feature, new double[getDimension()]));
+  }
+
+  /**
+   * @param pair the pair to transform.
+   * @return a new pair with the random features (same outcome and weight).
+   */
+  public FeatureOutcomePair transform(FeatureOutcomePair pair) {
+    return WeightedFeatureOutcomePair.withFeature(pair,
+        transform(pair.getFeature()));
+  }
+
+  /**
+   * Applies the transformation to every stream of the given supplier.
+   *
+   * @param streamSupplier the supplier of the original streams.
+   * @return a supplier of transformed streams.
+   */
+  public Supplier<Stream<FeatureOutcomePair>> transform(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    Preconditions.checkNotNull(streamSupplier, "streamSupplier");
+    return () -> streamSupplier.get().map(this::transform);
+  }
+
+  /**
+   * @return the dimension of the transformed features.
+   */
+  public int getDimension() {
+    return numFeatures + (bias ? 1 : 0);
+  }
+
+  public int getInputDimension() {
+    return inputDimension;
+  }
+
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(inputDimension);
+    out.writeInt(numFeatures);
+    out.writeDouble(gamma);
+    out.writeLong(seed);
+    out.writeBoolean(bias);
+  }
+
+  public RandomFourierFeatures deserialize(DataInput in) throws IOException {
+    inputDimension = in.readInt();
+    numFeatures = in.readInt();
+    gamma = in.readDouble();
+    seed = in.readLong();
+    bias = in.readBoolean();
+    init();
+    return this;
+  }
+
+}
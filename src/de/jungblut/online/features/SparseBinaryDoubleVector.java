@@ -0,0 +1,442 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+/**
+ * Index-only sparse vector for indicator features. It stores the sorted
+ * indices of the non-zero entries and a single value that all of them share,
+ * which is one for binary features. Thus it only needs an int per non-zero and
+ * a dot product is a gather-sum of the other vector at the indices.
+ *
+ * The vector is immutable. Scaling it (e.g. by the loss functions to compute a
+ * gradient) returns a vector that shares the indices with a new value, so the
+ * regularizers can apply the gradient step as a constant to every index. All
+ * other operations are computed on an equivalent
+ * {@link SequentialSparseDoubleVector}, which is also what
+ * {@link #deepCopy()} returns, so copies can be modified.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class SparseBinaryDoubleVector implements DoubleVector {
+
+  private static final int[] EMPTY = new int[0];
+
+  private final int dimension;
+  private final int[] indices;
+  private final double value;
+
+  private SparseBinaryDoubleVector(int dimension, int[] indices, double value) {
+    this.dimension = dimension;
+    this.indices = value == 0d ? EMPTY : indices;
+    this.value = value;
+  }
+
+  /**
+   * Creates a new binary vector.
+   *
+   * @param dimension the dimension of the vector.
+   * @param indices the indices that are one, duplicates are ignored.
+   * @return a new binary vector.
+   */
+  public static SparseBinaryDoubleVector of(int dimension, int... indices) {
+    Preconditions.checkArgument(dimension >= 0, "dimension >= 0");
+    int[] sorted = Arrays.copyOf(indices, indices.length);
+    Arrays.sort(sorted);
+    int length = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      Preconditions.checkArgument(sorted[i] >= 0 && sorted[i] < dimension,
+          "index out of bounds [0, " + dimension + "): " + sorted[i]);
+      if (length == 0 || sorted[length - 1] != sorted[i]) {
+        sorted[length++] = sorted[i];
+      }
+    }
+    return new SparseBinaryDoubleVector(dimension,
+        length == sorted.length ? sorted : Arrays.copyOf(sorted, length), 1d);
+  }
+
+  /**
+   * @param vector the vector to check.
+   * @return true if every non-zero entry of the vector is one.
+   */
+  public static boolean isBinary(DoubleVector vector) {
+    if (vector instanceof SparseBinaryDoubleVector) {
+      return ((SparseBinaryDoubleVector) vector).value == 1d;
+    }
+    Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      double next = iterateNonZero.next().getValue();
+      if (next != 0d && next != 1d) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param vector the vector to convert, its non-zeros must all be one.
+   * @return a binary vector with the non-zero indices of the given vector.
+   */
+  public static SparseBinaryDoubleVector fromVector(DoubleVector vector) {
+    Preconditions.checkArgument(isBinary(vector),
+        "vector must only contain zeros and ones");
+    int[] nonZeros = new int[vector.getLength()];
+    int length = 0;
+    Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      if (next.getValue() != 0d) {
+        if (length == nonZeros.length) {
+          nonZeros = Arrays.copyOf(nonZeros, Math.max(4, length * 2));
+        }
+        nonZeros[length++] = next.getIndex();
+      }
+    }
+    return of(vector.getDimension(), Arrays.copyOf(nonZeros, length));
+  }
+
+  /**
+   * @return the sorted indices of the non-zero entries, must not be modified.
+   */
+  public int[] getIndices() {
+    return indices;
+  }
+
+  /**
+   * @return the value of all non-zero entries.
+   */
+  public double getValue() {
+    return value;
+  }
+
+  /**
+   * @param other any vector of the same dimension.
+   * @return the sum of the other vector at the indices of this vector.
+   */
+  public double gatherSum(DoubleVector other) {
+    if (other instanceof SparseBinaryDoubleVector) {
+      SparseBinaryDoubleVector binary = (SparseBinaryDoubleVector) other;
+      return binary.value * intersectionSize(indices, binary.indices);
+    }
+    double sum = 0d;
+    for (int index : indices) {
+      sum += other.get(index);
+    }
+    return sum;
+  }
+
+  private static int intersectionSize(int[] left, int[] right) {
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < left.length && j < right.length) {
+      if (left[i] < right[j]) {
+        i++;
+      } else if (left[i] > right[j]) {
+        j++;
+      } else {
+        size++;
+        i++;
+        j++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    return value * gatherSum(s);
+  }
+
+  @Override
+  public double get(int index) {
+    return Arrays.binarySearch(indices, index) >= 0 ? value : 0d;
+  }
+
+  @Override
+  public int getLength() {
+    return indices.length;
+  }
+
+  @Override
+  public int getDimension() {
+    return dimension;
+  }
+
+  @Override
+  public void set(int index, double value) {
+    throw new UnsupportedOperationException(
+        "binary vectors are immutable, use deepCopy() for a mutable copy");
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return new SparseBinaryDoubleVector(dimension, indices, value * scalar);
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return new SparseBinaryDoubleVector(dimension, indices, value / scalar);
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector other) {
+    if (other.isSparse()) {
+      return toSparse().add(other);
+    }
+    // e.g. regularization gradients of dense weights
+    DoubleVector result = new DenseDoubleVector(other.toArray());
+    for (int index : indices) {
+      result.set(index, result.get(index) + value);
+    }
+    return result;
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector other) {
+    if (other.isSparse()) {
+      return toSparse().subtract(other);
+    }
+    DoubleVector result = new DenseDoubleVector(other.getDimension());
+    for (int i = 0; i < result.getDimension(); i++) {
+      result.set(i, -other.get(i));
+    }
+    for (int index : indices) {
+      result.set(index, result.get(index) + value);
+    }
+    return result;
+  }
+
+  @Override
+  public double sum() {
+    return value * indices.length;
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return new SparseBinaryDoubleVector(dimension, indices, Math.abs(value));
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return toSparse().apply(func);
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return toSparse().apply(other, func);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return toSparse().add(scalar);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return toSparse().subtract(scalar);
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return toSparse().subtractFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector other) {
+    return toSparse().multiply(other);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return toSparse().divideFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector other) {
+    return toSparse().divideFrom(other);
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector other) {
+    return toSparse().divide(other);
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    return toSparse().pow(x);
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return toSparse().sqrt();
+  }
+
+  @Override
+  public DoubleVector log() {
+    return toSparse().log();
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return toSparse().exp();
+  }
+
+  @Override
+  public DoubleVector slice(int length) {
+    return slice(0, length);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return toSparse().slice(start, end);
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return toSparse().sliceByLength(start, length);
+  }
+
+  @Override
+  public double max() {
+    return toSparse().max();
+  }
+
+  @Override
+  public double min() {
+    return toSparse().min();
+  }
+
+  @Override
+  public int maxIndex() {
+    return toSparse().maxIndex();
+  }
+
+  @Override
+  public int minIndex() {
+    return toSparse().minIndex();
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] array = new double[dimension];
+    for (int index : indices) {
+      array[index] = value;
+    }
+    return array;
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return toSparse();
+  }
+
+  private SequentialSparseDoubleVector toSparse() {
+    SequentialSparseDoubleVector sparse = new SequentialSparseDoubleVector(
+        dimension, Math.max(1, indices.length));
+    for (int index : indices) {
+      sparse.set(index, value);
+    }
+    return sparse;
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int position;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (position < indices.length) {
+          element.setIndex(indices[position++]);
+          element.setValue(value);
+          return element;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index;
+      private int position;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (index < dimension) {
+          boolean nonZero = position < indices.length
+              && indices[position] == index;
+          if (nonZero) {
+            position++;
+          }
+          element.setIndex(index++);
+          element.setValue(nonZero ? value : 0d);
+          return element;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 31 * dimension + Arrays.hashCode(indices);
+    return 31 * result + Double.hashCode(value);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SparseBinaryDoubleVector)) {
+      return false;
+    }
+    SparseBinaryDoubleVector other = (SparseBinaryDoubleVector) obj;
+    return dimension == other.dimension && value == other.value
+        && Arrays.equals(indices, other.indices);
+  }
+
+  @Override
+  public String toString() {
+    if (indices.length < 50) {
+      return Arrays.toString(indices) + (value == 1d ? "" : " * " + value);
+    }
+    return getDimension() + "x1";
+  }
+
+}
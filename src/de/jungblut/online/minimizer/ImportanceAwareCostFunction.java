@@ -0,0 +1,32 @@
+package de.jungblut.online.minimizer;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.ml.FeatureOutcomePair;
+
+/**
+ * A cost function that knows its loss well enough to compute the importance
+ * aware update of a weighted example: the update of seeing the example h times
+ * in a row with infinitesimally small steps, which moves the prediction
+ * towards the label without overshooting it, no matter how large h is (see
+ * Karampatziakis and Langford, http://arxiv.org/abs/1011.1576).
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public interface ImportanceAwareCostFunction extends StochasticCostFunction {
+
+  /**
+   * Observes the next example with an importance weight.
+   * 
+   * @param next the next item on the stream.
+   * @param weights the current weights.
+   * @param importanceWeight the importance weight h of the example.
+   * @param learningRate the learning rate the gradient will be applied with.
+   * @return the cost times h and a gradient that moves the weights to the
+   *         importance aware update when it is applied with the learning rate.
+   */
+  public CostGradientTuple observeWeightedExample(FeatureOutcomePair next,
+      DoubleVector weights, double importanceWeight, double learningRate);
+
+}
@@ -18,6 +18,7 @@ import com.google.common.base.Stopwatch;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.minimize.CostGradientTuple;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
 import de.jungblut.online.regularization.CostWeightTuple;
 import de.jungblut.online.regularization.GradientDescentUpdater;
 import de.jungblut.online.regularization.WeightUpdater;
@@ -26,6 +27,13 @@ import de.jungblut.online.regularization.WeightUpdater;
  * Stochastic gradient descent. This class is designed to work on a parallel
  * stream and do stochastic updates to a parameter set.
  * 
+ * Examples that are {@link WeightedFeatureOutcomePair}s contribute their
+ * weighted cost. Their gradient step is the importance aware update if the
+ * cost function is an {@link ImportanceAwareCostFunction}, otherwise the
+ * gradient is multiplied by the weight. The weighted step can optionally be
+ * capped, see
+ * {@link StochasticGradientDescentBuilder#importanceStepCap(double)}.
+ * 
  * @author thomas.jungblut
  *
  */
@@ -43,6 +51,7 @@ public class StochasticGradientDescent implements StochasticMinimizer {
     private int progressReportInterval = 1;
     private double holdoutValidationPercentage = 0d;
     private boolean adaptiveLearningRate = false;
+    private double importanceStepCap = Double.POSITIVE_INFINITY;
     private WeightUpdater weightUpdater = new GradientDescentUpdater();
     private long validationRandomSeed = System.currentTimeMillis();
 
@@ -163,6 +172,25 @@ public class StochasticGradientDescent implements StochasticMinimizer {
       return this;
     }
 
+    /**
+     * Sets the cap for the steps of weighted examples whose cost function
+     * can't compute an importance aware update. Their gradient is multiplied by
+     * the importance weight, but the step (learning rate times the norm of the
+     * weighted gradient) is scaled down to at most the cap, so a single large
+     * weight can't make the weights diverge. Capped examples lose a part of
+     * their weight, thus the cap biases the calibration of the model. The
+     * default is no cap.
+     * 
+     * @param cap the maximum norm of a weighted step, > 0.
+     * @return the builder again.
+     */
+    public StochasticGradientDescentBuilder importanceStepCap(double cap) {
+      Preconditions.checkArgument(cap > 0d, "Step cap must be > 0, given: "
+          + cap);
+      this.importanceStepCap = cap;
+      return this;
+    }
+
     /**
      * Creates a new builder.
      * 
@@ -186,6 +214,7 @@ public class StochasticGradientDescent implements StochasticMinimizer {
   private double momentum;
   private double initialAlpha;
   private double validationPercentage;
+  private double importanceStepCap;
   private int historySize;
   private int progressReportInterval;
   private WeightUpdater weightUpdater;
@@ -223,6 +252,7 @@ public class StochasticGradientDescent implements StochasticMinimizer {
     this.weightUpdater = builder.weightUpdater;
     this.validationPercentage = builder.holdoutValidationPercentage;
     this.adaptiveLearningRate = builder.adaptiveLearningRate;
+    this.importanceStepCap = builder.importanceStepCap;
     this.costHistory = new LinkedList<>();
   }
 
@@ -231,17 +261,10 @@ public class StochasticGradientDescent implements StochasticMinimizer {
       Supplier<Stream<FeatureOutcomePair>> streamSupplier,
       StochasticCostFunction costFunction, int numPasses, boolean verbose) {
 
-    resetState(builder);
-    theta = start;
-
-    startWatch = Stopwatch.createStarted();
+    startMinimization(start);
     for (int pass = 0; pass < numPasses; pass++) {
 
-      validationRandom = new Random(validationSeed);
-      iteration = 0;
-      trainingError = 0;
-      validationError = 0;
-      validationItems = 0;
+      startPass();
 
       Stream<FeatureOutcomePair> currentStream = streamSupplier.get();
       final int passFinal = pass;
@@ -253,35 +276,101 @@ public class StochasticGradientDescent implements StochasticMinimizer {
             verbose));
       }
 
-      if (verbose) {
-        LOG.info(String
-            .format(
-                "Pass Summary %d | Iteration %d | Validation Cost: %g | Training Cost: %g | Iterations/s: %g  | Total Time Taken: %s",
-                pass,
-                iteration,
-                validationError / Math.max(validationItems, 1),
-                trainingError / Math.max(iteration - validationItems, 1),
-                allIterations
-                    / (double) Math.max(startWatch.elapsed(TimeUnit.SECONDS), 1),
-                startWatch));
+      if (!finishPass(pass, verbose)) {
+        break;
       }
+    }
 
-      if (passCallback != null) {
-        boolean continuePass = passCallback.onPassFinished(pass, iteration,
-            validationError, theta);
+    return theta;
+  }
 
-        // break this pass, because the callback said so
-        if (!continuePass) {
-          break;
-        }
+  /**
+   * Starts a minimization that is driven by the caller instead of
+   * {@link #minimize(DoubleVector, Supplier, StochasticCostFunction, int, boolean)}
+   * , e.g. to update multiple minimizers from a single read of the data. Every
+   * pass is started with {@link #startPass()}, then {@link #step} is called for
+   * every example and the pass is ended with {@link #finishPass(int, boolean)}.
+   * 
+   * @param start the start parameters.
+   */
+  public void startMinimization(DoubleVector start) {
+    resetState(builder);
+    theta = start;
+    startWatch = Stopwatch.createStarted();
+  }
 
-      }
+  /**
+   * Starts a new pass of a minimization that is driven by the caller.
+   */
+  public void startPass() {
+    validationRandom = new Random(validationSeed);
+    iteration = 0;
+    trainingError = 0;
+    validationError = 0;
+    validationItems = 0;
+  }
 
-      if (stopAfterThisPass) {
-        break;
+  /**
+   * Does a single step on the given example. This is not thread-safe, callers
+   * have to synchronize steps on parallel streams.
+   * 
+   * @param pass the current pass.
+   * @param next the next example.
+   * @param costFunction the cost function to minimize.
+   * @param verbose true if progress should be printed to the log.
+   */
+  public void step(int pass, FeatureOutcomePair next,
+      StochasticCostFunction costFunction, boolean verbose) {
+    doStep(pass, next, costFunction, verbose);
+  }
+
+  /**
+   * Finishes a pass of a minimization that is driven by the caller.
+   * 
+   * @param pass the pass that was finished.
+   * @param verbose true if the pass summary should be printed to the log.
+   * @return true if the minimization should continue with another pass, false
+   *         if it converged or the pass callback stopped it.
+   */
+  public boolean finishPass(int pass, boolean verbose) {
+    if (verbose) {
+      LOG.info(String
+          .format(
+              "Pass Summary %d | Iteration %d | Validation Cost: %g | Training Cost: %g | Iterations/s: %g  | Total Time Taken: %s",
+              pass,
+              iteration,
+              validationError / Math.max(validationItems, 1),
+              trainingError / Math.max(iteration - validationItems, 1),
+              allIterations
+                  / (double) Math.max(startWatch.elapsed(TimeUnit.SECONDS), 1),
+              startWatch));
+    }
+
+    if (passCallback != null) {
+      boolean continuePass = passCallback.onPassFinished(pass, iteration,
+          validationError, theta);
+
+      // break this pass, because the callback said so
+      if (!continuePass) {
+        return false;
       }
+
     }
 
+    return !stopAfterThisPass;
+  }
+
+  /**
+   * @return the updater that computes the new weights.
+   */
+  public WeightUpdater getWeightUpdater() {
+    return weightUpdater;
+  }
+
+  /**
+   * @return the current parameters.
+   */
+  public DoubleVector getTheta() {
     return theta;
   }
 
@@ -304,8 +393,17 @@ public class StochasticGradientDescent implements StochasticMinimizer {
         .prePredictionWeightUpdate(next, theta, alpha, allIterations),
         "weight updater #prePredictionWeightUpdate return must be non-null!");
 
-    CostGradientTuple observed = costFunction.observeExample(next,
-        iterationLocalTheta);
+    CostGradientTuple observed;
+    double weight = WeightedFeatureOutcomePair.weightOf(next);
+    if (weight != 1d && costFunction instanceof ImportanceAwareCostFunction) {
+      observed = ((ImportanceAwareCostFunction) costFunction)
+          .observeWeightedExample(next, iterationLocalTheta, weight, alpha);
+    } else {
+      observed = costFunction.observeExample(next, iterationLocalTheta);
+      if (weight != 1d) {
+        observed = importanceWeight(observed, weight);
+      }
+    }
 
     if (verbose) {
       double avgImprovement = getAverageImprovement(costHistory);
@@ -376,6 +474,25 @@ public class StochasticGradientDescent implements StochasticMinimizer {
     }
   }
 
+  /**
+   * Scales the cost and gradient of an example with an importance weight, for
+   * cost functions that don't know the importance aware update of their loss.
+   * The weighted step is capped if a cap was set.
+   */
+  private CostGradientTuple importanceWeight(CostGradientTuple observed,
+      double weight) {
+    DoubleVector gradient = observed.getGradient();
+    double factor = weight;
+    if (importanceStepCap != Double.POSITIVE_INFINITY) {
+      double step = alpha * weight * Math.sqrt(gradient.dot(gradient));
+      if (step > importanceStepCap) {
+        factor *= importanceStepCap / step;
+      }
+    }
+    return new CostGradientTuple(observed.getCost() * weight,
+        gradient.multiply(factor));
+  }
+
   public void computeMomentum() {
     // compute momentum
     if (lastTheta != null && momentum != 0d) {
@@ -10,6 +10,7 @@ import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.CostGradientTuple;
 import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.minimizer.StochasticCostFunction;
 import de.jungblut.online.minimizer.StochasticMinimizer;
 
 public abstract class AbstractMinimizingOnlineLearner<M extends Model> extends
@@ -33,11 +34,19 @@ public abstract class AbstractMinimizingOnlineLearner<M extends Model> extends
 
     DoubleVector weights = randomInitialize(featureDimension);
     DoubleVector minimized = minimizer.minimize(weights, streamSupplier,
-        this::observeExampleSafe, numPasses, verbose);
+        getCostFunction(), numPasses, verbose);
 
     return createModel(minimized);
   }
 
+  /**
+   * @return the cost function that is minimized, by default it observes the
+   *         examples with {@link #observeExampleSafe}.
+   */
+  protected StochasticCostFunction getCostFunction() {
+    return this::observeExampleSafe;
+  }
+
   /**
    * Observes the next example.
    * 
@@ -66,10 +75,11 @@ public abstract class AbstractMinimizingOnlineLearner<M extends Model> extends
         .getDimension(),
         "Feature dimension must match the initially set dimension! Expected: "
             + featureDimension + ", given " + next.getFeature().getDimension());
-    Preconditions.checkArgument(outcomeDimension == next.getOutcome()
-        .getDimension(),
+    int nextOutcomeDimension = LabeledFeatureOutcomePair
+        .outcomeDimensionOf(next);
+    Preconditions.checkArgument(outcomeDimension == nextOutcomeDimension,
         "Outcome dimension must match the initially set dimension! Expected: "
-            + outcomeDimension + ", given " + next.getOutcome().getDimension());
+            + outcomeDimension + ", given " + nextOutcomeDimension);
     return observeExample(next, weights);
   }
 
@@ -39,7 +39,8 @@ public abstract class AbstractOnlineLearner<M extends Model> implements
 
     FeatureOutcomePair firstExample = first.get();
     this.featureDimension = firstExample.getFeature().getDimension();
-    this.outcomeDimension = firstExample.getOutcome().getDimension();
+    this.outcomeDimension = LabeledFeatureOutcomePair
+        .outcomeDimensionOf(firstExample);
     this.numOutcomeClasses = Math.max(2, this.outcomeDimension);
   }
 
@@ -0,0 +1,203 @@
+package de.jungblut.online.ml;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+
+/**
+ * A compact feature outcome pair that stores its outcome as an int class label
+ * or as a scalar target instead of a vector. Learners and stream stages read
+ * the label directly via {@link #labelOf(FeatureOutcomePair)} and
+ * {@link #targetOf(FeatureOutcomePair)}, so many-class problems don't need a
+ * one-hot vector per example and no maxIndex scan per observation.
+ *
+ * For compatibility, {@link #getOutcome()} creates the equivalent outcome
+ * vector on demand: a single entry for scalar targets and binary labels (like
+ * the learners expect them), a one-hot vector for more than two classes. The
+ * binary outcome vectors are shared and must not be modified.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class LabeledFeatureOutcomePair extends
+    WeightedFeatureOutcomePair {
+
+  // number of classes for scalar targets
+  private static final int NO_CLASSES = 0;
+
+  // binary outcomes are shared, like the learners did for their binary views
+  private static final SingleEntryDoubleVector NEGATIVE = new SingleEntryDoubleVector(
+      0d);
+  private static final SingleEntryDoubleVector POSITIVE = new SingleEntryDoubleVector(
+      1d);
+
+  private final double target;
+  private final int numClasses;
+
+  private LabeledFeatureOutcomePair(DoubleVector feature, double target,
+      int numClasses, double weight) {
+    super(feature, null, weight);
+    this.target = target;
+    this.numClasses = numClasses;
+  }
+
+  /**
+   * @return the class label, only defined for class labeled pairs.
+   */
+  public int getLabel() {
+    Preconditions.checkState(numClasses != NO_CLASSES,
+        "scalar targets have no class label: " + target);
+    return (int) target;
+  }
+
+  /**
+   * @return the scalar target, or the class label as a double.
+   */
+  public double getTarget() {
+    return target;
+  }
+
+  /**
+   * @return the number of classes, zero for scalar targets.
+   */
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /**
+   * @return the dimension of {@link #getOutcome()} without creating it.
+   */
+  public int getOutcomeDimension() {
+    return numClasses > 2 ? numClasses : 1;
+  }
+
+  @Override
+  public DoubleVector getOutcome() {
+    if (numClasses > 2) {
+      DoubleVector oneHot = new DenseDoubleVector(numClasses);
+      oneHot.set((int) target, 1d);
+      return oneHot;
+    }
+    if (numClasses == 2) {
+      return target == 0d ? NEGATIVE : POSITIVE;
+    }
+    return new SingleEntryDoubleVector(target);
+  }
+
+  @Override
+  public LabeledFeatureOutcomePair withWeight(double weight) {
+    return new LabeledFeatureOutcomePair(getFeature(), target, numClasses,
+        weight);
+  }
+
+  @Override
+  public LabeledFeatureOutcomePair withFeature(DoubleVector feature) {
+    return new LabeledFeatureOutcomePair(feature, target, numClasses,
+        getWeight());
+  }
+
+  @Override
+  public String toString() {
+    return getFeature() + " -> "
+        + (numClasses == NO_CLASSES ? target : (int) target) + " (weight "
+        + getWeight() + ")";
+  }
+
+  /**
+   * @param feature the feature.
+   * @param label the class label in [0, numClasses).
+   * @param numClasses the number of classes, at least two.
+   * @return a new labeled pair with a weight of one.
+   */
+  public static LabeledFeatureOutcomePair ofClass(DoubleVector feature,
+      int label, int numClasses) {
+    return ofClass(feature, label, numClasses, 1d);
+  }
+
+  /**
+   * @param feature the feature.
+   * @param label the class label in [0, numClasses).
+   * @param numClasses the number of classes, at least two.
+   * @param weight the importance weight of the example.
+   * @return a new labeled pair.
+   */
+  public static LabeledFeatureOutcomePair ofClass(DoubleVector feature,
+      int label, int numClasses, double weight) {
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    Preconditions.checkArgument(label >= 0 && label < numClasses,
+        "label must be in [0, " + numClasses + "), given: " + label);
+    return new LabeledFeatureOutcomePair(feature, label, numClasses, weight);
+  }
+
+  /**
+   * @param feature the feature.
+   * @param target the scalar target.
+   * @return a new pair with a scalar target and a weight of one.
+   */
+  public static LabeledFeatureOutcomePair ofTarget(DoubleVector feature,
+      double target) {
+    return ofTarget(feature, target, 1d);
+  }
+
+  /**
+   * @param feature the feature.
+   * @param target the scalar target.
+   * @param weight the importance weight of the example.
+   * @return a new pair with a scalar target.
+   */
+  public static LabeledFeatureOutcomePair ofTarget(DoubleVector feature,
+      double target, double weight) {
+    return new LabeledFeatureOutcomePair(feature, target, NO_CLASSES, weight);
+  }
+
+  /**
+   * @param pair any feature outcome pair.
+   * @return the class label of the pair. For single dimensional outcomes this
+   *         is the outcome value (binary classification), otherwise the index
+   *         of the maximum outcome.
+   */
+  public static int labelOf(FeatureOutcomePair pair) {
+    if (pair instanceof LabeledFeatureOutcomePair) {
+      return (int) ((LabeledFeatureOutcomePair) pair).target;
+    }
+    DoubleVector outcome = pair.getOutcome();
+    if (outcome.getDimension() == 1) {
+      return (int) outcome.get(0);
+    }
+    return outcome.maxIndex();
+  }
+
+  /**
+   * @param pair any feature outcome pair with a single dimensional outcome.
+   * @return the scalar target of the pair.
+   */
+  public static double targetOf(FeatureOutcomePair pair) {
+    if (pair instanceof LabeledFeatureOutcomePair) {
+      LabeledFeatureOutcomePair labeled = (LabeledFeatureOutcomePair) pair;
+      Preconditions.checkArgument(labeled.getOutcomeDimension() == 1,
+          "Only single dimensional outcomes have a scalar target, given "
+              + labeled.numClasses + " classes");
+      return labeled.target;
+    }
+    DoubleVector outcome = pair.getOutcome();
+    Preconditions.checkArgument(outcome.getDimension() == 1,
+        "Only single dimensional outcomes have a scalar target, given "
+            + "outcome dimension " + outcome.getDimension());
+    return outcome.get(0);
+  }
+
+  /**
+   * @param pair any feature outcome pair.
+   * @return the dimension of the outcome of the given pair.
+   */
+  public static int outcomeDimensionOf(FeatureOutcomePair pair) {
+    if (pair instanceof LabeledFeatureOutcomePair) {
+      return ((LabeledFeatureOutcomePair) pair).getOutcomeDimension();
+    }
+    return pair.getOutcome().getDimension();
+  }
+
+}
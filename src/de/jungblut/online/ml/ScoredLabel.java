@@ -0,0 +1,90 @@
+package de.jungblut.online.ml;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A class label with its score (e.g. a probability), as returned by the top-k
+ * predictions of the classifiers.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class ScoredLabel {
+
+  /**
+   * Orders by descending score, ties by ascending label.
+   */
+  public static final Comparator<ScoredLabel> BY_DESCENDING_SCORE = Comparator
+      .comparingDouble(ScoredLabel::getScore).reversed()
+      .thenComparingInt(ScoredLabel::getLabel);
+
+  private final int label;
+  private final double score;
+
+  public ScoredLabel(int label, double score) {
+    this.label = label;
+    this.score = score;
+  }
+
+  /**
+   * Selects the k highest scores with a bounded heap, which is cheaper than
+   * sorting all scores for k much smaller than the number of classes.
+   * 
+   * @param scores the score of every class.
+   * @param k the number of classes to return.
+   * @return at most k classes with their scores, the highest first.
+   */
+  public static List<ScoredLabel> topK(double[] scores, int k) {
+    Preconditions.checkArgument(k > 0, "k > 0, given: " + k);
+    PriorityQueue<ScoredLabel> heap = new PriorityQueue<>(Math.min(k,
+        scores.length) + 1, BY_DESCENDING_SCORE.reversed());
+    for (int i = 0; i < scores.length; i++) {
+      if (heap.size() < k) {
+        heap.add(new ScoredLabel(i, scores[i]));
+      } else if (scores[i] > heap.peek().score) {
+        heap.poll();
+        heap.add(new ScoredLabel(i, scores[i]));
+      }
+    }
+    List<ScoredLabel> result = new ArrayList<>(heap);
+    result.sort(BY_DESCENDING_SCORE);
+    return result;
+  }
+
+  public int getLabel() {
+    return label;
+  }
+
+  public double getScore() {
+    return score;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * label + Double.hashCode(score);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ScoredLabel)) {
+      return false;
+    }
+    ScoredLabel other = (ScoredLabel) obj;
+    return label == other.label
+        && Double.compare(score, other.score) == 0;
+  }
+
+  @Override
+  public String toString() {
+    return label + " -> " + score;
+  }
+
+}
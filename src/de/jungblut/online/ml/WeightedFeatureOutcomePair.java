@@ -0,0 +1,93 @@
+package de.jungblut.online.ml;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * A feature outcome pair with an importance weight, e.g. because it represents
+ * multiple identical examples or because it survived a downsampling with rate r
+ * and thus has to count 1/r times. Plain pairs have a weight of one.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public class WeightedFeatureOutcomePair extends FeatureOutcomePair {
+
+  private final double weight;
+
+  public WeightedFeatureOutcomePair(DoubleVector feature, DoubleVector outcome,
+      double weight) {
+    super(feature, outcome);
+    Preconditions.checkArgument(weight > 0 && !Double.isInfinite(weight),
+        "weight must be positive and finite, given: " + weight);
+    this.weight = weight;
+  }
+
+  public double getWeight() {
+    return this.weight;
+  }
+
+  /**
+   * @param weight the new weight.
+   * @return a copy of this pair with the given weight.
+   */
+  public WeightedFeatureOutcomePair withWeight(double weight) {
+    return new WeightedFeatureOutcomePair(getFeature(), getOutcome(), weight);
+  }
+
+  /**
+   * @param feature the new feature.
+   * @return a copy of this pair with the given feature.
+   */
+  public WeightedFeatureOutcomePair withFeature(DoubleVector feature) {
+    return new WeightedFeatureOutcomePair(feature, getOutcome(), weight);
+  }
+
+  /**
+   * @param pair any feature outcome pair.
+   * @return the weight of a weighted pair, one otherwise.
+   */
+  public static double weightOf(FeatureOutcomePair pair) {
+    if (pair instanceof WeightedFeatureOutcomePair) {
+      return ((WeightedFeatureOutcomePair) pair).getWeight();
+    }
+    return 1d;
+  }
+
+  /**
+   * @param pair any feature outcome pair.
+   * @param weight the weight to multiply with the weight of the pair.
+   * @return a weighted pair with the same feature and outcome.
+   */
+  public static WeightedFeatureOutcomePair reweight(FeatureOutcomePair pair,
+      double weight) {
+    if (pair instanceof WeightedFeatureOutcomePair) {
+      WeightedFeatureOutcomePair weighted = (WeightedFeatureOutcomePair) pair;
+      return weighted.withWeight(weighted.getWeight() * weight);
+    }
+    return new WeightedFeatureOutcomePair(pair.getFeature(),
+        pair.getOutcome(), weight);
+  }
+
+  /**
+   * Replaces the feature of the given pair, the outcome and weight are kept.
+   *
+   * @param pair any feature outcome pair.
+   * @param feature the new feature.
+   * @return a pair of the same type with the given feature.
+   */
+  public static FeatureOutcomePair withFeature(FeatureOutcomePair pair,
+      DoubleVector feature) {
+    if (pair instanceof WeightedFeatureOutcomePair) {
+      return ((WeightedFeatureOutcomePair) pair).withFeature(feature);
+    }
+    return new FeatureOutcomePair(feature, pair.getOutcome());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " (weight " + weight + ")";
+  }
+
+}
@@ -6,6 +6,7 @@ import de.jungblut.classification.AbstractPredictor;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.activation.ActivationFunction;
 import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
 
 /**
  * Classifier for regression model. Takes a model or the atomic parts of it and
@@ -40,4 +41,27 @@ public class RegressionClassifier extends AbstractPredictor {
     return new SingleEntryDoubleVector(result);
   }
 
+  /**
+   * Predicts the outcome of a namespaced feature, including the interactions
+   * between its namespaces.
+   * 
+   * @param feature the namespaced feature, the outcome is ignored.
+   * @return the prediction.
+   */
+  public DoubleVector predict(NamespacedFeatureOutcomePair feature) {
+    DoubleVector weights = model.getWeights();
+    Preconditions.checkArgument(feature.getFeature().getDimension() == weights
+        .getDimension(),
+        "feature dimension must match model weight dimension! Feature: "
+            + feature.getFeature().getDimension() + " != Model: "
+            + weights.getDimension());
+
+    double result = model.getActivationFunction().apply(
+        feature.getFeature().dot(weights)
+            + feature.getInteractions().crossDot(feature.getNamespaces(),
+                weights));
+
+    return new SingleEntryDoubleVector(result);
+  }
+
 }
@@ -1,27 +1,67 @@
 package de.jungblut.online.regression;
 
+import org.apache.commons.math3.util.FastMath;
+
 import com.google.common.base.Preconditions;
 
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.activation.LinearActivationFunction;
+import de.jungblut.math.activation.SigmoidActivationFunction;
 import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
 import de.jungblut.math.loss.LossFunction;
+import de.jungblut.math.loss.SquaredLoss;
 import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.minimizer.ImportanceAwareCostFunction;
+import de.jungblut.online.minimizer.StochasticCostFunction;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
 import de.jungblut.online.minimizer.StochasticMinimizer;
 import de.jungblut.online.ml.AbstractMinimizingOnlineLearner;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regularization.WeightUpdater;
 
 /**
  * A regression learner that learns weights on a stream, given an optimization
  * objective (e.g. log loss). This learner outputs a RegressionModel that can be
  * used in a RegressionClassifier.
  * 
+ * If the examples are {@link NamespacedFeatureOutcomePair}s, their feature
+ * interactions are generated on the fly in the dot product and the gradient.
+ * Features of type {@link SparseBinaryDoubleVector} compute the dot product as
+ * a gather-sum and scale into a gradient of the same type, which the weight
+ * updaters apply as a constant step per index.
+ * 
+ * Weighted examples get the importance aware update of their loss: the scalar
+ * gradient of the loss is integrated along the feature as if the example was
+ * seen h times with infinitesimal steps, so large weights neither overshoot
+ * nor lose their weight (e.g. negatives of a {@link
+ * de.jungblut.online.stream.NegativeDownsampler}). The log loss with a sigmoid
+ * and the squared loss with a linear activation are integrated in closed form,
+ * other losses with a few Runge-Kutta steps. The update assumes that the
+ * gradient is applied as w -= a * g, thus it is only used if the weight
+ * updater doesn't rescale the gradient per coordinate (see
+ * {@link WeightUpdater#isPerCoordinateAdaptive()}), otherwise the gradient is
+ * weighted by the minimizer.
+ * 
  * @author thomas.jungblut
  *
  */
 public class RegressionLearner extends
     AbstractMinimizingOnlineLearner<RegressionModel> {
 
+  private static final DoubleVector UNIT = new SingleEntryDoubleVector(1d);
+  // exp of larger values overflows
+  private static final double MAX_EXPONENT = 700d;
+  // the integration step of the importance aware update for losses without a
+  // closed form, in units of the learning rate times the squared feature norm.
+  // Every step evaluates the loss four times, so they are capped.
+  private static final double IMPORTANCE_STEP = 0.25d;
+  private static final int MAX_IMPORTANCE_STEPS = 16;
+
   private final ActivationFunction activationFunction;
   private final LossFunction lossFunction;
 
@@ -37,14 +77,145 @@ public class RegressionLearner extends
   @Override
   protected CostGradientTuple observeExample(FeatureOutcomePair next,
       DoubleVector weights) {
+    DoubleVector feature = featureOf(next);
     DoubleVector hypothesis = new SingleEntryDoubleVector(
-        activationFunction.apply(next.getFeature().dot(weights)));
+        activationFunction.apply(feature.dot(weights)));
     double cost = lossFunction.calculateLoss(next.getOutcome(), hypothesis);
-    DoubleVector gradient = lossFunction.calculateGradient(next.getFeature(),
+    // the loss functions scale the feature, which keeps crosses lazy
+    DoubleVector gradient = lossFunction.calculateGradient(feature,
         next.getOutcome(), hypothesis);
     return new CostGradientTuple(cost, gradient);
   }
 
+  /**
+   * @return the feature of the example, with its crosses if it is namespaced.
+   */
+  private static DoubleVector featureOf(FeatureOutcomePair next) {
+    if (next instanceof NamespacedFeatureOutcomePair) {
+      return ((NamespacedFeatureOutcomePair) next).getCrossedFeature();
+    }
+    return next.getFeature();
+  }
+
+  @Override
+  protected StochasticCostFunction getCostFunction() {
+    if (minimizer instanceof StochasticGradientDescent
+        && ((StochasticGradientDescent) minimizer).getWeightUpdater()
+            .isPerCoordinateAdaptive()) {
+      // the rescaled gradient wouldn't reach the integrated prediction
+      return super.getCostFunction();
+    }
+    return new ImportanceAwareCostFunction() {
+      @Override
+      public CostGradientTuple observeExample(FeatureOutcomePair next,
+          DoubleVector weights) {
+        return observeExampleSafe(next, weights);
+      }
+
+      @Override
+      public CostGradientTuple observeWeightedExample(FeatureOutcomePair next,
+          DoubleVector weights, double importanceWeight, double learningRate) {
+        // the sanity checks of the unweighted path
+        CostGradientTuple observed = observeExampleSafe(next, weights);
+        return importanceAwareUpdate(next, weights, observed,
+            importanceWeight, learningRate);
+      }
+    };
+  }
+
+  private CostGradientTuple importanceAwareUpdate(FeatureOutcomePair next,
+      DoubleVector weights, CostGradientTuple observed,
+      double importanceWeight, double learningRate) {
+    DoubleVector feature = featureOf(next);
+    double z = feature.dot(weights);
+
+    double cost = observed.getCost() * importanceWeight;
+    double squaredNorm = feature instanceof CrossedFeatureVector
+        ? ((CrossedFeatureVector) feature).squaredNorm() : feature.dot(feature);
+    double stepPerUnit = learningRate * squaredNorm;
+    if (stepPerUnit <= 0d) {
+      return new CostGradientTuple(cost, observed.getGradient());
+    }
+
+    // applying the gradient x * c with learning rate a moves the prediction by
+    // -a * c * ||x||^2, so the integrated prediction is reached with
+    // c = (z0 - z) / (a * ||x||^2).
+    double current = integratePrediction(z, next.getOutcome(),
+        importanceWeight * stepPerUnit);
+    return new CostGradientTuple(cost, feature.multiply((z - current)
+        / stepPerUnit));
+  }
+
+  /**
+   * Integrates dz/dt = -g(z) for t in [0, time], where g is the scalar gradient
+   * of the loss.
+   * 
+   * @param z the prediction before the activation.
+   * @param outcome the outcome of the example.
+   * @param time the importance weight times the learning rate times the
+   *          squared norm of the feature.
+   * @return the prediction after seeing the example.
+   */
+  double integratePrediction(double z, DoubleVector outcome, double time) {
+    double y = outcome.get(0);
+    if (lossFunction instanceof SquaredLoss
+        && activationFunction instanceof LinearActivationFunction) {
+      // dz/dt = y - z decays exponentially towards the label
+      return y + (z - y) * FastMath.exp(-time);
+    }
+    if (lossFunction instanceof LogLoss
+        && activationFunction instanceof SigmoidActivationFunction
+        && (y == 0d || y == 1d)) {
+      // for y = 1, dz/dt = 1 / (1 + exp(z)) separates into
+      // z + exp(z) = z0 + exp(z0) + t, y = 0 is the same for -z
+      double sign = y == 1d ? 1d : -1d;
+      double u = sign * z;
+      if (u > MAX_EXPONENT) {
+        // the gradient is zero in double precision
+        return z;
+      }
+      return sign * solveLinearPlusExp(u + FastMath.exp(u) + time);
+    }
+
+    int steps = (int) Math.min(MAX_IMPORTANCE_STEPS,
+        Math.max(1, Math.ceil(time / IMPORTANCE_STEP)));
+    double dt = time / steps;
+    double current = z;
+    for (int i = 0; i < steps; i++) {
+      double k1 = scalarGradient(current, outcome);
+      double k2 = scalarGradient(current - dt / 2d * k1, outcome);
+      double k3 = scalarGradient(current - dt / 2d * k2, outcome);
+      double k4 = scalarGradient(current - dt * k3, outcome);
+      current -= dt / 6d * (k1 + 2d * k2 + 2d * k3 + k4);
+    }
+    return current;
+  }
+
+  /**
+   * @return the w with w + exp(w) = c, which is c - W(exp(c)) with the Lambert
+   *         W function.
+   */
+  static double solveLinearPlusExp(double c) {
+    // Newton's method starts right of the root, where it converges
+    // monotonically on the increasing and convex function
+    double w = c < 1d ? c : FastMath.log(c);
+    for (int i = 0; i < 64; i++) {
+      double exp = FastMath.exp(w);
+      double step = (w + exp - c) / (1d + exp);
+      w -= step;
+      if (Math.abs(step) <= 1e-12 * (1d + Math.abs(w))) {
+        break;
+      }
+    }
+    return w;
+  }
+
+  private double scalarGradient(double z, DoubleVector outcome) {
+    DoubleVector hypothesis = new SingleEntryDoubleVector(
+        activationFunction.apply(z));
+    return lossFunction.calculateGradient(UNIT, outcome, hypothesis).get(0);
+  }
+
   @Override
   public RegressionModel createModel(DoubleVector weights) {
     return new RegressionModel(weights, activationFunction);
@@ -0,0 +1,129 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.ml.ScoredLabel;
+import de.jungblut.online.regression.RegressionModel;
+
+/**
+ * Classifier for label trees. The classes are found by a beam search from the
+ * root: on every level only the most probable paths are expanded, so a
+ * prediction costs about beamWidth * log2(K) node evaluations instead of K.
+ * The probabilities of the classes that are not on a beam are not computed.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LabelTreeClassifier extends AbstractPredictor {
+
+  private static final Comparator<Path> BY_DESCENDING_PROBABILITY = Comparator
+      .comparingDouble((Path p) -> p.logProbability).reversed();
+
+  private final LabelTreeModel model;
+  private final int beamWidth;
+
+  /**
+   * Creates a classifier that searches with a beam width of one (greedy).
+   * 
+   * @param model the trained model.
+   */
+  public LabelTreeClassifier(LabelTreeModel model) {
+    this(model, 1);
+  }
+
+  /**
+   * @param model the trained model.
+   * @param beamWidth the number of paths that are expanded on every level.
+   */
+  public LabelTreeClassifier(LabelTreeModel model, int beamWidth) {
+    this.model = Preconditions.checkNotNull(model, "model");
+    Preconditions.checkArgument(beamWidth > 0, "beamWidth > 0, given: "
+        + beamWidth);
+    this.beamWidth = beamWidth;
+  }
+
+  /**
+   * @return a sparse vector with the probabilities of the classes on the beam.
+   */
+  @Override
+  public DoubleVector predict(DoubleVector feature) {
+    DoubleVector result = new SparseDoubleVector(model.getNumClasses());
+    for (ScoredLabel label : predictTopK(feature, beamWidth)) {
+      result.set(label.getLabel(), label.getScore());
+    }
+    return result;
+  }
+
+  /**
+   * Predicts the k most probable classes by a beam search with a beam width of
+   * max(k, beamWidth).
+   * 
+   * @param feature the feature.
+   * @param k the number of classes to return.
+   * @return at most k classes with their probability, the most probable first.
+   */
+  public List<ScoredLabel> predictTopK(DoubleVector feature, int k) {
+    Preconditions.checkArgument(k > 0, "k > 0, given: " + k);
+    int width = Math.max(k, beamWidth);
+    RegressionModel[] nodes = model.getNodes();
+
+    List<Path> beam = new ArrayList<>();
+    beam.add(new Path(0, 0, model.getNumClasses(), 0d));
+    boolean expanded = true;
+    while (expanded) {
+      expanded = false;
+      List<Path> next = new ArrayList<>(beam.size() * 2);
+      for (Path path : beam) {
+        if (path.hi - path.lo == 1) {
+          next.add(path);
+          continue;
+        }
+        expanded = true;
+        RegressionModel node = nodes[path.node];
+        double right = node.getActivationFunction().apply(
+            feature.dot(node.getWeights()));
+        int mid = LabelTreeModel.middle(path.lo, path.hi);
+        next.add(new Path(path.node + 1, path.lo, mid, path.logProbability
+            + Math.log1p(-right)));
+        next.add(new Path(LabelTreeModel.rightChild(path.node, path.lo, mid),
+            mid, path.hi, path.logProbability + Math.log(right)));
+      }
+      if (next.size() > width) {
+        next.sort(BY_DESCENDING_PROBABILITY);
+        next = new ArrayList<>(next.subList(0, width));
+      }
+      beam = next;
+    }
+
+    beam.sort(BY_DESCENDING_PROBABILITY);
+    List<ScoredLabel> result = new ArrayList<>(Math.min(k, beam.size()));
+    for (int i = 0; i < beam.size() && i < k; i++) {
+      Path path = beam.get(i);
+      result.add(new ScoredLabel(path.lo, Math.exp(path.logProbability)));
+    }
+    return result;
+  }
+
+  // a partial path from the root to the node that covers [lo, hi)
+  private static final class Path {
+    private final int node;
+    private final int lo;
+    private final int hi;
+    private final double logProbability;
+
+    private Path(int node, int lo, int hi, double logProbability) {
+      this.node = node;
+      this.lo = lo;
+      this.hi = hi;
+      this.logProbability = logProbability;
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.loss.LossFunction;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.minimizer.StochasticCostFunction;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.ml.AbstractOnlineLearner;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.regression.RegressionModel;
+import de.jungblut.online.regression.multinomial.MultinomialRegressionLearner.SharedExample;
+
+/**
+ * A learner for many classes that arranges the classes in a balanced binary
+ * label tree (see {@link LabelTreeModel}) and learns a binary regression model
+ * for every inner node. An example only updates the nodes on the path of its
+ * class label, so training costs about log2(K) binary updates per example
+ * instead of K for the one-vs-all {@link MultinomialRegressionLearner}. The
+ * data is read once per pass for all nodes.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LabelTreeLearner extends AbstractOnlineLearner<LabelTreeModel> {
+
+  private static final Logger LOG = LogManager
+      .getLogger(LabelTreeLearner.class);
+
+  private final IntFunction<StochasticGradientDescent> minimizerFactory;
+  private final ActivationFunction activationFunction;
+  private final LossFunction lossFunction;
+
+  private int numPasses = 1;
+  private boolean sparseWeights;
+
+  /**
+   * Creates a new label tree learner.
+   * 
+   * @param minimizerFactory creates a new minimizer for every inner node, the
+   *          minimizers (and their weight updaters) must not be shared.
+   * @param activationFunction the activation function of the node models.
+   * @param lossFunction the loss function of the node models.
+   */
+  public LabelTreeLearner(
+      IntFunction<StochasticGradientDescent> minimizerFactory,
+      ActivationFunction activationFunction, LossFunction lossFunction) {
+    this.minimizerFactory = Preconditions.checkNotNull(minimizerFactory,
+        "minimizerFactory");
+    this.activationFunction = Preconditions.checkNotNull(activationFunction,
+        "activation function");
+    this.lossFunction = Preconditions.checkNotNull(lossFunction,
+        "loss function");
+  }
+
+  @Override
+  public LabelTreeModel train(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+
+    init(streamSupplier);
+
+    int numNodes = numOutcomeClasses - 1;
+    StochasticGradientDescent[] minimizers = new StochasticGradientDescent[numNodes];
+    Set<StochasticGradientDescent> distinct = Collections
+        .newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < numNodes; i++) {
+      minimizers[i] = Preconditions.checkNotNull(minimizerFactory.apply(i),
+          "minimizer for node " + i);
+      Preconditions.checkArgument(distinct.add(minimizers[i]),
+          "minimizers can't be shared between nodes, node " + i);
+      minimizers[i].startMinimization(sparseWeights ? new SequentialSparseDoubleVector(
+          featureDimension) : new DenseDoubleVector(featureDimension));
+    }
+
+    // the label of the shared example is the direction at the current node
+    SharedExample current = new SharedExample();
+    StochasticCostFunction costFunction = (next, weights) -> MultinomialRegressionLearner
+        .observeBinary(current, 1, weights, activationFunction, lossFunction);
+
+    boolean[] active = new boolean[numNodes];
+    int numActive = numNodes;
+    Arrays.fill(active, true);
+    for (int pass = 0; pass < numPasses && numActive > 0; pass++) {
+      for (int i = 0; i < numNodes; i++) {
+        if (active[i]) {
+          minimizers[i].startPass();
+        }
+      }
+
+      final int passFinal = pass;
+      streamSupplier.get().forEach((next) -> {
+        DoubleVector feature = MultinomialRegressionLearner
+            .prepareFeature(next);
+        int label = LabeledFeatureOutcomePair.labelOf(next);
+        Preconditions.checkArgument(label >= 0 && label < numOutcomeClasses,
+            "label must be in [0, " + numOutcomeClasses + "), given: " + label);
+        synchronized (current) {
+          current.feature = feature;
+          int node = 0;
+          int lo = 0;
+          int hi = numOutcomeClasses;
+          while (hi - lo > 1) {
+            int mid = LabelTreeModel.middle(lo, hi);
+            boolean right = label >= mid;
+            if (active[node]) {
+              current.label = right ? 1 : 0;
+              minimizers[node].step(passFinal, next, costFunction, false);
+            }
+            if (right) {
+              node = LabelTreeModel.rightChild(node, lo, mid);
+              lo = mid;
+            } else {
+              node++;
+              hi = mid;
+            }
+          }
+        }
+      });
+
+      for (int i = 0; i < numNodes; i++) {
+        if (active[i] && !minimizers[i].finishPass(pass, false)) {
+          active[i] = false;
+          numActive--;
+        }
+      }
+
+      if (verbose) {
+        LOG.info("Finished pass " + pass + ", " + numActive + " of "
+            + numNodes + " nodes are still learning.");
+      }
+    }
+
+    RegressionModel[] nodes = new RegressionModel[numNodes];
+    for (int i = 0; i < numNodes; i++) {
+      nodes[i] = new RegressionModel(minimizers[i].getTheta(),
+          activationFunction);
+    }
+    return new LabelTreeModel(numOutcomeClasses, nodes);
+  }
+
+  /**
+   * Starts the node weights as sparse vectors, which saves memory for many
+   * classes and sparse features.
+   */
+  public void useSparseWeights() {
+    sparseWeights = true;
+  }
+
+  public void setNumPasses(int passes) {
+    Preconditions
+        .checkArgument(passes > 0,
+            "Iterative algorithms need at least a single pass. Supplied: "
+                + passes);
+    this.numPasses = passes;
+  }
+
+}
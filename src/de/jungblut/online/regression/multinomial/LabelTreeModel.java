@@ -0,0 +1,90 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.online.ml.Model;
+import de.jungblut.online.regression.RegressionModel;
+
+/**
+ * Model of a balanced binary label tree. A node covers a range of class labels
+ * [lo, hi) and splits it in the middle, the leaves are the single classes. Each
+ * of the K - 1 inner nodes holds a binary regression model that predicts the
+ * probability of descending into the right half of its range. The probability
+ * of a class is the product of the decisions on its path from the root, which
+ * has a length of about log2(K).
+ * 
+ * The inner nodes are stored in pre-order: the root is at index zero, the left
+ * child of node i covering [lo, hi) is at i + 1 and the right child at i + (mid
+ * - lo) with mid = (lo + hi) / 2.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LabelTreeModel implements Model {
+
+  private int numClasses;
+  private RegressionModel[] nodes;
+
+  // deserialization constructor
+  public LabelTreeModel() {
+  }
+
+  /**
+   * @param numClasses the number of classes.
+   * @param nodes the models of the numClasses - 1 inner nodes in pre-order.
+   */
+  public LabelTreeModel(int numClasses, RegressionModel[] nodes) {
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    this.nodes = Preconditions.checkNotNull(nodes, "nodes");
+    Preconditions.checkArgument(nodes.length == numClasses - 1,
+        "a tree of " + numClasses + " classes has " + (numClasses - 1)
+            + " inner nodes, given " + nodes.length);
+    for (int i = 0; i < nodes.length; i++) {
+      Preconditions.checkNotNull(nodes[i], "model at index " + i);
+    }
+    this.numClasses = numClasses;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(numClasses);
+    for (RegressionModel node : nodes) {
+      node.serialize(out);
+    }
+  }
+
+  @Override
+  public LabelTreeModel deserialize(DataInput in) throws IOException {
+    numClasses = in.readInt();
+    nodes = new RegressionModel[numClasses - 1];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new RegressionModel().deserialize(in);
+    }
+    return this;
+  }
+
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /**
+   * @return the models of the inner nodes in pre-order.
+   */
+  public RegressionModel[] getNodes() {
+    return nodes;
+  }
+
+  static int middle(int lo, int hi) {
+    return (lo + hi) >>> 1;
+  }
+
+  static int rightChild(int node, int lo, int mid) {
+    return node + mid - lo;
+  }
+
+}
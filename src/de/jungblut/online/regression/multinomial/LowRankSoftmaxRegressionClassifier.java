@@ -0,0 +1,40 @@
+package de.jungblut.online.regression.multinomial;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Classifier for low-rank softmax regression. Projects the feature once into
+ * the rank dimensions and scores all classes from there.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LowRankSoftmaxRegressionClassifier extends AbstractPredictor {
+
+  private final LowRankSoftmaxRegressionModel model;
+
+  public LowRankSoftmaxRegressionClassifier(LowRankSoftmaxRegressionModel model) {
+    this.model = Preconditions.checkNotNull(model, "model");
+  }
+
+  @Override
+  public DoubleVector predict(DoubleVector feature) {
+    int featureDimension = model.getFeatureDimension();
+    Preconditions.checkArgument(feature.getDimension() == featureDimension,
+        "feature dimension must match the model feature dimension! Feature: "
+            + feature.getDimension() + " != Model: " + featureDimension);
+
+    double[] projection = LowRankSoftmaxRegressionModel.project(
+        model.getWeights(), model.getRank(), feature);
+    double[] scores = LowRankSoftmaxRegressionModel.computeScores(
+        model.getWeights(), featureDimension, model.getNumClasses(),
+        projection);
+    SoftmaxRegressionModel.softmax(scores);
+    return new DenseDoubleVector(scores);
+  }
+
+}
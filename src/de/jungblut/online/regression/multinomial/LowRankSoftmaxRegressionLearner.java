@@ -0,0 +1,154 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
+import de.jungblut.online.minimizer.StochasticMinimizer;
+import de.jungblut.online.ml.AbstractMinimizingOnlineLearner;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+
+/**
+ * A softmax regression learner whose weight matrix is factorized into a
+ * feature projection and class factors of a configurable rank (see
+ * {@link LowRankSoftmaxRegressionModel}). It needs (d + K) * r weights instead
+ * of K * d like the {@link SoftmaxRegressionLearner}, so it fits problems with
+ * many classes and features.
+ * 
+ * Both factors are learned jointly with the cross entropy cost in a single
+ * minimization. The projection starts at zero and the class factors randomly,
+ * which breaks the symmetry of the factorization. The gradient of an example
+ * has entries for the projection of its non-zero features and for all class
+ * factors. Like for the softmax regression, weight updaters that compute
+ * weights lazily by the feature indices (e.g. FTRL) can't be used and are
+ * rejected by the constructor. The bias feature is projected like any other
+ * feature, thus regularizers have to regularize all weights (no bias
+ * weights), otherwise they are rejected as well.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LowRankSoftmaxRegressionLearner extends
+    AbstractMinimizingOnlineLearner<LowRankSoftmaxRegressionModel> {
+
+  private final int rank;
+
+  /**
+   * @param minimizer the minimizer to use.
+   * @param rank the rank of the factorization.
+   */
+  public LowRankSoftmaxRegressionLearner(StochasticMinimizer minimizer,
+      int rank) {
+    super(SoftmaxRegressionLearner.checkWeightUpdater(minimizer));
+    // the first weights are the projection of the bias feature, which can't
+    // be excluded from the regularization separately
+    SoftmaxRegressionLearner.checkBiasWeights(minimizer, 0);
+    Preconditions.checkArgument(rank > 0, "rank > 0, given: " + rank);
+    this.rank = rank;
+  }
+
+  @Override
+  public LowRankSoftmaxRegressionModel train(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+
+    init(streamSupplier);
+
+    long dimension = ((long) featureDimension + numOutcomeClasses) * rank;
+    Preconditions.checkArgument(dimension <= Integer.MAX_VALUE, "the factors "
+        + "of " + numOutcomeClasses + " classes and " + featureDimension
+        + " features with rank " + rank + " don't fit into a vector");
+
+    DoubleVector weights = initialize((int) dimension);
+    DoubleVector minimized = minimizer.minimize(weights, streamSupplier,
+        this::observeExampleSafe, numPasses, verbose);
+
+    return createModel(minimized);
+  }
+
+  private DoubleVector initialize(int dimension) {
+    DoubleVector weights = sparseWeights ? new SequentialSparseDoubleVector(
+        dimension) : new DenseDoubleVector(dimension);
+    double scale = 1d / Math.sqrt(rank);
+    for (int i = featureDimension * rank; i < dimension; i++) {
+      weights.set(i, random.nextGaussian() * scale);
+    }
+    return weights;
+  }
+
+  @Override
+  protected CostGradientTuple observeExampleSafe(FeatureOutcomePair next,
+      DoubleVector weights) {
+    int dimension = (featureDimension + numOutcomeClasses) * rank;
+    Preconditions.checkArgument(weights.getDimension() == dimension,
+        "Weight dimension must match the packed factor dimension! Expected: "
+            + dimension + ", given " + weights.getDimension());
+    Preconditions.checkArgument(featureDimension == next.getFeature()
+        .getDimension(),
+        "Feature dimension must match the initially set dimension! Expected: "
+            + featureDimension + ", given " + next.getFeature().getDimension());
+    int label = LabeledFeatureOutcomePair.labelOf(next);
+    Preconditions.checkArgument(label >= 0 && label < numOutcomeClasses,
+        "label must be in [0, " + numOutcomeClasses + "), given: " + label);
+    return observeExample(next, weights);
+  }
+
+  @Override
+  protected CostGradientTuple observeExample(FeatureOutcomePair next,
+      DoubleVector weights) {
+    DoubleVector feature = next.getFeature();
+    if (next instanceof NamespacedFeatureOutcomePair) {
+      // the crosses are enumerated lazily for the projection and the gradient
+      feature = ((NamespacedFeatureOutcomePair) next).getCrossedFeature();
+    }
+    int label = LabeledFeatureOutcomePair.labelOf(next);
+
+    double[] projection = LowRankSoftmaxRegressionModel.project(weights, rank,
+        feature);
+    double[] probabilities = LowRankSoftmaxRegressionModel.computeScores(
+        weights, featureDimension, numOutcomeClasses, projection);
+    SoftmaxRegressionModel.softmax(probabilities);
+    double cost = -Math.log(Math.max(probabilities[label], Double.MIN_NORMAL));
+
+    // the gradient of the scores is the prediction minus the one-hot label
+    probabilities[label] -= 1d;
+    DoubleVector gradient = feature.isSparse() ? new SparseDoubleVector(
+        weights.getDimension()) : new DenseDoubleVector(weights.getDimension());
+
+    // the class factors are scaled by the projection, which in turn gets the
+    // class factors scaled by their score gradient
+    double[] projectionGradient = new double[rank];
+    for (int k = 0; k < numOutcomeClasses; k++) {
+      int offset = (featureDimension + k) * rank;
+      for (int c = 0; c < rank; c++) {
+        gradient.set(offset + c, probabilities[k] * projection[c]);
+      }
+      LowRankSoftmaxRegressionModel.addScaled(weights, offset,
+          probabilities[k], projectionGradient);
+    }
+
+    // colliding crosses add up
+    CrossedFeatureVector.forEachNonZero(feature, (index, value) -> {
+      int offset = index * rank;
+      for (int c = 0; c < rank; c++) {
+        gradient.set(offset + c, gradient.get(offset + c) + value
+            * projectionGradient[c]);
+      }
+    });
+    return new CostGradientTuple(cost, gradient);
+  }
+
+  @Override
+  protected LowRankSoftmaxRegressionModel createModel(DoubleVector weights) {
+    return new LowRankSoftmaxRegressionModel(weights, numOutcomeClasses, rank);
+  }
+
+}
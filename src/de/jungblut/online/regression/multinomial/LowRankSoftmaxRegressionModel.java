@@ -0,0 +1,152 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.ml.Model;
+import de.jungblut.writable.VectorWritable;
+
+/**
+ * Model of a softmax regression whose K x d weight matrix is factorized as W =
+ * U * V^T with a rank r: V (d x r) projects a feature into r dimensions and U
+ * (K x r) scores all classes from the projection. Thus the model only has (d +
+ * K) * r weights and a prediction costs nnz(x) * r + K * r operations.
+ * 
+ * Both factors are packed into a single vector row by row, V first: the
+ * projection weights of feature j are at [j * r, (j + 1) * r) and the weights
+ * of class k at [(d + k) * r, (d + k + 1) * r).
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class LowRankSoftmaxRegressionModel implements Model {
+
+  private DoubleVector weights;
+  private int numClasses;
+  private int rank;
+
+  // deserialization constructor
+  public LowRankSoftmaxRegressionModel() {
+  }
+
+  /**
+   * @param weights the packed factors, see the class documentation.
+   * @param numClasses the number of classes.
+   * @param rank the rank of the factorization.
+   */
+  public LowRankSoftmaxRegressionModel(DoubleVector weights, int numClasses,
+      int rank) {
+    this.weights = Preconditions.checkNotNull(weights, "weights");
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    Preconditions.checkArgument(rank > 0, "rank > 0, given: " + rank);
+    Preconditions.checkArgument(weights.getDimension() % rank == 0
+        && weights.getDimension() / rank > numClasses, "weight dimension "
+        + weights.getDimension() + " doesn't fit " + numClasses
+        + " classes with rank " + rank);
+    this.numClasses = numClasses;
+    this.rank = rank;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(numClasses);
+    out.writeInt(rank);
+    VectorWritable.writeVector(weights, out);
+  }
+
+  @Override
+  public LowRankSoftmaxRegressionModel deserialize(DataInput in)
+      throws IOException {
+    numClasses = in.readInt();
+    rank = in.readInt();
+    weights = VectorWritable.readVector(in);
+    return this;
+  }
+
+  /**
+   * @return the packed factors.
+   */
+  public DoubleVector getWeights() {
+    return weights;
+  }
+
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  public int getRank() {
+    return rank;
+  }
+
+  public int getFeatureDimension() {
+    return weights.getDimension() / rank - numClasses;
+  }
+
+  /**
+   * Projects the feature into the rank dimensions with one pass over its
+   * non-zeros, crosses of a {@link CrossedFeatureVector} are enumerated
+   * lazily.
+   * 
+   * @param weights the packed factors.
+   * @param rank the rank of the factorization.
+   * @param feature the feature.
+   * @return the projection of the feature.
+   */
+  static double[] project(DoubleVector weights, int rank, DoubleVector feature) {
+    double[] projection = new double[rank];
+    CrossedFeatureVector.forEachNonZero(feature,
+        (index, value) -> addScaled(weights, index * rank, value, projection));
+    return projection;
+  }
+
+  /**
+   * Scores all classes from the projection of a feature.
+   * 
+   * @param weights the packed factors.
+   * @param featureDimension the dimension of the features.
+   * @param numClasses the number of classes.
+   * @param projection the projected feature.
+   * @return an array with the score of every class.
+   */
+  static double[] computeScores(DoubleVector weights, int featureDimension,
+      int numClasses, double[] projection) {
+    int rank = projection.length;
+    double[] scores = new double[numClasses];
+    double[] array = weights instanceof DenseDoubleVector ? weights.toArray()
+        : null;
+    for (int k = 0; k < numClasses; k++) {
+      int offset = (featureDimension + k) * rank;
+      double score = 0d;
+      for (int c = 0; c < rank; c++) {
+        score += projection[c]
+            * (array != null ? array[offset + c] : weights.get(offset + c));
+      }
+      scores[k] = score;
+    }
+    return scores;
+  }
+
+  // adds the scaled rank weights at the offset to the target
+  static void addScaled(DoubleVector weights, int offset, double scale,
+      double[] target) {
+    if (weights instanceof DenseDoubleVector) {
+      // the backing array of dense vectors is not copied
+      double[] array = weights.toArray();
+      for (int c = 0; c < target.length; c++) {
+        target[c] += scale * array[offset + c];
+      }
+    } else {
+      for (int c = 0; c < target.length; c++) {
+        target[c] += scale * weights.get(offset + c);
+      }
+    }
+  }
+
+}
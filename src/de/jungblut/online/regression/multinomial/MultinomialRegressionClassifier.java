@@ -1,21 +1,53 @@
 package de.jungblut.online.regression.multinomial;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import com.google.common.base.Preconditions;
 
 import de.jungblut.classification.AbstractPredictor;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.activation.ActivationFunction;
 import de.jungblut.math.dense.DenseDoubleVector;
-import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.ml.ScoredLabel;
+import de.jungblut.online.regression.RegressionModel;
 
 /**
  * Classifier for multinomial regression.
  * 
+ * The weights of the binary models are compiled into a single matrix that is
+ * packed feature by feature, so the weights of all classes for a feature are
+ * adjacent. A prediction then accumulates the scores of all classes in one pass
+ * over the non-zeros of the feature. Dense weights are packed into a dense
+ * matrix, sparse weights (e.g. of hashed features) into a compressed one that
+ * only stores the non-zero weights of every feature, so packing never needs
+ * more memory than the weights themselves. Models that exceed the maximum
+ * array size are scored model by model.
+ * 
  * @author thomas.jungblut
  *
  */
 public class MultinomialRegressionClassifier extends AbstractPredictor {
 
-  private final RegressionClassifier[] classifier;
+  private static final int MAX_PACKED_SIZE = Integer.MAX_VALUE - 8;
+
+  private final int numClasses;
+  private final int featureDimension;
+  private final ActivationFunction[] activations;
+  private final double[] logitOffsets;
+  // feature-major dense weights, null if the weights are sparse or too large
+  private final double[] packedWeights;
+  // feature-major sparse weights: the sorted features with non-zero weights,
+  // the start of their weights and the classes and values of the weights
+  private final int[] sparseFeatures;
+  private final int[] sparseOffsets;
+  private final int[] sparseClasses;
+  private final double[] sparseWeights;
+  // the weights of the models, null if they are packed
+  private final DoubleVector[] weights;
+  private final ThreadLocal<double[]> buffer;
   private boolean normalize;
 
   /**
@@ -41,33 +73,193 @@ public class MultinomialRegressionClassifier extends AbstractPredictor {
       boolean normalize) {
     this.normalize = normalize;
     Preconditions.checkNotNull(model, "model");
-    this.classifier = new RegressionClassifier[model.getModels().length];
-    for (int i = 0; i < model.getModels().length; i++) {
-      classifier[i] = new RegressionClassifier(model.getModels()[i]);
+    RegressionModel[] models = model.getModels();
+    this.numClasses = models.length;
+    Preconditions.checkArgument(numClasses > 0, "model has no classes");
+    this.featureDimension = models[0].getWeights().getDimension();
+    this.activations = new ActivationFunction[numClasses];
+    DoubleVector[] weights = new DoubleVector[numClasses];
+    boolean dense = true;
+    for (int i = 0; i < numClasses; i++) {
+      weights[i] = models[i].getWeights();
+      dense &= !weights[i].isSparse();
+      activations[i] = models[i].getActivationFunction();
+      Preconditions.checkArgument(
+          weights[i].getDimension() == featureDimension,
+          "all models must have the same dimension! Expected "
+              + featureDimension + ", model " + i + " has "
+              + weights[i].getDimension());
+    }
+    // the offsets correct models that were trained on sampled negatives
+    this.logitOffsets = model.getLogitOffsets() != null ? model
+        .getLogitOffsets() : new double[numClasses];
+    long packedSize = (long) featureDimension * numClasses;
+    if (dense && packedSize <= MAX_PACKED_SIZE) {
+      this.packedWeights = pack(weights, featureDimension);
+      this.sparseFeatures = null;
+      this.sparseOffsets = null;
+      this.sparseClasses = null;
+      this.sparseWeights = null;
+      this.weights = null;
+    } else if (!dense && countNonZeros(weights) <= MAX_PACKED_SIZE) {
+      this.packedWeights = null;
+      // the (feature, class) pairs of the non-zero weights
+      long[] entries = sortedEntries(weights);
+      int numFeatures = 0;
+      for (int i = 0; i < entries.length; i++) {
+        if (i == 0 || feature(entries[i]) != feature(entries[i - 1])) {
+          numFeatures++;
+        }
+      }
+      this.sparseFeatures = new int[numFeatures];
+      this.sparseOffsets = new int[numFeatures + 1];
+      this.sparseClasses = new int[entries.length];
+      this.sparseWeights = new double[entries.length];
+      int f = -1;
+      for (int i = 0; i < entries.length; i++) {
+        int featureIndex = feature(entries[i]);
+        if (f < 0 || sparseFeatures[f] != featureIndex) {
+          sparseFeatures[++f] = featureIndex;
+          sparseOffsets[f] = i;
+        }
+        int k = (int) entries[i];
+        sparseClasses[i] = k;
+        sparseWeights[i] = weights[k].get(featureIndex);
+      }
+      sparseOffsets[numFeatures] = entries.length;
+      this.weights = null;
+    } else {
+      this.packedWeights = null;
+      this.sparseFeatures = null;
+      this.sparseOffsets = null;
+      this.sparseClasses = null;
+      this.sparseWeights = null;
+      this.weights = weights;
+    }
+    this.buffer = ThreadLocal.withInitial(() -> new double[numClasses]);
+  }
+
+  private static double[] pack(DoubleVector[] weights, int featureDimension) {
+    int numClasses = weights.length;
+    double[] packed = new double[featureDimension * numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      Iterator<DoubleVectorElement> iterateNonZero = weights[k]
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        packed[next.getIndex() * numClasses + k] = next.getValue();
+      }
     }
+    return packed;
+  }
+
+  private static long countNonZeros(DoubleVector[] weights) {
+    long nonZeros = 0;
+    for (DoubleVector weight : weights) {
+      nonZeros += weight.getLength();
+    }
+    return nonZeros;
+  }
+
+  /**
+   * @return the non-zero weights as (feature, class) pairs in a long, sorted
+   *         by feature and class.
+   */
+  private static long[] sortedEntries(DoubleVector[] weights) {
+    long[] entries = new long[(int) countNonZeros(weights)];
+    int length = 0;
+    for (int k = 0; k < weights.length; k++) {
+      Iterator<DoubleVectorElement> iterateNonZero = weights[k]
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (next.getValue() != 0d) {
+          entries[length++] = ((long) next.getIndex() << 32) | k;
+        }
+      }
+    }
+    entries = Arrays.copyOf(entries, length);
+    Arrays.sort(entries);
+    return entries;
+  }
+
+  private static int feature(long entry) {
+    return (int) (entry >>> 32);
   }
 
   @Override
   public DoubleVector predict(DoubleVector feature) {
+    DoubleVector mesh = new DenseDoubleVector(numClasses);
+    // the scores are accumulated in the backing array of the result
+    score(feature, mesh.toArray());
+    return mesh;
+  }
+
+  /**
+   * Predicts the k classes with the highest (normalized) scores.
+   * 
+   * @param feature the feature.
+   * @param k the number of classes to return.
+   * @return at most k classes with their scores, the highest first.
+   */
+  public List<ScoredLabel> predictTopK(DoubleVector feature, int k) {
+    double[] scores = buffer.get();
+    Arrays.fill(scores, 0d);
+    score(feature, scores);
+    return ScoredLabel.topK(scores, k);
+  }
+
+  private void score(DoubleVector feature, double[] scores) {
+    Preconditions.checkArgument(feature.getDimension() == featureDimension,
+        "feature dimension must match model weight dimension! Feature: "
+            + feature.getDimension() + " != Model: " + featureDimension);
+
+    if (weights != null) {
+      for (int k = 0; k < numClasses; k++) {
+        scores[k] = feature.dot(weights[k]);
+      }
+    } else if (feature instanceof DenseDoubleVector) {
+      double[] array = feature.toArray();
+      for (int j = 0; j < array.length; j++) {
+        if (array[j] != 0d) {
+          accumulate(j, array[j], scores);
+        }
+      }
+    } else {
+      Iterator<DoubleVectorElement> iterateNonZero = feature.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        accumulate(next.getIndex(), next.getValue(), scores);
+      }
+    }
 
-    DoubleVector mesh = new DenseDoubleVector(classifier.length);
-    for (int i = 0; i < classifier.length; i++) {
-      RegressionClassifier clf = classifier[i];
-      DoubleVector prediction = clf.predict(feature);
-      Preconditions.checkArgument(prediction.getDimension() == 1,
-          "Prediction only works for a single dimensional output! Given "
-              + prediction.getDimension());
-      mesh.set(i, prediction.get(0));
+    double sum = 0d;
+    for (int k = 0; k < numClasses; k++) {
+      scores[k] = activations[k].apply(scores[k] + logitOffsets[k]);
+      sum += scores[k];
     }
 
-    if (normalize) {
-      double sum = mesh.sum();
-      if (sum != 0d) {
-        mesh = mesh.divide(sum);
+    if (normalize && sum != 0d) {
+      for (int k = 0; k < numClasses; k++) {
+        scores[k] /= sum;
       }
     }
+  }
 
-    return mesh;
+  private void accumulate(int featureIndex, double value, double[] scores) {
+    if (packedWeights != null) {
+      int offset = featureIndex * numClasses;
+      for (int k = 0; k < numClasses; k++) {
+        scores[k] += value * packedWeights[offset + k];
+      }
+      return;
+    }
+    int f = Arrays.binarySearch(sparseFeatures, featureIndex);
+    if (f >= 0) {
+      for (int i = sparseOffsets[f]; i < sparseOffsets[f + 1]; i++) {
+        scores[sparseClasses[i]] += value * sparseWeights[i];
+      }
+    }
   }
 
 }
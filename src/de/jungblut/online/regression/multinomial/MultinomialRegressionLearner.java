@@ -1,5 +1,11 @@
 package de.jungblut.online.regression.multinomial;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
@@ -11,19 +17,39 @@ import org.apache.logging.log4j.Logger;
 import com.google.common.base.Preconditions;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.dense.SingleEntryDoubleVector;
 import de.jungblut.math.loss.LossFunction;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.minimizer.StochasticCostFunction;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
 import de.jungblut.online.minimizer.StochasticMinimizer;
 import de.jungblut.online.ml.AbstractOnlineLearner;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
 import de.jungblut.online.regression.RegressionLearner;
 import de.jungblut.online.regression.RegressionModel;
 
 /**
  * A regression learner that learns multiple independent regression models and
- * blends them into a single model.
- * 
+ * blends them into a single model. The examples are labeled by their class
+ * label (see {@link LabeledFeatureOutcomePair#labelOf(FeatureOutcomePair)}),
+ * their weights are kept for every binary model.
+ *
+ * By default every class is trained by its own {@link RegressionLearner} on its
+ * own streams, thus the data is read once per class and pass. The
+ * {@link #singlePass(IntFunction, ActivationFunction, LossFunction, int)} mode
+ * reads every example once per pass and updates all binary models from it.
+ * With {@link #useNegativeSampling(int, NegativeSampling)} it only updates the
+ * model of the example's class and a few sampled negative classes.
+ *
  * @author thomas.jungblut
  *
  */
@@ -39,19 +65,154 @@ public class MultinomialRegressionLearner extends
       0d);
 
   private final IntFunction<RegressionLearner> learnerFactory;
+  // the learners share a minimizer, so they can't be trained in parallel
+  private final boolean sharedMinimizer;
+
+  // single pass mode
+  private final IntFunction<StochasticGradientDescent> minimizerFactory;
+  private final ActivationFunction activationFunction;
+  private final LossFunction lossFunction;
+  private final int numPasses;
+
+  private int numNegatives;
+  private NegativeSampling negativeSampling;
+  private boolean sparseWeights;
+  private Random random = new Random();
 
   private RegressionModel[] trainedModels;
 
+  /**
+   * The distribution the negative classes are drawn from.
+   */
+  public enum NegativeSampling {
+    /**
+     * Every class is drawn with the same probability.
+     */
+    UNIFORM,
+    /**
+     * Classes are drawn by their (add-one smoothed) frequency in the data,
+     * which is counted in an additional pass before the training.
+     */
+    CLASS_FREQUENCY
+  }
+
+  /**
+   * Creates a new learner whose binary models are trained one after another
+   * with the given minimizer, since its state can't be shared concurrently.
+   * Stateful weight updaters (e.g. FTRL) need a minimizer per class, see
+   * {@link #MultinomialRegressionLearner(IntFunction)}.
+   * <p>
+   * Note that earlier versions trained the classes of this constructor in
+   * parallel on the shared minimizer. Training is now sequential, which is
+   * about K times slower for K classes; use the factory constructor with an
+   * independent minimizer per class to train them in parallel again.
+   */
   public MultinomialRegressionLearner(StochasticMinimizer minimizer,
       ActivationFunction activationFunction, LossFunction lossFunction) {
     this((i) -> new RegressionLearner(minimizer, activationFunction,
-        lossFunction));
+        lossFunction), true);
   }
 
+  /**
+   * Creates a new learner whose binary models are trained in parallel.
+   *
+   * @param learnerFactory creates an independent learner for every class.
+   */
   public MultinomialRegressionLearner(
       IntFunction<RegressionLearner> learnerFactory) {
+    this(learnerFactory, false);
+  }
+
+  private MultinomialRegressionLearner(
+      IntFunction<RegressionLearner> learnerFactory, boolean sharedMinimizer) {
     this.learnerFactory = Preconditions.checkNotNull(learnerFactory,
         "learnerFactory");
+    this.sharedMinimizer = sharedMinimizer;
+    this.minimizerFactory = null;
+    this.activationFunction = null;
+    this.lossFunction = null;
+    this.numPasses = 0;
+  }
+
+  private MultinomialRegressionLearner(
+      IntFunction<StochasticGradientDescent> minimizerFactory,
+      ActivationFunction activationFunction, LossFunction lossFunction,
+      int numPasses) {
+    Preconditions.checkArgument(numPasses > 0,
+        "Iterative algorithms need at least a single pass. Supplied: "
+            + numPasses);
+    this.minimizerFactory = Preconditions.checkNotNull(minimizerFactory,
+        "minimizerFactory");
+    this.activationFunction = Preconditions.checkNotNull(activationFunction,
+        "activation function");
+    this.lossFunction = Preconditions.checkNotNull(lossFunction,
+        "loss function");
+    this.numPasses = numPasses;
+    this.learnerFactory = null;
+    this.sharedMinimizer = false;
+  }
+
+  /**
+   * Creates a new learner that reads every example once per pass and updates
+   * the binary models of all classes from it. The feature of an example is
+   * prepared once for all classes (sorted sparse, crosses stay lazy), the
+   * weights of every class start at zero.
+   *
+   * @param minimizerFactory creates a new minimizer for every class, the
+   *          minimizers (and their weight updaters) must not be shared.
+   * @param activationFunction the activation function of the binary models.
+   * @param lossFunction the loss function of the binary models.
+   * @param numPasses the number of passes over the data.
+   * @return a new single pass learner.
+   */
+  public static MultinomialRegressionLearner singlePass(
+      IntFunction<StochasticGradientDescent> minimizerFactory,
+      ActivationFunction activationFunction, LossFunction lossFunction,
+      int numPasses) {
+    return new MultinomialRegressionLearner(minimizerFactory,
+        activationFunction, lossFunction, numPasses);
+  }
+
+  /**
+   * Updates the model of the example's class and numNegatives draws of
+   * negative classes per example, instead of the models of all classes. This
+   * is only supported in the single pass mode.
+   *
+   * The classes are drawn with replacement from the given distribution, draws
+   * of the example's own class are skipped. A class k is thus updated as a
+   * negative numNegatives * p(k) times per example in expectation, which
+   * shifts its learned log-odds by log(numNegatives * p(k)). The trained model
+   * adds that shift back to the logits at prediction time, which assumes an
+   * activation function of the log-odds like the sigmoid.
+   *
+   * @param numNegatives the number of negative classes to draw per example.
+   * @param sampling the distribution to draw the negative classes from.
+   */
+  public void useNegativeSampling(int numNegatives, NegativeSampling sampling) {
+    Preconditions.checkState(minimizerFactory != null,
+        "negative sampling is only supported in the single pass mode");
+    Preconditions.checkArgument(numNegatives > 0, "numNegatives > 0, given: "
+        + numNegatives);
+    this.numNegatives = numNegatives;
+    this.negativeSampling = Preconditions.checkNotNull(sampling, "sampling");
+  }
+
+  /**
+   * Starts the weights of every class as sparse vectors in the single pass
+   * mode, which saves memory for many classes and sparse features. Otherwise
+   * the learners of the classes are configured by their factory (see
+   * {@link RegressionLearner#useSparseWeights()}).
+   */
+  public void useSparseWeights() {
+    Preconditions.checkState(minimizerFactory != null,
+        "sparse weights are configured by the learner factory outside of the "
+            + "single pass mode");
+    sparseWeights = true;
+  }
+
+  public void setRandom(Random random) {
+    this.random = Preconditions.checkNotNull(random,
+        "Supplied random was null!");
   }
 
   @Override
@@ -60,39 +221,243 @@ public class MultinomialRegressionLearner extends
 
     init(streamSupplier);
 
+    if (minimizerFactory != null) {
+      return trainSinglePass(streamSupplier);
+    }
+
     trainedModels = new RegressionModel[numOutcomeClasses];
 
     // train the models in parallel
-    IntStream
-        .range(0, numOutcomeClasses)
-        .parallel()
-        .forEach(
-            i -> {
-              if (verbose) {
-                LOG.info("Training class " + i);
-              }
+    IntStream classes = IntStream.range(0, numOutcomeClasses);
+    if (!sharedMinimizer) {
+      classes = classes.parallel();
+    }
+    classes.forEach(i -> {
+      if (verbose) {
+        LOG.info("Training class " + i);
+      }
 
-              RegressionLearner learner = learnerFactory.apply(i);
+      RegressionLearner learner = learnerFactory.apply(i);
 
-              final int k = i;
-              trainedModels[i] = learner.train(() -> streamSupplier.get().map(
-                  (pair) -> makeBinary(pair, k)));
+      final int k = i;
+      trainedModels[i] = learner.train(() -> streamSupplier.get().map(
+          (pair) -> makeBinary(pair, k)));
 
-              if (verbose) {
-                LOG.info("Done training class " + i);
+      if (verbose) {
+        LOG.info("Done training class " + i);
+      }
+    });
+
+    return new MultinomialRegressionModel(trainedModels);
+  }
+
+  private MultinomialRegressionModel trainSinglePass(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+
+    StochasticGradientDescent[] minimizers = new StochasticGradientDescent[numOutcomeClasses];
+    StochasticCostFunction[] costFunctions = new StochasticCostFunction[numOutcomeClasses];
+    SharedExample current = new SharedExample();
+    Set<StochasticGradientDescent> distinct = Collections
+        .newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < numOutcomeClasses; i++) {
+      minimizers[i] = Preconditions.checkNotNull(minimizerFactory.apply(i),
+          "minimizer for class " + i);
+      Preconditions.checkArgument(distinct.add(minimizers[i]),
+          "minimizers can't be shared between classes, class " + i);
+      minimizers[i].startMinimization(sparseWeights
+          ? new SequentialSparseDoubleVector(featureDimension)
+          : new DenseDoubleVector(featureDimension));
+      final int k = i;
+      costFunctions[i] = (next, weights) -> observeBinary(current, k, weights,
+          activationFunction, lossFunction);
+    }
+
+    double[] logitOffsets = null;
+    double[] cumulative = null;
+    if (numNegatives > 0) {
+      double[] probabilities = negativeSampling == NegativeSampling.UNIFORM
+          ? uniformDistribution() : classFrequencies(streamSupplier);
+      logitOffsets = new double[numOutcomeClasses];
+      cumulative = new double[numOutcomeClasses];
+      for (int i = 0; i < numOutcomeClasses; i++) {
+        logitOffsets[i] = Math.log(numNegatives * probabilities[i]);
+        cumulative[i] = (i == 0 ? 0d : cumulative[i - 1]) + probabilities[i];
+      }
+    }
+    final double[] distribution = cumulative;
+
+    boolean[] active = new boolean[numOutcomeClasses];
+    int numActive = numOutcomeClasses;
+    Arrays.fill(active, true);
+    for (int pass = 0; pass < numPasses && numActive > 0; pass++) {
+      for (int i = 0; i < numOutcomeClasses; i++) {
+        if (active[i]) {
+          minimizers[i].startPass();
+        }
+      }
+
+      final int passFinal = pass;
+      streamSupplier.get().forEach((next) -> {
+        // prepared outside of the lock, so parallel streams can parse
+        DoubleVector feature = prepareFeature(next);
+        int label = LabeledFeatureOutcomePair.labelOf(next);
+        Preconditions.checkArgument(label >= 0 && label < numOutcomeClasses,
+            "label must be in [0, " + numOutcomeClasses + "), given: " + label);
+        synchronized (current) {
+          current.feature = feature;
+          current.label = label;
+          if (distribution == null) {
+            for (int i = 0; i < numOutcomeClasses; i++) {
+              if (active[i]) {
+                minimizers[i].step(passFinal, next, costFunctions[i], verbose);
               }
-            });
+            }
+          } else {
+            if (active[label]) {
+              minimizers[label].step(passFinal, next, costFunctions[label],
+                  verbose);
+            }
+            for (int i = 0; i < numNegatives; i++) {
+              int negative = sampleClass(distribution);
+              if (negative != label && active[negative]) {
+                minimizers[negative].step(passFinal, next,
+                    costFunctions[negative], verbose);
+              }
+            }
+          }
+        }
+      });
+
+      for (int i = 0; i < numOutcomeClasses; i++) {
+        if (active[i] && !minimizers[i].finishPass(pass, verbose)) {
+          active[i] = false;
+          numActive--;
+        }
+      }
+    }
 
+    trainedModels = new RegressionModel[numOutcomeClasses];
+    for (int i = 0; i < numOutcomeClasses; i++) {
+      trainedModels[i] = new RegressionModel(minimizers[i].getTheta(),
+          activationFunction);
+    }
+    if (logitOffsets != null) {
+      return new MultinomialRegressionModel(trainedModels, logitOffsets);
+    }
     return new MultinomialRegressionModel(trainedModels);
   }
 
+  private double[] uniformDistribution() {
+    double[] probabilities = new double[numOutcomeClasses];
+    Arrays.fill(probabilities, 1d / numOutcomeClasses);
+    return probabilities;
+  }
+
+  private double[] classFrequencies(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+    long[] counts = streamSupplier.get().sequential()
+        .collect(() -> new long[numOutcomeClasses], (array, pair) -> {
+          int label = LabeledFeatureOutcomePair.labelOf(pair);
+          Preconditions.checkArgument(label >= 0 && label < array.length,
+              "label must be in [0, " + array.length + "), given: " + label);
+          array[label]++;
+        }, (left, right) -> {
+          for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+          }
+        });
+    long sum = 0;
+    for (long count : counts) {
+      sum += count;
+    }
+    double[] probabilities = new double[numOutcomeClasses];
+    for (int i = 0; i < numOutcomeClasses; i++) {
+      probabilities[i] = (counts[i] + 1d) / (sum + numOutcomeClasses);
+    }
+    return probabilities;
+  }
+
+  // draws a class from the cumulative distribution, must hold the lock
+  private int sampleClass(double[] cumulative) {
+    double next = random.nextDouble() * cumulative[cumulative.length - 1];
+    int index = Arrays.binarySearch(cumulative, next);
+    // the first class whose cumulative probability exceeds the draw
+    index = index < 0 ? -(index + 1) : index + 1;
+    return Math.min(index, cumulative.length - 1);
+  }
+
+  /**
+   * Observes the shared example as a binary example of the given class.
+   */
+  static CostGradientTuple observeBinary(SharedExample example,
+      int classIndex, DoubleVector weights,
+      ActivationFunction activationFunction, LossFunction lossFunction) {
+    DoubleVector outcome = example.label == classIndex ? POSITIVE : NEGATIVE;
+    DoubleVector hypothesis = new SingleEntryDoubleVector(
+        activationFunction.apply(example.feature.dot(weights)));
+    double cost = lossFunction.calculateLoss(outcome, hypothesis);
+    DoubleVector gradient = lossFunction.calculateGradient(example.feature,
+        outcome, hypothesis);
+    return new CostGradientTuple(cost, gradient);
+  }
+
+  /**
+   * Prepares the feature once for all classes: hashed sparse vectors are
+   * sorted, so every class iterates the non-zeros sequentially. Feature
+   * crosses are not materialized, every class enumerates them lazily from the
+   * {@link CrossedFeatureVector} in its dot product and gradient step.
+   */
+  static DoubleVector prepareFeature(FeatureOutcomePair pair) {
+    DoubleVector feature = sorted(pair.getFeature());
+    if (pair instanceof NamespacedFeatureOutcomePair) {
+      NamespacedFeatureOutcomePair namespaced = (NamespacedFeatureOutcomePair) pair;
+      return new CrossedFeatureVector(feature, namespaced.getNamespaces(),
+          namespaced.getInteractions());
+    }
+    return feature;
+  }
+
+  private static DoubleVector sorted(DoubleVector feature) {
+    if (!feature.isSparse() || feature instanceof SequentialSparseDoubleVector
+        || feature instanceof SparseBinaryDoubleVector) {
+      return feature;
+    }
+    // sort the hashed indices once (with their position in the low bits), so
+    // the vector is built by appending in order
+    double[] values = new double[feature.getLength()];
+    long[] keys = new long[values.length];
+    int length = 0;
+    Iterator<DoubleVectorElement> iterateNonZero = feature.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      if (length == keys.length) {
+        keys = Arrays.copyOf(keys, Math.max(1, length * 2));
+        values = Arrays.copyOf(values, keys.length);
+      }
+      keys[length] = ((long) next.getIndex() << 32) | length;
+      values[length++] = next.getValue();
+    }
+    Arrays.sort(keys, 0, length);
+    SequentialSparseDoubleVector sorted = new SequentialSparseDoubleVector(
+        feature.getDimension(), Math.max(1, length));
+    for (int i = 0; i < length; i++) {
+      sorted.set((int) (keys[i] >>> 32), values[(int) keys[i]]);
+    }
+    return sorted;
+  }
+
   private static FeatureOutcomePair makeBinary(FeatureOutcomePair input,
       int targetClassIndex) {
-    DoubleVector outcome = input.getOutcome();
-    if (outcome.maxIndex() == targetClassIndex) {
-      return new FeatureOutcomePair(input.getFeature(), POSITIVE);
-    }
+    // a compact binary label, so no outcome vector is allocated per class
+    int label = LabeledFeatureOutcomePair.labelOf(input) == targetClassIndex ? 1
+        : 0;
+    return LabeledFeatureOutcomePair.ofClass(input.getFeature(), label, 2,
+        WeightedFeatureOutcomePair.weightOf(input));
+  }
 
-    return new FeatureOutcomePair(input.getFeature(), NEGATIVE);
+  // the example that is currently observed by all classes
+  static final class SharedExample {
+    DoubleVector feature;
+    int label;
   }
 }
@@ -9,9 +9,19 @@ import com.google.common.base.Preconditions;
 import de.jungblut.online.ml.Model;
 import de.jungblut.online.regression.RegressionModel;
 
+/**
+ * Model of a multinomial regression that consists of a binary regression model
+ * per class. Models that were trained on sampled negatives carry a logit offset
+ * per class that corrects their bias at prediction time.
+ * 
+ * @author thomas.jungblut
+ *
+ */
 public class MultinomialRegressionModel implements Model {
 
   private RegressionModel[] trainedModels;
+  // null if the logits don't need to be corrected
+  private double[] logitOffsets;
 
   // deserialization constructor
   public MultinomialRegressionModel() {
@@ -24,21 +34,52 @@ public class MultinomialRegressionModel implements Model {
     }
   }
 
+  /**
+   * @param trainedModels the binary model of every class.
+   * @param logitOffsets the offsets that are added to the logit of every class
+   *          before the activation function is applied.
+   */
+  public MultinomialRegressionModel(RegressionModel[] trainedModels,
+      double[] logitOffsets) {
+    this(trainedModels);
+    this.logitOffsets = Preconditions.checkNotNull(logitOffsets,
+        "logitOffsets");
+    Preconditions.checkArgument(logitOffsets.length == trainedModels.length,
+        "need an offset for each of the " + trainedModels.length
+            + " models, given " + logitOffsets.length);
+  }
+
   @Override
   public void serialize(DataOutput out) throws IOException {
-    out.writeInt(trainedModels.length);
+    // a negative model count flags the offsets after the models, so models
+    // without offsets are written exactly like before they were added
+    out.writeInt(logitOffsets != null ? -trainedModels.length
+        : trainedModels.length);
     for (RegressionModel model : trainedModels) {
       model.serialize(out);
     }
+    if (logitOffsets != null) {
+      for (double offset : logitOffsets) {
+        out.writeDouble(offset);
+      }
+    }
   }
 
   @Override
   public MultinomialRegressionModel deserialize(DataInput in)
       throws IOException {
-    trainedModels = new RegressionModel[in.readInt()];
+    int numModels = in.readInt();
+    trainedModels = new RegressionModel[Math.abs(numModels)];
     for (int i = 0; i < trainedModels.length; i++) {
       trainedModels[i] = new RegressionModel().deserialize(in);
     }
+    logitOffsets = null;
+    if (numModels < 0) {
+      logitOffsets = new double[trainedModels.length];
+      for (int i = 0; i < logitOffsets.length; i++) {
+        logitOffsets[i] = in.readDouble();
+      }
+    }
 
     return this;
   }
@@ -47,4 +88,11 @@ public class MultinomialRegressionModel implements Model {
     return trainedModels;
   }
 
+  /**
+   * @return the logit offset of every class, or null if there are none.
+   */
+  public double[] getLogitOffsets() {
+    return logitOffsets;
+  }
+
 }
@@ -0,0 +1,38 @@
+package de.jungblut.online.regression.multinomial;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractPredictor;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Classifier for softmax regression. Scores all classes with one pass over the
+ * non-zeros of the feature and predicts the normalized class probabilities.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class SoftmaxRegressionClassifier extends AbstractPredictor {
+
+  private final SoftmaxRegressionModel model;
+
+  public SoftmaxRegressionClassifier(SoftmaxRegressionModel model) {
+    this.model = Preconditions.checkNotNull(model, "model");
+  }
+
+  @Override
+  public DoubleVector predict(DoubleVector feature) {
+    Preconditions.checkArgument(
+        feature.getDimension() == model.getFeatureDimension(),
+        "feature dimension must match the model feature dimension! Feature: "
+            + feature.getDimension() + " != Model: "
+            + model.getFeatureDimension());
+
+    double[] scores = SoftmaxRegressionModel.computeScores(model.getWeights(),
+        model.getNumClasses(), feature);
+    SoftmaxRegressionModel.softmax(scores);
+    return new DenseDoubleVector(scores);
+  }
+
+}
@@ -0,0 +1,158 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticMinimizer;
+import de.jungblut.online.ml.AbstractMinimizingOnlineLearner;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.regularization.WeightUpdater;
+
+/**
+ * A softmax (multinomial logistic) regression learner. Unlike the one-vs-all
+ * {@link MultinomialRegressionLearner}, it learns a single K x d weight matrix
+ * in one minimization, thus the data is read once per pass and the predicted
+ * class probabilities are normalized by the model itself. The cost is the
+ * cross entropy of the predicted distribution and the class label (see
+ * {@link LabeledFeatureOutcomePair#labelOf(FeatureOutcomePair)}).
+ * 
+ * The weights are packed feature by feature (see
+ * {@link SoftmaxRegressionModel}), so the gradient of an example only has
+ * entries for the K weights of each of its non-zero features. The weight
+ * updaters that lazily compute weights by the feature indices before the
+ * prediction (e.g. FTRL) can't be used with the packed weights, they are
+ * rejected by the constructor. The bias feature has K weights, one per class,
+ * thus regularizers must exclude the first K weights (e.g. an
+ * {@link de.jungblut.online.regularization.L2Regularizer} with K bias
+ * weights) or regularize all weights.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class SoftmaxRegressionLearner extends
+    AbstractMinimizingOnlineLearner<SoftmaxRegressionModel> {
+
+  public SoftmaxRegressionLearner(StochasticMinimizer minimizer) {
+    super(checkWeightUpdater(minimizer));
+  }
+
+  /**
+   * Rejects minimizers whose weight updater addresses the weights by the
+   * feature indices, since the weights are packed by class.
+   */
+  static StochasticMinimizer checkWeightUpdater(StochasticMinimizer minimizer) {
+    Preconditions.checkNotNull(minimizer, "minimizer");
+    if (minimizer instanceof StochasticGradientDescent) {
+      WeightUpdater updater = ((StochasticGradientDescent) minimizer)
+          .getWeightUpdater();
+      Preconditions.checkArgument(!updater.isIndexedByFeature(),
+          "weight updaters indexed by feature can't be used, given: "
+              + updater.getClass().getSimpleName());
+    }
+    return minimizer;
+  }
+
+  /**
+   * Rejects regularizing weight updaters that don't exclude the given number
+   * of leading bias weights from the regularization. Updaters that regularize
+   * all weights (no bias weights) are accepted.
+   */
+  static void checkBiasWeights(StochasticMinimizer minimizer,
+      int numBiasWeights) {
+    if (minimizer instanceof StochasticGradientDescent) {
+      WeightUpdater updater = ((StochasticGradientDescent) minimizer)
+          .getWeightUpdater();
+      int numBiases = updater.getNumBiasWeights();
+      Preconditions.checkArgument(numBiases == 0
+          || numBiases == numBiasWeights, "the weight updater "
+          + updater.getClass().getSimpleName() + " treats " + numBiases
+          + " leading weights as bias, expected " + numBiasWeights
+          + " or none.");
+    }
+  }
+
+  @Override
+  public SoftmaxRegressionModel train(
+      Supplier<Stream<FeatureOutcomePair>> streamSupplier) {
+
+    init(streamSupplier);
+    // the bias feature has a weight for every class
+    checkBiasWeights(minimizer, numOutcomeClasses);
+
+    long dimension = (long) featureDimension * numOutcomeClasses;
+    Preconditions.checkArgument(dimension <= Integer.MAX_VALUE,
+        "the weight matrix of " + numOutcomeClasses + " x " + featureDimension
+            + " doesn't fit into a vector");
+
+    DoubleVector weights = randomInitialize((int) dimension);
+    DoubleVector minimized = minimizer.minimize(weights, streamSupplier,
+        this::observeExampleSafe, numPasses, verbose);
+
+    return createModel(minimized);
+  }
+
+  @Override
+  protected CostGradientTuple observeExampleSafe(FeatureOutcomePair next,
+      DoubleVector weights) {
+    Preconditions.checkArgument(
+        weights.getDimension() == featureDimension * numOutcomeClasses,
+        "Weight dimension must match the packed matrix dimension! Expected: "
+            + featureDimension * numOutcomeClasses + ", given "
+            + weights.getDimension());
+    Preconditions.checkArgument(featureDimension == next.getFeature()
+        .getDimension(),
+        "Feature dimension must match the initially set dimension! Expected: "
+            + featureDimension + ", given " + next.getFeature().getDimension());
+    int label = LabeledFeatureOutcomePair.labelOf(next);
+    Preconditions.checkArgument(label >= 0 && label < numOutcomeClasses,
+        "label must be in [0, " + numOutcomeClasses + "), given: " + label);
+    return observeExample(next, weights);
+  }
+
+  @Override
+  protected CostGradientTuple observeExample(FeatureOutcomePair next,
+      DoubleVector weights) {
+    DoubleVector feature = next.getFeature();
+    if (next instanceof NamespacedFeatureOutcomePair) {
+      // the crosses are enumerated lazily for the scores and the gradient
+      feature = ((NamespacedFeatureOutcomePair) next).getCrossedFeature();
+    }
+    int label = LabeledFeatureOutcomePair.labelOf(next);
+
+    double[] probabilities = SoftmaxRegressionModel.computeScores(weights,
+        numOutcomeClasses, feature);
+    SoftmaxRegressionModel.softmax(probabilities);
+    double cost = -Math.log(Math.max(probabilities[label], Double.MIN_NORMAL));
+
+    // the gradient of the scores is the prediction minus the one-hot label,
+    // it is scaled by every non-zero feature into the rows of that feature.
+    // Colliding crosses add up.
+    probabilities[label] -= 1d;
+    DoubleVector gradient = feature.isSparse() ? new SparseDoubleVector(
+        weights.getDimension()) : new DenseDoubleVector(weights.getDimension());
+    CrossedFeatureVector.forEachNonZero(feature, (index, value) -> {
+      int offset = index * numOutcomeClasses;
+      for (int k = 0; k < numOutcomeClasses; k++) {
+        gradient.set(offset + k, gradient.get(offset + k) + value
+            * probabilities[k]);
+      }
+    });
+    return new CostGradientTuple(cost, gradient);
+  }
+
+  @Override
+  protected SoftmaxRegressionModel createModel(DoubleVector weights) {
+    return new SoftmaxRegressionModel(weights, numOutcomeClasses);
+  }
+
+}
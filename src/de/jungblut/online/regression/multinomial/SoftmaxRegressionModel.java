@@ -0,0 +1,127 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.ml.Model;
+import de.jungblut.writable.VectorWritable;
+
+/**
+ * Model of a softmax regression. The K x d weight matrix is packed into a
+ * single vector feature by feature, so the weights of all classes for feature
+ * j are at the indices [j * K, (j + 1) * K). Scoring all classes is then a
+ * single pass over the non-zeros of a feature.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public class SoftmaxRegressionModel implements Model {
+
+  private DoubleVector weights;
+  private int numClasses;
+
+  // deserialization constructor
+  public SoftmaxRegressionModel() {
+  }
+
+  /**
+   * @param weights the packed weights, see the class documentation.
+   * @param numClasses the number of classes.
+   */
+  public SoftmaxRegressionModel(DoubleVector weights, int numClasses) {
+    this.weights = Preconditions.checkNotNull(weights, "weights");
+    Preconditions.checkArgument(numClasses >= 2, "numClasses >= 2, given: "
+        + numClasses);
+    Preconditions.checkArgument(weights.getDimension() % numClasses == 0,
+        "weight dimension " + weights.getDimension()
+            + " is not a multiple of the number of classes " + numClasses);
+    this.numClasses = numClasses;
+  }
+
+  @Override
+  public void serialize(DataOutput out) throws IOException {
+    out.writeInt(numClasses);
+    VectorWritable.writeVector(weights, out);
+  }
+
+  @Override
+  public SoftmaxRegressionModel deserialize(DataInput in) throws IOException {
+    numClasses = in.readInt();
+    weights = VectorWritable.readVector(in);
+    return this;
+  }
+
+  /**
+   * @return the packed weights.
+   */
+  public DoubleVector getWeights() {
+    return weights;
+  }
+
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  public int getFeatureDimension() {
+    return weights.getDimension() / numClasses;
+  }
+
+  /**
+   * Computes the scores (logits) of all classes with one pass over the
+   * non-zeros of the feature, crosses of a {@link CrossedFeatureVector} are
+   * enumerated lazily.
+   * 
+   * @param weights the packed weights.
+   * @param numClasses the number of classes.
+   * @param feature the feature.
+   * @return an array with the score of every class.
+   */
+  static double[] computeScores(DoubleVector weights, int numClasses,
+      DoubleVector feature) {
+    double[] scores = new double[numClasses];
+    // the backing array of dense vectors is not copied
+    double[] array = weights instanceof DenseDoubleVector ? weights.toArray()
+        : null;
+    CrossedFeatureVector.forEachNonZero(feature, (index, value) -> {
+      int offset = index * numClasses;
+      if (array != null) {
+        for (int k = 0; k < numClasses; k++) {
+          scores[k] += value * array[offset + k];
+        }
+      } else {
+        for (int k = 0; k < numClasses; k++) {
+          scores[k] += value * weights.get(offset + k);
+        }
+      }
+    });
+    return scores;
+  }
+
+  /**
+   * Turns the scores into probabilities in place. The maximum score is
+   * subtracted before exponentiating to avoid overflows.
+   * 
+   * @param scores the scores of all classes.
+   */
+  static void softmax(double[] scores) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (double score : scores) {
+      max = Math.max(max, score);
+    }
+    double sum = 0d;
+    for (int k = 0; k < scores.length; k++) {
+      scores[k] = Math.exp(scores[k] - max);
+      sum += scores[k];
+    }
+    for (int k = 0; k < scores.length; k++) {
+      scores[k] /= sum;
+    }
+  }
+
+}
@@ -78,4 +78,9 @@ public class AdamUpdater extends GradientDescentUpdater {
     return new CostGradientTuple(cost, gradient);
   }
 
+  @Override
+  public boolean isPerCoordinateAdaptive() {
+    return true;
+  }
+
 }
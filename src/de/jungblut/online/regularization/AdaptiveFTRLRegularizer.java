@@ -1,18 +1,23 @@
 package de.jungblut.online.regularization;
 
-import java.util.Iterator;
-
 import org.apache.commons.math3.util.FastMath;
 
 import de.jungblut.math.DoubleVector;
-import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.NamespacedFeatureOutcomePair;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
 import de.jungblut.online.ml.FeatureOutcomePair;
 
 /**
  * Based on the paper:
  * http://www.eecs.tufts.edu/~dsculley/papers/ad-click-prediction.pdf
  * 
+ * Supports the on the fly feature interactions of a
+ * {@link NamespacedFeatureOutcomePair} and iterates the indices of
+ * {@link SparseBinaryDoubleVector} features and the entries of
+ * {@link CrossedFeatureVector} gradients directly.
+ * 
  * @author thomas.jungblut
  *
  */
@@ -49,52 +54,67 @@ public final class AdaptiveFTRLRegularizer implements WeightUpdater {
       perCoordinateWeights = theta.deepCopy().multiply(0);
     }
 
-    Iterator<DoubleVectorElement> iterateNonZero = featureOutcome.getFeature()
-        .iterateNonZero();
-    while (iterateNonZero.hasNext()) {
-      DoubleVectorElement next = iterateNonZero.next();
-      double gradientValue = next.getValue();
-      int index = next.getIndex();
-
-      double zi = perCoordinateWeights.get(index);
-      double ni = squaredPreviousGradient.get(index);
-      if (FastMath.abs(zi) <= l1) {
-        theta.set(index, 0);
-      } else {
-        double value = -1d / (((beta + FastMath.sqrt(ni)) / learningRate) + l2);
-        value = value * (zi - FastMath.signum(gradientValue) * l1);
-        theta.set(index, value);
-      }
+    // the weights of the crossed features are lazily computed the same way
+    DoubleVector feature = featureOutcome.getFeature();
+    if (featureOutcome instanceof NamespacedFeatureOutcomePair) {
+      feature = ((NamespacedFeatureOutcomePair) featureOutcome)
+          .getCrossedFeature();
     }
+    CrossedFeatureVector.forEachNonZero(feature,
+        (index, value) -> updateWeight(theta, index, value, learningRate));
 
     return theta;
   }
 
+  private void updateWeight(DoubleVector theta, int index,
+      double gradientValue, double learningRate) {
+    double zi = perCoordinateWeights.get(index);
+    double ni = squaredPreviousGradient.get(index);
+    if (FastMath.abs(zi) <= l1) {
+      theta.set(index, 0);
+    } else {
+      double value = -1d / (((beta + FastMath.sqrt(ni)) / learningRate) + l2);
+      value = value * (zi - FastMath.signum(gradientValue) * l1);
+      theta.set(index, value);
+    }
+  }
+
   @Override
   public CostWeightTuple computeNewWeights(DoubleVector theta,
       DoubleVector gradient, double learningRate, long iteration, double cost) {
 
-    Iterator<DoubleVectorElement> iterateNonZero = gradient.iterateNonZero();
-    while (iterateNonZero.hasNext()) {
-      DoubleVectorElement next = iterateNonZero.next();
-      double gradientValue = next.getValue();
-      int index = next.getIndex();
-      double zi = perCoordinateWeights.get(index);
-      double ni = squaredPreviousGradient.get(index);
-      // update our cached copies
-      double sigma = (FastMath.sqrt(ni + gradientValue * gradientValue) - FastMath
-          .sqrt(ni)) / learningRate;
-      perCoordinateWeights.set(index,
-          zi + gradientValue - sigma * theta.get(index));
-      squaredPreviousGradient.set(index, ni + gradientValue * gradientValue);
-    }
+    // indicator features and crosses are applied without materializing them
+    CrossedFeatureVector.forEachNonZero(gradient,
+        (index, value) -> updateCoordinate(theta, index, value, learningRate));
     return new CostWeightTuple(cost, theta);
   }
 
+  private void updateCoordinate(DoubleVector theta, int index,
+      double gradientValue, double learningRate) {
+    double zi = perCoordinateWeights.get(index);
+    double ni = squaredPreviousGradient.get(index);
+    // update our cached copies
+    double sigma = (FastMath.sqrt(ni + gradientValue * gradientValue) - FastMath
+        .sqrt(ni)) / learningRate;
+    perCoordinateWeights.set(index,
+        zi + gradientValue - sigma * theta.get(index));
+    squaredPreviousGradient.set(index, ni + gradientValue * gradientValue);
+  }
+
   @Override
   public CostGradientTuple updateGradient(DoubleVector theta,
       DoubleVector gradient, double learningRate, long iteration, double cost) {
     return null;
   }
 
+  @Override
+  public boolean isIndexedByFeature() {
+    return true;
+  }
+
+  @Override
+  public boolean isPerCoordinateAdaptive() {
+    return true;
+  }
+
 }
@@ -2,6 +2,8 @@ package de.jungblut.online.regularization;
 
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
 import de.jungblut.online.ml.FeatureOutcomePair;
 
 public class GradientDescentUpdater implements WeightUpdater {
@@ -16,12 +18,30 @@ public class GradientDescentUpdater implements WeightUpdater {
     CostGradientTuple gradientTuple = updateGradient(theta, gradient,
         learningRate, iteration, cost);
 
-    DoubleVector dampened = gradientTuple.getGradient().multiply(learningRate);
-    DoubleVector newWeights = theta.subtract(dampened);
+    DoubleVector newWeights = gradientStep(theta, gradientTuple.getGradient(),
+        learningRate);
 
     return new CostWeightTuple(gradientTuple.getCost(), newWeights);
   }
 
+  /**
+   * Computes theta - learningRate * gradient as a new vector. Gradients of
+   * indicator features ({@link SparseBinaryDoubleVector}) are applied as a
+   * constant step to their indices, gradients with feature crosses
+   * ({@link CrossedFeatureVector}) as they are enumerated.
+   */
+  protected static DoubleVector gradientStep(DoubleVector theta,
+      DoubleVector gradient, double learningRate) {
+    if (gradient instanceof SparseBinaryDoubleVector
+        || gradient instanceof CrossedFeatureVector) {
+      DoubleVector newWeights = theta.deepCopy();
+      CrossedFeatureVector.forEachNonZero(gradient, (index, value) -> newWeights
+          .set(index, newWeights.get(index) - learningRate * value));
+      return newWeights;
+    }
+    return theta.subtract(gradient.multiply(learningRate));
+  }
+
   @Override
   public CostGradientTuple updateGradient(DoubleVector theta,
       DoubleVector gradient, double learningRate, long iteration, double cost) {
@@ -4,6 +4,8 @@ import java.util.Iterator;
 
 import org.apache.commons.math3.util.FastMath;
 
+import com.google.common.base.Preconditions;
+
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.DoubleVector.DoubleVectorElement;
 
@@ -18,20 +20,38 @@ import de.jungblut.math.DoubleVector.DoubleVectorElement;
  * Instead of subgradient of the regularizer, the proximal operator for the L1
  * regularization is applied after the gradient step. This is known to result in
  * better sparsity of the intermediate solution.
+ * 
+ * The bias is assumed to be on the first dimension and is not regularized. For
+ * learners with a bias weight per class on the first dimensions (e.g. the
+ * softmax regression), the number of bias weights is passed to the
+ * constructor.
  */
 public final class L1Regularizer extends GradientDescentUpdater {
 
   private final double tol;
   private final double l1;
+  private final int numBiasWeights;
 
   public L1Regularizer(double l1) {
-    this.l1 = l1;
-    this.tol = l1;
+    this(l1, l1);
   }
 
   public L1Regularizer(double l1, double tol) {
+    this(l1, tol, 1);
+  }
+
+  /**
+   * @param l1 the l1 regularization.
+   * @param tol the absolute value below which weights are set to zero.
+   * @param numBiasWeights the number of leading weights that are not
+   *          regularized.
+   */
+  public L1Regularizer(double l1, double tol, int numBiasWeights) {
+    Preconditions.checkArgument(numBiasWeights >= 0,
+        "numBiasWeights >= 0, given: " + numBiasWeights);
     this.l1 = l1;
     this.tol = tol;
+    this.numBiasWeights = numBiasWeights;
   }
 
   @Override
@@ -44,7 +64,7 @@ public final class L1Regularizer extends GradientDescentUpdater {
           cost);
     }
 
-    DoubleVector newWeights = theta.subtract(gradient.multiply(learningRate));
+    DoubleVector newWeights = gradientStep(theta, gradient, learningRate);
     double shrinkageVal = l1 * learningRate;
 
     double addedCost = 0d;
@@ -54,7 +74,7 @@ public final class L1Regularizer extends GradientDescentUpdater {
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
-        if (next.getIndex() > 0) {
+        if (next.getIndex() >= numBiasWeights) {
           addedCost += updateWeight(newWeights, deepCopy, shrinkageVal,
               next.getIndex(), next.getValue());
         }
@@ -62,7 +82,7 @@ public final class L1Regularizer extends GradientDescentUpdater {
 
       newWeights = deepCopy;
     } else {
-      for (int i = 1; i < newWeights.getDimension(); i++) {
+      for (int i = numBiasWeights; i < newWeights.getDimension(); i++) {
         addedCost += updateWeight(newWeights, newWeights, shrinkageVal, i,
             newWeights.get(i));
       }
@@ -87,4 +107,9 @@ public final class L1Regularizer extends GradientDescentUpdater {
     return absWeight;
   }
 
+  @Override
+  public int getNumBiasWeights() {
+    return l1 == 0d ? 0 : numBiasWeights;
+  }
+
 }
@@ -1,12 +1,16 @@
 package de.jungblut.online.regularization;
 
+import com.google.common.base.Preconditions;
+
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.minimize.CostGradientTuple;
 
 /**
  * Computes the L2 regularized update: R(w) = (||w||^2) / 2. It assumes the bias
  * feature to be on the very first dimension (zero index) in order to
- * deliberately not regularize it.
+ * deliberately not regularize it. For learners with a bias weight per class
+ * on the first dimensions (e.g. the softmax regression), the number of bias
+ * weights is passed to the constructor.
  * 
  * @author thomas.jungblut
  *
@@ -14,9 +18,22 @@ import de.jungblut.math.minimize.CostGradientTuple;
 public final class L2Regularizer extends GradientDescentUpdater {
 
   private final double l2;
+  private final int numBiasWeights;
 
   public L2Regularizer(double l2) {
+    this(l2, 1);
+  }
+
+  /**
+   * @param l2 the l2 regularization.
+   * @param numBiasWeights the number of leading weights that are not
+   *          regularized.
+   */
+  public L2Regularizer(double l2, int numBiasWeights) {
+    Preconditions.checkArgument(numBiasWeights >= 0,
+        "numBiasWeights >= 0, given: " + numBiasWeights);
     this.l2 = l2;
+    this.numBiasWeights = numBiasWeights;
   }
 
   @Override
@@ -25,12 +42,20 @@ public final class L2Regularizer extends GradientDescentUpdater {
     if (l2 != 0d) {
       DoubleVector powered = weights.pow(2d);
       DoubleVector regGrad = weights.multiply(l2);
-      // assume bias is on the first dimension
-      powered.set(0, 0);
-      regGrad.set(0, 0);
+      // assume the biases are on the first dimensions
+      int numBiases = Math.min(numBiasWeights, weights.getDimension());
+      for (int i = 0; i < numBiases; i++) {
+        powered.set(i, 0);
+        regGrad.set(i, 0);
+      }
       cost += l2 * powered.sum() / 2d;
       gradient = gradient.add(regGrad);
     }
     return new CostGradientTuple(cost, gradient);
   }
+
+  @Override
+  public int getNumBiasWeights() {
+    return l2 == 0d ? 0 : numBiasWeights;
+  }
 }
@@ -0,0 +1,114 @@
+package de.jungblut.online.regularization;
+
+import java.util.Iterator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.CrossedFeatureVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+
+/**
+ * Normalized adaptive gradient descent (NAG) based on the paper:
+ * http://arxiv.org/abs/1305.6646
+ *
+ * Keeps track of the maximum absolute value of every feature seen so far, in
+ * O(nnz) per example. Whenever a feature exceeds its scale, its weight is
+ * shrunk accordingly and the per-feature learning rates are normalized by the
+ * scale, which makes the updates invariant to the scale of the features. The
+ * weights are always kept in the raw feature space, so the learned model needs
+ * no normalization at prediction time.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class NormalizedAdaptiveUpdater implements WeightUpdater {
+
+  private DoubleVector scale; // s in the paper
+  private DoubleVector squaredGradient; // G in the paper
+  private double normalizer; // N in the paper
+  private long examples; // t in the paper
+
+  @Override
+  public DoubleVector prePredictionWeightUpdate(
+      FeatureOutcomePair featureOutcome, DoubleVector theta,
+      double learningRate, long iteration) {
+
+    if (scale == null) {
+      // initialize zeroed vectors of the same type as the weights
+      scale = theta.deepCopy().multiply(0);
+      squaredGradient = theta.deepCopy().multiply(0);
+    }
+
+    Iterator<DoubleVectorElement> iterateNonZero = featureOutcome.getFeature()
+        .iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      int index = next.getIndex();
+      double value = FastMath.abs(next.getValue());
+      double si = scale.get(index);
+      if (value > si) {
+        if (si > 0d) {
+          // shrink the weight to the new scale
+          double ratio = si / value;
+          theta.set(index, theta.get(index) * ratio * ratio);
+        }
+        scale.set(index, value);
+        si = value;
+      }
+      normalizer += (value * value) / (si * si);
+    }
+    examples++;
+
+    return theta;
+  }
+
+  @Override
+  public CostWeightTuple computeNewWeights(DoubleVector theta,
+      DoubleVector gradient, double learningRate, long iteration, double cost) {
+
+    double rate = learningRate
+        * FastMath.sqrt(examples / FastMath.max(normalizer, 1d));
+    // crossed gradients are applied as they are enumerated
+    CrossedFeatureVector.forEachNonZero(gradient,
+        (index, gradientValue) -> updateCoordinate(theta, index,
+            gradientValue, rate));
+    return new CostWeightTuple(cost, theta);
+  }
+
+  private void updateCoordinate(DoubleVector theta, int index,
+      double gradientValue, double rate) {
+    double gi = squaredGradient.get(index) + gradientValue * gradientValue;
+    if (gi == 0d) {
+      return;
+    }
+    squaredGradient.set(index, gi);
+    // features that were never seen by the pre-prediction update (e.g.
+    // feature interactions) are not normalized
+    double si = scale.get(index);
+    if (si == 0d) {
+      si = 1d;
+    }
+    theta.set(index, theta.get(index) - rate * gradientValue
+        / (si * FastMath.sqrt(gi)));
+  }
+
+  @Override
+  public CostGradientTuple updateGradient(DoubleVector theta,
+      DoubleVector gradient, double learningRate, long iteration, double cost) {
+    return null;
+  }
+
+  @Override
+  public boolean isIndexedByFeature() {
+    return true;
+  }
+
+  @Override
+  public boolean isPerCoordinateAdaptive() {
+    return true;
+  }
+
+}
@@ -47,4 +47,30 @@ public interface WeightUpdater {
   public CostGradientTuple updateGradient(DoubleVector theta,
       DoubleVector gradient, double learningRate, long iteration, double cost);
 
+  /**
+   * @return true if the pre-prediction update addresses the weights by the
+   *         indices of the features, thus it needs exactly one weight per
+   *         feature.
+   */
+  public default boolean isIndexedByFeature() {
+    return false;
+  }
+
+  /**
+   * @return true if the gradient is rescaled per coordinate before it is
+   *         applied (e.g. adaptive learning rates), thus a step doesn't move
+   *         the weights by the learning rate times the gradient.
+   */
+  public default boolean isPerCoordinateAdaptive() {
+    return false;
+  }
+
+  /**
+   * @return the number of leading weights that are treated as the bias and are
+   *         not regularized, zero if the updater doesn't regularize.
+   */
+  public default int getNumBiasWeights() {
+    return 0;
+  }
+
 }
@@ -0,0 +1,233 @@
+package de.jungblut.online.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Count-min sketch with conservative updates: a depth x width table of counts
+ * with one hash function per row. A key is counted in one cell per row and its
+ * estimate is the minimum of its cells, so it never underestimates a count.
+ * The conservative update only raises the cells of a key up to its new
+ * estimate, which keeps the overestimation lower than incrementing every cell.
+ * 
+ * An estimate exceeds the true count by at most {@link #getErrorBound()} with
+ * a probability of at least 1 - {@link #getDelta()}. Sketches of the same size
+ * can be merged by adding their cells, the merged sketch keeps this bound for
+ * the sum of the counts. The sketch only takes non-negative counts and its
+ * memory is fixed, regardless of the number of keys.
+ * 
+ * @author thomas.jungblut
+ *
+ */
+public final class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final double[] table;
+  // the cells of the key that is added, so it is hashed once per row
+  private final int[] cells;
+  private double totalCount;
+
+  /**
+   * Creates a new sketch.
+   * 
+   * @param width the number of cells per row, the error bound is e / width
+   *          times the total count.
+   * @param depth the number of rows, the error bound fails with a probability
+   *          of exp(-depth).
+   */
+  public CountMinSketch(int width, int depth) {
+    checkSize(width, depth);
+    this.width = width;
+    this.depth = depth;
+    this.table = new double[width * depth];
+    this.cells = new int[depth];
+  }
+
+  /**
+   * Checks the size of a sketch without allocating it.
+   * 
+   * @param width the number of cells per row.
+   * @param depth the number of rows.
+   * @throws IllegalArgumentException if the size is invalid.
+   */
+  public static void checkSize(int width, int depth) {
+    Preconditions.checkArgument(width > 0, "width > 0, given: " + width);
+    Preconditions.checkArgument(depth > 0, "depth > 0, given: " + depth);
+    Preconditions.checkArgument((long) width * depth <= Integer.MAX_VALUE - 8,
+        "sketch is too large: " + width + "x" + depth);
+  }
+
+  /**
+   * @param epsilon the maximum overestimation relative to the total count.
+   * @return the width of a sketch with the error bound.
+   */
+  public static int widthFor(double epsilon) {
+    Preconditions.checkArgument(epsilon > 0d && epsilon < 1d,
+        "epsilon must be in (0, 1), given: " + epsilon);
+    return (int) Math.ceil(Math.E / epsilon);
+  }
+
+  /**
+   * @param delta the probability that an estimate exceeds the bound.
+   * @return the depth of a sketch with the probability.
+   */
+  public static int depthFor(double delta) {
+    Preconditions.checkArgument(delta > 0d && delta < 1d,
+        "delta must be in (0, 1), given: " + delta);
+    return (int) Math.ceil(Math.log(1d / delta));
+  }
+
+  /**
+   * Creates a sketch that is large enough for the given error bounds.
+   * 
+   * @param epsilon the maximum overestimation relative to the total count.
+   * @param delta the probability that an estimate exceeds the bound.
+   * @return a new sketch.
+   */
+  public static CountMinSketch withErrorBounds(double epsilon, double delta) {
+    return new CountMinSketch(widthFor(epsilon), depthFor(delta));
+  }
+
+  /**
+   * Adds the count to the key. Not thread-safe.
+   * 
+   * @param key the key.
+   * @param count a non-negative count.
+   * @return the new estimate of the count of the key.
+   */
+  public double add(long key, double count) {
+    Preconditions.checkArgument(count >= 0d, "counts must be >= 0, given: "
+        + count);
+    double estimate = Double.POSITIVE_INFINITY;
+    for (int row = 0; row < depth; row++) {
+      cells[row] = cell(key, row, width);
+      estimate = Math.min(estimate, table[cells[row]]);
+    }
+    if (count == 0d) {
+      return estimate;
+    }
+    double newEstimate = estimate + count;
+    for (int row = 0; row < depth; row++) {
+      if (table[cells[row]] < newEstimate) {
+        table[cells[row]] = newEstimate;
+      }
+    }
+    totalCount += count;
+    return newEstimate;
+  }
+
+  /**
+   * @param key the key.
+   * @return an estimate of the count of the key, at least its true count.
+   */
+  public double estimate(long key) {
+    double min = Double.POSITIVE_INFINITY;
+    for (int row = 0; row < depth; row++) {
+      min = Math.min(min, table[cell(key, row, width)]);
+    }
+    return min;
+  }
+
+  /**
+   * Adds the counts of the other sketch to this sketch.
+   * 
+   * @param other a sketch of the same size.
+   * @return this sketch.
+   */
+  public CountMinSketch merge(CountMinSketch other) {
+    Preconditions.checkArgument(width == other.width && depth == other.depth,
+        "sketch sizes must match: " + width + "x" + depth + " != "
+            + other.width + "x" + other.depth);
+    for (int i = 0; i < table.length; i++) {
+      table[i] += other.table[i];
+    }
+    totalCount += other.totalCount;
+    return this;
+  }
+
+  /**
+   * @return the maximum overestimation relative to the total count, e / width.
+   */
+  public double getEpsilon() {
+    return Math.E / width;
+  }
+
+  /**
+   * @return the probability that an estimate exceeds the error bound,
+   *         exp(-depth).
+   */
+  public double getDelta() {
+    return Math.exp(-depth);
+  }
+
+  /**
+   * @return the maximum absolute overestimation of a count, epsilon times the
+   *         total count.
+   */
+  public double getErrorBound() {
+    return getEpsilon() * totalCount;
+  }
+
+  /**
+   * @return the sum of all counts that were added.
+   */
+  public double getTotalCount() {
+    return totalCount;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return the index of the key's cell in the row of a table of the width.
+   */
+  static int cell(long key, int row, int width) {
+    // every row mixes the key with a different constant
+    long hash = key * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return row * width + (int) ((hash >>> 1) % width);
+  }
+
+  /**
+   * Writes the sketch to the given output.
+   * 
+   * @param out the output.
+   * @throws IOException if the output fails.
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(width);
+    out.writeInt(depth);
+    out.writeDouble(totalCount);
+    for (double count : table) {
+      out.writeDouble(count);
+    }
+  }
+
+  /**
+   * Reads a sketch that was written by {@link #write(DataOutput)}.
+   * 
+   * @param in the input.
+   * @return the sketch.
+   * @throws IOException if the input fails.
+   */
+  public static CountMinSketch read(DataInput in) throws IOException {
+    CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+    sketch.totalCount = in.readDouble();
+    for (int i = 0; i < sketch.table.length; i++) {
+      sketch.table[i] = in.readDouble();
+    }
+    return sketch;
+  }
+
+}
@@ -0,0 +1,84 @@
+package de.jungblut.online.sketch;
+
+/**
+ * Count-min sketch of occurrences with int cells, which takes half the memory
+ * of the {@link CountMinSketch} and uses the same hashing and conservative
+ * updates. Every occurrence counts one and the counts can saturate at a
+ * threshold, e.g. to find the keys that occur at least a given number of
+ * times: a saturated key isn't hashed again into more cells, which keeps the
+ * overestimation of the other keys lower.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class IntCountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final int[] table;
+  // the cells of the key that is added, so it is hashed once per row
+  private final int[] cells;
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param width the number of cells per row.
+   * @param depth the number of rows.
+   */
+  public IntCountMinSketch(int width, int depth) {
+    CountMinSketch.checkSize(width, depth);
+    this.width = width;
+    this.depth = depth;
+    this.table = new int[width * depth];
+    this.cells = new int[depth];
+  }
+
+  /**
+   * Counts an occurrence of the key, unless its estimate already reached the
+   * threshold. Not thread-safe.
+   *
+   * @param key the key.
+   * @param threshold the count at which the key saturates.
+   * @return the new estimate of the count of the key, at most the threshold
+   *         if it was below before.
+   */
+  public int addIfBelow(long key, int threshold) {
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      cells[row] = CountMinSketch.cell(key, row, width);
+      estimate = Math.min(estimate, table[cells[row]]);
+    }
+    if (estimate >= threshold) {
+      return estimate;
+    }
+    // conservative update: only the minimal cells are incremented
+    for (int row = 0; row < depth; row++) {
+      if (table[cells[row]] == estimate) {
+        table[cells[row]]++;
+      }
+    }
+    return estimate + 1;
+  }
+
+  /**
+   * @param key the key.
+   * @return an estimate of the count of the key, at least its true count
+   *         unless it saturated.
+   */
+  public int estimate(long key) {
+    int min = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      min = Math.min(min, table[CountMinSketch.cell(key, row, width)]);
+    }
+    return min;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+}
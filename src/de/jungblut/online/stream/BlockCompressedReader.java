@@ -0,0 +1,236 @@
+package de.jungblut.online.stream;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads block compressed files written by the {@link BlockCompressedWriter}.
+ * When opening, only the block headers are scanned to build the block index.
+ * The returned streams split on block boundaries, so a parallel stream
+ * decompresses the blocks concurrently instead of being bound by a single
+ * inflater.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class BlockCompressedReader implements Closeable {
+
+  private final FileChannel channel;
+  private final long[] blockOffsets;
+  private final int[] blockLengths;
+
+  /**
+   * Opens the given file and builds the block index.
+   *
+   * @param path the path to the block compressed file.
+   * @throws IOException if the file couldn't be read or is not block
+   *           compressed.
+   */
+  public BlockCompressedReader(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      long[] offsets = new long[16];
+      int[] lengths = new int[16];
+      int numBlocks = 0;
+      long position = 0;
+      ByteBuffer header = ByteBuffer
+          .allocate(BlockCompressedWriter.HEADER_LENGTH);
+      while (position < size) {
+        header.clear();
+        readFully(header, position);
+        int memberLength = parseMemberLength(header.array(), position);
+        if (numBlocks == offsets.length) {
+          offsets = Arrays.copyOf(offsets, numBlocks * 2);
+          lengths = Arrays.copyOf(lengths, numBlocks * 2);
+        }
+        offsets[numBlocks] = position;
+        lengths[numBlocks] = memberLength;
+        numBlocks++;
+        position += memberLength;
+      }
+      this.blockOffsets = Arrays.copyOf(offsets, numBlocks);
+      this.blockLengths = Arrays.copyOf(lengths, numBlocks);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of blocks in this file.
+   */
+  public int getNumBlocks() {
+    return blockOffsets.length;
+  }
+
+  /**
+   * @return a sequential stream over all lines in this file.
+   */
+  public Stream<String> lines() {
+    return lines(false);
+  }
+
+  /**
+   * Creates a stream over all lines in this file.
+   *
+   * @param parallel true if the blocks should be decompressed in parallel.
+   * @return a new stream over the lines.
+   */
+  public Stream<String> lines(boolean parallel) {
+    return PartitionedSpliterator.stream(blockOffsets.length,
+        this::readBlock, parallel);
+  }
+
+  /**
+   * Creates a supplier that can be passed to the learners, every call parses
+   * the whole file again.
+   *
+   * @param parser the parser that turns a line into an example.
+   * @param parallel true if the blocks should be decompressed in parallel.
+   * @return a supplier of streams of examples.
+   */
+  public <T> Supplier<Stream<T>> asSupplier(Function<String, T> parser,
+      boolean parallel) {
+    Preconditions.checkNotNull(parser, "parser");
+    return () -> lines(parallel).map(parser);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Decompresses the block with the given index.
+   *
+   * @param block the block index.
+   * @return an iterator over the lines in that block.
+   */
+  Iterator<String> readBlock(int block) {
+    try {
+      ByteBuffer member = ByteBuffer.allocate(blockLengths[block]);
+      readFully(member, blockOffsets[block]);
+      byte[] bytes = member.array();
+      int trailerStart = bytes.length - BlockCompressedWriter.TRAILER_LENGTH;
+      int expectedCrc = readIntLE(bytes, trailerStart);
+      int uncompressedLength = readIntLE(bytes, trailerStart + 4);
+
+      byte[] uncompressed = new byte[uncompressedLength];
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(bytes, BlockCompressedWriter.HEADER_LENGTH,
+            trailerStart - BlockCompressedWriter.HEADER_LENGTH);
+        int read = 0;
+        while (read < uncompressedLength && !inflater.finished()) {
+          int n = inflater.inflate(uncompressed, read, uncompressedLength
+              - read);
+          if (n == 0
+              && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          read += n;
+        }
+        if (read != uncompressedLength) {
+          throw new IOException("Block " + block + " is truncated, expected "
+              + uncompressedLength + " bytes but got " + read);
+        }
+      } finally {
+        inflater.end();
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(uncompressed, 0, uncompressedLength);
+      if ((int) crc.getValue() != expectedCrc) {
+        throw new IOException("CRC mismatch in block " + block);
+      }
+      return new LineIterator(uncompressed);
+    } catch (IOException | DataFormatException e) {
+      throw new UncheckedIOException(new IOException(
+          "Couldn't decompress block " + block, e));
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new EOFException("Unexpected end of file at "
+            + (position + buffer.position()));
+      }
+    }
+  }
+
+  private static int parseMemberLength(byte[] header, long position)
+      throws IOException {
+    if (header[0] != 0x1f || header[1] != (byte) 0x8b || header[2] != 8
+        || (header[3] & 4) == 0
+        || header[12] != BlockCompressedWriter.SUBFIELD_ID1
+        || header[13] != BlockCompressedWriter.SUBFIELD_ID2) {
+      throw new IOException("No block compressed gzip member at offset "
+          + position);
+    }
+    int memberLength = readIntLE(header, 16);
+    if (memberLength < BlockCompressedWriter.HEADER_LENGTH
+        + BlockCompressedWriter.TRAILER_LENGTH) {
+      throw new IOException("Invalid block size " + memberLength
+          + " at offset " + position);
+    }
+    return memberLength;
+  }
+
+  private static int readIntLE(byte[] buf, int offset) {
+    return (buf[offset] & 0xff) | ((buf[offset + 1] & 0xff) << 8)
+        | ((buf[offset + 2] & 0xff) << 16) | ((buf[offset + 3] & 0xff) << 24);
+  }
+
+  private static final class LineIterator implements Iterator<String> {
+
+    private final byte[] block;
+    private int position;
+
+    LineIterator(byte[] block) {
+      this.block = block;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return position < block.length;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int start = position;
+      while (position < block.length && block[position] != '\n') {
+        position++;
+      }
+      String line = new String(block, start, position - start,
+          StandardCharsets.UTF_8);
+      // skip the separator
+      position++;
+      return line;
+    }
+  }
+
+}
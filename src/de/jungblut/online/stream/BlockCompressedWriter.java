@@ -0,0 +1,184 @@
+package de.jungblut.online.stream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes text lines into a block compressed file. Such a file is a
+ * concatenation of independent gzip members (like BGZF), thus it can still be
+ * read with any gzip tool. Every member carries its own compressed size in the
+ * gzip extra field, which is what the {@link BlockCompressedReader} uses to
+ * index the blocks and decompress them in parallel. Lines never span two
+ * blocks.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class BlockCompressedWriter implements Closeable {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  // gzip member layout: 10 byte header, 2 byte XLEN, 8 byte extra subfield
+  static final int HEADER_LENGTH = 20;
+  static final int TRAILER_LENGTH = 8;
+  static final byte SUBFIELD_ID1 = 'T';
+  static final byte SUBFIELD_ID2 = 'J';
+
+  private static final byte NEWLINE = '\n';
+
+  private final OutputStream out;
+  private final int blockSize;
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+
+  private byte[] uncompressed;
+  private int uncompressedLength;
+  private byte[] compressed;
+
+  /**
+   * Creates a new writer with the {@link #DEFAULT_BLOCK_SIZE}.
+   *
+   * @param out the stream to write to, will be closed by this writer.
+   */
+  public BlockCompressedWriter(OutputStream out) {
+    this(out, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Creates a new writer.
+   *
+   * @param out the stream to write to, will be closed by this writer.
+   * @param blockSize the uncompressed size in bytes after which a block is
+   *          written. Larger blocks compress better, smaller blocks allow finer
+   *          grained parallelism.
+   */
+  public BlockCompressedWriter(OutputStream out, int blockSize) {
+    Preconditions.checkArgument(blockSize > 0, "blockSize > 0");
+    this.out = Preconditions.checkNotNull(out, "out");
+    this.blockSize = blockSize;
+    this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    this.uncompressed = new byte[blockSize];
+  }
+
+  /**
+   * Appends a line to the current block, the line separator is added.
+   *
+   * @param line the line to write, must not contain a line separator.
+   * @throws IOException if the block couldn't be written.
+   */
+  public void writeLine(String line) throws IOException {
+    // a newline would split the line into two records, possibly across blocks
+    Preconditions.checkArgument(line.indexOf(NEWLINE) < 0,
+        "line must not contain a line separator");
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    int recordLength = bytes.length + 1;
+    if (uncompressedLength > 0
+        && uncompressedLength + recordLength > blockSize) {
+      flushBlock();
+    }
+    if (uncompressed.length < uncompressedLength + recordLength) {
+      // a single line that is larger than the block size gets its own block
+      uncompressed = Arrays.copyOf(uncompressed, uncompressedLength
+          + recordLength);
+    }
+    System.arraycopy(bytes, 0, uncompressed, uncompressedLength, bytes.length);
+    uncompressedLength += bytes.length;
+    uncompressed[uncompressedLength++] = NEWLINE;
+  }
+
+  /**
+   * Writes the current block, even if it is not full yet.
+   *
+   * @throws IOException if the block couldn't be written.
+   */
+  public void flushBlock() throws IOException {
+    if (uncompressedLength == 0) {
+      return;
+    }
+
+    deflater.reset();
+    deflater.setInput(uncompressed, 0, uncompressedLength);
+    deflater.finish();
+    // deflate may expand incompressible data slightly
+    int bound = uncompressedLength + (uncompressedLength >> 3) + 64;
+    if (compressed == null || compressed.length < bound) {
+      compressed = new byte[bound];
+    }
+    int compressedLength = 0;
+    while (!deflater.finished()) {
+      compressedLength += deflater.deflate(compressed, compressedLength,
+          compressed.length - compressedLength);
+      if (compressedLength == compressed.length) {
+        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+      }
+    }
+
+    crc.reset();
+    crc.update(uncompressed, 0, uncompressedLength);
+
+    int memberLength = HEADER_LENGTH + compressedLength + TRAILER_LENGTH;
+    byte[] header = new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0,
+        (byte) 0xff, 8, 0, SUBFIELD_ID1, SUBFIELD_ID2, 4, 0, 0, 0, 0, 0 };
+    writeIntLE(header, 16, memberLength);
+    out.write(header);
+    out.write(compressed, 0, compressedLength);
+    byte[] trailer = new byte[TRAILER_LENGTH];
+    writeIntLE(trailer, 0, (int) crc.getValue());
+    writeIntLE(trailer, 4, uncompressedLength);
+    out.write(trailer);
+
+    uncompressedLength = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBlock();
+    } finally {
+      deflater.end();
+      out.close();
+    }
+  }
+
+  private static void writeIntLE(byte[] buf, int offset, int value) {
+    buf[offset] = (byte) value;
+    buf[offset + 1] = (byte) (value >>> 8);
+    buf[offset + 2] = (byte) (value >>> 16);
+    buf[offset + 3] = (byte) (value >>> 24);
+  }
+
+  /**
+   * Writes the given lines into a new block compressed file.
+   *
+   * @param lines the lines to write, they are consumed in encounter order.
+   * @param path the file to write.
+   * @param blockSize the uncompressed block size in bytes.
+   * @throws IOException if the file couldn't be written.
+   */
+  public static void write(Stream<String> lines, Path path, int blockSize)
+      throws IOException {
+    try (BlockCompressedWriter writer = new BlockCompressedWriter(
+        new BufferedOutputStream(Files.newOutputStream(path)), blockSize)) {
+      lines.forEachOrdered((line) -> {
+        try {
+          writer.writeLine(line);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+package de.jungblut.online.stream;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * Aggregates exact duplicates (same feature and outcome) of a stream within a
+ * bounded window of distinct examples. Duplicates are merged into a single
+ * {@link WeightedFeatureOutcomePair} whose weight is the sum of the merged
+ * weights, so the learners need a single update instead of many. When the
+ * window is full, the least recently inserted example is emitted, thus
+ * duplicates that are further apart than the window size are emitted more than
+ * once (with their partial counts), which is still correct for the learners.
+ *
+ * The examples are compared by their non-zero values, hence sparse and dense
+ * vectors of the same values are duplicates.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class DuplicateAggregator extends
+    AbstractIterator<FeatureOutcomePair> {
+
+  private final Iterator<FeatureOutcomePair> baseStreamIterator;
+  private final LinkedHashMap<ExampleKey, ExampleKey> window;
+  private final int windowSize;
+
+  DuplicateAggregator(Stream<FeatureOutcomePair> baseStream, int windowSize) {
+    Preconditions.checkArgument(windowSize > 0, "windowSize > 0");
+    Preconditions.checkNotNull(baseStream, "baseStream");
+    this.baseStreamIterator = baseStream.iterator();
+    this.windowSize = windowSize;
+    this.window = new LinkedHashMap<>();
+  }
+
+  @Override
+  protected FeatureOutcomePair computeNext() {
+    while (baseStreamIterator.hasNext()) {
+      ExampleKey key = new ExampleKey(baseStreamIterator.next());
+      ExampleKey existing = window.get(key);
+      if (existing != null) {
+        existing.weight += key.weight;
+        continue;
+      }
+      window.put(key, key);
+      if (window.size() > windowSize) {
+        return evictEldest();
+      }
+    }
+    if (!window.isEmpty()) {
+      return evictEldest();
+    }
+    return endOfData();
+  }
+
+  private FeatureOutcomePair evictEldest() {
+    Iterator<Map.Entry<ExampleKey, ExampleKey>> iterator = window.entrySet()
+        .iterator();
+    ExampleKey eldest = iterator.next().getKey();
+    iterator.remove();
+    return eldest.toPair();
+  }
+
+  public Stream<FeatureOutcomePair> asStream() {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Creates a new stream that aggregates duplicates.
+   *
+   * @param baseStream the base stream to load elements from.
+   * @param windowSize the maximum number of distinct examples to keep.
+   * @return a stream of (weighted) distinct examples.
+   */
+  public static Stream<FeatureOutcomePair> fromStream(
+      Stream<FeatureOutcomePair> baseStream, int windowSize) {
+    return new DuplicateAggregator(baseStream, windowSize).asStream().onClose(
+        baseStream::close);
+  }
+
+  private static final class ExampleKey {
+    private final FeatureOutcomePair pair;
+    private final int hash;
+    private double weight;
+
+    ExampleKey(FeatureOutcomePair pair) {
+      this.pair = pair;
+      this.weight = WeightedFeatureOutcomePair.weightOf(pair);
+      this.hash = 31 * hash(pair.getFeature()) + hashOutcome(pair);
+    }
+
+    FeatureOutcomePair toPair() {
+      if (weight == WeightedFeatureOutcomePair.weightOf(pair)) {
+        return pair;
+      }
+      if (pair instanceof WeightedFeatureOutcomePair) {
+        return ((WeightedFeatureOutcomePair) pair).withWeight(weight);
+      }
+      return new WeightedFeatureOutcomePair(pair.getFeature(),
+          pair.getOutcome(), weight);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ExampleKey)) {
+        return false;
+      }
+      ExampleKey other = (ExampleKey) obj;
+      return hash == other.hash
+          && equal(pair.getFeature(), other.pair.getFeature())
+          && equalOutcomes(pair, other.pair);
+    }
+
+    private static int hashOutcome(FeatureOutcomePair pair) {
+      if (pair instanceof LabeledFeatureOutcomePair) {
+        // same hash as the outcome vector, without creating it
+        LabeledFeatureOutcomePair labeled = (LabeledFeatureOutcomePair) pair;
+        if (labeled.getOutcomeDimension() == 1) {
+          return 1 + hash(0, labeled.getTarget());
+        }
+        return labeled.getNumClasses() + hash(labeled.getLabel(), 1d);
+      }
+      return hash(pair.getOutcome());
+    }
+
+    private static boolean equalOutcomes(FeatureOutcomePair a,
+        FeatureOutcomePair b) {
+      if (a instanceof LabeledFeatureOutcomePair
+          && b instanceof LabeledFeatureOutcomePair) {
+        LabeledFeatureOutcomePair labeledA = (LabeledFeatureOutcomePair) a;
+        LabeledFeatureOutcomePair labeledB = (LabeledFeatureOutcomePair) b;
+        return labeledA.getOutcomeDimension() == labeledB
+            .getOutcomeDimension()
+            && labeledA.getTarget() == labeledB.getTarget();
+      }
+      return equal(a.getOutcome(), b.getOutcome());
+    }
+
+    private static int hash(DoubleVector vector) {
+      // the sum is independent of the iteration order of sparse vectors
+      int hash = vector.getDimension();
+      Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (next.getValue() != 0d) {
+          hash += hash(next.getIndex(), next.getValue());
+        }
+      }
+      return hash;
+    }
+
+    private static int hash(int index, double value) {
+      if (value == 0d) {
+        return 0;
+      }
+      int h = index * 0x9E3779B9 ^ Double.hashCode(value);
+      return h ^ (h >>> 16);
+    }
+
+    private static boolean equal(DoubleVector a, DoubleVector b) {
+      if (a == b) {
+        return true;
+      }
+      if (a.getDimension() != b.getDimension()) {
+        return false;
+      }
+      return contains(a, b) && contains(b, a);
+    }
+
+    private static boolean contains(DoubleVector a, DoubleVector b) {
+      Iterator<DoubleVectorElement> iterateNonZero = a.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (b.get(next.getIndex()) != next.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,363 @@
+package de.jungblut.online.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+import de.jungblut.writable.VectorWritable;
+
+/**
+ * Fully shuffles datasets that don't fit into memory between passes. For every
+ * pass (every call to {@link #get()}) the source stream is spilled into random
+ * partitions on local disk, then the partitions are read back in a random order
+ * and each of them is shuffled in memory.
+ *
+ * The randomness is driven by a seed per pass, so every pass sees a different
+ * order while the whole sequence of passes is reproducible for sequential
+ * sources. Memory is bounded by a single partition per consuming thread, so the
+ * number of partitions should be chosen such that (dataset size / partitions)
+ * fits comfortably into the heap. Disk I/O is sequential in both phases and
+ * the disk usage is bounded by a single copy of the dataset, since the spill
+ * of a pass is deleted when the next one is created or on {@link #close()}.
+ * The weights of {@link WeightedFeatureOutcomePair}s are kept and
+ * {@link LabeledFeatureOutcomePair}s are spilled by their label.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class ExternalShuffleStreamSupplier implements
+    Supplier<Stream<FeatureOutcomePair>>, Closeable {
+
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+  // outcome types of a spilled pair, otherwise it is the number of classes
+  private static final int VECTOR_OUTCOME = 0;
+  private static final int SCALAR_TARGET = -1;
+
+  private final Supplier<Stream<FeatureOutcomePair>> source;
+  private final int numPartitions;
+  private final long seed;
+  private final Path tempDirectory;
+  private final boolean parallel;
+  private final AtomicInteger pass = new AtomicInteger();
+
+  private Spill currentSpill;
+
+  /**
+   * Creates a new external shuffle that spills into the default temporary
+   * directory and supplies sequential streams.
+   *
+   * @param source the source of the data to shuffle.
+   * @param numPartitions the number of partitions to spill to.
+   * @param seed the seed the per pass seeds are derived from.
+   */
+  public ExternalShuffleStreamSupplier(
+      Supplier<Stream<FeatureOutcomePair>> source, int numPartitions,
+      long seed) {
+    this(source, numPartitions, seed, null, false);
+  }
+
+  /**
+   * Creates a new external shuffle.
+   *
+   * @param source the source of the data to shuffle.
+   * @param numPartitions the number of partitions to spill to.
+   * @param seed the seed the per pass seeds are derived from.
+   * @param tempDirectory the local directory to spill into, null for the
+   *          default temporary directory.
+   * @param parallel true if the supplied streams should read partitions in
+   *          parallel.
+   */
+  public ExternalShuffleStreamSupplier(
+      Supplier<Stream<FeatureOutcomePair>> source, int numPartitions,
+      long seed, Path tempDirectory, boolean parallel) {
+    Preconditions.checkArgument(numPartitions > 0, "numPartitions > 0");
+    this.source = Preconditions.checkNotNull(source, "source");
+    this.numPartitions = numPartitions;
+    this.seed = seed;
+    this.tempDirectory = tempDirectory;
+    this.parallel = parallel;
+  }
+
+  /**
+   * Spills the source for the next pass and returns a stream over the shuffled
+   * data. If the stream of the previous pass wasn't fully consumed (e.g. a
+   * learner just peeked at the first example), its spill is replayed instead
+   * of spilling again.
+   */
+  @Override
+  public synchronized Stream<FeatureOutcomePair> get() {
+    if (currentSpill == null || currentSpill.isFullyRead()) {
+      if (currentSpill != null) {
+        deleteSpill(currentSpill.directory);
+      }
+      long passSeed = seedForPass(pass.getAndIncrement());
+      currentSpill = new Spill(spill(passSeed), passSeed);
+    }
+
+    Spill spill = currentSpill;
+    // every stream counts its own reads, so replaying a spill while an older
+    // stream of it is still consumed doesn't mark the spill as fully read
+    AtomicInteger partitionsRead = new AtomicInteger();
+    return PartitionedSpliterator.stream(numPartitions,
+        (i) -> readPartition(spill, i, partitionsRead), parallel);
+  }
+
+  /**
+   * @return the number of passes that were spilled so far.
+   */
+  public int getNumPasses() {
+    return pass.get();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (currentSpill != null) {
+      deleteSpill(currentSpill.directory);
+      currentSpill = null;
+    }
+  }
+
+  private long seedForPass(int pass) {
+    return seed + pass * 0x9E3779B97F4A7C15L;
+  }
+
+  private Path spill(long passSeed) {
+    Path directory = null;
+    DataOutputStream[] partitions = new DataOutputStream[numPartitions];
+    try {
+      directory = tempDirectory == null ? Files
+          .createTempDirectory("external_shuffle") : Files.createTempDirectory(
+          tempDirectory, "external_shuffle");
+      for (int i = 0; i < numPartitions; i++) {
+        partitions[i] = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(partitionPath(directory, i)),
+            WRITE_BUFFER_SIZE));
+      }
+      try (Stream<FeatureOutcomePair> stream = source.get()) {
+        // every split of a parallel source draws from its own random
+        PartitionAssigner assigner = new PartitionAssigner(
+            stream.spliterator(), new SplittableRandom(passSeed),
+            numPartitions);
+        StreamSupport.stream(assigner, stream.isParallel()).forEach(
+            (assigned) -> {
+          DataOutputStream out = partitions[assigned.partition];
+          try {
+            synchronized (out) {
+              writePair(assigned.pair, out);
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+      for (DataOutputStream out : partitions) {
+        out.close();
+      }
+      return directory;
+    } catch (IOException | RuntimeException e) {
+      for (DataOutputStream out : partitions) {
+        closeQuietly(out);
+      }
+      if (directory != null) {
+        deleteSpill(directory);
+      }
+      if (e instanceof IOException) {
+        throw new UncheckedIOException((IOException) e);
+      }
+      throw (RuntimeException) e;
+    }
+  }
+
+  private Iterator<FeatureOutcomePair> readPartition(Spill spill, int index,
+      AtomicInteger partitionsRead) {
+    // read back the partitions in a random order
+    int partition = spill.order[index];
+    List<FeatureOutcomePair> items = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(partitionPath(spill.directory, partition))))) {
+      while (true) {
+        DoubleVector feature;
+        try {
+          feature = VectorWritable.readVector(in);
+        } catch (EOFException e) {
+          break;
+        }
+        items.add(readPair(feature, in));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // every partition gets its own random, so parallel reads are reproducible
+    Collections.shuffle(items, new Random(spill.passSeed + partition));
+    if (partitionsRead.incrementAndGet() == numPartitions) {
+      spill.fullyRead = true;
+    }
+    return items.iterator();
+  }
+
+  private void deleteSpill(Path directory) {
+    try {
+      for (int i = 0; i < numPartitions; i++) {
+        Files.deleteIfExists(partitionPath(directory, i));
+      }
+      Files.deleteIfExists(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private final class Spill {
+    private final Path directory;
+    private final long passSeed;
+    private final int[] order;
+    private volatile boolean fullyRead;
+
+    Spill(Path directory, long passSeed) {
+      this.directory = directory;
+      this.passSeed = passSeed;
+      List<Integer> list = new ArrayList<>(numPartitions);
+      for (int i = 0; i < numPartitions; i++) {
+        list.add(i);
+      }
+      Collections.shuffle(list, new Random(~passSeed));
+      this.order = list.stream().mapToInt((i) -> i).toArray();
+    }
+
+    boolean isFullyRead() {
+      return fullyRead;
+    }
+  }
+
+  private static final class AssignedPair {
+    private final FeatureOutcomePair pair;
+    private final int partition;
+
+    AssignedPair(FeatureOutcomePair pair, int partition) {
+      this.pair = pair;
+      this.partition = partition;
+    }
+  }
+
+  /**
+   * Assigns a random partition to every pair of the source. The random is
+   * split along with the source, so the splits never contend on a shared one.
+   */
+  private static final class PartitionAssigner implements
+      Spliterator<AssignedPair> {
+
+    private final Spliterator<FeatureOutcomePair> source;
+    private final SplittableRandom random;
+    private final int numPartitions;
+
+    PartitionAssigner(Spliterator<FeatureOutcomePair> source,
+        SplittableRandom random, int numPartitions) {
+      this.source = source;
+      this.random = random;
+      this.numPartitions = numPartitions;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super AssignedPair> action) {
+      return source.tryAdvance((pair) -> action.accept(new AssignedPair(pair,
+          random.nextInt(numPartitions))));
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super AssignedPair> action) {
+      source.forEachRemaining((pair) -> action.accept(new AssignedPair(pair,
+          random.nextInt(numPartitions))));
+    }
+
+    @Override
+    public Spliterator<AssignedPair> trySplit() {
+      Spliterator<FeatureOutcomePair> prefix = source.trySplit();
+      return prefix == null ? null : new PartitionAssigner(prefix,
+          random.split(), numPartitions);
+    }
+
+    @Override
+    public long estimateSize() {
+      return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return source.characteristics()
+          & (ORDERED | SIZED | SUBSIZED | IMMUTABLE | CONCURRENT);
+    }
+  }
+
+  private static Path partitionPath(Path directory, int partition) {
+    return directory.resolve("part-" + partition);
+  }
+
+  private static void writePair(FeatureOutcomePair pair, DataOutputStream out)
+      throws IOException {
+    VectorWritable.writeVector(pair.getFeature(), out);
+    // labeled pairs are spilled by their label (classes > 0 or a scalar target)
+    if (pair instanceof LabeledFeatureOutcomePair) {
+      LabeledFeatureOutcomePair labeled = (LabeledFeatureOutcomePair) pair;
+      out.writeInt(labeled.getNumClasses() > 0 ? labeled.getNumClasses()
+          : SCALAR_TARGET);
+      out.writeDouble(labeled.getTarget());
+    } else {
+      out.writeInt(VECTOR_OUTCOME);
+      VectorWritable.writeVector(pair.getOutcome(), out);
+    }
+    out.writeDouble(WeightedFeatureOutcomePair.weightOf(pair));
+  }
+
+  private static FeatureOutcomePair readPair(DoubleVector feature,
+      DataInputStream in) throws IOException {
+    int outcomeType = in.readInt();
+    if (outcomeType == VECTOR_OUTCOME) {
+      DoubleVector outcome = VectorWritable.readVector(in);
+      double weight = in.readDouble();
+      return weight == 1d ? new FeatureOutcomePair(feature, outcome)
+          : new WeightedFeatureOutcomePair(feature, outcome, weight);
+    }
+    double target = in.readDouble();
+    double weight = in.readDouble();
+    if (outcomeType == SCALAR_TARGET) {
+      return LabeledFeatureOutcomePair.ofTarget(feature, target, weight);
+    }
+    return LabeledFeatureOutcomePair.ofClass(feature, (int) target,
+        outcomeType, weight);
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // we are already failing
+      }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+package de.jungblut.online.stream;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+/**
+ * Downsamples the negative examples of a binary classification stream: every
+ * negative (outcome of zero) is kept with probability r and the survivors are
+ * re-weighted by 1/r, so the learners still see the original class balance in
+ * expectation and their predicted probabilities stay calibrated. Positives are
+ * always kept with their original weight.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class NegativeDownsampler implements
+    Supplier<Stream<FeatureOutcomePair>> {
+
+  private final Supplier<Stream<FeatureOutcomePair>> source;
+  private final double rate;
+  private final long seed;
+  private final AtomicInteger pass = new AtomicInteger();
+
+  /**
+   * Creates a new downsampler that draws a new sample on every pass.
+   *
+   * @param source the source of the data to downsample.
+   * @param rate the probability to keep a negative example, (0, 1].
+   * @param seed the seed the per pass samples are derived from.
+   */
+  public NegativeDownsampler(Supplier<Stream<FeatureOutcomePair>> source,
+      double rate, long seed) {
+    this.source = Preconditions.checkNotNull(source, "source");
+    this.rate = checkRate(rate);
+    this.seed = seed;
+  }
+
+  @Override
+  public Stream<FeatureOutcomePair> get() {
+    return downsample(source.get(), rate, new Random(seed
+        + pass.getAndIncrement()));
+  }
+
+  /**
+   * Downsamples the negatives of the given stream. The sample is only
+   * reproducible for sequential streams.
+   *
+   * @param stream the stream to downsample.
+   * @param rate the probability to keep a negative example, (0, 1].
+   * @param random the random to sample with.
+   * @return a stream of the positives and the re-weighted surviving negatives.
+   */
+  public static Stream<FeatureOutcomePair> downsample(
+      Stream<FeatureOutcomePair> stream, double rate, Random random) {
+    checkRate(rate);
+    Preconditions.checkNotNull(random, "random");
+    double weight = 1d / rate;
+    return stream.filter((pair) -> !isNegative(pair)
+        || random.nextDouble() < rate).map(
+        (pair) -> isNegative(pair) ? WeightedFeatureOutcomePair.reweight(pair,
+            weight) : pair);
+  }
+
+  private static boolean isNegative(FeatureOutcomePair pair) {
+    int outcomeDimension = LabeledFeatureOutcomePair.outcomeDimensionOf(pair);
+    Preconditions.checkArgument(outcomeDimension == 1,
+        "Only binary outcomes can be downsampled, given outcome dimension "
+            + outcomeDimension);
+    return LabeledFeatureOutcomePair.targetOf(pair) == 0d;
+  }
+
+  private static double checkRate(double rate) {
+    Preconditions.checkArgument(rate > 0 && rate <= 1,
+        "rate must be in (0, 1], given: " + rate);
+    return rate;
+  }
+
+}
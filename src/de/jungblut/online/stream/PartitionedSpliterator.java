@@ -0,0 +1,106 @@
+package de.jungblut.online.stream;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A spliterator over a fixed number of independent partitions (e.g. compressed
+ * blocks or file splits). Partitions are only opened once they are consumed, so
+ * a parallel stream can split the partition range across threads and every
+ * thread opens and decodes its own partitions concurrently.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class PartitionedSpliterator<T> implements Spliterator<T> {
+
+  private final IntFunction<Iterator<T>> partitionOpener;
+  private final int endPartition;
+
+  private int currentPartition;
+  private Iterator<T> current;
+
+  /**
+   * Creates a new spliterator.
+   *
+   * @param numPartitions the number of partitions, indexed from zero.
+   * @param partitionOpener the function that opens the given partition index
+   *          and returns an iterator over its items.
+   */
+  public PartitionedSpliterator(int numPartitions,
+      IntFunction<Iterator<T>> partitionOpener) {
+    this(0, numPartitions, null, partitionOpener);
+  }
+
+  private PartitionedSpliterator(int startPartition, int endPartition,
+      Iterator<T> current, IntFunction<Iterator<T>> partitionOpener) {
+    Preconditions.checkArgument(startPartition >= 0
+        && startPartition <= endPartition, "invalid partition range ["
+        + startPartition + ", " + endPartition + ")");
+    this.currentPartition = startPartition;
+    this.endPartition = endPartition;
+    this.current = current;
+    this.partitionOpener = Preconditions.checkNotNull(partitionOpener,
+        "partitionOpener");
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    while (current == null || !current.hasNext()) {
+      if (currentPartition >= endPartition) {
+        current = null;
+        return false;
+      }
+      current = partitionOpener.apply(currentPartition++);
+    }
+    action.accept(current.next());
+    return true;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    int remaining = endPartition - currentPartition;
+    if (remaining < 2) {
+      return null;
+    }
+    // the prefix keeps the partially consumed partition to retain the order
+    int mid = currentPartition + remaining / 2;
+    PartitionedSpliterator<T> prefix = new PartitionedSpliterator<>(
+        currentPartition, mid, current, partitionOpener);
+    this.currentPartition = mid;
+    this.current = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    // we don't know how many items a partition yields
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+   * Creates a stream over the given partitions.
+   *
+   * @param numPartitions the number of partitions, indexed from zero.
+   * @param partitionOpener the function that opens the given partition index.
+   * @param parallel true if the resulting stream should be parallel.
+   * @return a new stream.
+   */
+  public static <T> Stream<T> stream(int numPartitions,
+      IntFunction<Iterator<T>> partitionOpener, boolean parallel) {
+    return StreamSupport.stream(new PartitionedSpliterator<>(numPartitions,
+        partitionOpener), parallel);
+  }
+
+}
@@ -0,0 +1,230 @@
+package de.jungblut.online.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.writable.VectorWritable;
+
+/**
+ * Supplies streams of {@link FeatureOutcomePair} from SequenceFiles of
+ * {@link VectorWritable} feature keys and {@link VectorWritable} outcome
+ * values, read from the local or any Hadoop filesystem. Every file is cut into
+ * byte ranges that are aligned to the SequenceFile sync markers (the same way
+ * the SequenceFileInputFormat does it), which become the partitions of a
+ * splittable, optionally parallel, stream.
+ *
+ * Each call to {@link #get()} re-reads the files, so it can be passed as a
+ * stream supplier to the learners directly.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class SequenceFileStreamSupplier implements
+    Supplier<Stream<FeatureOutcomePair>>, Closeable {
+
+  public static final long DEFAULT_SPLIT_SIZE = 64L * 1024L * 1024L;
+
+  private final Configuration conf;
+  private final Path[] paths;
+  private final long splitSize;
+  private final boolean parallel;
+  // readers of streams that were not fully consumed, e.g. by a findFirst
+  private final Set<SequenceFile.Reader> openReaders = Collections
+      .newSetFromMap(new ConcurrentHashMap<>());
+
+  private List<FileSplit> splits;
+
+  /**
+   * Creates a new sequential supplier with the {@link #DEFAULT_SPLIT_SIZE}.
+   *
+   * @param conf the hadoop configuration.
+   * @param paths the SequenceFiles to read.
+   */
+  public SequenceFileStreamSupplier(Configuration conf, Path... paths) {
+    this(conf, DEFAULT_SPLIT_SIZE, false, paths);
+  }
+
+  /**
+   * Creates a new supplier.
+   *
+   * @param conf the hadoop configuration.
+   * @param splitSize the maximum size of a split in bytes.
+   * @param parallel true if the supplied streams should be parallel.
+   * @param paths the SequenceFiles to read.
+   */
+  public SequenceFileStreamSupplier(Configuration conf, long splitSize,
+      boolean parallel, Path... paths) {
+    Preconditions.checkArgument(splitSize > 0, "splitSize > 0");
+    Preconditions.checkArgument(paths != null && paths.length > 0,
+        "at least one path must be supplied");
+    this.conf = Preconditions.checkNotNull(conf, "conf");
+    this.splitSize = splitSize;
+    this.parallel = parallel;
+    this.paths = paths;
+  }
+
+  @Override
+  public Stream<FeatureOutcomePair> get() {
+    List<FileSplit> currentSplits = getSplits();
+    Set<SequenceFile.Reader> streamReaders = Collections
+        .newSetFromMap(new ConcurrentHashMap<>());
+    return PartitionedSpliterator.stream(currentSplits.size(),
+        (i) -> new SplitIterator(currentSplits.get(i), streamReaders),
+        parallel).onClose(() -> closeAll(streamReaders));
+  }
+
+  /**
+   * @return the number of splits the files are partitioned into.
+   */
+  public int getNumSplits() {
+    return getSplits().size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeAll(openReaders);
+  }
+
+  private synchronized List<FileSplit> getSplits() {
+    if (splits == null) {
+      List<FileSplit> list = new ArrayList<>();
+      try {
+        for (Path path : paths) {
+          FileSystem fs = path.getFileSystem(conf);
+          FileStatus status = fs.getFileStatus(path);
+          long length = status.getLen();
+          for (long start = 0; start < length; start += splitSize) {
+            list.add(new FileSplit(path, start, Math.min(length, start
+                + splitSize)));
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      splits = list;
+    }
+    return splits;
+  }
+
+  private void closeAll(Set<SequenceFile.Reader> readers) {
+    for (SequenceFile.Reader reader : readers) {
+      closeQuietly(reader, readers);
+    }
+  }
+
+  private void closeQuietly(SequenceFile.Reader reader,
+      Set<SequenceFile.Reader> streamReaders) {
+    streamReaders.remove(reader);
+    openReaders.remove(reader);
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class FileSplit {
+    private final Path path;
+    private final long start;
+    private final long end;
+
+    FileSplit(Path path, long start, long end) {
+      this.path = path;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Reads the records of a split, following the SequenceFileRecordReader
+   * semantics: the split starts after the first sync marker past its start and
+   * ends with the first sync marker past its end. The writables are reused for
+   * every record of the split.
+   */
+  private final class SplitIterator implements Iterator<FeatureOutcomePair> {
+
+    private final FileSplit split;
+    private final Set<SequenceFile.Reader> streamReaders;
+    private final VectorWritable feature = new VectorWritable();
+    private final VectorWritable outcome = new VectorWritable();
+
+    private SequenceFile.Reader reader;
+    private boolean more;
+    private boolean fetched;
+
+    SplitIterator(FileSplit split, Set<SequenceFile.Reader> streamReaders) {
+      this.split = split;
+      this.streamReaders = streamReaders;
+      try {
+        reader = new SequenceFile.Reader(conf,
+            SequenceFile.Reader.file(split.path));
+        streamReaders.add(reader);
+        openReaders.add(reader);
+        if (split.start > reader.getPosition()) {
+          reader.sync(split.start);
+        }
+        more = split.start < split.end;
+      } catch (IOException e) {
+        if (reader != null) {
+          closeQuietly(reader, streamReaders);
+        }
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!fetched) {
+        fetched = true;
+        more = more && readNext();
+        if (!more && reader != null) {
+          closeQuietly(reader, streamReaders);
+          reader = null;
+        }
+      }
+      return more;
+    }
+
+    @Override
+    public FeatureOutcomePair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      fetched = false;
+      return new FeatureOutcomePair(feature.getVector(), outcome.getVector());
+    }
+
+    private boolean readNext() {
+      try {
+        long position = reader.getPosition();
+        boolean remaining = reader.next(feature, outcome);
+        if (position >= split.end && reader.syncSeen()) {
+          return false;
+        }
+        return remaining;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed reading " + split.path, e);
+      }
+    }
+  }
+
+}
@@ -1,73 +1,183 @@
 package de.jungblut.online.stream;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Random;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * A shuffled iterator. The implementation buffers a fixed amount of data by
  * consuming the stream, shuffles it and makes it available as a stream again.
+ *
+ * Optionally the next buffer can be filled and shuffled by a background thread
+ * while the current one is consumed (double-buffering), so the consumer
+ * doesn't stall on the refill. For a shuffle without hard block boundaries see
+ * {@link SlidingWindowShuffledIterator}.
  */
 public final class ShuffledIterator<T> extends AbstractIterator<T> {
 
+  // daemon threads that die when idle, so abandoned streams don't leak them
+  private static final ExecutorService FILL_POOL = Executors
+      .newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+          .setNameFormat("shuffle-fill-%d").build());
+
   private final Iterator<T> baseStreamIterator;
   private final int bufferedItems;
-  private final List<T> buffer;
+  private final Random random;
+  private final boolean backgroundFill;
+
+  private CompletableFuture<Object[]> nextBuffer;
+  private Object[] buffer;
   private int currentIndex;
 
   ShuffledIterator(Stream<T> baseStream, int bufferedItems) {
+    this(baseStream, bufferedItems, new Random(), false);
+  }
+
+  ShuffledIterator(Stream<T> baseStream, int bufferedItems, Random random,
+      boolean backgroundFill) {
     Preconditions.checkState(bufferedItems > 0, "bufferedItems > 0");
     Preconditions.checkNotNull(baseStream, "baseStream");
 
     this.bufferedItems = bufferedItems;
     this.baseStreamIterator = baseStream.iterator();
-    this.buffer = new ArrayList<>(bufferedItems);
+    this.random = Preconditions.checkNotNull(random, "random");
+    this.backgroundFill = backgroundFill;
 
-    bufferAndShuffle();
+    if (backgroundFill) {
+      nextBuffer = CompletableFuture.supplyAsync(this::bufferAndShuffle,
+          FILL_POOL);
+    }
+    swapBuffer();
   }
 
   @Override
   protected T computeNext() {
-    if (currentIndex >= buffer.size()) {
-      bufferAndShuffle();
-      if (buffer.isEmpty()) {
+    if (currentIndex >= buffer.length) {
+      swapBuffer();
+      if (buffer.length == 0) {
         return endOfData();
       }
     }
 
-    return buffer.get(currentIndex++);
+    @SuppressWarnings("unchecked")
+    T item = (T) buffer[currentIndex];
+    // release the reference early, the buffer may be large
+    buffer[currentIndex++] = null;
+    return item;
   }
 
   public Stream<T> asStream() {
-    return StreamSupport.stream(
-        Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false);
+    return asStream(false);
+  }
+
+  /**
+   * Creates a stream of the shuffled items. A parallel stream is split on the
+   * shuffled buffers, thus every split gets its own already shuffled block.
+   *
+   * @param parallel true if the stream should be parallel.
+   * @return a shuffled stream.
+   */
+  public Stream<T> asStream(boolean parallel) {
+    return StreamSupport.stream(new BufferSpliterator(), parallel);
   }
 
-  private void bufferAndShuffle() {
-    buffer.clear();
+  private void swapBuffer() {
+    if (backgroundFill) {
+      try {
+        buffer = nextBuffer.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+      if (buffer.length > 0) {
+        // fill the next one while the current buffer is consumed
+        nextBuffer = CompletableFuture.supplyAsync(this::bufferAndShuffle,
+            FILL_POOL);
+      }
+    } else {
+      buffer = bufferAndShuffle();
+    }
     currentIndex = 0;
-    for (int i = 0; i < bufferedItems; i++) {
-      if (baseStreamIterator.hasNext()) {
-        buffer.add(baseStreamIterator.next());
-      } else {
-        break;
+  }
+
+  private Object[] bufferAndShuffle() {
+    Object[] items = new Object[bufferedItems];
+    int size = 0;
+    while (size < bufferedItems && baseStreamIterator.hasNext()) {
+      items[size++] = baseStreamIterator.next();
+    }
+    if (size < bufferedItems) {
+      items = Arrays.copyOf(items, size);
+    }
+    // fisher-yates shuffle
+    for (int i = size - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      Object tmp = items[i];
+      items[i] = items[j];
+      items[j] = tmp;
+    }
+    return items;
+  }
+
+  private final class BufferSpliterator implements Spliterator<T> {
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (hasNext()) {
+        action.accept(next());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      // an already peeked element is never part of the buffer anymore
+      if (currentIndex >= buffer.length) {
+        swapBuffer();
       }
+      if (buffer.length == 0) {
+        return null;
+      }
+      // every buffer is a new array, so we can hand it off without copying
+      Spliterator<T> split = Spliterators.spliterator(buffer, currentIndex,
+          buffer.length, Spliterator.NONNULL);
+      currentIndex = buffer.length;
+      return split;
+    }
+
+    @Override
+    public long estimateSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.NONNULL;
     }
-    Collections.shuffle(buffer);
   }
 
   /**
    * Creates a new shuffled iterator to "proxy shuffle" a stream with the given
    * shuffle buffer.
-   * 
+   *
    * @param baseStream the base stream to load elements from.
    * @param bufferedItems the buffer size used to shuffle items.
    * @return a shuffled stream.
@@ -76,4 +186,23 @@ public final class ShuffledIterator<T> extends AbstractIterator<T> {
     return new ShuffledIterator<>(baseStream, bufferedItems).asStream();
   }
 
+  /**
+   * Creates a new shuffled iterator to "proxy shuffle" a stream with the given
+   * shuffle buffer.
+   *
+   * @param baseStream the base stream to load elements from.
+   * @param bufferedItems the buffer size used to shuffle items.
+   * @param random the random used for shuffling.
+   * @param backgroundFill true if the next buffer should be filled by a
+   *          background thread while the current one is consumed.
+   * @param parallel true if the resulting stream should be parallel.
+   * @return a shuffled stream.
+   */
+  public static <T> Stream<T> fromStream(Stream<T> baseStream,
+      int bufferedItems, Random random, boolean backgroundFill,
+      boolean parallel) {
+    return new ShuffledIterator<>(baseStream, bufferedItems, random,
+        backgroundFill).asStream(parallel).onClose(baseStream::close);
+  }
+
 }
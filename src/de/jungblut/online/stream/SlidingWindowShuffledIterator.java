@@ -0,0 +1,104 @@
+package de.jungblut.online.stream;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A shuffled iterator that shuffles continuously instead of in hard blocks. It
+ * keeps a window of items, emits a uniformly random one of them and replaces it
+ * with the next item from the base stream (like a reservoir). In contrast to
+ * the {@link ShuffledIterator}, items at the end of one block can be mixed with
+ * items at the beginning of the next one and there is never a refill stall.
+ */
+public final class SlidingWindowShuffledIterator<T> extends
+    AbstractIterator<T> {
+
+  private final Iterator<T> baseStreamIterator;
+  private final Random random;
+  private final Object[] window;
+  private int size;
+
+  SlidingWindowShuffledIterator(Stream<T> baseStream, int windowSize,
+      Random random) {
+    Preconditions.checkState(windowSize > 0, "windowSize > 0");
+    Preconditions.checkNotNull(baseStream, "baseStream");
+
+    this.baseStreamIterator = baseStream.iterator();
+    this.random = Preconditions.checkNotNull(random, "random");
+    this.window = new Object[windowSize];
+    while (size < windowSize && baseStreamIterator.hasNext()) {
+      window[size++] = baseStreamIterator.next();
+    }
+  }
+
+  @Override
+  protected T computeNext() {
+    if (size == 0) {
+      return endOfData();
+    }
+
+    int index = random.nextInt(size);
+    @SuppressWarnings("unchecked")
+    T item = (T) window[index];
+    if (baseStreamIterator.hasNext()) {
+      window[index] = baseStreamIterator.next();
+    } else {
+      // drain the window by moving the last item into the free slot
+      window[index] = window[--size];
+      window[size] = null;
+    }
+    return item;
+  }
+
+  public Stream<T> asStream() {
+    return asStream(false);
+  }
+
+  /**
+   * Creates a stream of the shuffled items. Since the window is consumed item
+   * by item, a parallel stream hands out batches of shuffled items to the
+   * worker threads.
+   *
+   * @param parallel true if the stream should be parallel.
+   * @return a shuffled stream.
+   */
+  public Stream<T> asStream(boolean parallel) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL),
+        parallel);
+  }
+
+  /**
+   * Creates a new shuffled stream using a sliding window.
+   *
+   * @param baseStream the base stream to load elements from.
+   * @param windowSize the number of items to keep in the window.
+   * @return a shuffled stream.
+   */
+  public static <T> Stream<T> fromStream(Stream<T> baseStream, int windowSize) {
+    return fromStream(baseStream, windowSize, new Random(), false);
+  }
+
+  /**
+   * Creates a new shuffled stream using a sliding window.
+   *
+   * @param baseStream the base stream to load elements from.
+   * @param windowSize the number of items to keep in the window.
+   * @param random the random used for shuffling.
+   * @param parallel true if the resulting stream should be parallel.
+   * @return a shuffled stream.
+   */
+  public static <T> Stream<T> fromStream(Stream<T> baseStream,
+      int windowSize, Random random, boolean parallel) {
+    return new SlidingWindowShuffledIterator<>(baseStream, windowSize, random)
+        .asStream(parallel).onClose(baseStream::close);
+  }
+
+}
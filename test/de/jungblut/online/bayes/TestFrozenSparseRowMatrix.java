@@ -0,0 +1,95 @@
+package de.jungblut.online.bayes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.writable.MatrixWritable;
+
+public class TestFrozenSparseRowMatrix {
+
+  @Test
+  public void testMatchesSparseMatrix() {
+    SparseDoubleRowMatrix sparse = createSparseMatrix();
+    FrozenSparseRowMatrix frozen = FrozenSparseRowMatrix.freeze(sparse);
+
+    Assert.assertEquals(sparse.getRowCount(), frozen.getRowCount());
+    Assert.assertEquals(sparse.getColumnCount(), frozen.getColumnCount());
+    Assert.assertTrue(frozen.isSparse());
+    Assert.assertArrayEquals(new int[] { 0, 2 }, frozen.rowIndices());
+    Assert.assertEquals(sparse.sum(), frozen.sum(), 1e-12);
+    assertEquals(sparse, frozen);
+    for (int col = 0; col < sparse.getColumnCount(); col++) {
+      Assert.assertArrayEquals(sparse.getColumnVector(col).toArray(), frozen
+          .getColumnVector(col).toArray(), 0d);
+    }
+    Assert.assertArrayEquals(sparse.transpose().toArray(), frozen.transpose()
+        .toArray());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable() {
+    FrozenSparseRowMatrix.freeze(createSparseMatrix()).set(0, 0, 1d);
+  }
+
+  @Test
+  public void testDeepCopyIsMutable() {
+    FrozenSparseRowMatrix frozen = FrozenSparseRowMatrix
+        .freeze(createSparseMatrix());
+    DoubleMatrix copy = frozen.deepCopy();
+    copy.set(1, 1, 5d);
+    Assert.assertEquals(5d, copy.get(1, 1), 0d);
+    Assert.assertEquals(0d, frozen.get(1, 1), 0d);
+  }
+
+  @Test
+  public void testSparseWritableLayout() throws IOException {
+    SparseDoubleRowMatrix sparse = createSparseMatrix();
+    FrozenSparseRowMatrix frozen = FrozenSparseRowMatrix.freeze(sparse);
+
+    // frozen bytes can be read by the matrix writable
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeByte(MatrixWritable.SPARSE_DOUBLE_ROW_MATRIX);
+    frozen.writeSparse(out);
+    MatrixWritable writable = new MatrixWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(baos
+        .toByteArray())));
+    assertEquals(writable.getMatrix(), frozen);
+
+    // and the other way around
+    baos = new ByteArrayOutputStream();
+    new MatrixWritable(sparse).write(new DataOutputStream(baos));
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        baos.toByteArray()));
+    Assert.assertEquals(MatrixWritable.SPARSE_DOUBLE_ROW_MATRIX, in.readByte());
+    assertEquals(sparse, FrozenSparseRowMatrix.readSparse(in));
+  }
+
+  private static void assertEquals(DoubleMatrix expected, DoubleMatrix actual) {
+    for (int row = 0; row < expected.getRowCount(); row++) {
+      Assert.assertArrayEquals(expected.getRowVector(row).toArray(), actual
+          .getRowVector(row).toArray(), 0d);
+      for (int col = 0; col < expected.getColumnCount(); col++) {
+        Assert.assertEquals(expected.get(row, col), actual.get(row, col), 0d);
+      }
+    }
+  }
+
+  private static SparseDoubleRowMatrix createSparseMatrix() {
+    SparseDoubleRowMatrix sparse = new SparseDoubleRowMatrix(3, 100);
+    sparse.set(0, 97, -1.5d);
+    sparse.set(0, 3, -0.5d);
+    sparse.set(0, 42, -2d);
+    sparse.set(2, 0, 1d);
+    return sparse;
+  }
+
+}
@@ -0,0 +1,97 @@
+package de.jungblut.online.bayes;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.ScoredLabel;
+
+public class TestInvertedIndexBayesianClassifier {
+
+  private static final int NUM_CLASSES = 30;
+  private static final int TOKENS_PER_CLASS = 5;
+  private static final int DIMENSION = NUM_CLASSES * TOKENS_PER_CLASS + 10;
+
+  @Test
+  public void testSameDistributionAsBayesianClassifier() {
+    BayesianProbabilityModel model = train();
+    BayesianClassifier expected = new BayesianClassifier(model);
+    InvertedIndexBayesianClassifier clf = new InvertedIndexBayesianClassifier(
+        model);
+
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      DoubleVector sparse = generateDocument(random, random.nextInt(NUM_CLASSES));
+      DoubleVector dense = new DenseDoubleVector(sparse);
+      DoubleVector binary = SparseBinaryDoubleVector.of(DIMENSION,
+          random.nextInt(DIMENSION), random.nextInt(DIMENSION));
+      for (DoubleVector document : new DoubleVector[] { sparse, dense, binary }) {
+        Assert.assertArrayEquals(expected.predict(document).toArray(), clf
+            .predict(document).toArray(), 1e-9);
+      }
+    }
+    // a document without any known token is classified by the priors
+    Assert.assertArrayEquals(
+        expected.predict(new SparseDoubleVector(DIMENSION)).toArray(), clf
+            .predict(new SparseDoubleVector(DIMENSION)).toArray(), 1e-9);
+  }
+
+  @Test
+  public void testTopK() {
+    InvertedIndexBayesianClassifier clf = new InvertedIndexBayesianClassifier(
+        train());
+
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      DoubleVector document = generateDocument(random,
+          random.nextInt(NUM_CLASSES));
+      double[] distribution = clf.predict(document).toArray();
+      for (int k : new int[] { 1, 5, NUM_CLASSES + 5 }) {
+        List<ScoredLabel> expected = ScoredLabel.topK(distribution, k);
+        List<ScoredLabel> topK = clf.predictTopK(document, k);
+        Assert.assertEquals(expected.size(), topK.size());
+        for (int j = 0; j < topK.size(); j++) {
+          Assert.assertEquals(expected.get(j).getLabel(), topK.get(j)
+              .getLabel());
+          Assert.assertEquals(expected.get(j).getScore(), topK.get(j)
+              .getScore(), 1e-9);
+        }
+      }
+    }
+  }
+
+  private BayesianProbabilityModel train() {
+    Random random = new Random(0);
+    List<FeatureOutcomePair> data = IntStream.range(0, 2000)
+        .mapToObj((i) -> {
+          // skewed classes, so the priors differ
+          int clazz = Math.min(NUM_CLASSES - 1,
+              (int) Math.abs(random.nextGaussian() * NUM_CLASSES / 3));
+          return LabeledFeatureOutcomePair.ofClass(
+              generateDocument(random, clazz), clazz, NUM_CLASSES);
+        }).collect(Collectors.toList());
+    return new NaiveBayesLearner().train(() -> data.stream());
+  }
+
+  private DoubleVector generateDocument(Random random, int clazz) {
+    DoubleVector document = new SparseDoubleVector(DIMENSION);
+    for (int i = 0; i < 3; i++) {
+      int token = clazz * TOKENS_PER_CLASS + random.nextInt(TOKENS_PER_CLASS);
+      document.set(token, document.get(token) + 1);
+    }
+    // a shared token
+    document.set(DIMENSION - 1 - random.nextInt(10), 1);
+    return document;
+  }
+
+}
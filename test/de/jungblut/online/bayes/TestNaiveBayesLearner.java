@@ -1,9 +1,14 @@
 package de.jungblut.online.bayes;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.apache.commons.math3.util.FastMath;
 import org.junit.Test;
@@ -13,6 +18,7 @@ import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.sparse.SparseDoubleVector;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
 
 public class TestNaiveBayesLearner {
 
@@ -22,6 +28,53 @@ public class TestNaiveBayesLearner {
     checkModel(model);
   }
 
+  @Test
+  public void testParallelTraining() {
+    Random random = new Random(0);
+    List<FeatureOutcomePair> data = IntStream.range(0, 5000)
+        .mapToObj((i) -> {
+          int clazz = random.nextInt(10);
+          DoubleVector document = new SparseDoubleVector(100);
+          for (int j = 0; j < 5; j++) {
+            document.set(clazz * 5 + random.nextInt(50), 1 + j % 2);
+          }
+          return LabeledFeatureOutcomePair.ofClass(document, clazz, 10);
+        }).collect(Collectors.toList());
+
+    BayesianProbabilityModel sequential = new NaiveBayesLearner()
+        .train(() -> data.stream());
+    BayesianProbabilityModel parallel = new NaiveBayesLearner()
+        .train(() -> data.parallelStream());
+
+    assertArrayEquals(sequential.getClassPriorProbability().toArray(),
+        parallel.getClassPriorProbability().toArray(), 1e-12);
+    for (int row = 0; row < 10; row++) {
+      assertArrayEquals(sequential.getProbabilityMatrix().getRowVector(row)
+          .toArray(), parallel.getProbabilityMatrix().getRowVector(row)
+          .toArray(), 1e-12);
+    }
+  }
+
+  @Test
+  public void testTwoDimensionalOutcomes() {
+    // binary outcomes with two entries are read from their first entry, like
+    // the single entry outcomes of the trained model: (1, 0) is class one
+    DoubleVector positive = new DenseDoubleVector(new double[] { 1, 0 });
+    DoubleVector negative = new DenseDoubleVector(new double[] { 0, 1 });
+    BayesianProbabilityModel model = new NaiveBayesLearner().train(() -> Stream
+        .of(new FeatureOutcomePair(new SparseDoubleVector(new double[] { 1, 0,
+            0, 0, 0 }), positive),
+            new FeatureOutcomePair(new SparseDoubleVector(new double[] { 1, 0,
+                0, 0, 0 }), positive),
+            new FeatureOutcomePair(new SparseDoubleVector(new double[] { 1, 1,
+                0, 0, 0 }), positive),
+            new FeatureOutcomePair(new SparseDoubleVector(new double[] { 0, 0,
+                1, 1, 1 }), negative),
+            new FeatureOutcomePair(new SparseDoubleVector(new double[] { 0, 0,
+                0, 1, 1 }), negative)));
+    checkModel(model);
+  }
+
   public static void checkModel(BayesianProbabilityModel model) {
     BayesianClassifier classifier = new BayesianClassifier(model);
 
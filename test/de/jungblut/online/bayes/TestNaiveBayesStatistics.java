@@ -0,0 +1,73 @@
+package de.jungblut.online.bayes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.jungblut.online.ml.FeatureOutcomePair;
+
+public class TestNaiveBayesStatistics {
+
+  @Test
+  public void testMergedShardsMatchLearner() throws IOException {
+    List<FeatureOutcomePair> data = TestUpdatableNaiveBayesModel
+        .generateData(3000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+
+    // merge order must not matter
+    NaiveBayesStatistics left = shard(data, 0).merge(
+        shard(data, 1).merge(shard(data, 2)));
+    NaiveBayesStatistics right = shard(data, 2).merge(shard(data, 0)).merge(
+        shard(data, 1));
+
+    TestUpdatableNaiveBayesModel.assertSameModel(expected, left.toModel());
+    TestUpdatableNaiveBayesModel.assertSameModel(expected, right.toModel());
+    assertEquals(3000d, left.getDocumentCount(0) + left.getDocumentCount(1)
+        + left.getDocumentCount(2) + left.getDocumentCount(3)
+        + left.getDocumentCount(4), 1e-12);
+  }
+
+  @Test
+  public void testObserveAndContinueUpdating() {
+    List<FeatureOutcomePair> data = TestUpdatableNaiveBayesModel
+        .generateData(2000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+
+    NaiveBayesStatistics statistics = new NaiveBayesStatistics(5, 60);
+    data.subList(0, 1000).forEach(statistics::observe);
+    UpdatableNaiveBayesModel model = new UpdatableNaiveBayesModel(statistics);
+    model.update(data.subList(1000, 2000).stream());
+
+    TestUpdatableNaiveBayesModel.assertSameModel(expected,
+        model.getProbabilityModel());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeDifferentDimensions() {
+    new NaiveBayesStatistics(5, 60).merge(new NaiveBayesStatistics(5, 61));
+  }
+
+  // computes the statistics of a shard in its own learner and ships them
+  private static NaiveBayesStatistics shard(List<FeatureOutcomePair> data,
+      int shard) throws IOException {
+    List<FeatureOutcomePair> shardData = data.subList(shard * 1000,
+        (shard + 1) * 1000);
+    NaiveBayesStatistics statistics = new NaiveBayesLearner()
+        .computeStatistics(() -> shardData.parallelStream());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    statistics.serialize(new DataOutputStream(baos));
+    return new NaiveBayesStatistics().deserialize(new DataInputStream(
+        new ByteArrayInputStream(baos.toByteArray())));
+  }
+
+}
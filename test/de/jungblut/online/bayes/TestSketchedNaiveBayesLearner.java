@@ -0,0 +1,168 @@
+package de.jungblut.online.bayes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.sketch.CountMinSketch;
+
+public class TestSketchedNaiveBayesLearner {
+
+  private static final int NUM_CLASSES = 4;
+  private static final int DIMENSION = 2000;
+
+  @Test
+  public void testWideSketchMatchesExactLearner() {
+    List<FeatureOutcomePair> data = TestUpdatableNaiveBayesModel
+        .generateData(3000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+    // the examples have 60 features in 5 classes, a wide sketch doesn't collide
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        1 << 16, 4, 10).train(() -> data.parallelStream());
+
+    assertEquals(10, model.getExactTokens().length);
+    TestUpdatableNaiveBayesModel.assertSameProbabilities(expected,
+        model.getProbabilityModel());
+  }
+
+  @Test
+  public void testFrequentTokensAreExact() {
+    List<FeatureOutcomePair> data = generateData(5000);
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        2048, 4, 20).train(() -> data.stream());
+    NaiveBayesStatistics exact = new NaiveBayesLearner()
+        .computeStatistics(() -> data.stream());
+
+    // the first tokens occur in every document
+    for (int token = 0; token < 10; token++) {
+      assertTrue(model.isExact(token));
+    }
+    CountMinSketch sketch = model.getSketch();
+    int overestimated = 0;
+    for (int clazz = 0; clazz < NUM_CLASSES; clazz++) {
+      assertEquals(exact.getDocumentCount(clazz), FastMath.exp(model
+          .getProbabilityModel().getClassPriorProbability().get(clazz))
+          * data.size(), 1e-6);
+      for (int token = 0; token < DIMENSION; token++) {
+        double count = exact.getTokenCount(clazz, token);
+        double estimate = model.getTokenCount(clazz, token);
+        if (model.isExact(token)) {
+          assertEquals(count, estimate, 0d);
+        } else {
+          assertTrue(estimate >= count);
+          assertTrue(estimate - count <= sketch.getErrorBound());
+          overestimated += estimate > count ? 1 : 0;
+        }
+      }
+    }
+    // the sketch is small enough to collide
+    assertTrue(overestimated > 0);
+
+    // the sketched model still classifies the data
+    BayesianClassifier classifier = new BayesianClassifier(
+        model.getProbabilityModel());
+    long correct = data.stream().filter((pair) -> {
+      int label = LabeledFeatureOutcomePair.labelOf(pair);
+      return classifier.predictedClass(pair.getFeature()) == label;
+    }).count();
+    assertTrue(correct + " correct", correct > 0.9 * data.size());
+  }
+
+  @Test
+  public void testSerDe() throws Exception {
+    List<FeatureOutcomePair> data = generateData(1000);
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        256, 3, 10).train(() -> data.stream());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    SketchedBayesianProbabilityModel deserialized = new SketchedBayesianProbabilityModel();
+    deserialized.deserialize(new DataInputStream(new ByteArrayInputStream(
+        baos.toByteArray())));
+
+    assertArrayEquals(model.getExactTokens(), deserialized.getExactTokens());
+    BayesianClassifier expected = new BayesianClassifier(
+        model.getProbabilityModel());
+    BayesianClassifier actual = new BayesianClassifier(
+        deserialized.getProbabilityModel());
+    for (FeatureOutcomePair pair : data.subList(0, 100)) {
+      assertArrayEquals(expected.predict(pair.getFeature()).toArray(), actual
+          .predict(pair.getFeature()).toArray(), 0d);
+    }
+  }
+
+  @Test
+  public void testParallelTraining() {
+    List<FeatureOutcomePair> data = generateData(2000);
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        512, 3, 10).train(() -> data.parallelStream());
+    NaiveBayesStatistics exact = new NaiveBayesLearner()
+        .computeStatistics(() -> data.stream());
+
+    // the merged per-thread sketches keep the bounds of a single sketch
+    double errorBound = model.getSketch().getErrorBound();
+    for (int clazz = 0; clazz < NUM_CLASSES; clazz++) {
+      for (int token = 0; token < DIMENSION; token++) {
+        double count = exact.getTokenCount(clazz, token);
+        double estimate = model.getTokenCount(clazz, token);
+        if (model.isExact(token)) {
+          assertEquals(count, estimate, 0d);
+        } else {
+          assertTrue(estimate >= count);
+          assertTrue(estimate - count <= errorBound);
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvertedIndexRejectsSketchedModel() {
+    List<FeatureOutcomePair> data = generateData(100);
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        256, 3, 10).train(() -> data.stream());
+    new InvertedIndexBayesianClassifier(model.getProbabilityModel());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRowsAreNotEnumerated() {
+    List<FeatureOutcomePair> data = generateData(100);
+    SketchedBayesianProbabilityModel model = new SketchedNaiveBayesLearner(
+        256, 3, 10).train(() -> data.stream());
+    model.getProbabilityModel().getProbabilityMatrix().deepCopy();
+  }
+
+  // ten common tokens plus a long tail of class specific tokens
+  private static List<FeatureOutcomePair> generateData(int size) {
+    Random random = new Random(0);
+    return IntStream.range(0, size).mapToObj((i) -> {
+      int clazz = random.nextInt(NUM_CLASSES);
+      DoubleVector document = new SparseDoubleVector(DIMENSION);
+      for (int token = 0; token < 10; token++) {
+        document.set(token, 1d);
+      }
+      int tail = (DIMENSION - 10) / NUM_CLASSES;
+      for (int j = 0; j < 5; j++) {
+        document.set(10 + clazz * tail + random.nextInt(tail), 1d);
+      }
+      return LabeledFeatureOutcomePair.ofClass(document, clazz, NUM_CLASSES);
+    }).collect(Collectors.toList());
+  }
+
+}
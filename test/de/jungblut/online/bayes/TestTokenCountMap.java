@@ -0,0 +1,85 @@
+package de.jungblut.online.bayes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTokenCountMap {
+
+  @Test
+  public void testCountsMatchHashMap() {
+    Random random = new Random(0);
+    TokenCountMap map = new TokenCountMap(2);
+    Map<Integer, Double> expected = new HashMap<>();
+    for (int i = 0; i < 10000; i++) {
+      int token = random.nextInt(2000) * 64;
+      double delta = random.nextDouble();
+      map.add(token, delta);
+      expected.merge(token, delta, Double::sum);
+    }
+
+    Assert.assertEquals(expected.size(), map.size());
+    for (Map.Entry<Integer, Double> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getValue(), map.get(entry.getKey()), 1e-9);
+    }
+    Assert.assertEquals(0d, map.get(1), 0d);
+
+    int[] tokens = map.sortedTokens();
+    Assert.assertEquals(expected.size(), tokens.length);
+    for (int i = 1; i < tokens.length; i++) {
+      Assert.assertTrue(tokens[i - 1] < tokens[i]);
+    }
+  }
+
+  @Test
+  public void testIntCountsSwitchToDoubles() {
+    TokenCountMap map = new TokenCountMap(2);
+    for (int token = 0; token < 100; token++) {
+      map.add(token, 1d);
+      map.add(token, token);
+    }
+    Assert.assertTrue(map.hasIntCounts());
+    Assert.assertEquals(43d, map.get(42), 0d);
+
+    // a weighted example switches to doubles and keeps the counts
+    map.add(42, 0.5d);
+    Assert.assertFalse(map.hasIntCounts());
+    Assert.assertEquals(43.5d, map.get(42), 0d);
+    Assert.assertEquals(100d, map.get(99), 0d);
+    Assert.assertEquals(100, map.size());
+
+    // counts that would overflow an int switch as well
+    TokenCountMap large = new TokenCountMap();
+    large.add(1, Integer.MAX_VALUE);
+    Assert.assertTrue(large.hasIntCounts());
+    large.add(1, 1d);
+    Assert.assertFalse(large.hasIntCounts());
+    Assert.assertEquals(Integer.MAX_VALUE + 1d, large.get(1), 0d);
+  }
+
+  @Test
+  public void testAddAll() {
+    TokenCountMap left = new TokenCountMap();
+    left.add(0, 1d);
+    left.add(5, 2d);
+    TokenCountMap right = new TokenCountMap();
+    right.add(5, 0.5d);
+    right.add(Integer.MAX_VALUE, 3d);
+
+    left.addAll(right);
+    Assert.assertEquals(3, left.size());
+    Assert.assertEquals(1d, left.get(0), 0d);
+    Assert.assertEquals(2.5d, left.get(5), 0d);
+    Assert.assertEquals(3d, left.get(Integer.MAX_VALUE), 0d);
+    Assert.assertArrayEquals(new int[] { 0, 5, Integer.MAX_VALUE },
+        left.sortedTokens());
+
+    double[] sum = new double[1];
+    left.forEach((token, count) -> sum[0] += count);
+    Assert.assertEquals(6.5d, sum[0], 0d);
+  }
+
+}
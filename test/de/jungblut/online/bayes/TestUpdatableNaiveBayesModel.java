@@ -0,0 +1,146 @@
+package de.jungblut.online.bayes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+
+public class TestUpdatableNaiveBayesModel {
+
+  private static final int NUM_CLASSES = 5;
+  private static final int DIMENSION = 60;
+
+  @Test
+  public void testUpdatesMatchLearner() {
+    List<FeatureOutcomePair> data = generateData(3000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+
+    UpdatableNaiveBayesModel model = new UpdatableNaiveBayesModel(NUM_CLASSES,
+        DIMENSION);
+    // the first day example by example, then mini-batches
+    data.subList(0, 1000).forEach(model::update);
+    model.update(data.subList(1000, 2000).stream());
+    // query in between, so the cached normalizers have to be refreshed
+    new BayesianClassifier(model.getProbabilityModel()).predict(data.get(0).getFeature());
+    model.update(data.subList(2000, 3000).parallelStream());
+
+    assertSameModel(expected, model.getProbabilityModel());
+    assertSameModel(expected, model.freeze());
+    assertSamePredictions(expected, model.getProbabilityModel(), data);
+  }
+
+  @Test
+  public void testSerDeKeepsCounts() throws Exception {
+    List<FeatureOutcomePair> data = generateData(2000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+
+    UpdatableNaiveBayesModel model = new UpdatableNaiveBayesModel(NUM_CLASSES,
+        DIMENSION);
+    model.update(data.subList(0, 1000).stream());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    UpdatableNaiveBayesModel deserialized = new UpdatableNaiveBayesModel()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+    deserialized.update(data.subList(1000, 2000).stream());
+
+    assertSameModel(expected, deserialized.getProbabilityModel());
+  }
+
+  @Test
+  public void testViewFollowsUpdates() {
+    List<FeatureOutcomePair> data = generateData(2000);
+    BayesianProbabilityModel expected = new NaiveBayesLearner().train(() -> data
+        .stream());
+
+    UpdatableNaiveBayesModel model = new UpdatableNaiveBayesModel(NUM_CLASSES,
+        DIMENSION);
+    // the classifier is created once and sees the later updates
+    BayesianProbabilityModel view = model.getProbabilityModel();
+    BayesianClassifier classifier = new BayesianClassifier(view);
+    model.update(data.subList(0, 1000).stream());
+    classifier.predict(data.get(0).getFeature());
+    data.subList(1000, 2000).forEach(model::update);
+
+    assertSameModel(expected, view);
+    assertSamePredictions(expected, view, data);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testProbabilitiesAreReadOnly() {
+    new UpdatableNaiveBayesModel(NUM_CLASSES, DIMENSION).getProbabilityModel()
+        .getProbabilityMatrix().set(0, 0, 1d);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownClass() {
+    new UpdatableNaiveBayesModel(NUM_CLASSES, DIMENSION)
+        .update(LabeledFeatureOutcomePair.ofClass(new SparseDoubleVector(
+            DIMENSION), NUM_CLASSES, NUM_CLASSES + 1));
+  }
+
+  static void assertSameModel(BayesianProbabilityModel expected,
+      BayesianProbabilityModel actual) {
+    assertSameProbabilities(expected, actual);
+    for (int row = 0; row < NUM_CLASSES; row++) {
+      assertArrayEquals(expected.getProbabilityMatrix().getRowVector(row)
+          .toArray(), actual.getProbabilityMatrix().getRowVector(row)
+          .toArray(), 1e-12);
+    }
+  }
+
+  // only compares single lookups, for models whose rows can't be enumerated
+  static void assertSameProbabilities(BayesianProbabilityModel expected,
+      BayesianProbabilityModel actual) {
+    assertArrayEquals(expected.getClassPriorProbability().toArray(), actual
+        .getClassPriorProbability().toArray(), 1e-12);
+    for (int row = 0; row < NUM_CLASSES; row++) {
+      for (int col = 0; col < DIMENSION; col++) {
+        assertEquals(expected.getProbabilityMatrix().get(row, col), actual
+            .getProbabilityMatrix().get(row, col), 1e-12);
+      }
+    }
+  }
+
+  private static void assertSamePredictions(
+      BayesianProbabilityModel expected, BayesianProbabilityModel actual,
+      List<FeatureOutcomePair> data) {
+    BayesianClassifier expectedClassifier = new BayesianClassifier(expected);
+    BayesianClassifier actualClassifier = new BayesianClassifier(actual);
+    for (FeatureOutcomePair pair : data.subList(0, 100)) {
+      assertArrayEquals(expectedClassifier.predict(pair.getFeature())
+          .toArray(), actualClassifier.predict(pair.getFeature()).toArray(),
+          1e-12);
+    }
+  }
+
+  static List<FeatureOutcomePair> generateData(int size) {
+    Random random = new Random(0);
+    return IntStream.range(0, size).mapToObj((i) -> {
+      int clazz = random.nextInt(NUM_CLASSES);
+      DoubleVector document = new SparseDoubleVector(DIMENSION);
+      for (int j = 0; j < 4; j++) {
+        document.set(clazz * 5 + random.nextInt(40), 1 + j % 3);
+      }
+      return LabeledFeatureOutcomePair.ofClass(document, clazz, NUM_CLASSES);
+    }).collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,105 @@
+package de.jungblut.online.features;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regularization.AdaptiveFTRLRegularizer;
+import de.jungblut.online.regularization.GradientDescentUpdater;
+import de.jungblut.online.regularization.WeightUpdater;
+
+public class TestCrossedFeatureVector {
+
+  private static final int DIMENSION = 1024;
+
+  private final FeatureInteractions interactions = new FeatureInteractions(
+      DIMENSION, new int[] { 0, 1 }, new int[] { 0, 1, 1 });
+  private final DoubleVector[] namespaces = new DoubleVector[] {
+      sparse(1, 2), sparse(3, 4, 5) };
+  private final DoubleVector base = namespaces[0].add(namespaces[1]);
+
+  @Test
+  public void testVectorOperations() {
+    CrossedFeatureVector crossed = new CrossedFeatureVector(base, namespaces,
+        interactions);
+    DoubleVector materialized = base.add(interactions
+        .crossFeatures(namespaces));
+    DoubleVector weights = randomWeights();
+
+    Assert.assertEquals(materialized.dot(weights), crossed.dot(weights), 1e-8);
+    Assert.assertEquals(materialized.sum(), crossed.sum(), 1e-8);
+    Assert.assertEquals(materialized.dot(materialized), crossed.squaredNorm(),
+        1e-8);
+    Assert.assertEquals(materialized.getLength(), crossed.getLength());
+    Assert.assertArrayEquals(materialized.toArray(), crossed.toArray(), 1e-8);
+
+    // scaling keeps the crosses lazy
+    DoubleVector scaled = crossed.multiply(-0.5);
+    Assert.assertTrue(scaled instanceof CrossedFeatureVector);
+    Assert.assertArrayEquals(materialized.multiply(-0.5).toArray(),
+        scaled.toArray(), 1e-8);
+    Assert.assertEquals(0d, crossed.multiply(0).sum(), 0d);
+
+    Assert.assertArrayEquals(materialized.add(weights).toArray(),
+        crossed.add(weights).toArray(), 1e-8);
+    Assert.assertArrayEquals(materialized.subtract(weights).toArray(), crossed
+        .subtract(weights).toArray(), 1e-8);
+    Assert.assertArrayEquals(materialized.toArray(), crossed.deepCopy()
+        .toArray(), 1e-8);
+  }
+
+  @Test
+  public void testUpdatersApplyTheLazyGradient() {
+    CrossedFeatureVector crossed = new CrossedFeatureVector(base, namespaces,
+        interactions);
+    DoubleVector gradient = crossed.multiply(0.3);
+    DoubleVector materialized = base.add(
+        interactions.crossFeatures(namespaces)).multiply(0.3);
+
+    assertSameUpdate(new GradientDescentUpdater(),
+        new GradientDescentUpdater(), gradient, materialized);
+    assertSameUpdate(new AdaptiveFTRLRegularizer(1, 0, 0),
+        new AdaptiveFTRLRegularizer(1, 0, 0), gradient, materialized);
+  }
+
+  private void assertSameUpdate(WeightUpdater lazy, WeightUpdater expected,
+      DoubleVector gradient, DoubleVector materialized) {
+    // the pre-prediction update initializes the state of the updaters
+    FeatureOutcomePair pair = new FeatureOutcomePair(base,
+        new SingleEntryDoubleVector(1d));
+    DoubleVector lazyWeights = lazy.prePredictionWeightUpdate(pair,
+        randomWeights(), 0.1, 0);
+    lazyWeights = lazy.computeNewWeights(lazyWeights, gradient, 0.1, 0, 0)
+        .getWeight();
+    DoubleVector expectedWeights = expected.prePredictionWeightUpdate(pair,
+        randomWeights(), 0.1, 0);
+    expectedWeights = expected.computeNewWeights(expectedWeights,
+        materialized, 0.1, 0, 0).getWeight();
+    Assert.assertArrayEquals(expectedWeights.toArray(), lazyWeights.toArray(),
+        1e-8);
+  }
+
+  private DoubleVector randomWeights() {
+    Random random = new Random(0);
+    double[] array = new double[DIMENSION];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = random.nextDouble() - 0.5;
+    }
+    return new DenseDoubleVector(array);
+  }
+
+  private DoubleVector sparse(int... indices) {
+    DoubleVector vector = new SequentialSparseDoubleVector(DIMENSION);
+    for (int index : indices) {
+      vector.set(index, 1d);
+    }
+    return vector;
+  }
+
+}
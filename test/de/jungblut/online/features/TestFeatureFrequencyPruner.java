@@ -0,0 +1,118 @@
+package de.jungblut.online.features;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+
+public class TestFeatureFrequencyPruner {
+
+  private static final int DIMENSION = 1 << 20;
+  private static final int NUM_FREQUENT = 20;
+
+  @Test
+  public void testPruning() {
+    List<FeatureOutcomePair> data = generateData();
+    FeatureIndexMapping mapping = new FeatureFrequencyPruner(5, 1 << 14, 4)
+        .fit(() -> data.parallelStream());
+
+    Assert.assertEquals(DIMENSION, mapping.getOriginalDimension());
+    // the sketch never underestimates, so all frequent features survive
+    for (int i = 0; i < NUM_FREQUENT; i++) {
+      Assert.assertEquals(i, mapping.compactIndex(i));
+      Assert.assertEquals(i, mapping.originalIndex(i));
+    }
+    // and collisions only let a few of the rare ones survive
+    Assert.assertTrue("" + mapping.getDimension(),
+        mapping.getDimension() < NUM_FREQUENT + 10);
+
+    DoubleVector feature = data.get(0).getFeature();
+    DoubleVector compact = mapping.apply(feature);
+    Assert.assertEquals(mapping.getDimension(), compact.getDimension());
+    Assert.assertTrue(compact.isSparse());
+    Assert.assertEquals(feature.get(0), compact.get(0), 1e-5);
+    Assert.assertEquals(-1, mapping.compactIndex(DIMENSION - 1));
+
+    DoubleVector dense = mapping.apply(new DenseDoubleVector(DIMENSION, 1d));
+    Assert.assertFalse(dense.isSparse());
+    Assert.assertEquals(mapping.getDimension(), dense.sum(), 1e-5);
+  }
+
+  @Test
+  public void testMappedTrainingAndSerialization() throws IOException {
+    List<FeatureOutcomePair> data = generateData();
+    Supplier<Stream<FeatureOutcomePair>> original = () -> data.stream();
+    FeatureIndexMapping mapping = new FeatureFrequencyPruner(5).fit(original);
+
+    RegressionLearner learner = new RegressionLearner(
+        StochasticGradientDescentBuilder.create(0.5).build(),
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(5);
+    RegressionModel model = learner.train(mapping.apply(original));
+    Assert.assertEquals(mapping.getDimension(), model.getWeights()
+        .getDimension());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new FeatureMappedModel<>(mapping, model).serialize(new DataOutputStream(
+        baos));
+    FeatureMappedModel<RegressionModel> deserialized = //
+    new FeatureMappedModel<RegressionModel>().deserialize(new DataInputStream(
+        new ByteArrayInputStream(baos.toByteArray())));
+    Assert.assertEquals(mapping.getDimension(), deserialized.getMapping()
+        .getDimension());
+    for (int i = 0; i < mapping.getDimension(); i++) {
+      Assert.assertEquals(mapping.originalIndex(i), deserialized.getMapping()
+          .originalIndex(i));
+    }
+
+    FeatureMappedPredictor predictor = new FeatureMappedPredictor(
+        deserialized.getMapping(), new RegressionClassifier(
+            deserialized.getModel()));
+    double accuracy = data.stream().mapToDouble((pair) -> {
+      double prediction = predictor.predict(pair.getFeature()).get(0);
+      return (prediction > 0.5 ? 1 : 0) == pair.getOutcome().get(0) ? 1 : 0;
+    }).average().getAsDouble();
+    Assert.assertTrue("accuracy was " + accuracy, accuracy > 0.95);
+  }
+
+  private List<FeatureOutcomePair> generateData() {
+    Random random = new Random(0);
+    // every example has a bias, one of the frequent features that decides the
+    // class and a rare feature that only occurs once
+    return IntStream
+        .range(0, 1000)
+        .mapToObj((i) -> {
+          DoubleVector feature = new SequentialSparseDoubleVector(DIMENSION);
+          int frequent = 1 + random.nextInt(NUM_FREQUENT - 1);
+          feature.set(0, 1d);
+          feature.set(frequent, 1d);
+          feature.set(NUM_FREQUENT + i, 1d);
+          return new FeatureOutcomePair(feature, new SingleEntryDoubleVector(
+              frequent % 2));
+        }).collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,145 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.online.bayes.BayesianClassifier;
+import de.jungblut.online.bayes.BayesianProbabilityModel;
+import de.jungblut.online.bayes.NaiveBayesLearner;
+import de.jungblut.online.features.FeatureHasher.FeatureHasherBuilder;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+import de.jungblut.online.regularization.AdaptiveFTRLRegularizer;
+
+public class TestFeatureHasher {
+
+  @Test
+  public void testVectorize() {
+    FeatureHasher hasher = FeatureHasherBuilder.create(18).unsigned().build();
+    Assert.assertEquals(1 << 18, hasher.getDimension());
+
+    DoubleVector vector = hasher.vectorize(ImmutableMap.of("site", "abc",
+        "price", 2.5d, "zero", 0));
+    Assert.assertEquals(1 << 18, vector.getDimension());
+    Assert.assertEquals(2, vector.getLength());
+    Assert.assertEquals(1d, vector.get(hasher.indexOf(
+        FeatureHasher.DEFAULT_NAMESPACE, "site=abc")), 1e-5);
+    Assert.assertEquals(2.5d, vector.get(hasher.indexOf(
+        FeatureHasher.DEFAULT_NAMESPACE, "price")), 1e-5);
+
+    // the same record must always hash to the same vector
+    DoubleVector again = hasher.vectorize(ImmutableMap.of("site", "abc",
+        "price", 2.5d));
+    Assert.assertEquals(0d, vector.subtract(again).abs().sum(), 1e-5);
+  }
+
+  @Test
+  public void testSignedHashing() {
+    FeatureHasher signed = FeatureHasherBuilder.create(10).build();
+    FeatureHasher unsigned = FeatureHasherBuilder.create(10).unsigned()
+        .build();
+    boolean sawNegative = false;
+    for (int i = 0; i < 100; i++) {
+      Map<String, Object> record = ImmutableMap.of("id", "" + i);
+      DoubleVector s = signed.vectorize(record);
+      DoubleVector u = unsigned.vectorize(record);
+      int index = signed.indexOf(FeatureHasher.DEFAULT_NAMESPACE, "id=" + i);
+      Assert.assertEquals(1d, Math.abs(s.get(index)), 1e-5);
+      Assert.assertEquals(1d, u.get(index), 1e-5);
+      sawNegative |= s.get(index) < 0;
+    }
+    Assert.assertTrue(sawNegative);
+  }
+
+  @Test
+  public void testNamespacesAndCollisions() {
+    FeatureHasher hasher = FeatureHasherBuilder.create(20).unsigned()
+        .addBias().build();
+    DoubleVector vector = hasher.vectorizeNamespaces(ImmutableMap.of("user",
+        ImmutableMap.of("id", "1"), "ad", ImmutableMap.of("id", "1")));
+    // the same feature in two namespaces ends up in different dimensions
+    Assert.assertNotEquals(hasher.indexOf("user", "id=1"),
+        hasher.indexOf("ad", "id=1"));
+    Assert.assertEquals(3, vector.getLength());
+    Assert.assertEquals(1d, vector.get(hasher.indexOf(
+        FeatureHasher.DEFAULT_NAMESPACE, FeatureHasher.BIAS_FEATURE)), 1e-5);
+
+    // with a single bit everything collides and sums up
+    FeatureHasher tiny = FeatureHasherBuilder.create(1).unsigned().build();
+    DoubleVector tokens = tiny.vectorizeTokens("text",
+        Arrays.asList("a", "b", "c", "a"));
+    Assert.assertEquals(4d, tokens.sum(), 1e-5);
+    Assert.assertEquals(2d, tiny.vectorizeTokens("text",
+        Arrays.asList("a", "a")).get(tiny.indexOf("text", "a")), 1e-5);
+  }
+
+  @Test
+  public void testRegressionWithFTRL() {
+    FeatureHasher hasher = FeatureHasherBuilder.create(16).addBias().build();
+    List<FeatureOutcomePair> data = generateClicks(hasher);
+
+    StochasticGradientDescent sgd = StochasticGradientDescentBuilder
+        .create(0.1).weightUpdater(new AdaptiveFTRLRegularizer(1, 0, 0))
+        .build();
+    RegressionLearner learner = new RegressionLearner(sgd,
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(3);
+    RegressionModel model = learner.train(() -> data.stream());
+
+    RegressionClassifier classifier = new RegressionClassifier(model);
+    double accuracy = data.stream().mapToDouble((pair) -> {
+      double prediction = classifier.predict(pair.getFeature()).get(0);
+      return (prediction > 0.5 ? 1 : 0) == pair.getOutcome().get(0) ? 1 : 0;
+    }).average().getAsDouble();
+    Assert.assertTrue("accuracy was " + accuracy, accuracy > 0.95);
+  }
+
+  @Test
+  public void testNaiveBayes() {
+    FeatureHasher hasher = FeatureHasherBuilder.create(16).unsigned().build();
+    List<FeatureOutcomePair> data = generateClicks(hasher);
+
+    BayesianProbabilityModel model = new NaiveBayesLearner().train(() -> data
+        .parallelStream());
+    BayesianClassifier classifier = new BayesianClassifier(model);
+    double accuracy = data.stream().mapToDouble((pair) -> {
+      int prediction = classifier.predictedClass(pair.getFeature());
+      return prediction == pair.getOutcome().get(0) ? 1 : 0;
+    }).average().getAsDouble();
+    Assert.assertTrue("accuracy was " + accuracy, accuracy > 0.95);
+  }
+
+  private List<FeatureOutcomePair> generateClicks(FeatureHasher hasher) {
+    Random random = new Random(0);
+    // clicks happen on the even sites, the device is just noise
+    return IntStream
+        .range(0, 2000)
+        .mapToObj((i) -> {
+          int site = random.nextInt(20);
+          Map<String, Object> record = new HashMap<>();
+          record.put("site", "site_" + site);
+          record.put("device", "device_" + random.nextInt(5));
+          return new FeatureOutcomePair(hasher.vectorize(record),
+              new SingleEntryDoubleVector(site % 2 == 0 ? 1 : 0));
+        }).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,166 @@
+package de.jungblut.online.features;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.features.FeatureHasher.FeatureHasherBuilder;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+import de.jungblut.online.regularization.AdaptiveFTRLRegularizer;
+
+public class TestFeatureInteractions {
+
+  @Test
+  public void testCrossCounts() {
+    DoubleVector a = sparse(1024, 1, 2);
+    DoubleVector b = sparse(1024, 3, 4, 5);
+    DoubleVector[] namespaces = new DoubleVector[] { a, b };
+
+    Assert.assertEquals(6, countCrosses(new FeatureInteractions(1024,
+        new int[] { 0, 1 }), namespaces));
+    // self interactions only generate distinct combinations
+    Assert.assertEquals(3, countCrosses(new FeatureInteractions(1024,
+        new int[] { 1, 1 }), namespaces));
+    Assert.assertEquals(6, countCrosses(new FeatureInteractions(1024,
+        new int[] { 0, 1, 1 }), namespaces));
+    Assert.assertEquals(9, countCrosses(new FeatureInteractions(1024,
+        new int[] { 0, 1 }, new int[] { 1, 1 }), namespaces));
+
+    // crosses are deterministic
+    FeatureInteractions interactions = new FeatureInteractions(1024,
+        new int[] { 0, 1 });
+    DoubleVector crosses = interactions.crossFeatures(namespaces);
+    Assert.assertEquals(0d,
+        crosses.subtract(interactions.crossFeatures(namespaces)).abs().sum(),
+        1e-5);
+    Assert.assertEquals(6d, crosses.sum(), 1e-5);
+  }
+
+  @Test
+  public void testNamespacesSeedTheCrosses() {
+    // the same indices in different namespaces
+    DoubleVector[] namespaces = new DoubleVector[] { sparse(1 << 20, 1),
+        sparse(1 << 20, 2), sparse(1 << 20, 2) };
+    DoubleVector left = new FeatureInteractions(1 << 20, new int[] { 0, 1 })
+        .crossFeatures(namespaces);
+    DoubleVector right = new FeatureInteractions(1 << 20, new int[] { 0, 2 })
+        .crossFeatures(namespaces);
+    Assert.assertEquals(1, left.getLength());
+    Assert.assertEquals(1, right.getLength());
+    Assert.assertNotEquals(left.iterateNonZero().next().getIndex(), right
+        .iterateNonZero().next().getIndex());
+  }
+
+  @Test
+  public void testGradientMatchesMaterializedCrosses() {
+    FeatureInteractions interactions = new FeatureInteractions(1024,
+        new int[] { 0, 1 }, new int[] { 0, 1, 1 });
+    DoubleVector[] namespaces = new DoubleVector[] { sparse(1024, 1, 2),
+        sparse(1024, 3, 4, 5) };
+    DoubleVector outcome = new SingleEntryDoubleVector(1d);
+    NamespacedFeatureOutcomePair pair = interactions.pair(namespaces, outcome);
+    DoubleVector materialized = pair.getFeature().add(
+        interactions.crossFeatures(namespaces));
+
+    Random random = new Random(0);
+    double[] array = new double[1024];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = random.nextDouble() - 0.5;
+    }
+    DoubleVector weights = new DenseDoubleVector(array);
+
+    ExposingLearner learner = new ExposingLearner();
+    CostGradientTuple lazy = learner.observe(pair, weights);
+    CostGradientTuple expected = learner.observe(new FeatureOutcomePair(
+        materialized, outcome), weights);
+    Assert.assertEquals(expected.getCost(), lazy.getCost(), 1e-8);
+    Assert.assertEquals(0d, expected.getGradient()
+        .subtract(lazy.getGradient()).abs().sum(), 1e-8);
+  }
+
+  @Test
+  public void testLearnsXorWithFTRL() {
+    FeatureHasher hasher = FeatureHasherBuilder.create(12).build();
+    FeatureInteractions interactions = new FeatureInteractions(
+        hasher.getDimension(), new int[] { 0, 1 });
+
+    // the label is the xor of both namespaces, which is not linearly separable
+    // on the base features
+    Random random = new Random(0);
+    List<NamespacedFeatureOutcomePair> data = IntStream
+        .range(0, 2000)
+        .mapToObj((i) -> {
+          int x = random.nextInt(2);
+          int y = random.nextInt(2);
+          return interactions.pair(
+              new DoubleVector[] {
+                  hasher.vectorize("a", ImmutableMap.of("x", "" + x)),
+                  hasher.vectorize("b", ImmutableMap.of("y", "" + y)) },
+              new SingleEntryDoubleVector(x ^ y));
+        }).collect(Collectors.toList());
+
+    StochasticGradientDescent sgd = StochasticGradientDescentBuilder
+        .create(0.5).weightUpdater(new AdaptiveFTRLRegularizer(1, 0, 0))
+        .build();
+    RegressionLearner learner = new RegressionLearner(sgd,
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.useSparseWeights();
+    learner.setNumPasses(2);
+    RegressionModel model = learner.train(() -> data.stream().map(
+        (p) -> (FeatureOutcomePair) p));
+
+    RegressionClassifier classifier = new RegressionClassifier(model);
+    for (NamespacedFeatureOutcomePair pair : data) {
+      double prediction = classifier.predict(pair).get(0);
+      Assert.assertEquals(pair.getOutcome().get(0), prediction > 0.5 ? 1 : 0,
+          1e-5);
+    }
+  }
+
+  private int countCrosses(FeatureInteractions interactions,
+      DoubleVector[] namespaces) {
+    int[] count = new int[1];
+    interactions.forEachCross(namespaces, (index, value) -> count[0]++);
+    return count[0];
+  }
+
+  private DoubleVector sparse(int dimension, int... indices) {
+    DoubleVector vector = new SequentialSparseDoubleVector(dimension);
+    for (int index : indices) {
+      vector.set(index, 1d);
+    }
+    return vector;
+  }
+
+  private static class ExposingLearner extends RegressionLearner {
+
+    ExposingLearner() {
+      super(StochasticGradientDescentBuilder.create(0.1).build(),
+          new SigmoidActivationFunction(), new LogLoss());
+    }
+
+    CostGradientTuple observe(FeatureOutcomePair pair, DoubleVector weights) {
+      return observeExample(pair, weights);
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package de.jungblut.online.features;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+import de.jungblut.online.regularization.AdamUpdater;
+
+public class TestRandomFourierFeatures {
+
+  @Test
+  public void testKernelApproximation() {
+    double gamma = 0.5;
+    RandomFourierFeatures rff = new RandomFourierFeatures(3, 5000, gamma, 0);
+    DoubleVector x = new DenseDoubleVector(new double[] { 0.1, 0.5, -0.3 });
+    DoubleVector y = new DenseDoubleVector(new double[] { 0.4, -0.2, 0.1 });
+    double expected = FastMath.exp(-gamma * x.subtract(y).pow(2).sum());
+    Assert.assertEquals(expected, rff.transform(x).dot(rff.transform(y)),
+        0.05);
+    Assert.assertEquals(1d, rff.transform(x).dot(rff.transform(x)), 0.05);
+  }
+
+  @Test
+  public void testReproducibleAndBuffered() throws IOException {
+    RandomFourierFeatures rff = new RandomFourierFeatures(10, 50, 1, 42, true);
+    Assert.assertEquals(51, rff.getDimension());
+
+    DoubleVector sparse = new SequentialSparseDoubleVector(10);
+    sparse.set(3, 2d);
+    sparse.set(7, -1d);
+    DoubleVector dense = new DenseDoubleVector(sparse.toArray());
+
+    double[] buffer = new double[rff.getDimension()];
+    rff.transform(dense, buffer);
+    Assert.assertEquals(1d, buffer[0], 0d);
+    // the buffer is fully overwritten on reuse
+    Assert.assertArrayEquals(buffer, rff.transform(sparse, buffer), 1e-10);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    rff.serialize(new DataOutputStream(baos));
+    RandomFourierFeatures deserialized = new RandomFourierFeatures()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+    Assert.assertArrayEquals(buffer, deserialized.transform(sparse).toArray(),
+        1e-10);
+  }
+
+  @Test
+  public void testNonLinearBoundary() {
+    // points inside the circle are positive, not linearly separable
+    Random random = new Random(0);
+    List<FeatureOutcomePair> data = IntStream
+        .range(0, 2000)
+        .mapToObj((i) -> {
+          double x = random.nextDouble() * 2 - 1;
+          double y = random.nextDouble() * 2 - 1;
+          return new FeatureOutcomePair(new DenseDoubleVector(new double[] {
+              x, y }), new SingleEntryDoubleVector(x * x + y * y < 0.5 ? 1
+              : 0));
+        }).collect(Collectors.toList());
+
+    RandomFourierFeatures rff = new RandomFourierFeatures(2, 100, 2, 0, true);
+    RegressionLearner learner = new RegressionLearner(
+        StochasticGradientDescentBuilder.create(0.01)
+            .weightUpdater(new AdamUpdater(0.01)).build(),
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(10);
+    RegressionModel model = learner.train(rff.transform(() -> data.stream()));
+
+    RegressionClassifier classifier = new RegressionClassifier(model);
+    double[] buffer = new double[rff.getDimension()];
+    double accuracy = data.stream().mapToDouble((pair) -> {
+      DoubleVector feature = new DenseDoubleVector(rff.transform(
+          pair.getFeature(), buffer));
+      double prediction = classifier.predict(feature).get(0);
+      return (prediction > 0.5 ? 1 : 0) == pair.getOutcome().get(0) ? 1 : 0;
+    }).average().getAsDouble();
+    Assert.assertTrue("accuracy was " + accuracy, accuracy > 0.9);
+  }
+
+}
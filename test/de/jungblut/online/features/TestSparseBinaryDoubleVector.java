@@ -0,0 +1,132 @@
+package de.jungblut.online.features;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.bayes.BayesianClassifier;
+import de.jungblut.online.bayes.BayesianProbabilityModel;
+import de.jungblut.online.bayes.NaiveBayesLearner;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regularization.AdaptiveFTRLRegularizer;
+import de.jungblut.online.regularization.L1Regularizer;
+import de.jungblut.online.regularization.WeightUpdater;
+
+public class TestSparseBinaryDoubleVector {
+
+  private static final int DIMENSION = 50;
+
+  @Test
+  public void testVectorOperations() {
+    SparseBinaryDoubleVector vector = SparseBinaryDoubleVector.of(10, 7, 2, 7,
+        0);
+    Assert.assertArrayEquals(new int[] { 0, 2, 7 }, vector.getIndices());
+    Assert.assertEquals(3, vector.getLength());
+    Assert.assertEquals(1d, vector.get(2), 0d);
+    Assert.assertEquals(0d, vector.get(3), 0d);
+    Assert.assertEquals(3d, vector.sum(), 0d);
+
+    DoubleVector dense = new DenseDoubleVector(new double[] { 1, 2, 3, 4, 5,
+        6, 7, 8, 9, 10 });
+    DoubleVector sparse = new SequentialSparseDoubleVector(vector.toArray());
+    Assert.assertEquals(sparse.dot(dense), vector.dot(dense), 0d);
+    Assert.assertEquals(2d,
+        vector.dot(SparseBinaryDoubleVector.of(10, 2, 3, 7)), 0d);
+
+    // scaling shares the indices
+    SparseBinaryDoubleVector scaled = (SparseBinaryDoubleVector) vector
+        .multiply(-0.5);
+    Assert.assertSame(vector.getIndices(), scaled.getIndices());
+    Assert.assertArrayEquals(sparse.multiply(-0.5).toArray(),
+        scaled.toArray(), 0d);
+    Assert.assertEquals(0, vector.multiply(0).getLength());
+
+    Assert.assertArrayEquals(sparse.add(dense).toArray(), vector.add(dense)
+        .toArray(), 0d);
+    Assert.assertArrayEquals(sparse.subtract(dense).toArray(),
+        vector.subtract(dense).toArray(), 0d);
+    Assert.assertEquals(1d, dense.get(0), 0d);
+
+    DoubleVector copy = vector.deepCopy();
+    copy.set(3, 5d);
+    Assert.assertEquals(0d, vector.get(3), 0d);
+
+    Assert.assertTrue(SparseBinaryDoubleVector.isBinary(sparse));
+    Assert.assertFalse(SparseBinaryDoubleVector.isBinary(dense));
+    Assert.assertEquals(vector, SparseBinaryDoubleVector.fromVector(sparse));
+  }
+
+  @Test
+  public void testRegressionMatchesSparseFeatures() {
+    List<FeatureOutcomePair> binary = generateData();
+    // the copy of a binary vector is a sequential sparse vector
+    List<FeatureOutcomePair> sparse = binary.stream()
+        .map((p) -> new FeatureOutcomePair(p.getFeature().deepCopy(),
+            p.getOutcome())).collect(Collectors.toList());
+
+    List<Supplier<WeightUpdater>> updaters = Arrays.asList(
+        () -> new L1Regularizer(1e-4),
+        () -> new AdaptiveFTRLRegularizer(1, 1e-4, 1e-4));
+    for (Supplier<WeightUpdater> updater : updaters) {
+      Assert.assertArrayEquals(train(sparse, updater.get()).toArray(),
+          train(binary, updater.get()).toArray(), 1e-12);
+    }
+  }
+
+  @Test
+  public void testBayesMatchesSparseFeatures() {
+    List<FeatureOutcomePair> binary = generateData();
+    BayesianProbabilityModel model = new NaiveBayesLearner()
+        .train(() -> binary.stream());
+    BayesianClassifier classifier = new BayesianClassifier(model);
+    for (FeatureOutcomePair pair : binary) {
+      DoubleVector sparse = pair.getFeature().deepCopy();
+      Assert.assertArrayEquals(classifier.predict(sparse).toArray(),
+          classifier.predict(pair.getFeature()).toArray(), 1e-12);
+    }
+  }
+
+  private DoubleVector train(List<FeatureOutcomePair> data,
+      WeightUpdater updater) {
+    RegressionLearner learner = new RegressionLearner(
+        StochasticGradientDescentBuilder.create(0.1).weightUpdater(updater)
+            .build(), new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(3);
+    return learner.train(() -> data.stream()).getWeights();
+  }
+
+  private List<FeatureOutcomePair> generateData() {
+    Random random = new Random(0);
+    Function<Integer, FeatureOutcomePair> generator = (i) -> {
+      int outcome = random.nextInt(2);
+      int[] indices = new int[5];
+      indices[0] = 0;
+      for (int j = 1; j < indices.length; j++) {
+        // the first half of the features indicates the positive class
+        indices[j] = (outcome == 1 ? 1 : DIMENSION / 2)
+            + random.nextInt(DIMENSION / 2 - 1);
+      }
+      return new FeatureOutcomePair(SparseBinaryDoubleVector.of(DIMENSION,
+          indices), new SingleEntryDoubleVector(outcome));
+    };
+    return IntStream.range(0, 500).boxed().map(generator)
+        .collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,108 @@
+package de.jungblut.online.ml;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.bayes.BayesianProbabilityModel;
+import de.jungblut.online.bayes.NaiveBayesLearner;
+
+public class TestLabeledFeatureOutcomePair {
+
+  @Test
+  public void testOutcomeViews() {
+    DoubleVector feature = new DenseDoubleVector(new double[] { 1, 2 });
+
+    LabeledFeatureOutcomePair multi = LabeledFeatureOutcomePair.ofClass(
+        feature, 2, 4);
+    Assert.assertEquals(2, multi.getLabel());
+    Assert.assertEquals(4, multi.getOutcomeDimension());
+    Assert.assertArrayEquals(new double[] { 0, 0, 1, 0 }, multi.getOutcome()
+        .toArray(), 0d);
+    Assert.assertEquals(2, LabeledFeatureOutcomePair.labelOf(multi));
+    Assert.assertEquals(4, LabeledFeatureOutcomePair.outcomeDimensionOf(multi));
+
+    LabeledFeatureOutcomePair binary = LabeledFeatureOutcomePair.ofClass(
+        feature, 1, 2);
+    Assert.assertEquals(1, binary.getOutcomeDimension());
+    Assert.assertEquals(1d, binary.getOutcome().get(0), 0d);
+    Assert.assertEquals(1d, LabeledFeatureOutcomePair.targetOf(binary), 0d);
+
+    LabeledFeatureOutcomePair target = LabeledFeatureOutcomePair.ofTarget(
+        feature, 4.5);
+    Assert.assertEquals(0, target.getNumClasses());
+    Assert.assertEquals(4.5, target.getOutcome().get(0), 0d);
+    Assert.assertEquals(4.5, LabeledFeatureOutcomePair.targetOf(target), 0d);
+
+    // plain pairs are labeled by their outcome
+    FeatureOutcomePair plain = new FeatureOutcomePair(feature,
+        multi.getOutcome());
+    Assert.assertEquals(2, LabeledFeatureOutcomePair.labelOf(plain));
+  }
+
+  @Test
+  public void testWeightsAndFeaturesAreReplaced() {
+    DoubleVector feature = new DenseDoubleVector(new double[] { 1, 2 });
+    LabeledFeatureOutcomePair pair = LabeledFeatureOutcomePair.ofClass(
+        feature, 1, 3, 2d);
+
+    FeatureOutcomePair reweighted = WeightedFeatureOutcomePair.reweight(pair,
+        3d);
+    Assert.assertTrue(reweighted instanceof LabeledFeatureOutcomePair);
+    Assert.assertEquals(6d, WeightedFeatureOutcomePair.weightOf(reweighted),
+        1e-8);
+    Assert.assertEquals(1, LabeledFeatureOutcomePair.labelOf(reweighted));
+
+    DoubleVector other = new DenseDoubleVector(new double[] { 3, 4 });
+    FeatureOutcomePair replaced = WeightedFeatureOutcomePair.withFeature(pair,
+        other);
+    Assert.assertSame(other, replaced.getFeature());
+    Assert.assertEquals(1, LabeledFeatureOutcomePair.labelOf(replaced));
+    Assert.assertEquals(2d, WeightedFeatureOutcomePair.weightOf(replaced),
+        1e-8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLabelOutOfRange() {
+    LabeledFeatureOutcomePair.ofClass(new DenseDoubleVector(1), 3, 3);
+  }
+
+  @Test
+  public void testNaiveBayesWithLabels() {
+    Random random = new Random(0);
+    int numClasses = 5;
+    List<LabeledFeatureOutcomePair> labeled = IntStream
+        .range(0, 500)
+        .mapToObj((i) -> {
+          int label = random.nextInt(numClasses);
+          DoubleVector feature = new SparseDoubleVector(20);
+          feature.set(label * 3 + random.nextInt(6), 1d);
+          feature.set(random.nextInt(20), 1d);
+          return LabeledFeatureOutcomePair.ofClass(feature, label, numClasses);
+        }).collect(Collectors.toList());
+    List<FeatureOutcomePair> oneHot = labeled.stream()
+        .map((p) -> new FeatureOutcomePair(p.getFeature(), p.getOutcome()))
+        .collect(Collectors.toList());
+
+    BayesianProbabilityModel expected = new NaiveBayesLearner()
+        .train(() -> oneHot.stream());
+    BayesianProbabilityModel actual = new NaiveBayesLearner()
+        .train(() -> labeled.stream().map((p) -> p));
+
+    Assert.assertArrayEquals(expected.getClassPriorProbability().toArray(),
+        actual.getClassPriorProbability().toArray(), 1e-8);
+    for (int row = 0; row < numClasses; row++) {
+      Assert.assertArrayEquals(expected.getProbabilityMatrix()
+          .getRowVector(row).toArray(), actual.getProbabilityMatrix()
+          .getRowVector(row).toArray(), 1e-8);
+    }
+  }
+
+}
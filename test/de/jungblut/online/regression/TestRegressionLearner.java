@@ -22,6 +22,7 @@ import de.jungblut.math.dense.SingleEntryDoubleVector;
 import de.jungblut.math.loss.HingeLoss;
 import de.jungblut.math.loss.LogLoss;
 import de.jungblut.math.loss.LossFunction;
+import de.jungblut.math.loss.SquaredLoss;
 import de.jungblut.math.loss.StepLoss;
 import de.jungblut.math.minimize.CostGradientTuple;
 import de.jungblut.online.minimizer.StochasticGradientDescent;
@@ -181,6 +182,41 @@ public class TestRegressionLearner {
     Assert.assertEquals(1d, acc, 0.1);
   }
 
+  @Test
+  public void testClosedFormImportanceUpdates() {
+    RegressionLearner logistic = newLearner();
+    RegressionLearner linear = newRegularizedLearner(null,
+        new LinearActivationFunction(), new SquaredLoss());
+    for (double z : new double[] { -4d, 0d, 2.5d }) {
+      for (double y : new double[] { 0d, 1d }) {
+        for (double time : new double[] { 0.1d, 5d, 500d }) {
+          DoubleVector outcome = new SingleEntryDoubleVector(y);
+          Assert.assertEquals(integrate(z, y, time, true),
+              logistic.integratePrediction(z, outcome, time), 1e-6);
+          Assert.assertEquals(integrate(z, y, time, false),
+              linear.integratePrediction(z, outcome, time), 1e-6);
+        }
+      }
+    }
+  }
+
+  // integrates the prediction with small RK4 steps
+  private static double integrate(double z, double y, double time,
+      boolean sigmoid) {
+    int steps = 100000;
+    double dt = time / steps;
+    Function<Double, Double> gradient = (v) -> (sigmoid ? 1d / (1d + Math
+        .exp(-v)) : v) - y;
+    for (int i = 0; i < steps; i++) {
+      double k1 = gradient.apply(z);
+      double k2 = gradient.apply(z - dt / 2d * k1);
+      double k3 = gradient.apply(z - dt / 2d * k2);
+      double k4 = gradient.apply(z - dt * k3);
+      z -= dt / 6d * (k1 + 2d * k2 + 2d * k3 + k4);
+    }
+    return z;
+  }
+
   public RegressionLearner newLearner() {
     return newRegularizedLearner(new GradientDescentUpdater());
   }
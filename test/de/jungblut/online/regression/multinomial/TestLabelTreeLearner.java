@@ -0,0 +1,142 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.ScoredLabel;
+
+public class TestLabelTreeLearner {
+
+  private static final int NUM_CLASSES = 50;
+  private static final int FEATURES_PER_CLASS = 4;
+  private static final int NOISE_FEATURES = 20;
+  private static final int DIMENSION = NUM_CLASSES * FEATURES_PER_CLASS
+      + NOISE_FEATURES + 1;
+
+  @Test
+  public void testLabelTree() {
+    List<FeatureOutcomePair> trainingSet = generateData(new Random(0));
+    LabelTreeModel model = train(trainingSet);
+    Assert.assertEquals(NUM_CLASSES, model.getNumClasses());
+    Assert.assertEquals(NUM_CLASSES - 1, model.getNodes().length);
+
+    LabelTreeClassifier clf = new LabelTreeClassifier(model);
+    List<FeatureOutcomePair> testSet = generateData(new Random(1));
+    double correct = 0;
+    for (FeatureOutcomePair pair : testSet) {
+      if (clf.predict(pair.getFeature()).maxIndex() == LabeledFeatureOutcomePair
+          .labelOf(pair)) {
+        correct++;
+      }
+    }
+    Assert.assertEquals(1d, correct / testSet.size(), 0.1);
+  }
+
+  @Test
+  public void testBeamSearch() {
+    LabelTreeModel model = train(generateData(new Random(0)));
+    LabelTreeClassifier greedy = new LabelTreeClassifier(model);
+    LabelTreeClassifier exhaustive = new LabelTreeClassifier(model,
+        NUM_CLASSES);
+
+    for (FeatureOutcomePair pair : generateData(new Random(1)).subList(0, 50)) {
+      List<ScoredLabel> topK = greedy.predictTopK(pair.getFeature(), 5);
+      Assert.assertEquals(5, topK.size());
+      for (int i = 1; i < topK.size(); i++) {
+        Assert.assertTrue(topK.get(i - 1).getScore() >= topK.get(i)
+            .getScore());
+      }
+
+      // a beam as wide as the classes visits every leaf
+      List<ScoredLabel> all = exhaustive.predictTopK(pair.getFeature(),
+          NUM_CLASSES);
+      Assert.assertEquals(NUM_CLASSES, all.size());
+      Assert.assertEquals(1d,
+          all.stream().mapToDouble(ScoredLabel::getScore).sum(), 1e-8);
+      Assert.assertEquals(all.get(0).getLabel(), topK.get(0).getLabel());
+    }
+  }
+
+  @Test
+  public void testOnlyPathNodesAreUpdated() {
+    List<FeatureOutcomePair> trainingSet = generateData(new Random(0));
+    AtomicInteger steps = new AtomicInteger();
+    LabelTreeLearner learner = new LabelTreeLearner((i) -> {
+      StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+          .create(0.1).build();
+      minimizer.setIterationCallback((pass, iteration, cost, weights,
+          validation) -> steps.incrementAndGet());
+      return minimizer;
+    }, new SigmoidActivationFunction(), new LogLoss());
+    learner.train(() -> trainingSet.stream());
+
+    // a balanced tree over 50 classes has paths of five or six nodes
+    Assert.assertTrue(steps.get() >= 5 * trainingSet.size());
+    Assert.assertTrue(steps.get() <= 6 * trainingSet.size());
+  }
+
+  @Test
+  public void testSerDe() throws IOException {
+    LabelTreeModel model = train(generateData(new Random(0)));
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    LabelTreeModel deserialized = new LabelTreeModel()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+
+    Assert.assertEquals(model.getNumClasses(), deserialized.getNumClasses());
+    for (int i = 0; i < model.getNodes().length; i++) {
+      Assert.assertArrayEquals(model.getNodes()[i].getWeights().toArray(),
+          deserialized.getNodes()[i].getWeights().toArray(), 0d);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSharedMinimizersAreRejected() {
+    StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+        .create(0.1).build();
+    new LabelTreeLearner((i) -> minimizer, new SigmoidActivationFunction(),
+        new LogLoss()).train(() -> generateData(new Random(0)).stream());
+  }
+
+  private LabelTreeModel train(List<FeatureOutcomePair> trainingSet) {
+    LabelTreeLearner learner = new LabelTreeLearner(
+        (i) -> StochasticGradientDescentBuilder.create(0.1).build(),
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setNumPasses(5);
+    return learner.train(() -> trainingSet.stream());
+  }
+
+  private List<FeatureOutcomePair> generateData(Random random) {
+    return IntStream
+        .range(0, 5000)
+        .mapToObj((i) -> {
+          int clz = random.nextInt(NUM_CLASSES);
+          // a bias, two features of the class and a random noise feature
+          int offset = 1 + clz * FEATURES_PER_CLASS;
+          return LabeledFeatureOutcomePair.ofClass(SparseBinaryDoubleVector
+              .of(DIMENSION, 0, offset + random.nextInt(FEATURES_PER_CLASS),
+                  offset + random.nextInt(FEATURES_PER_CLASS),
+                  DIMENSION - 1 - random.nextInt(NOISE_FEATURES)), clz,
+              NUM_CLASSES);
+        }).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,142 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.regularization.L2Regularizer;
+import de.jungblut.online.regularization.NormalizedAdaptiveUpdater;
+
+public class TestLowRankSoftmaxRegressionLearner {
+
+  private static final int NUM_CLASSES = 50;
+  private static final int FEATURES_PER_CLASS = 4;
+  private static final int DIMENSION = NUM_CLASSES * FEATURES_PER_CLASS + 1;
+
+  @Test
+  public void testLowRankSoftmaxRegression() {
+    List<FeatureOutcomePair> trainingSet = generateData(new Random(0));
+    LowRankSoftmaxRegressionLearner learner = new LowRankSoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(0.1).build(), 8);
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(5);
+    LowRankSoftmaxRegressionModel model = learner.train(() -> trainingSet
+        .stream());
+
+    Assert.assertEquals((DIMENSION + NUM_CLASSES) * 8, model.getWeights()
+        .getDimension());
+    Assert.assertEquals(DIMENSION, model.getFeatureDimension());
+
+    LowRankSoftmaxRegressionClassifier clf = new LowRankSoftmaxRegressionClassifier(
+        model);
+    List<FeatureOutcomePair> testSet = generateData(new Random(1));
+    double correct = 0;
+    for (FeatureOutcomePair pair : testSet) {
+      DoubleVector prediction = clf.predict(pair.getFeature());
+      Assert.assertEquals(1d, prediction.sum(), 1e-8);
+      if (prediction.maxIndex() == LabeledFeatureOutcomePair.labelOf(pair)) {
+        correct++;
+      }
+    }
+    Assert.assertEquals(1d, correct / testSet.size(), 0.1);
+  }
+
+  @Test
+  public void testGradient() {
+    FeatureOutcomePair pair = LabeledFeatureOutcomePair.ofClass(
+        new DenseDoubleVector(new double[] { 1, 0, -2, 0.5, 0 }), 2, 3);
+    LowRankSoftmaxRegressionLearner learner = new LowRankSoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(0.1).build(), 2) {
+      {
+        // sets the dimensions without training
+        peekDimensions(() -> Stream.of(pair));
+      }
+    };
+
+    Random random = new Random(0);
+    DoubleVector weights = new DenseDoubleVector((5 + 3) * 2);
+    for (int i = 0; i < weights.getDimension(); i++) {
+      weights.set(i, random.nextGaussian());
+    }
+    CostGradientTuple observed = learner.observeExampleSafe(pair, weights);
+
+    // compare with the central differences of the cost
+    double epsilon = 1e-6;
+    for (int i = 0; i < weights.getDimension(); i++) {
+      DoubleVector plus = weights.deepCopy();
+      plus.set(i, plus.get(i) + epsilon);
+      DoubleVector minus = weights.deepCopy();
+      minus.set(i, minus.get(i) - epsilon);
+      double numerical = (learner.observeExample(pair, plus).getCost() - learner
+          .observeExample(pair, minus).getCost()) / (2 * epsilon);
+      Assert.assertEquals(numerical, observed.getGradient().get(i), 1e-6);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsFeatureIndexedUpdaters() {
+    StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+        .create(0.1).weightUpdater(new NormalizedAdaptiveUpdater()).build();
+    new LowRankSoftmaxRegressionLearner(minimizer, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsRegularizersWithBiasWeights() {
+    // the first weights are the projection of the bias feature
+    StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+        .create(0.1).weightUpdater(new L2Regularizer(0.1)).build();
+    new LowRankSoftmaxRegressionLearner(minimizer, 2);
+  }
+
+  @Test
+  public void testSerDe() throws IOException {
+    DoubleVector weights = new DenseDoubleVector(new double[] { 1, 2, 3, 4, 5,
+        6, 7, 8, 9, 10 });
+    LowRankSoftmaxRegressionModel model = new LowRankSoftmaxRegressionModel(
+        weights, 2, 2);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    LowRankSoftmaxRegressionModel deserialized = new LowRankSoftmaxRegressionModel()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+
+    Assert.assertEquals(2, deserialized.getNumClasses());
+    Assert.assertEquals(2, deserialized.getRank());
+    Assert.assertEquals(3, deserialized.getFeatureDimension());
+    Assert.assertArrayEquals(weights.toArray(), deserialized.getWeights()
+        .toArray(), 0d);
+  }
+
+  private List<FeatureOutcomePair> generateData(Random random) {
+    return IntStream
+        .range(0, 5000)
+        .mapToObj((i) -> {
+          int clz = random.nextInt(NUM_CLASSES);
+          // a bias and two features of the class
+          int offset = 1 + clz * FEATURES_PER_CLASS;
+          return LabeledFeatureOutcomePair.ofClass(SparseBinaryDoubleVector
+              .of(DIMENSION, 0, offset + random.nextInt(FEATURES_PER_CLASS),
+                  offset + random.nextInt(FEATURES_PER_CLASS)), clz,
+              NUM_CLASSES);
+        }).collect(Collectors.toList());
+  }
+}
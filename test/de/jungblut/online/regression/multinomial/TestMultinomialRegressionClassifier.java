@@ -0,0 +1,150 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.ml.ScoredLabel;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionModel;
+
+public class TestMultinomialRegressionClassifier {
+
+  private static final int NUM_CLASSES = 7;
+  private static final int DIMENSION = 20;
+
+  @Test
+  public void testPackedScoring() {
+    // mixed dense and sparse weights are packed sparse
+    testPackedScoring(false);
+  }
+
+  @Test
+  public void testDensePackedScoring() {
+    testPackedScoring(true);
+  }
+
+  @Test
+  public void testLargeSparseModel() {
+    // a hashed model whose dense packing would need about 10 GB
+    int dimension = 1 << 22;
+    int numClasses = 300;
+    Random random = new Random(0);
+    RegressionModel[] models = new RegressionModel[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      DoubleVector weights = new SequentialSparseDoubleVector(dimension);
+      for (int i = 0; i < 10; i++) {
+        weights.set(random.nextInt(dimension), random.nextGaussian());
+      }
+      models[k] = new RegressionModel(weights, new SigmoidActivationFunction());
+    }
+    MultinomialRegressionModel model = new MultinomialRegressionModel(models);
+    MultinomialRegressionClassifier raw = new MultinomialRegressionClassifier(
+        model, false);
+
+    DoubleVector feature = new SequentialSparseDoubleVector(dimension);
+    for (int k = 0; k < numClasses; k += 7) {
+      Iterator<DoubleVectorElement> iterateNonZero = models[k].getWeights()
+          .iterateNonZero();
+      feature.set(iterateNonZero.next().getIndex(), 1d);
+    }
+    DoubleVector prediction = raw.predict(feature);
+    for (int k = 0; k < numClasses; k++) {
+      Assert.assertEquals(new RegressionClassifier(models[k]).predict(feature)
+          .get(0), prediction.get(k), 1e-12);
+    }
+  }
+
+  private void testPackedScoring(boolean denseWeights) {
+    Random random = new Random(0);
+    MultinomialRegressionModel model = generateModel(random, denseWeights);
+    MultinomialRegressionClassifier normalized = new MultinomialRegressionClassifier(
+        model);
+    MultinomialRegressionClassifier raw = new MultinomialRegressionClassifier(
+        model, false);
+
+    DoubleVector dense = new DenseDoubleVector(DIMENSION);
+    DoubleVector sparse = new SequentialSparseDoubleVector(DIMENSION);
+    for (int i = 0; i < DIMENSION; i += 3) {
+      dense.set(i, random.nextGaussian());
+      sparse.set(i, dense.get(i));
+    }
+    DoubleVector binary = SparseBinaryDoubleVector.of(DIMENSION, 1, 5, 19);
+
+    for (DoubleVector feature : new DoubleVector[] { dense, sparse, binary }) {
+      double[] expected = predictIndependently(model, feature);
+      Assert.assertArrayEquals(expected, raw.predict(feature).toArray(), 1e-12);
+
+      double sum = 0d;
+      for (double prediction : expected) {
+        sum += prediction;
+      }
+      DoubleVector prediction = normalized.predict(feature);
+      for (int k = 0; k < NUM_CLASSES; k++) {
+        Assert.assertEquals(expected[k] / sum, prediction.get(k), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testTopK() {
+    Random random = new Random(0);
+    MultinomialRegressionClassifier clf = new MultinomialRegressionClassifier(
+        generateModel(random, false));
+    DoubleVector feature = SparseBinaryDoubleVector.of(DIMENSION, 0, 4, 8);
+    DoubleVector prediction = clf.predict(feature);
+
+    List<ScoredLabel> topK = clf.predictTopK(feature, 3);
+    Assert.assertEquals(3, topK.size());
+    Assert.assertEquals(prediction.maxIndex(), topK.get(0).getLabel());
+    for (int i = 0; i < topK.size(); i++) {
+      Assert.assertEquals(prediction.get(topK.get(i).getLabel()), topK.get(i)
+          .getScore(), 1e-12);
+      if (i > 0) {
+        Assert.assertTrue(topK.get(i - 1).getScore() >= topK.get(i)
+            .getScore());
+      }
+    }
+
+    // the buffer is reused between calls
+    Assert.assertEquals(topK, clf.predictTopK(feature, 3));
+    Assert.assertEquals(NUM_CLASSES, clf.predictTopK(feature, 100).size());
+  }
+
+  private double[] predictIndependently(MultinomialRegressionModel model,
+      DoubleVector feature) {
+    double[] result = new double[NUM_CLASSES];
+    for (int k = 0; k < NUM_CLASSES; k++) {
+      result[k] = new RegressionClassifier(model.getModels()[k]).predict(
+          feature).get(0);
+    }
+    return result;
+  }
+
+  private MultinomialRegressionModel generateModel(Random random,
+      boolean denseWeights) {
+    RegressionModel[] models = new RegressionModel[NUM_CLASSES];
+    for (int k = 0; k < NUM_CLASSES; k++) {
+      boolean dense = denseWeights || k % 2 == 0;
+      DoubleVector weights = dense ? new DenseDoubleVector(DIMENSION)
+          : new SequentialSparseDoubleVector(DIMENSION);
+      for (int i = 0; i < DIMENSION; i++) {
+        if (dense || random.nextBoolean()) {
+          weights.set(i, random.nextGaussian());
+        }
+      }
+      models[k] = new RegressionModel(weights, new SigmoidActivationFunction());
+    }
+    return new MultinomialRegressionModel(models);
+  }
+
+}
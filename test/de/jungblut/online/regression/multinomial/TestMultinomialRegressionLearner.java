@@ -1,6 +1,14 @@
 package de.jungblut.online.regression.multinomial;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -11,13 +19,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.activation.SigmoidActivationFunction;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.loss.LogLoss;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
 import de.jungblut.online.minimizer.StochasticGradientDescent;
 import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
 import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
 import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.multinomial.MultinomialRegressionLearner.NegativeSampling;
 
 public class TestMultinomialRegressionLearner {
 
@@ -52,6 +65,192 @@ public class TestMultinomialRegressionLearner {
     Assert.assertEquals(1d, acc, 0.1);
   }
 
+  @Test
+  public void testLabeledMultinomialRegression() {
+    IntFunction<RegressionLearner> factory = (i) -> {
+      StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+          .create(1e-4).progressReportInterval(100_000).build();
+      RegressionLearner learner = new RegressionLearner(minimizer,
+          new SigmoidActivationFunction(), new LogLoss());
+      learner.setNumPasses(100);
+      return learner;
+    };
+
+    MultinomialRegressionLearner learner = new MultinomialRegressionLearner(
+        factory);
+
+    List<FeatureOutcomePair> trainingSet = generateData().stream()
+        .map((pair) -> LabeledFeatureOutcomePair.ofClass(pair.getFeature(),
+            pair.getOutcome().maxIndex(), 3))
+        .collect(Collectors.toList());
+
+    MultinomialRegressionModel model = learner
+        .train(() -> trainingSet.stream());
+
+    double acc = computeClassificationAccuracy(generateData(), model);
+    Assert.assertEquals(1d, acc, 0.1);
+  }
+
+  @Test
+  public void testSinglePassMultinomialRegression() {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    AtomicInteger reads = new AtomicInteger();
+    MultinomialRegressionLearner learner = MultinomialRegressionLearner
+        .singlePass((i) -> StochasticGradientDescentBuilder.create(1e-4)
+            .build(), new SigmoidActivationFunction(), new LogLoss(), 100);
+
+    MultinomialRegressionModel model = learner.train(() -> {
+      reads.incrementAndGet();
+      return trainingSet.stream();
+    });
+
+    // a single read per pass and one to peek the dimensions
+    Assert.assertEquals(101, reads.get());
+    double acc = computeClassificationAccuracy(generateData(), model);
+    Assert.assertEquals(1d, acc, 0.1);
+  }
+
+  @Test
+  public void testSinglePassMatchesPerClassLearners() {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    MultinomialRegressionModel perClass = new MultinomialRegressionLearner(
+        (i) -> {
+          RegressionLearner learner = new RegressionLearner(
+              StochasticGradientDescentBuilder.create(1e-4).build(),
+              new SigmoidActivationFunction(), new LogLoss());
+          // sparse weights start at zero like in the single pass mode
+          learner.useSparseWeights();
+          learner.setNumPasses(5);
+          return learner;
+        }).train(() -> trainingSet.stream());
+    MultinomialRegressionModel singlePass = MultinomialRegressionLearner
+        .singlePass((i) -> StochasticGradientDescentBuilder.create(1e-4)
+            .build(), new SigmoidActivationFunction(), new LogLoss(), 5)
+        .train(() -> trainingSet.stream());
+    MultinomialRegressionLearner sparseLearner = MultinomialRegressionLearner
+        .singlePass((i) -> StochasticGradientDescentBuilder.create(1e-4)
+            .build(), new SigmoidActivationFunction(), new LogLoss(), 5);
+    sparseLearner.useSparseWeights();
+    MultinomialRegressionModel sparse = sparseLearner.train(() -> trainingSet
+        .stream());
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertArrayEquals(perClass.getModels()[i].getWeights().toArray(),
+          singlePass.getModels()[i].getWeights().toArray(), 1e-10);
+      Assert.assertTrue(sparse.getModels()[i].getWeights().isSparse());
+      Assert.assertArrayEquals(perClass.getModels()[i].getWeights().toArray(),
+          sparse.getModels()[i].getWeights().toArray(), 1e-10);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSparseWeightsNeedSinglePass() {
+    new MultinomialRegressionLearner((i) -> new RegressionLearner(
+        StochasticGradientDescentBuilder.create(1e-4).build(),
+        new SigmoidActivationFunction(), new LogLoss())).useSparseWeights();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSinglePassRejectsSharedMinimizers() {
+    StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+        .create(1e-4).build();
+    List<FeatureOutcomePair> trainingSet = generateData();
+    MultinomialRegressionLearner.singlePass((i) -> minimizer,
+        new SigmoidActivationFunction(), new LogLoss(), 1).train(
+        () -> trainingSet.stream());
+  }
+
+  @Test
+  public void testNegativeSampling() throws IOException {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    AtomicInteger steps = new AtomicInteger();
+    MultinomialRegressionLearner learner = MultinomialRegressionLearner
+        .singlePass((i) -> {
+          StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+              .create(1e-4).build();
+          minimizer.setIterationCallback((pass, iteration, cost, weights,
+              validation) -> steps.incrementAndGet());
+          return minimizer;
+        }, new SigmoidActivationFunction(), new LogLoss(), 100);
+    learner.useNegativeSampling(1, NegativeSampling.UNIFORM);
+    learner.setRandom(new Random(0));
+
+    MultinomialRegressionModel model = learner
+        .train(() -> trainingSet.stream());
+
+    // the positive and a third of the single negative draws per example
+    double stepsPerExample = steps.get() / (100d * trainingSet.size());
+    Assert.assertEquals(1d + 2d / 3d, stepsPerExample, 0.05);
+    for (double offset : model.getLogitOffsets()) {
+      Assert.assertEquals(Math.log(1d / 3d), offset, 1e-8);
+    }
+    double acc = computeClassificationAccuracy(generateData(), model);
+    Assert.assertEquals(1d, acc, 0.1);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    MultinomialRegressionModel deserialized = new MultinomialRegressionModel()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+    Assert.assertArrayEquals(model.getLogitOffsets(),
+        deserialized.getLogitOffsets(), 0d);
+  }
+
+  @Test
+  public void testClassFrequencyNegativeSampling() {
+    // every second example is of the first class
+    List<FeatureOutcomePair> trainingSet = generateData().stream()
+        .filter((pair) -> pair.getOutcome().maxIndex() != 1)
+        .collect(Collectors.toList());
+    AtomicInteger reads = new AtomicInteger();
+    MultinomialRegressionLearner learner = MultinomialRegressionLearner
+        .singlePass((i) -> StochasticGradientDescentBuilder.create(1e-4)
+            .build(), new SigmoidActivationFunction(), new LogLoss(), 10);
+    learner.useNegativeSampling(2, NegativeSampling.CLASS_FREQUENCY);
+    learner.setRandom(new Random(0));
+
+    MultinomialRegressionModel model = learner.train(() -> {
+      reads.incrementAndGet();
+      return trainingSet.stream();
+    });
+
+    // the peek, the class frequencies and the passes
+    Assert.assertEquals(12, reads.get());
+    double[] offsets = model.getLogitOffsets();
+    double smoothedSize = trainingSet.size() + 3;
+    Assert.assertEquals(Math.log(2 * 1 / smoothedSize), offsets[1], 1e-8);
+    Assert.assertEquals(offsets[0], offsets[2], 1e-3);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNegativeSamplingNeedsSinglePass() {
+    new MultinomialRegressionLearner(StochasticGradientDescentBuilder.create(
+        1e-4).build(), new SigmoidActivationFunction(), new LogLoss())
+        .useNegativeSampling(1, NegativeSampling.UNIFORM);
+  }
+
+  @Test
+  public void testPrepareHashedFeature() {
+    Random rnd = new Random(0);
+    SparseDoubleVector hashed = new SparseDoubleVector(1 << 20);
+    for (int i = 0; i < 500; i++) {
+      hashed.set(rnd.nextInt(hashed.getDimension()), rnd.nextDouble() + 1d);
+    }
+    DoubleVector prepared = MultinomialRegressionLearner
+        .prepareFeature(new FeatureOutcomePair(hashed, new DenseDoubleVector(
+            new double[] { 1d })));
+    Assert.assertTrue(prepared instanceof SequentialSparseDoubleVector);
+    Assert.assertEquals(hashed.getLength(), prepared.getLength());
+    int last = -1;
+    Iterator<DoubleVectorElement> iterateNonZero = prepared.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      Assert.assertTrue(next.getIndex() > last);
+      Assert.assertEquals(hashed.get(next.getIndex()), next.getValue(), 0d);
+      last = next.getIndex();
+    }
+  }
+
   public double computeClassificationAccuracy(List<FeatureOutcomePair> data,
       MultinomialRegressionModel model) {
 
@@ -0,0 +1,82 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.online.regression.RegressionModel;
+
+public class TestMultinomialRegressionModel {
+
+  @Test
+  public void testReadsLayoutWithoutOffsets() throws IOException {
+    RegressionModel[] models = generateModels();
+    // the layout before the offsets were added, followed by another record
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeInt(models.length);
+    for (RegressionModel model : models) {
+      model.serialize(out);
+    }
+    out.writeInt(42);
+    byte[] bytes = baos.toByteArray();
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    MultinomialRegressionModel deserialized = new MultinomialRegressionModel()
+        .deserialize(in);
+    Assert.assertNull(deserialized.getLogitOffsets());
+    assertSameModels(models, deserialized.getModels());
+    Assert.assertEquals(42, in.readInt());
+
+    // models without offsets are still written in that layout
+    baos = new ByteArrayOutputStream();
+    out = new DataOutputStream(baos);
+    new MultinomialRegressionModel(models).serialize(out);
+    out.writeInt(42);
+    Assert.assertArrayEquals(bytes, baos.toByteArray());
+  }
+
+  @Test
+  public void testSerDeWithOffsets() throws IOException {
+    RegressionModel[] models = generateModels();
+    double[] offsets = new double[] { -1.5, 0.25, 3 };
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    new MultinomialRegressionModel(models, offsets).serialize(out);
+    out.writeInt(42);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        baos.toByteArray()));
+    MultinomialRegressionModel deserialized = new MultinomialRegressionModel()
+        .deserialize(in);
+    Assert.assertArrayEquals(offsets, deserialized.getLogitOffsets(), 0d);
+    assertSameModels(models, deserialized.getModels());
+    Assert.assertEquals(42, in.readInt());
+  }
+
+  private void assertSameModels(RegressionModel[] expected,
+      RegressionModel[] actual) {
+    Assert.assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertArrayEquals(expected[i].getWeights().toArray(), actual[i]
+          .getWeights().toArray(), 0d);
+    }
+  }
+
+  private RegressionModel[] generateModels() {
+    RegressionModel[] models = new RegressionModel[3];
+    for (int i = 0; i < models.length; i++) {
+      models[i] = new RegressionModel(new DenseDoubleVector(new double[] { i,
+          -i, 0.5 * i }), new SigmoidActivationFunction());
+    }
+    return models;
+  }
+
+}
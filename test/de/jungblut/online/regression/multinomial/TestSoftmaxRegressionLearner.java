@@ -0,0 +1,154 @@
+package de.jungblut.online.regression.multinomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.random.RandomDataImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostGradientTuple;
+import de.jungblut.online.features.SparseBinaryDoubleVector;
+import de.jungblut.online.minimizer.StochasticGradientDescent;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.regularization.AdaptiveFTRLRegularizer;
+import de.jungblut.online.regularization.L2Regularizer;
+
+public class TestSoftmaxRegressionLearner {
+
+  private RandomDataImpl rnd;
+
+  @Before
+  public void setup() {
+    rnd = new RandomDataImpl();
+    rnd.reSeed(0);
+  }
+
+  @Test
+  public void testSoftmaxRegression() {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    AtomicInteger reads = new AtomicInteger();
+    SoftmaxRegressionLearner learner = new SoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(1e-4).build());
+    learner.setNumPasses(100);
+
+    SoftmaxRegressionModel model = learner.train(() -> {
+      reads.incrementAndGet();
+      return trainingSet.stream();
+    });
+
+    // a single read per pass and one to peek the dimensions
+    Assert.assertEquals(101, reads.get());
+    Assert.assertEquals(3, model.getNumClasses());
+    Assert.assertEquals(3, model.getFeatureDimension());
+
+    SoftmaxRegressionClassifier clf = new SoftmaxRegressionClassifier(model);
+    double correct = 0;
+    List<FeatureOutcomePair> testSet = generateData();
+    for (FeatureOutcomePair pair : testSet) {
+      DoubleVector prediction = clf.predict(pair.getFeature());
+      Assert.assertEquals(1d, prediction.sum(), 1e-8);
+      if (prediction.maxIndex() == pair.getOutcome().maxIndex()) {
+        correct++;
+      }
+    }
+    Assert.assertEquals(1d, correct / testSet.size(), 0.1);
+  }
+
+  @Test
+  public void testGradientOnlyTouchesNonZeroRows() {
+    FeatureOutcomePair pair = LabeledFeatureOutcomePair.ofClass(
+        SparseBinaryDoubleVector.of(100, 3, 42), 1, 4);
+    SoftmaxRegressionLearner learner = new SoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(0.1).build()) {
+      {
+        // sets the dimensions without training
+        peekDimensions(() -> Stream.of(pair));
+      }
+    };
+
+    DoubleVector weights = new DenseDoubleVector(400);
+    CostGradientTuple observed = learner.observeExampleSafe(pair, weights);
+    // uniform prediction over four classes
+    Assert.assertEquals(Math.log(4), observed.getCost(), 1e-8);
+    Assert.assertEquals(8, observed.getGradient().getLength());
+    Assert.assertEquals(0.25, observed.getGradient().get(3 * 4), 1e-8);
+    Assert.assertEquals(-0.75, observed.getGradient().get(42 * 4 + 1), 1e-8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsFeatureIndexedUpdaters() {
+    StochasticGradientDescent minimizer = StochasticGradientDescentBuilder
+        .create(0.1).weightUpdater(new AdaptiveFTRLRegularizer(1, 0.1, 0.1)).build();
+    new SoftmaxRegressionLearner(minimizer);
+  }
+
+  @Test
+  public void testRegularizerExcludesAllClassBiases() {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    SoftmaxRegressionLearner learner = new SoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(1e-4)
+            .weightUpdater(new L2Regularizer(0.1, 3)).build());
+    learner.setNumPasses(1);
+    SoftmaxRegressionModel model = learner.train(() -> trainingSet.stream());
+    Assert.assertEquals(3, model.getNumClasses());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsRegularizerWithSingleBias() {
+    List<FeatureOutcomePair> trainingSet = generateData();
+    // would only exclude the bias of the first class
+    SoftmaxRegressionLearner learner = new SoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(1e-4)
+            .weightUpdater(new L2Regularizer(0.1)).build());
+    learner.train(() -> trainingSet.stream());
+  }
+
+  @Test
+  public void testSerDe() throws IOException {
+    DoubleVector weights = new DenseDoubleVector(new double[] { 1, 2, 3, 4, 5,
+        6 });
+    SoftmaxRegressionModel model = new SoftmaxRegressionModel(weights, 2);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    model.serialize(new DataOutputStream(baos));
+    SoftmaxRegressionModel deserialized = new SoftmaxRegressionModel()
+        .deserialize(new DataInputStream(new ByteArrayInputStream(baos
+            .toByteArray())));
+
+    Assert.assertEquals(2, deserialized.getNumClasses());
+    Assert.assertEquals(3, deserialized.getFeatureDimension());
+    Assert.assertArrayEquals(weights.toArray(), deserialized.getWeights()
+        .toArray(), 1e-8);
+  }
+
+  public List<FeatureOutcomePair> generateData() {
+    // similar to the mickey mouse data set
+    final int[] centersX = new int[] { 25, 50, 75 };
+    final int[] centersY = new int[] { 25, 150, 75 };
+    return IntStream
+        .range(1, 5000)
+        .mapToObj(
+            (i) -> {
+              int clz = i % centersX.length;
+              double[] feat = new double[] { 1,
+                  rnd.nextGaussian(centersX[clz], 5d),
+                  rnd.nextGaussian(centersY[clz], 5d) };
+              return LabeledFeatureOutcomePair.ofClass(new DenseDoubleVector(
+                  feat), clz, centersX.length);
+            }).collect(Collectors.toList());
+  }
+}
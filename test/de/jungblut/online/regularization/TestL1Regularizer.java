@@ -27,6 +27,21 @@ public class TestL1Regularizer {
     Assert.assertEquals(2.8d, update.getCost(), 1e-8);
   }
 
+  @Test
+  public void testMultipleBiasWeights() {
+    WeightUpdater updater = new L1Regularizer(1d, 0d, 2);
+
+    DoubleVector theta = new DenseDoubleVector(new double[] { 1d, 1d, 1d });
+    DoubleVector grad = new DenseDoubleVector(new double[] { 1d, 1d, 1d });
+    CostWeightTuple update = updater.computeNewWeights(theta, grad, 0.1d, 1,
+        1d);
+
+    double[] expected = new double[] { 0.9, 0.9, 0.8 };
+    Assert.assertArrayEquals(expected, update.getWeight().toArray(), 1e-8);
+    Assert.assertEquals(1.9d, update.getCost(), 1e-8);
+    Assert.assertEquals(2, updater.getNumBiasWeights());
+  }
+
   @Test
   public void testNoOpUpdate() {
     WeightUpdater updater = new L1Regularizer(0d, 0d);
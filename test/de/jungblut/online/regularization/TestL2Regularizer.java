@@ -23,6 +23,22 @@ public class TestL2Regularizer {
     Assert.assertEquals(2d, update.getCost(), 0d);
   }
 
+  @Test
+  public void testMultipleBiasWeights() {
+    WeightUpdater updater = new L2Regularizer(1d, 2);
+
+    DoubleVector theta = new DenseDoubleVector(new double[] { 1d, 1d, 1d });
+    DoubleVector grad = new DenseDoubleVector(new double[] { 1d, 1d, 1d });
+    CostWeightTuple update = updater.computeNewWeights(theta, grad, 0.1d, 1,
+        1d);
+
+    double[] expected = new double[] { 0.9, 0.9, 0.8 };
+    Assert.assertArrayEquals(expected, update.getWeight().toArray(), 1e-8);
+    Assert.assertEquals(1.5d, update.getCost(), 0d);
+    Assert.assertEquals(2, updater.getNumBiasWeights());
+    Assert.assertEquals(0, new L2Regularizer(0d).getNumBiasWeights());
+  }
+
   @Test
   public void testNoOpUpdate() {
     WeightUpdater updater = new L2Regularizer(0d);
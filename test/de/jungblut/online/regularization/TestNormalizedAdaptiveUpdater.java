@@ -0,0 +1,96 @@
+package de.jungblut.online.regularization;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+
+public class TestNormalizedAdaptiveUpdater {
+
+  @Test
+  public void testRescaling() {
+    NormalizedAdaptiveUpdater updater = new NormalizedAdaptiveUpdater();
+    DoubleVector theta = new DenseDoubleVector(new double[] { 1d, 1d });
+    updater.prePredictionWeightUpdate(new FeatureOutcomePair(
+        new DenseDoubleVector(new double[] { 1d, 2d }),
+        new SingleEntryDoubleVector(1d)), theta, 0.1, 0);
+    // the first occurrence only sets the scale
+    Assert.assertArrayEquals(new double[] { 1d, 1d }, theta.toArray(), 1e-8);
+
+    updater.prePredictionWeightUpdate(new FeatureOutcomePair(
+        new DenseDoubleVector(new double[] { 1d, -4d }),
+        new SingleEntryDoubleVector(1d)), theta, 0.1, 1);
+    // the second feature doubled its scale, so its weight is quartered
+    Assert.assertArrayEquals(new double[] { 1d, 0.25d }, theta.toArray(), 1e-8);
+  }
+
+  @Test
+  public void testScaleInvariance() {
+    double[] scales = new double[] { 1d, 1000d, 0.001d };
+    List<FeatureOutcomePair> unscaled = generateData(new double[] { 1d, 1d,
+        1d });
+    List<FeatureOutcomePair> scaled = generateData(scales);
+
+    RegressionModel unscaledModel = train(unscaled);
+    RegressionModel scaledModel = train(scaled);
+
+    RegressionClassifier unscaledClassifier = new RegressionClassifier(
+        unscaledModel);
+    RegressionClassifier scaledClassifier = new RegressionClassifier(
+        scaledModel);
+    int correct = 0;
+    for (int i = 0; i < unscaled.size(); i++) {
+      double prediction = unscaledClassifier.predict(
+          unscaled.get(i).getFeature()).get(0);
+      // the models are equal up to the scale of the features
+      Assert.assertEquals(prediction,
+          scaledClassifier.predict(scaled.get(i).getFeature()).get(0), 1e-6);
+      if ((prediction > 0.5 ? 1 : 0) == unscaled.get(i).getOutcome().get(0)) {
+        correct++;
+      }
+    }
+    Assert.assertTrue("correct: " + correct, correct > unscaled.size() * 0.95);
+    Assert.assertEquals(unscaledModel.getWeights().get(1) / 1000d,
+        scaledModel.getWeights().get(1), 1e-8);
+  }
+
+  private RegressionModel train(List<FeatureOutcomePair> data) {
+    RegressionLearner learner = new RegressionLearner(
+        StochasticGradientDescentBuilder.create(0.5)
+            .weightUpdater(new NormalizedAdaptiveUpdater()).build(),
+        new SigmoidActivationFunction(), new LogLoss());
+    // zero weights, so the initialization doesn't depend on the scale
+    learner.useSparseWeights();
+    learner.setNumPasses(3);
+    return learner.train(() -> data.stream());
+  }
+
+  private List<FeatureOutcomePair> generateData(double[] scales) {
+    Random random = new Random(0);
+    return IntStream
+        .range(0, 2000)
+        .mapToObj((i) -> {
+          double x1 = random.nextDouble() * 2 - 1;
+          double x2 = random.nextDouble() * 2 - 1;
+          DoubleVector feature = new DenseDoubleVector(new double[] {
+              scales[0], x1 * scales[1], x2 * scales[2] });
+          return new FeatureOutcomePair(feature, new SingleEntryDoubleVector(
+              x1 + 2 * x2 > 0.1 ? 1 : 0));
+        }).collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,88 @@
+package de.jungblut.online.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestCountMinSketch {
+
+  @Test
+  public void testErrorBounds() {
+    Random random = new Random(0);
+    CountMinSketch sketch = CountMinSketch.withErrorBounds(0.01, 0.01);
+    assertEquals(272, sketch.getWidth());
+    assertEquals(5, sketch.getDepth());
+
+    double[] counts = new double[5000];
+    for (int i = 0; i < 100000; i++) {
+      // skewed keys, like token frequencies
+      int key = (int) (counts.length * Math.pow(random.nextDouble(), 3));
+      sketch.add(key, 1d);
+      counts[key]++;
+    }
+    assertEquals(100000d, sketch.getTotalCount(), 0d);
+    assertEquals(1000d, sketch.getErrorBound(), 1d);
+
+    int exceeded = 0;
+    for (int key = 0; key < counts.length; key++) {
+      double estimate = sketch.estimate(key);
+      assertTrue(estimate >= counts[key]);
+      if (estimate - counts[key] > sketch.getErrorBound()) {
+        exceeded++;
+      }
+    }
+    assertTrue(exceeded <= counts.length * sketch.getDelta());
+  }
+
+  @Test
+  public void testMergeAndSerDe() throws Exception {
+    CountMinSketch left = new CountMinSketch(64, 3);
+    CountMinSketch right = new CountMinSketch(64, 3);
+    for (int key = 0; key < 500; key++) {
+      left.add(key, 1d);
+      right.add(key, key % 3);
+    }
+    left.merge(right);
+    assertEquals(500d + 499d, left.getTotalCount(), 0d);
+    for (int key = 0; key < 500; key++) {
+      assertTrue(left.estimate(key) >= 1d + key % 3);
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    left.write(new DataOutputStream(baos));
+    CountMinSketch deserialized = CountMinSketch.read(new DataInputStream(
+        new ByteArrayInputStream(baos.toByteArray())));
+    assertEquals(left.getTotalCount(), deserialized.getTotalCount(), 0d);
+    for (int key = 0; key < 500; key++) {
+      assertEquals(left.estimate(key), deserialized.estimate(key), 0d);
+    }
+  }
+
+  @Test
+  public void testAddReturnsEstimate() {
+    CountMinSketch sketch = new CountMinSketch(32, 3);
+    for (int key = 0; key < 200; key++) {
+      double estimate = sketch.add(key % 50, 2d);
+      assertEquals(sketch.estimate(key % 50), estimate, 0d);
+    }
+    assertEquals(sketch.estimate(7), sketch.add(7, 0d), 0d);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCheckSize() {
+    CountMinSketch.checkSize(1 << 30, 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCounts() {
+    new CountMinSketch(8, 2).add(0, -1d);
+  }
+
+}
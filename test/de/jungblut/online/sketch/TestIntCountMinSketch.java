@@ -0,0 +1,33 @@
+package de.jungblut.online.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestIntCountMinSketch {
+
+  @Test
+  public void testSaturatingCounts() {
+    Random random = new Random(0);
+    IntCountMinSketch sketch = new IntCountMinSketch(256, 4);
+    int[] counts = new int[2000];
+    for (int i = 0; i < 20000; i++) {
+      int key = (int) (counts.length * Math.pow(random.nextDouble(), 3));
+      int estimate = sketch.addIfBelow(key, 10);
+      counts[key]++;
+      assertEquals(sketch.estimate(key), estimate);
+      assertTrue(estimate <= 10);
+      // never underestimates below the threshold
+      assertTrue(estimate >= Math.min(10, counts[key]));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    new IntCountMinSketch(0, 4);
+  }
+
+}
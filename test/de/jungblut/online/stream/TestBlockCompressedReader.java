@@ -0,0 +1,125 @@
+package de.jungblut.online.stream;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBlockCompressedReader {
+
+  private static final int NUM_LINES = 10_000;
+
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    file = Files.createTempFile("block_compressed", ".gz");
+    // small blocks to get about a hundred of them
+    BlockCompressedWriter.write(lines().stream(), file, 512);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testSequentialRead() throws IOException {
+    try (BlockCompressedReader reader = new BlockCompressedReader(file)) {
+      Assert.assertTrue(reader.getNumBlocks() > 50);
+      Assert.assertEquals(lines(),
+          reader.lines().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testParallelRead() throws IOException {
+    try (BlockCompressedReader reader = new BlockCompressedReader(file)) {
+      // the encounter order is retained even when decompressing in parallel
+      Assert.assertEquals(lines(),
+          reader.lines(true).collect(Collectors.toList()));
+      Assert.assertEquals(NUM_LINES, reader.lines(true).count());
+    }
+  }
+
+  @Test
+  public void testSupplierCanBeConsumedMultipleTimes() throws IOException {
+    try (BlockCompressedReader reader = new BlockCompressedReader(file)) {
+      Assert.assertEquals(NUM_LINES,
+          reader.asSupplier(Integer::parseInt, true).get().count());
+      Assert.assertEquals((NUM_LINES - 1) * NUM_LINES / 2,
+          reader.asSupplier(Integer::parseInt, true).get()
+              .mapToLong((i) -> i).sum());
+    }
+  }
+
+  @Test
+  public void testReadableAsPlainGzip() throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)),
+        StandardCharsets.UTF_8))) {
+      Assert.assertEquals(lines(),
+          reader.lines().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testLinesLargerThanBlock() throws IOException {
+    Path large = Files.createTempFile("block_compressed_large", ".gz");
+    try {
+      String longLine = IntStream.range(0, 1000).mapToObj(Integer::toString)
+          .collect(Collectors.joining(","));
+      List<String> expected = IntStream.range(0, 5).mapToObj((i) -> longLine)
+          .collect(Collectors.toList());
+      BlockCompressedWriter.write(expected.stream(), large, 16);
+      try (BlockCompressedReader reader = new BlockCompressedReader(large)) {
+        Assert.assertEquals(5, reader.getNumBlocks());
+        Assert.assertEquals(expected,
+            reader.lines(true).collect(Collectors.toList()));
+      }
+    } finally {
+      Files.deleteIfExists(large);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testPlainGzipIsRejected() throws IOException {
+    Path plain = Files.createTempFile("plain", ".gz");
+    try {
+      try (GZIPOutputStream out = new GZIPOutputStream(
+          Files.newOutputStream(plain))) {
+        out.write("a\nb\n".getBytes(StandardCharsets.UTF_8));
+      }
+      new BlockCompressedReader(plain).close();
+    } finally {
+      Files.deleteIfExists(plain);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLinesWithNewlinesAreRejected() throws IOException {
+    try (BlockCompressedWriter writer = new BlockCompressedWriter(
+        new ByteArrayOutputStream())) {
+      writer.writeLine("a\nb");
+    }
+  }
+
+  private List<String> lines() {
+    return IntStream.range(0, NUM_LINES).mapToObj(Integer::toString)
+        .collect(Collectors.toList());
+  }
+
+}
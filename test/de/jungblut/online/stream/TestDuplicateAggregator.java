@@ -0,0 +1,95 @@
+package de.jungblut.online.stream;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.online.bayes.BayesianProbabilityModel;
+import de.jungblut.online.bayes.NaiveBayesLearner;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+public class TestDuplicateAggregator {
+
+  @Test
+  public void testAggregation() {
+    List<FeatureOutcomePair> data = generateData();
+    List<FeatureOutcomePair> aggregated = DuplicateAggregator
+        .fromStream(data.stream(), 100).collect(Collectors.toList());
+
+    // 4 distinct features with 2 outcomes each fit into the window
+    Assert.assertEquals(8, aggregated.size());
+    Assert.assertEquals(data.size(),
+        aggregated.stream().mapToDouble(WeightedFeatureOutcomePair::weightOf)
+            .sum(), 1e-8);
+  }
+
+  @Test
+  public void testSmallWindow() {
+    List<FeatureOutcomePair> data = generateData();
+    List<FeatureOutcomePair> aggregated = DuplicateAggregator
+        .fromStream(data.stream(), 2).collect(Collectors.toList());
+
+    // duplicates further apart than the window are emitted multiple times
+    Assert.assertTrue(aggregated.size() > 8);
+    Assert.assertTrue(aggregated.size() < data.size());
+    Assert.assertEquals(data.size(),
+        aggregated.stream().mapToDouble(WeightedFeatureOutcomePair::weightOf)
+            .sum(), 1e-8);
+  }
+
+  @Test
+  public void testSparseAndDenseAreDuplicates() {
+    DoubleVector dense = new DenseDoubleVector(new double[] { 0, 1, 0, 2 });
+    DoubleVector sparse = new SparseDoubleVector(dense);
+    List<FeatureOutcomePair> aggregated = DuplicateAggregator
+        .fromStream(
+            IntStream.range(0, 3).mapToObj(
+                (i) -> new FeatureOutcomePair(i % 2 == 0 ? dense : sparse,
+                    new SingleEntryDoubleVector(1))), 10)
+        .collect(Collectors.toList());
+    Assert.assertEquals(1, aggregated.size());
+    Assert.assertEquals(3d,
+        WeightedFeatureOutcomePair.weightOf(aggregated.get(0)), 1e-8);
+  }
+
+  @Test
+  public void testNaiveBayesCounts() {
+    List<FeatureOutcomePair> data = generateData();
+    BayesianProbabilityModel raw = new NaiveBayesLearner().train(() -> data
+        .stream());
+    BayesianProbabilityModel aggregated = new NaiveBayesLearner()
+        .train(() -> DuplicateAggregator.fromStream(data.stream(), 3));
+
+    Assert.assertArrayEquals(raw.getClassPriorProbability().toArray(),
+        aggregated.getClassPriorProbability().toArray(), 1e-8);
+    for (int row = 0; row < 2; row++) {
+      Assert.assertArrayEquals(raw.getProbabilityMatrix().getRowVector(row)
+          .toArray(), aggregated.getProbabilityMatrix().getRowVector(row)
+          .toArray(), 1e-8);
+    }
+  }
+
+  private List<FeatureOutcomePair> generateData() {
+    Random random = new Random(0);
+    return IntStream
+        .range(0, 500)
+        .mapToObj((i) -> {
+          int token = random.nextInt(4);
+          DoubleVector feature = new SparseDoubleVector(5);
+          feature.set(token, 1d);
+          feature.set(4, token % 2 + 1);
+          return new FeatureOutcomePair(feature, new SingleEntryDoubleVector(
+              random.nextInt(2)));
+        }).collect(Collectors.toList());
+  }
+
+}
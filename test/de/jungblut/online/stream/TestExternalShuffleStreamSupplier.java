@@ -0,0 +1,183 @@
+package de.jungblut.online.stream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.LabeledFeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+
+public class TestExternalShuffleStreamSupplier {
+
+  private static final int NUM_ITEMS = 10_000;
+
+  private Path tmpDir;
+
+  @Before
+  public void setup() throws IOException {
+    tmpDir = Files.createTempDirectory("shuffle_test");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(tmpDir);
+  }
+
+  @Test
+  public void testEveryPassIsAFullShuffle() throws IOException {
+    try (ExternalShuffleStreamSupplier supplier = newSupplier(0, false)) {
+      List<Integer> first = ids(supplier.get());
+      List<Integer> second = ids(supplier.get());
+      assertAllItems(first);
+      assertAllItems(second);
+      Assert.assertNotEquals(first, second);
+      Assert.assertEquals(2, supplier.getNumPasses());
+
+      // the head of a time ordered input must be spread across the whole pass
+      int lastPositionOfFirstHundred = 0;
+      for (int i = 0; i < first.size(); i++) {
+        if (first.get(i) < 100) {
+          lastPositionOfFirstHundred = i;
+        }
+      }
+      Assert.assertTrue(lastPositionOfFirstHundred > NUM_ITEMS / 2);
+    }
+    Assert.assertEquals(0, Files.list(tmpDir).count());
+  }
+
+  @Test
+  public void testPassesAreReproducible() throws IOException {
+    try (ExternalShuffleStreamSupplier a = newSupplier(1337, false);
+        ExternalShuffleStreamSupplier b = newSupplier(1337, true)) {
+      for (int pass = 0; pass < 2; pass++) {
+        Assert.assertEquals(ids(a.get()), ids(b.get()));
+      }
+    }
+  }
+
+  @Test
+  public void testPeekingReplaysTheSpill() throws IOException {
+    try (ExternalShuffleStreamSupplier supplier = newSupplier(0, false)) {
+      FeatureOutcomePair first = supplier.get().findFirst().get();
+      List<Integer> pass = ids(supplier.get());
+      Assert.assertEquals(1, supplier.getNumPasses());
+      Assert.assertEquals((int) first.getFeature().get(0), (int) pass.get(0));
+      assertAllItems(pass);
+    }
+  }
+
+  @Test
+  public void testParallelSourcesAreFullySpilled() throws IOException {
+    try (ExternalShuffleStreamSupplier supplier = //
+    new ExternalShuffleStreamSupplier(() -> source().parallel(), 16, 0, tmpDir,
+        true)) {
+      assertAllItems(ids(supplier.get()));
+      assertAllItems(ids(supplier.get()));
+      Assert.assertEquals(2, supplier.getNumPasses());
+    }
+  }
+
+  @Test
+  public void testReplayDoesNotResetOtherStreams() throws IOException {
+    try (ExternalShuffleStreamSupplier supplier = newSupplier(0, false)) {
+      Iterator<FeatureOutcomePair> partial = supplier.get().iterator();
+      partial.next();
+      // the replay is read fully, the first stream is still being consumed
+      List<Integer> replay = ids(supplier.get());
+      List<Integer> rest = new ArrayList<>();
+      partial.forEachRemaining((pair) -> rest.add((int) pair.getFeature()
+          .get(0)));
+      Assert.assertEquals(replay.subList(1, NUM_ITEMS), rest);
+      Assert.assertEquals(1, supplier.getNumPasses());
+
+      assertAllItems(ids(supplier.get()));
+      Assert.assertEquals(2, supplier.getNumPasses());
+    }
+  }
+
+  @Test
+  public void testWeightsAreKept() throws IOException {
+    Supplier<Stream<FeatureOutcomePair>> source = () -> NegativeDownsampler
+        .downsample(source(), 0.5, new Random(0));
+    try (ExternalShuffleStreamSupplier supplier = //
+    new ExternalShuffleStreamSupplier(source, 4, 0, tmpDir, false)) {
+      supplier.get().forEach((pair) -> {
+        double expected = pair.getOutcome().get(0) == 0d ? 2d : 1d;
+        Assert.assertEquals(expected,
+            WeightedFeatureOutcomePair.weightOf(pair), 1e-8);
+      });
+    }
+  }
+
+  @Test
+  public void testLabelsAreKept() throws IOException {
+    Supplier<Stream<FeatureOutcomePair>> source = () -> IntStream.range(0,
+        100).mapToObj(
+        (i) -> {
+          DenseDoubleVector feature = new DenseDoubleVector(new double[] { i });
+          return i % 2 == 0 ? LabeledFeatureOutcomePair.ofClass(feature,
+              i % 3, 3) : LabeledFeatureOutcomePair.ofTarget(feature, i / 2d,
+              2d);
+        });
+    try (ExternalShuffleStreamSupplier supplier = //
+    new ExternalShuffleStreamSupplier(source, 4, 0, tmpDir, false)) {
+      Assert.assertEquals(100, supplier.get().peek((pair) -> {
+        int i = (int) pair.getFeature().get(0);
+        LabeledFeatureOutcomePair labeled = (LabeledFeatureOutcomePair) pair;
+        if (i % 2 == 0) {
+          Assert.assertEquals(i % 3, labeled.getLabel());
+          Assert.assertEquals(3, labeled.getNumClasses());
+          Assert.assertEquals(1d, labeled.getWeight(), 0d);
+        } else {
+          Assert.assertEquals(i / 2d, labeled.getTarget(), 0d);
+          Assert.assertEquals(2d, labeled.getWeight(), 0d);
+        }
+      }).count());
+    }
+  }
+
+  private ExternalShuffleStreamSupplier newSupplier(long seed,
+      boolean parallel) {
+    return new ExternalShuffleStreamSupplier(() -> source(), 16, seed, tmpDir,
+        parallel);
+  }
+
+  private Stream<FeatureOutcomePair> source() {
+    return IntStream.range(0, NUM_ITEMS).mapToObj(
+        (i) -> new FeatureOutcomePair(new DenseDoubleVector(new double[] { i,
+            1 }), new SingleEntryDoubleVector(i % 2)));
+  }
+
+  private List<Integer> ids(Stream<FeatureOutcomePair> stream) {
+    return stream.map((pair) -> {
+      Assert.assertEquals(pair.getFeature().get(0) % 2, pair.getOutcome()
+          .get(0), 1e-5);
+      return (int) pair.getFeature().get(0);
+    }).collect(Collectors.toList());
+  }
+
+  private void assertAllItems(List<Integer> ids) {
+    Assert.assertEquals(NUM_ITEMS, ids.size());
+    Set<Integer> set = new HashSet<>(ids);
+    Assert.assertEquals(NUM_ITEMS, set.size());
+  }
+
+}
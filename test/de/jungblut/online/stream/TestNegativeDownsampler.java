@@ -0,0 +1,140 @@
+package de.jungblut.online.stream;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jungblut.math.activation.SigmoidActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.math.loss.LogLoss;
+import de.jungblut.online.minimizer.StochasticGradientDescent.StochasticGradientDescentBuilder;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.online.ml.WeightedFeatureOutcomePair;
+import de.jungblut.online.regression.RegressionClassifier;
+import de.jungblut.online.regression.RegressionLearner;
+import de.jungblut.online.regression.RegressionModel;
+import de.jungblut.online.regression.multinomial.SoftmaxRegressionClassifier;
+import de.jungblut.online.regression.multinomial.SoftmaxRegressionLearner;
+
+public class TestNegativeDownsampler {
+
+  @Test
+  public void testDownsampling() {
+    List<FeatureOutcomePair> data = generateData();
+    long positives = data.stream().filter((p) -> p.getOutcome().get(0) == 1d)
+        .count();
+    List<FeatureOutcomePair> sampled = new NegativeDownsampler(
+        () -> data.stream(), 0.1, 0).get().collect(Collectors.toList());
+
+    double weightedNegatives = 0;
+    for (FeatureOutcomePair pair : sampled) {
+      double weight = WeightedFeatureOutcomePair.weightOf(pair);
+      if (pair.getOutcome().get(0) == 1d) {
+        Assert.assertEquals(1d, weight, 0d);
+      } else {
+        Assert.assertEquals(10d, weight, 1e-8);
+        weightedNegatives += weight;
+      }
+    }
+    Assert.assertEquals(positives,
+        sampled.stream().filter((p) -> p.getOutcome().get(0) == 1d).count());
+    Assert.assertEquals(data.size() - positives, weightedNegatives,
+        (data.size() - positives) * 0.05);
+  }
+
+  @Test
+  public void testCalibrationIsPreserved() {
+    List<FeatureOutcomePair> data = generateData();
+    double positiveRate = data.stream()
+        .mapToDouble((p) -> p.getOutcome().get(0)).average().getAsDouble();
+
+    double full = meanPrediction(train(() -> data.stream()), data);
+    double weighted = meanPrediction(train(new NegativeDownsampler(
+        () -> data.stream(), 0.1, 0)), data);
+    // without the weights, the model would think there are 10x more clicks
+    double unweighted = meanPrediction(train(() -> new NegativeDownsampler(
+        () -> data.stream(), 0.1, 0).get().map(
+        (p) -> new FeatureOutcomePair(p.getFeature(), p.getOutcome()))), data);
+
+    Assert.assertEquals(positiveRate, full, positiveRate * 0.2);
+    Assert.assertEquals(positiveRate, weighted, positiveRate * 0.2);
+    Assert.assertTrue("unweighted mean prediction was " + unweighted,
+        unweighted > positiveRate * 2);
+  }
+
+  @Test
+  public void testCalibrationWithLargeWeights() {
+    List<FeatureOutcomePair> data = generateData();
+    double positiveRate = data.stream()
+        .mapToDouble((p) -> p.getOutcome().get(0)).average().getAsDouble();
+
+    // negatives have a weight of 100, more than 1 / (alpha * ||x||^2) = 50
+    double weighted = meanPrediction(train(new NegativeDownsampler(
+        () -> data.stream(), 0.01, 0), 0.01, 10), data);
+    Assert.assertEquals(positiveRate, weighted, positiveRate * 0.25);
+  }
+
+  @Test
+  public void testSoftmaxCalibrationIsPreserved() {
+    List<FeatureOutcomePair> data = generateData();
+    double positiveRate = data.stream()
+        .mapToDouble((p) -> p.getOutcome().get(0)).average().getAsDouble();
+
+    // the softmax gradient is weighted by the minimizer without a step cap
+    SoftmaxRegressionLearner learner = new SoftmaxRegressionLearner(
+        StochasticGradientDescentBuilder.create(0.01).build());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(5);
+    SoftmaxRegressionClassifier classifier = new SoftmaxRegressionClassifier(
+        learner.train(new NegativeDownsampler(() -> data.stream(), 0.1, 0)));
+    double weighted = data.stream()
+        .mapToDouble((p) -> classifier.predict(p.getFeature()).get(1))
+        .average().getAsDouble();
+    Assert.assertEquals(positiveRate, weighted, positiveRate * 0.2);
+  }
+
+  private RegressionModel train(Supplier<Stream<FeatureOutcomePair>> supplier) {
+    return train(supplier, 0.01, 5);
+  }
+
+  private RegressionModel train(Supplier<Stream<FeatureOutcomePair>> supplier,
+      double alpha, int numPasses) {
+    RegressionLearner learner = new RegressionLearner(
+        StochasticGradientDescentBuilder.create(alpha).build(),
+        new SigmoidActivationFunction(), new LogLoss());
+    learner.setRandom(new Random(0));
+    learner.setNumPasses(numPasses);
+    return learner.train(supplier);
+  }
+
+  private double meanPrediction(RegressionModel model,
+      List<FeatureOutcomePair> data) {
+    RegressionClassifier classifier = new RegressionClassifier(model);
+    return data.stream()
+        .mapToDouble((p) -> classifier.predict(p.getFeature()).get(0))
+        .average().getAsDouble();
+  }
+
+  private List<FeatureOutcomePair> generateData() {
+    Random random = new Random(0);
+    // a rare positive class with a click probability of roughly 5%
+    return IntStream
+        .range(0, 20000)
+        .mapToObj((i) -> {
+          double x = random.nextGaussian();
+          double p = 1d / (1d + FastMath.exp(-(-3.5 + x)));
+          return new FeatureOutcomePair(new DenseDoubleVector(new double[] {
+              1, x }), new SingleEntryDoubleVector(
+              random.nextDouble() < p ? 1 : 0));
+        }).collect(Collectors.toList());
+  }
+
+}
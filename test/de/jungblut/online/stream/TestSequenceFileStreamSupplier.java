@@ -0,0 +1,109 @@
+package de.jungblut.online.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.SingleEntryDoubleVector;
+import de.jungblut.online.ml.FeatureOutcomePair;
+import de.jungblut.writable.VectorWritable;
+
+public class TestSequenceFileStreamSupplier {
+
+  private static final int NUM_RECORDS = 5000;
+
+  private File tmpDir;
+  private Configuration conf;
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    tmpDir = Files.createTempDirectory("seqfile").toFile();
+    conf = new Configuration();
+    file = new Path(tmpDir.getAbsolutePath(), "data.seq");
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+        SequenceFile.Writer.file(file),
+        SequenceFile.Writer.keyClass(VectorWritable.class),
+        SequenceFile.Writer.valueClass(VectorWritable.class),
+        SequenceFile.Writer.syncInterval(512))) {
+      for (int i = 0; i < NUM_RECORDS; i++) {
+        writer.append(new VectorWritable(new DenseDoubleVector(new double[] {
+            1, i, i * 2 })), new VectorWritable(new SingleEntryDoubleVector(
+            i % 2)));
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(tmpDir);
+  }
+
+  @Test
+  public void testSingleSplit() throws IOException {
+    try (SequenceFileStreamSupplier supplier = new SequenceFileStreamSupplier(
+        conf, file)) {
+      Assert.assertEquals(1, supplier.getNumSplits());
+      assertAllRecords(supplier.get().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testManySplits() throws IOException {
+    try (SequenceFileStreamSupplier supplier = new SequenceFileStreamSupplier(
+        conf, 4096, false, file)) {
+      Assert.assertTrue(supplier.getNumSplits() > 10);
+      // records must neither be lost nor duplicated at split boundaries
+      assertAllRecords(supplier.get().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testParallelSplits() throws IOException {
+    try (SequenceFileStreamSupplier supplier = new SequenceFileStreamSupplier(
+        conf, 1024, true, file)) {
+      Assert.assertTrue(supplier.get().isParallel());
+      // can be consumed multiple times like in multiple passes
+      for (int pass = 0; pass < 3; pass++) {
+        assertAllRecords(supplier.get().collect(Collectors.toList()));
+      }
+    }
+  }
+
+  @Test
+  public void testPartiallyConsumedStream() throws IOException {
+    try (SequenceFileStreamSupplier supplier = new SequenceFileStreamSupplier(
+        conf, 4096, false, file)) {
+      FeatureOutcomePair first = supplier.get().findFirst().get();
+      Assert.assertEquals(3, first.getFeature().getDimension());
+      Assert.assertEquals(0d, first.getFeature().get(1), 1e-5);
+    }
+  }
+
+  private void assertAllRecords(List<FeatureOutcomePair> records) {
+    Assert.assertEquals(NUM_RECORDS, records.size());
+    Set<Integer> ids = new HashSet<>();
+    for (FeatureOutcomePair pair : records) {
+      int id = (int) pair.getFeature().get(1);
+      Assert.assertEquals(id * 2, pair.getFeature().get(2), 1e-5);
+      Assert.assertEquals(id % 2, pair.getOutcome().get(0), 1e-5);
+      ids.add(id);
+    }
+    Assert.assertEquals(NUM_RECORDS, ids.size());
+  }
+
+}
@@ -2,6 +2,7 @@ package de.jungblut.online.stream;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -36,6 +37,39 @@ public class TestShuffledIterator {
     }
   }
 
+  @Test
+  public void testBackgroundFill() {
+    for (int i = 1; i < 105; i += 7) {
+      assertStreamContainsAllItems(ShuffledIterator.fromStream(
+          streamHundredItems(), i, new Random(i), true, false));
+    }
+  }
+
+  @Test
+  public void testParallelStream() {
+    for (int i = 1; i < 105; i += 7) {
+      Stream<Integer> stream = ShuffledIterator.fromStream(
+          streamHundredItems(), i, new Random(i), true, true);
+      Assert.assertTrue(stream.isParallel());
+      assertStreamContainsAllItems(stream);
+      assertStreamContainsAllItems(ShuffledIterator.fromStream(
+          streamHundredItems(), i, new Random(i), false, true));
+    }
+  }
+
+  @Test
+  public void testSeededShuffleIsReproducible() {
+    List<Integer> first = ShuffledIterator
+        .fromStream(streamHundredItems(), 50, new Random(42), true, false)
+        .collect(Collectors.toList());
+    List<Integer> second = ShuffledIterator
+        .fromStream(streamHundredItems(), 50, new Random(42), false, false)
+        .collect(Collectors.toList());
+    Assert.assertEquals(first, second);
+    Assert.assertNotEquals(
+        streamHundredItems().collect(Collectors.toList()), first);
+  }
+
   public void assertStreamContainsAllItems(Stream<Integer> stream) {
     List<Integer> collected = stream.collect(Collectors.toList());
 
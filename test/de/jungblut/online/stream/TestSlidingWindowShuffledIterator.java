@@ -0,0 +1,58 @@
+package de.jungblut.online.stream;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSlidingWindowShuffledIterator {
+
+  @Test
+  public void testFuzzyWindowSizes() {
+    for (int i = 1; i < 105; i += 3) {
+      assertStreamContainsAllItems(SlidingWindowShuffledIterator.fromStream(
+          streamHundredItems(), i, new Random(i), false));
+    }
+  }
+
+  @Test
+  public void testParallelStream() {
+    Stream<Integer> stream = SlidingWindowShuffledIterator.fromStream(
+        streamHundredItems(), 10, new Random(0), true);
+    Assert.assertTrue(stream.isParallel());
+    assertStreamContainsAllItems(stream);
+  }
+
+  @Test
+  public void testWindowMixesAcrossBlocks() {
+    // with a window of 10, an item can be delayed beyond the next 10 items
+    // which can't happen with a block shuffle of the same size.
+    List<Integer> shuffled = SlidingWindowShuffledIterator.fromStream(
+        IntStream.range(0, 10_000).boxed(), 10, new Random(0), false).collect(
+        Collectors.toList());
+    int maxDisplacement = 0;
+    for (int i = 0; i < shuffled.size(); i++) {
+      maxDisplacement = Math.max(maxDisplacement, i - shuffled.get(i));
+    }
+    Assert.assertTrue("displacement was " + maxDisplacement,
+        maxDisplacement > 10);
+  }
+
+  public void assertStreamContainsAllItems(Stream<Integer> stream) {
+    List<Integer> collected = stream.collect(Collectors.toList());
+
+    Assert.assertEquals(100, collected.size());
+    HashSet<Integer> set = new HashSet<>(collected);
+    Assert.assertEquals(100, set.size());
+  }
+
+  public Stream<Integer> streamHundredItems() {
+    return IntStream.range(0, 100).boxed();
+  }
+
+}